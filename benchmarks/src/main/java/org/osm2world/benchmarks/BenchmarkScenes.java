@@ -0,0 +1,175 @@
+package org.osm2world.benchmarks;
+
+import static java.lang.Math.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.O2WConverter;
+import org.osm2world.map_data.creation.MapDataBuilder;
+import org.osm2world.map_data.data.MapData;
+import org.osm2world.map_data.data.MapNode;
+import org.osm2world.map_data.data.TagSet;
+import org.osm2world.osm.creation.OSMFileReader;
+import org.osm2world.scene.Scene;
+import org.osm2world.scene.mesh.Mesh;
+import org.osm2world.scene.mesh.MeshStore.MeshWithMetadata;
+import org.osm2world.scene.mesh.TriangleGeometry;
+import org.osm2world.scene.mesh.TriangleGeometry.CalculatedNormals;
+
+/**
+ * scenes used as input by the benchmarks which drive outputs and other consumers of meshes
+ */
+final class BenchmarkScenes {
+
+	private static final String[] ROOF_SHAPES = {
+			"flat", "gabled", "hipped", "pyramidal", "skillion", "dome", "onion", "half-hipped" };
+
+	private BenchmarkScenes() {}
+
+	/**
+	 * converts the given .osm file, or a generated town if the path is empty
+	 *
+	 * @param gridSize  number of blocks along each side of the generated town, ignored for .osm files
+	 */
+	static Scene createScene(@Nullable String osmFile, int gridSize) throws IOException {
+		var converter = new O2WConverter();
+		if (osmFile == null || osmFile.isEmpty()) {
+			return converter.convert(createTownMapData(gridSize), null);
+		} else {
+			return converter.convert(new OSMFileReader(new File(osmFile)), null, null);
+		}
+	}
+
+	/**
+	 * generates a grid of streets with buildings of different sizes and roof shapes, and trees along the streets.
+	 * The result is deterministic so that repeated runs of a benchmark are comparable.
+	 */
+	static MapData createTownMapData(int gridSize) {
+
+		var builder = new MapDataBuilder();
+
+		final double blockSize = 40;
+		final double streetWidth = 12;
+
+		/* streets */
+
+		double extent = gridSize * (blockSize + streetWidth);
+
+		for (int i = 0; i <= gridSize; i++) {
+			double offset = i * (blockSize + streetWidth) - streetWidth / 2;
+			TagSet streetTags = TagSet.of("highway", "residential");
+			builder.createWay(List.of(builder.createNode(offset, -streetWidth), builder.createNode(offset, extent)),
+					streetTags);
+			builder.createWay(List.of(builder.createNode(-streetWidth, offset), builder.createNode(extent, offset)),
+					streetTags);
+		}
+
+		/* buildings and trees */
+
+		int index = 0;
+
+		for (int x = 0; x < gridSize; x++) {
+			for (int z = 0; z < gridSize; z++) {
+
+				double minX = x * (blockSize + streetWidth);
+				double minZ = z * (blockSize + streetWidth);
+
+				for (int dx = 0; dx < 2; dx++) {
+					for (int dz = 0; dz < 2; dz++) {
+
+						double centerX = minX + (dx + 0.5) * blockSize / 2;
+						double centerZ = minZ + (dz + 0.5) * blockSize / 2;
+						double size = 10 + (index % 5) * 1.5;
+
+						List<MapNode> outline = (index % 7 == 3)
+								? createPolygon(builder, centerX, centerZ, size / 2, 8)
+								: createRectangle(builder, centerX, centerZ, size, size * 0.75);
+
+						builder.createWayArea(outline, TagSet.of(
+								"building", "yes",
+								"building:levels", Integer.toString(1 + index % 6),
+								"roof:shape", ROOF_SHAPES[index % ROOF_SHAPES.length]));
+
+						index++;
+
+					}
+				}
+
+				builder.createNode(minX - streetWidth / 4, minZ + blockSize / 2, TagSet.of("natural", "tree"));
+				builder.createNode(minX + blockSize / 2, minZ - streetWidth / 4, TagSet.of("natural", "tree"));
+
+			}
+		}
+
+		return builder.build();
+
+	}
+
+	private static List<MapNode> createRectangle(MapDataBuilder builder,
+			double centerX, double centerZ, double sizeX, double sizeZ) {
+		MapNode first = builder.createNode(centerX - sizeX / 2, centerZ - sizeZ / 2);
+		return List.of(
+				first,
+				builder.createNode(centerX + sizeX / 2, centerZ - sizeZ / 2),
+				builder.createNode(centerX + sizeX / 2, centerZ + sizeZ / 2),
+				builder.createNode(centerX - sizeX / 2, centerZ + sizeZ / 2),
+				first);
+	}
+
+	private static List<MapNode> createPolygon(MapDataBuilder builder,
+			double centerX, double centerZ, double radius, int numVertices) {
+		List<MapNode> result = new ArrayList<>(numVertices + 1);
+		for (int i = 0; i < numVertices; i++) {
+			double angle = 2 * PI * i / numVertices;
+			result.add(builder.createNode(centerX + radius * sin(angle), centerZ + radius * cos(angle)));
+		}
+		result.add(result.get(0));
+		return result;
+	}
+
+	/**
+	 * returns the meshes with all geometries converted to {@link TriangleGeometry},
+	 * so that copies with and without already calculated normals can be created cheaply
+	 */
+	static List<MeshWithMetadata> toTriangleMeshes(List<MeshWithMetadata> meshes) {
+		return meshes.stream()
+				.map(m -> new MeshWithMetadata(new Mesh(m.mesh().geometry.asTriangles(),
+						m.mesh().material, m.mesh().lodRange), m.metadata()))
+				.toList();
+	}
+
+	/**
+	 * returns copies of the meshes which have not yet calculated their normals,
+	 * as is the case for meshes which have just been created by the conversion.
+	 * Meshes with explicit normals are returned unchanged.
+	 */
+	static List<MeshWithMetadata> withUncalculatedNormals(List<MeshWithMetadata> meshes) {
+		List<MeshWithMetadata> result = new ArrayList<>(meshes.size());
+		for (MeshWithMetadata m : meshes) {
+			result.add(new MeshWithMetadata(withUncalculatedNormals(m.mesh()), m.metadata()));
+		}
+		return result;
+	}
+
+	static Mesh withUncalculatedNormals(Mesh mesh) {
+		if (mesh.geometry instanceof TriangleGeometry tg && tg.normalData instanceof CalculatedNormals n) {
+			var geometry = new TriangleGeometry(tg.triangles, n.normalMode, tg.texCoords, tg.colors);
+			return new Mesh(geometry, mesh.material, mesh.lodRange);
+		} else {
+			return mesh;
+		}
+	}
+
+	/** makes sure that the normals of all meshes have been calculated and cached */
+	static void calculateNormals(List<MeshWithMetadata> meshes) {
+		for (MeshWithMetadata m : meshes) {
+			m.mesh().geometry.asTriangles().normalArray();
+		}
+	}
+
+}
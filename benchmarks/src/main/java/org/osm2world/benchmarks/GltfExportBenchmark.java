@@ -0,0 +1,86 @@
+package org.osm2world.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.osm2world.conversion.O2WConfig;
+import org.osm2world.math.geo.LatLon;
+import org.osm2world.output.gltf.GltfOutput;
+import org.osm2world.scene.Scene;
+import org.osm2world.scene.mesh.MeshStore.MeshWithMetadata;
+import org.osm2world.scene.mesh.TriangleGeometry;
+
+/**
+ * measures writing a converted scene with {@link GltfOutput}.
+ * The export is run both with meshes which still need to calculate their normals, like meshes fresh from the
+ * conversion, and with meshes whose normals have already been cached by {@link TriangleGeometry}
+ * (e.g. because the scene has been written to a different output before).
+ *
+ * The scene is a generated town unless the osmFile parameter points to an .osm file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GltfExportBenchmark {
+
+	/** .osm file to convert, empty to use a generated town */
+	@Param({""})
+	public String osmFile;
+
+	/** number of blocks along each side of the generated town */
+	@Param({"4", "10"})
+	public int gridSize;
+
+	private Scene scene;
+	private List<MeshWithMetadata> cachedNormalMeshes;
+	private List<MeshWithMetadata> uncalculatedNormalMeshes;
+	private File outputFile;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		scene = BenchmarkScenes.createScene(osmFile, gridSize);
+
+		cachedNormalMeshes = BenchmarkScenes.toTriangleMeshes(scene.getMeshesWithMetadata());
+		BenchmarkScenes.calculateNormals(cachedNormalMeshes);
+
+		outputFile = Files.createTempFile("osm2world-benchmark", ".glb").toFile();
+		outputFile.deleteOnExit();
+
+	}
+
+	@Setup(Level.Invocation)
+	public void createUncalculatedNormalMeshes() {
+		uncalculatedNormalMeshes = BenchmarkScenes.withUncalculatedNormals(cachedNormalMeshes);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		outputFile.delete();
+	}
+
+	private void export(List<MeshWithMetadata> meshes) {
+		var output = new GltfOutput(outputFile);
+		output.setConfiguration(new O2WConfig());
+		LatLon origin = scene.getMapProjection() == null ? null : scene.getMapProjection().getOrigin();
+		output.outputScene(meshes, origin, scene.getBoundary());
+	}
+
+	@Benchmark
+	public void exportWithUncalculatedNormals() {
+		export(uncalculatedNormalMeshes);
+	}
+
+	@Benchmark
+	public void exportWithCachedNormals() {
+		export(cachedNormalMeshes);
+	}
+
+}
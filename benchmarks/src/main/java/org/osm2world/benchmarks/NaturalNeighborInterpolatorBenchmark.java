@@ -0,0 +1,145 @@
+package org.osm2world.benchmarks;
+
+import static org.osm2world.math.shapes.AxisAlignedRectangleXZ.bbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.osm2world.map_elevation.creation.DelaunayTriangulation;
+import org.osm2world.map_elevation.creation.DelaunayTriangulation.NaturalNeighbors;
+import org.osm2world.map_elevation.creation.NaturalNeighborInterpolator;
+import org.osm2world.map_elevation.creation.SRTMData;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.geo.LatLon;
+import org.osm2world.math.geo.OrthographicAzimuthalMapProjection;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+
+/**
+ * compares {@link NaturalNeighborInterpolator} with the previous approach of probing a
+ * {@link DelaunayTriangulation}, which temporarily inserts each query position into the triangulation.
+ * Measures building the triangulation and interpolating elevations at random positions.
+ * The new implementation's queries are also run with several threads at once, which the old one did not support.
+ *
+ * The sites are read from an SRTM tile, by default the one used by the tests.
+ * The benchmarks therefore need to be run from the project root, or the srtmDir parameter needs to be set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NaturalNeighborInterpolatorBenchmark {
+
+	private static final int QUERIES_PER_INVOCATION = 1000;
+
+	/** directory containing the SRTM tile N04E033 */
+	@Param({"core-jvm/src/test/resources/srtm"})
+	public String srtmDir;
+
+	/** width and height of the area in degrees, 0.1 degrees are about 14,400 SRTM3 sites */
+	@Param({"0.05", "0.1"})
+	public double areaSize;
+
+	private List<VectorXYZ> sites;
+	private NaturalNeighborInterpolator interpolator;
+	private DelaunayTriangulation baselineTriangulation;
+	private VectorXZ[] queryPositions;
+
+	@Setup
+	public void setup() throws IOException {
+
+		double minLat = 4.5 - areaSize / 2;
+		double minLon = 33.5 - areaSize / 2;
+
+		var projection = new OrthographicAzimuthalMapProjection(new LatLon(4.5, 33.5));
+		var srtmData = new SRTMData(new File(srtmDir), projection);
+
+		sites = new ArrayList<>(srtmData.getSites(minLon, minLat, minLon + areaSize, minLat + areaSize));
+
+		if (sites.isEmpty()) {
+			throw new IOException("No SRTM sites found in " + new File(srtmDir).getAbsolutePath());
+		}
+
+		interpolator = new NaturalNeighborInterpolator();
+		interpolator.setKnownSites(sites);
+
+		baselineTriangulation = buildBaselineTriangulation(sites);
+
+		/* query positions within the area covered by the sites */
+
+		var random = new Random(42);
+		AxisAlignedRectangleXZ bounds = bbox(sites);
+
+		queryPositions = new VectorXZ[QUERIES_PER_INVOCATION];
+		for (int i = 0; i < queryPositions.length; i++) {
+			queryPositions[i] = new VectorXZ(
+					bounds.minX + random.nextDouble() * bounds.sizeX(),
+					bounds.minZ + random.nextDouble() * bounds.sizeZ());
+		}
+
+	}
+
+	/** builds the triangulation the same way the previous implementation of setKnownSites did */
+	private static DelaunayTriangulation buildBaselineTriangulation(List<VectorXYZ> sites) {
+		var triangulation = new DelaunayTriangulation(bbox(sites).pad(100));
+		for (VectorXYZ site : sites) {
+			triangulation.insert(site);
+		}
+		return triangulation;
+	}
+
+	/** interpolates an elevation the same way the previous implementation of interpolateEle did */
+	private static double baselineInterpolateEle(DelaunayTriangulation triangulation, VectorXZ pos) {
+		NaturalNeighbors nn = triangulation.probe(pos);
+		double ele = 0;
+		for (int i = 0; i < nn.neighbors.length; i++) {
+			ele += nn.neighbors[i].y * nn.relativeWeights[i];
+		}
+		return ele;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public DelaunayTriangulation setKnownSitesBaseline() {
+		return buildBaselineTriangulation(sites);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public NaturalNeighborInterpolator setKnownSites() {
+		var newInterpolator = new NaturalNeighborInterpolator();
+		newInterpolator.setKnownSites(sites);
+		return newInterpolator;
+	}
+
+	@Benchmark
+	public void interpolateEleBaseline(Blackhole blackhole) {
+		for (VectorXZ pos : queryPositions) {
+			blackhole.consume(baselineInterpolateEle(baselineTriangulation, pos));
+		}
+	}
+
+	@Benchmark
+	public void interpolateEle(Blackhole blackhole) {
+		for (VectorXZ pos : queryPositions) {
+			blackhole.consume(interpolator.interpolateEle(pos));
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void interpolateEleConcurrently(Blackhole blackhole) {
+		for (VectorXZ pos : queryPositions) {
+			blackhole.consume(interpolator.interpolateEle(pos));
+		}
+	}
+
+}
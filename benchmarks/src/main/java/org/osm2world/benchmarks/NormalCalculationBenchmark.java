@@ -0,0 +1,80 @@
+package org.osm2world.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.algorithms.NormalCalculationUtil;
+import org.osm2world.math.shapes.TriangleXYZ;
+import org.osm2world.scene.material.Material.Interpolation;
+import org.osm2world.scene.mesh.TriangleGeometry;
+
+/**
+ * compares calculating smooth normals for each use of a geometry with the normals cached by
+ * {@link TriangleGeometry}. Each invocation uses the normals of a freshly built geometry
+ * {@link #USES_PER_GEOMETRY} times, similar to a geometry which is processed and then written to several outputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalCalculationBenchmark {
+
+	private static final int USES_PER_GEOMETRY = 3;
+
+	/** number of grid cells along each side of the terrain-like test surface */
+	@Param({"50", "200"})
+	public int gridSize;
+
+	private List<TriangleXYZ> triangles;
+
+	@Setup
+	public void setup() {
+
+		triangles = new ArrayList<>(2 * gridSize * gridSize);
+
+		for (int x = 0; x < gridSize; x++) {
+			for (int z = 0; z < gridSize; z++) {
+				VectorXYZ v00 = gridVertex(x, z);
+				VectorXYZ v10 = gridVertex(x + 1, z);
+				VectorXYZ v01 = gridVertex(x, z + 1);
+				VectorXYZ v11 = gridVertex(x + 1, z + 1);
+				triangles.add(new TriangleXYZ(v00, v10, v11));
+				triangles.add(new TriangleXYZ(v00, v11, v01));
+			}
+		}
+
+	}
+
+	private static VectorXYZ gridVertex(int x, int z) {
+		return new VectorXYZ(x, Math.sin(x * 0.3) + Math.cos(z * 0.2), z);
+	}
+
+	private TriangleGeometry buildGeometry() {
+		var builder = new TriangleGeometry.Builder(0, null, Interpolation.SMOOTH);
+		builder.addTriangles(triangles);
+		return builder.build();
+	}
+
+	@Benchmark
+	public void recalculatedNormals(Blackhole blackhole) {
+		TriangleGeometry geometry = buildGeometry();
+		for (int i = 0; i < USES_PER_GEOMETRY; i++) {
+			blackhole.consume(NormalCalculationUtil.calculateTriangleNormals(geometry.triangles, true));
+		}
+	}
+
+	@Benchmark
+	public void cachedNormals(Blackhole blackhole) {
+		TriangleGeometry geometry = buildGeometry();
+		for (int i = 0; i < USES_PER_GEOMETRY; i++) {
+			blackhole.consume(geometry.normalArray());
+		}
+	}
+
+}
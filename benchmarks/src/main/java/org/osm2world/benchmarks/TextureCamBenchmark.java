@@ -0,0 +1,120 @@
+package org.osm2world.benchmarks;
+
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.groupingBy;
+import static org.osm2world.math.shapes.AxisAlignedRectangleXZ.bbox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.osm2world.map_data.data.MapRelationElement;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+import org.osm2world.scene.material.TextureCam;
+import org.osm2world.scene.material.TextureCam.ViewDirection;
+import org.osm2world.scene.material.TextureData.Wrap;
+import org.osm2world.scene.material.TextureDataDimensions;
+import org.osm2world.scene.material.TextureLayer;
+import org.osm2world.scene.mesh.Mesh;
+import org.osm2world.scene.mesh.MeshStore.MeshWithMetadata;
+import org.osm2world.scene.mesh.TriangleGeometry;
+
+/**
+ * measures rendering textures of a single feature with {@link TextureCam}, once with meshes which still need to
+ * calculate their normals and once with meshes whose normals have already been cached by {@link TriangleGeometry}.
+ *
+ * The feature is taken from a generated town, or from an .osm file if osmFile is set.
+ * Because renderTextures tests every triangle for every pixel, the feature with the fewest triangles is used,
+ * and each render is timed individually as it still takes seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TextureCamBenchmark {
+
+	/** .osm file to convert, empty to use a generated town */
+	@Param({""})
+	public String osmFile;
+
+	/** key of the tags identifying the kind of feature to render */
+	@Param({"natural", "building"})
+	public String featureKey;
+
+	@Param({"FROM_TOP", "FROM_FRONT"})
+	public ViewDirection viewDirection;
+
+	private List<Mesh> cachedNormalMeshes;
+	private List<Mesh> uncalculatedNormalMeshes;
+	private TextureDataDimensions dimensions;
+	private VectorXYZ center;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		var scene = BenchmarkScenes.createScene(osmFile, 2);
+
+		List<MeshWithMetadata> meshes = BenchmarkScenes.toTriangleMeshes(scene.getMeshesWithMetadata());
+		BenchmarkScenes.calculateNormals(meshes);
+
+		/* pick the least detailed feature */
+
+		Map<MapRelationElement, List<MeshWithMetadata>> meshesByElement = meshes.stream()
+				.filter(m -> m.metadata().mapElement() != null
+						&& m.metadata().mapElement().getTags().containsKey(featureKey))
+				.collect(groupingBy(m -> m.metadata().mapElement()));
+
+		cachedNormalMeshes = meshesByElement.values().stream()
+				.min(comparingInt(TextureCamBenchmark::triangleCount))
+				.orElseThrow(() -> new IOException("No feature with key " + featureKey + " in the scene"))
+				.stream().map(MeshWithMetadata::mesh).toList();
+
+		/* frame the feature */
+
+		List<VectorXYZ> vertices = new ArrayList<>();
+		cachedNormalMeshes.forEach(m -> vertices.addAll(m.geometry.asTriangles().vertices()));
+
+		AxisAlignedRectangleXZ bounds = bbox(vertices);
+		double minY = vertices.stream().mapToDouble(v -> v.y).min().getAsDouble();
+		double maxY = vertices.stream().mapToDouble(v -> v.y).max().getAsDouble();
+
+		if (viewDirection == ViewDirection.FROM_TOP) {
+			center = bounds.center().xyz(maxY);
+			dimensions = new TextureDataDimensions(bounds.sizeX(), bounds.sizeZ());
+		} else {
+			center = bounds.center().xyz((minY + maxY) / 2);
+			dimensions = new TextureDataDimensions(bounds.sizeX(), maxY - minY);
+		}
+
+	}
+
+	@Setup(Level.Invocation)
+	public void createUncalculatedNormalMeshes() {
+		uncalculatedNormalMeshes = cachedNormalMeshes.stream().map(BenchmarkScenes::withUncalculatedNormals).toList();
+	}
+
+	private static int triangleCount(List<MeshWithMetadata> meshes) {
+		return meshes.stream().mapToInt(m -> m.mesh().geometry.asTriangles().triangleCount()).sum();
+	}
+
+	private TextureLayer render(List<Mesh> meshes) {
+		return TextureCam.renderTextures(meshes, viewDirection, "benchmark", dimensions, Wrap.CLAMP, center, 0);
+	}
+
+	@Benchmark
+	public TextureLayer renderWithUncalculatedNormals() {
+		return render(uncalculatedNormalMeshes);
+	}
+
+	@Benchmark
+	public TextureLayer renderWithCachedNormals() {
+		return render(cachedNormalMeshes);
+	}
+
+}
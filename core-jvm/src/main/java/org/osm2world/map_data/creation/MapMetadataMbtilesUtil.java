@@ -9,25 +9,54 @@ import org.imintel.mbtiles4j.MBTilesReader;
 import org.osm2world.conversion.ConversionLog;
 import org.osm2world.map_data.data.MapMetadata;
 import org.osm2world.math.geo.TileNumber;
+import org.osm2world.util.ResourcePool;
 
 /**
  * Loads {@link org.osm2world.map_data.data.MapMetadata} from MBTiles files.
  */
 public class MapMetadataMbtilesUtil {
 
-	public synchronized static MapMetadata metadataForTile(TileNumber tile, File tileMetadataDb)
+	/**
+	 * pool of open metadata databases.
+	 * Each connection is only used by one thread at a time, but is kept open for subsequent tiles.
+	 */
+	private static final ResourcePool<File, MBTilesReader> readerPool =
+			ResourcePool.exclusive(MapMetadataMbtilesUtil::openReader, MBTilesReader::close).closedAtShutdown();
+
+	private static MBTilesReader openReader(File tileMetadataDb) throws IOException {
+		try {
+			return new MBTilesReader(tileMetadataDb);
+		} catch (MBTilesReadException e) {
+			throw new WrappedReadException(e);
+		}
+	}
+
+	public static MapMetadata metadataForTile(TileNumber tile, File tileMetadataDb)
 			throws MBTilesReadException, IOException {
 
-		var metadataReader = new MBTilesReader(tileMetadataDb);
-		MapMetadata result = metadataForTile(tile, metadataReader);
-		metadataReader.close();
-		return result;
+		try {
+			return readerPool.use(tileMetadataDb.getAbsoluteFile(), reader -> {
+				try {
+					return metadataForTile(tile, reader, false);
+				} catch (MBTilesReadException e) {
+					throw new WrappedReadException(e);
+				}
+			});
+		} catch (WrappedReadException e) {
+			throw e.cause;
+		}
 
 	}
 
-	public synchronized static MapMetadata metadataForTile(TileNumber tile, MBTilesReader tileMetadataReader)
+	/**
+	 * loads metadata using an existing reader.
+	 * Calls using the same reader are synchronized, as a reader must not be used by multiple threads at once.
+	 */
+	public static MapMetadata metadataForTile(TileNumber tile, MBTilesReader tileMetadataReader)
 			throws MBTilesReadException, IOException {
-		return metadataForTile(tile, tileMetadataReader, false);
+		synchronized (tileMetadataReader) {
+			return metadataForTile(tile, tileMetadataReader, false);
+		}
 	}
 
 	private static MapMetadata metadataForTile(TileNumber tile, MBTilesReader tileMetadataReader,
@@ -56,4 +85,16 @@ public class MapMetadataMbtilesUtil {
 
 	}
 
+	/** transports an {@link MBTilesReadException} through operations which may only throw IOExceptions */
+	private static class WrappedReadException extends IOException {
+
+		final MBTilesReadException cause;
+
+		WrappedReadException(MBTilesReadException cause) {
+			super(cause);
+			this.cause = cause;
+		}
+
+	}
+
 }
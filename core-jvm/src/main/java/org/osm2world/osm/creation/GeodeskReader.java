@@ -8,24 +8,23 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
 
+import org.osm2world.map_data.data.TagDictionary;
 import org.osm2world.map_data.data.TagSet;
 import org.osm2world.math.geo.LatLon;
 import org.osm2world.math.geo.LatLonBounds;
+import org.osm2world.osm.data.CompactOSMDataBuilder;
 import org.osm2world.osm.data.OSMData;
 import org.osm2world.osm.ruleset.HardcodedRuleset;
+import org.osm2world.util.ResourcePool;
 
 import com.clarisma.common.store.StoreException;
 import com.geodesk.feature.*;
 import com.geodesk.geom.Box;
-import com.slimjars.dist.gnu.trove.list.array.TLongArrayList;
 import com.slimjars.dist.gnu.trove.map.TLongObjectMap;
 import com.slimjars.dist.gnu.trove.map.hash.TLongObjectHashMap;
 
-import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
-import de.topobyte.osm4j.core.model.iface.*;
+import de.topobyte.osm4j.core.model.iface.EntityType;
 import de.topobyte.osm4j.core.model.impl.Bounds;
-import de.topobyte.osm4j.core.model.impl.RelationMember;
-import de.topobyte.osm4j.core.model.impl.Tag;
 import gnu.trove.map.TObjectLongMap;
 import gnu.trove.map.hash.TObjectLongHashMap;
 
@@ -39,39 +38,45 @@ public record GeodeskReader(File file) implements OSMDataReader {
 	private static final long ANONYMOUS_NODE_ID_OFFSET = 100_000_000_000L;
 
 	/**
-	 * object used to prevent concurrent access to a Geodesk database.
-	 * This simple solution also prevents concurrent access to different databases, but that's likely a rare situation.
+	 * pool of open GeoDesk databases, shared by all instances.
+	 * Feature libraries support concurrent queries, so each one is used by all threads at once.
 	 */
-	private static final Object synchronizationObject = new Object();
+	private static final ResourcePool<File, FeatureLibrary> libraryPool =
+			ResourcePool.shared(GeodeskReader::openLibrary, FeatureLibrary::close).closedAtShutdown();
+
+	private static FeatureLibrary openLibrary(File golFile) throws IOException {
+		if (!golFile.exists()) {
+			throw new FileNotFoundException("Geodesk file does not exist: " + golFile);
+		}
+		try {
+			return new FeatureLibrary(golFile.getPath());
+		} catch (StoreException e) {
+			throw new IOException(e);
+		}
+	}
 
 	@Override
 	public OSMData getData(LatLonBounds bounds) throws IOException {
 
-		if (!file.exists()) {
-			throw new FileNotFoundException("Geodesk file does not exist: " + file);
-		}
-
-		synchronized (synchronizationObject) {
+		return libraryPool.use(file.getAbsoluteFile(), library -> {
 
-			try (FeatureLibrary library = new FeatureLibrary(file.getPath())) {
+			try {
 
 				Box bbox = Box.ofWSEN(bounds.minlon, bounds.minlat, bounds.maxlon, bounds.maxlat);
 				Features features = library.in(bbox);
 
-				InMemoryMapDataSet data = geodeskToOsm4j(features, bounds);
-
-				return new OSMData(data);
+				return geodeskToOSMData(features, bounds);
 
 			} catch (StoreException e) {
 				throw new IOException(e);
 			}
 
-		}
+		});
 
 	}
 
-	/** converts OSM data in GeoDesk's representation to osm4j's */
-	private InMemoryMapDataSet geodeskToOsm4j(Features features, LatLonBounds bounds) {
+	/** converts OSM data in GeoDesk's representation to OSM2World's */
+	private OSMData geodeskToOSMData(Features features, LatLonBounds bounds) {
 
 		NodeIdProvider nodeIdProvider = new NodeIdProvider();
 
@@ -114,50 +119,47 @@ public record GeodeskReader(File file) implements OSMDataReader {
 
 		/* perform the actual conversion */
 
-		TLongObjectMap<OsmNode> osm4jNodeMap = new TLongObjectHashMap<>();
-		TLongObjectMap<OsmWay> osm4jWayMap = new TLongObjectHashMap<>();
-		TLongObjectMap<OsmRelation> osm4jRelationMap = new TLongObjectHashMap<>();
+		CompactOSMDataBuilder builder = new CompactOSMDataBuilder();
 
 		for (long nodeId : golNodeMap.keys()) {
 			Feature node = golNodeMap.get(nodeId);
-			var golNode = new de.topobyte.osm4j.core.model.impl.Node(nodeId, node.lon(), node.lat());
-			golNode.setTags(geodeskTagsToOsm4j(node.tags()));
-			osm4jNodeMap.put(nodeId, golNode);
+			builder.addNode(nodeId, node.lat(), node.lon(), geodeskTagsToArray(node.tags()));
 		}
 
 		for (Feature way : golWayMap.valueCollection()) {
-			TLongArrayList nodeIds = new TLongArrayList();
-			way.nodes().forEach(n -> nodeIds.add(nodeIdProvider.nodeId(n)));
-			assert(stream(nodeIds.toArray()).allMatch(osm4jNodeMap::containsKey));
-			var golWay = new de.topobyte.osm4j.core.model.impl.Way(way.id(), nodeIds);
-			golWay.setTags(geodeskTagsToOsm4j(way.tags()));
-			osm4jWayMap.put(way.id(), golWay);
+			List<Feature> wayNodes = way.nodes().toList();
+			long[] nodeIds = new long[wayNodes.size()];
+			for (int i = 0; i < wayNodes.size(); i++) {
+				nodeIds[i] = nodeIdProvider.nodeId(wayNodes.get(i));
+			}
+			assert(stream(nodeIds).allMatch(golNodeMap::containsKey));
+			builder.addWay(way.id(), nodeIds, geodeskTagsToArray(way.tags()));
 		}
 
 		for (Feature relation : golRelationMap.valueCollection()) {
-			List<OsmRelationMember> members = new ArrayList<>();
-			for (Feature m : relation.members()) {
-				EntityType mType;
+			List<Feature> members = relation.members().toList();
+			long[] memberIds = new long[members.size()];
+			EntityType[] memberTypes = new EntityType[members.size()];
+			String[] memberRoles = new String[members.size()];
+			for (int i = 0; i < members.size(); i++) {
+				Feature m = members.get(i);
+				memberIds[i] = m.id();
 				if (m instanceof Node) {
-					mType = EntityType.Node;
+					memberTypes[i] = EntityType.Node;
 				} else if (m instanceof Way) {
-					mType = EntityType.Way;
+					memberTypes[i] = EntityType.Way;
 				} else {
-					mType = EntityType.Relation;
+					memberTypes[i] = EntityType.Relation;
 				}
-				members.add(new RelationMember(m.id(), mType, m.role()));
+				memberRoles[i] = m.role();
 			}
-			var golRelation = new de.topobyte.osm4j.core.model.impl.Relation(relation.id(), members);
-			golRelation.setTags(geodeskTagsToOsm4j(relation.tags()));
-			osm4jRelationMap.put(relation.id(), golRelation);
+			builder.addRelation(relation.id(), memberIds, memberTypes, memberRoles,
+					geodeskTagsToArray(relation.tags()));
 		}
 
-		InMemoryMapDataSet data = new InMemoryMapDataSet();
-		data.setNodes(osm4jNodeMap);
-		data.setWays(osm4jWayMap);
-		data.setRelations(osm4jRelationMap);
-		data.setBounds(new Bounds(bounds.minlon, bounds.maxlon, bounds.maxlat, bounds.minlat));
-		return data;
+		builder.addBounds(new Bounds(bounds.minlon, bounds.maxlon, bounds.maxlat, bounds.minlat));
+
+		return builder.build();
 
 	}
 
@@ -166,20 +168,21 @@ public record GeodeskReader(File file) implements OSMDataReader {
 				&& new HardcodedRuleset().isRelevantRelation(geodeskTagsToTagSet(relation.tags()));
 	}
 
-	private List<? extends OsmTag> geodeskTagsToOsm4j(Tags geodeskTags) {
+	/** returns alternating keys and values */
+	private static String[] geodeskTagsToArray(Tags geodeskTags) {
 		Map<String, Object> tagMap = geodeskTags.toMap();
-		if (tagMap.isEmpty()) {
-			return List.of();
-		} else {
-			return tagMap.entrySet().stream()
-					.map(t -> new Tag(t.getKey(), t.getValue().toString()))
-					.collect(toList());
+		String[] result = new String[2 * tagMap.size()];
+		int i = 0;
+		for (Map.Entry<String, Object> t : tagMap.entrySet()) {
+			result[i++] = t.getKey();
+			result[i++] = t.getValue().toString();
 		}
+		return result;
 	}
 
 	private static TagSet geodeskTagsToTagSet(Tags geodeskTags) {
 		return TagSet.of(geodeskTags.toMap().entrySet().stream()
-				.map(it -> new org.osm2world.map_data.data.Tag(it.getKey(), it.getValue().toString()))
+				.map(it -> TagDictionary.tag(it.getKey(), it.getValue().toString()))
 				.collect(toList()));
 	}
 
@@ -0,0 +1,128 @@
+package org.osm2world.osm.creation;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.conversion.ConversionLog;
+import org.osm2world.math.geo.LatLonBounds;
+import org.osm2world.osm.creation.PbfBlocks.UnsupportedCompressionException;
+import org.osm2world.osm.data.CompactOSMDataBuilder;
+import org.osm2world.osm.data.OSMData;
+
+/**
+ * {@link OSMDataReader} for .osm.pbf files which can efficiently provide the data for some bounds or tiles.
+ *
+ * When data for some bounds is first requested, a spatial index is built and stored next to the file
+ * (see {@link PbfIndex}). Each request then only decodes those parts of the file which it needs,
+ * so large extracts can be used to generate individual tiles.
+ * The file needs to be sorted by entity type and id, which is the case for most extracts.
+ * Requests for all data, and requests for files with blocks which are not compressed using zlib,
+ * are handled by {@link OSMFileReader} instead.
+ * Instances can be used by multiple threads at once.
+ *
+ * @param file              the .osm.pbf file this reader is obtaining data from
+ * @param relevantDataOnly  whether to drop entities which are not relevant for OSM2World,
+ *                          see {@link CompactOSMDataBuilder#CompactOSMDataBuilder(boolean)}
+ */
+public record IndexedPbfReader(File file, boolean relevantDataOnly) implements OSMDataReader {
+
+	public IndexedPbfReader(File file) {
+		this(file, false);
+	}
+
+	private record IndexKey(long length, long lastModified) {}
+
+	/**
+	 * the index of a file. Queries hold the read lock, replacing the index requires the write lock.
+	 * If {@link #key} is set, but {@link #index} is null, no index can be built for that version of the file.
+	 */
+	private static final class IndexEntry {
+		final ReadWriteLock lock = new ReentrantReadWriteLock();
+		@Nullable IndexKey key = null;
+		@Nullable PbfIndex index = null;
+	}
+
+	/**
+	 * map of existing indices, with one entry for each file.
+	 * Necessary to avoid building or opening the same index more than once when used by separate threads.
+	 * Threads using different files don't block each other.
+	 */
+	private static final Map<File, IndexEntry> indexMap = new ConcurrentHashMap<>();
+
+	@Override
+	public OSMData getAllData() throws IOException {
+		return new OSMFileReader(file, relevantDataOnly).getAllData();
+	}
+
+	@Override
+	public OSMData getData(LatLonBounds bounds) throws IOException {
+
+		if (!file.exists()) {
+			throw new FileNotFoundException("PBF file does not exist: " + file);
+		}
+
+		var key = new IndexKey(file.length(), file.lastModified());
+		IndexEntry entry = indexMap.computeIfAbsent(file.getAbsoluteFile(), f -> new IndexEntry());
+
+		entry.lock.readLock().lock();
+
+		try {
+
+			if (!key.equals(entry.key)) {
+
+				/* (re-)build the index. The read lock is released while waiting for the write lock. */
+
+				entry.lock.readLock().unlock();
+				entry.lock.writeLock().lock();
+
+				try {
+					if (!key.equals(entry.key)) {
+						replaceIndex(entry, key, file.getAbsoluteFile());
+					}
+				} finally {
+					entry.lock.readLock().lock();
+					entry.lock.writeLock().unlock();
+				}
+
+			}
+
+			if (entry.index != null) {
+				return entry.index.getData(bounds, relevantDataOnly);
+			}
+
+		} finally {
+			entry.lock.readLock().unlock();
+		}
+
+		return new OSMFileReader(file, relevantDataOnly).getData(bounds);
+
+	}
+
+	/** closes the previous index, if any, and opens an index for the current version of the file */
+	private static void replaceIndex(IndexEntry entry, IndexKey key, File pbfFile) throws IOException {
+
+		if (entry.index != null) {
+			entry.index.close();
+		}
+
+		entry.key = null;
+		entry.index = null;
+
+		try {
+			entry.index = PbfIndex.open(pbfFile);
+		} catch (UnsupportedCompressionException e) {
+			ConversionLog.warn("Cannot index " + pbfFile + ", reading the entire file instead", e);
+		}
+
+		entry.key = key;
+
+	}
+
+}
@@ -4,8 +4,6 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 import org.imintel.mbtiles4j.MBTilesReadException;
@@ -13,65 +11,70 @@ import org.imintel.mbtiles4j.MBTilesReader;
 import org.imintel.mbtiles4j.Tile;
 import org.osm2world.math.geo.LatLonBounds;
 import org.osm2world.math.geo.TileNumber;
+import org.osm2world.osm.data.CompactOSMDataBuilder;
 import org.osm2world.osm.data.OSMData;
+import org.osm2world.util.ResourcePool;
 
 import de.topobyte.osm4j.core.access.OsmIterator;
-import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
-import de.topobyte.osm4j.core.dataset.MapDataSetLoader;
 import de.topobyte.osm4j.pbf.seq.PbfIterator;
 
 /**
  * {@link OSMDataReader} fetching a single tile from a MBTiles sqlite database which contains .osm.pbf data.
  *
- * @param file  the MBTiles file this reader is obtaining data from
+ * @param file              the MBTiles file this reader is obtaining data from
+ * @param relevantDataOnly  whether to drop entities which are not relevant for OSM2World,
+ *                          see {@link CompactOSMDataBuilder#CompactOSMDataBuilder(boolean)}
  */
-public record MbtilesReader(File file) implements OSMDataReader {
+public record MbtilesReader(File file, boolean relevantDataOnly) implements OSMDataReader {
+
+	public MbtilesReader(File file) {
+		this(file, false);
+	}
 
 	/**
-	 * map of existing readers.
-	 * Necessary to avoid more than one reader (and thus connection) to be created by separate threads.
-	 * Access through {@link #getReader(File)}!
-	 * //TODO move into a separate MbtilesReaderPool class so I can enforce access restrictions?
+	 * pool of open MBTiles databases, shared by all instances.
+	 * A database connection is only used by one thread at a time,
+	 * but connections are kept open for subsequent tiles.
 	 */
-	private static final Map<File, MBTilesReader> readerMap = new HashMap<>();
-	//TODO reference counter, closing it
+	private static final ResourcePool<File, MBTilesReader> readerPool =
+			ResourcePool.exclusive(MbtilesReader::openReader, MBTilesReader::close).closedAtShutdown();
 
-	private static synchronized MBTilesReader getReader(File mbtilesFile)
-			throws MBTilesReadException, FileNotFoundException {
-
-		if (!readerMap.containsKey(mbtilesFile)) {
-			if (!mbtilesFile.exists()) {
-				throw new FileNotFoundException("MBTiles file does not exist: " + mbtilesFile);
-			}
-			readerMap.put(mbtilesFile, new MBTilesReader(mbtilesFile));
+	private static MBTilesReader openReader(File mbtilesFile) throws IOException {
+		if (!mbtilesFile.exists()) {
+			throw new FileNotFoundException("MBTiles file does not exist: " + mbtilesFile);
+		}
+		try {
+			return new MBTilesReader(mbtilesFile);
+		} catch (MBTilesReadException e) {
+			throw new IOException(e);
 		}
-
-		return readerMap.get(mbtilesFile);
-
 	}
 
 	@Override
 	public OSMData getData(TileNumber tile) throws IOException {
 
-		try {
+		return readerPool.use(file.getAbsoluteFile(), r -> {
+
+			try {
 
-			MBTilesReader r = getReader(file);
+				// get the tile; note that mbtiles is using TMS tile coords, which have a flipped y-axis
+				Tile t = r.getTile(tile.zoom, tile.x, tile.flippedY());
 
-			// get the tile; note that mbtiles is using TMS tile coords, which have a flipped y-axis
-			Tile t = r.getTile(tile.zoom, tile.x, tile.flippedY());
+				try (InputStream is = t.getData()) {
 
-			try (InputStream is = t.getData()) {
+					OsmIterator iterator = new PbfIterator(is, true);
 
-				OsmIterator iterator = new PbfIterator(is, true);
+					CompactOSMDataBuilder builder = new CompactOSMDataBuilder(relevantDataOnly);
+					builder.addAll(iterator);
+					return builder.build();
 
-				InMemoryMapDataSet data = MapDataSetLoader.read(iterator, true, true, true);
-				return new OSMData(data);
+				}
 
+			} catch (MBTilesReadException e) {
+				throw new IOException(e);
 			}
 
-		} catch (MBTilesReadException e) {
-			throw new IOException(e);
-		}
+		});
 
 	}
 
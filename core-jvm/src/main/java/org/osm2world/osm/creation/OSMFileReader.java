@@ -3,6 +3,7 @@ package org.osm2world.osm.creation;
 import java.io.*;
 
 import org.osm2world.osm.creation.OSMStreamReader.CompressionMethod;
+import org.osm2world.osm.data.CompactOSMDataBuilder;
 import org.osm2world.osm.data.OSMData;
 
 /**
@@ -10,8 +11,16 @@ import org.osm2world.osm.data.OSMData;
  * non-standard variants such as those files produced by JOSM. The file is read
  * during the {@link #getAllData()} call, there will be no updates when the file is
  * changed later. This class internally uses osm4j to read the file.
+ *
+ * @param file              the .osm file this reader is obtaining data from
+ * @param relevantDataOnly  whether to drop entities which are not relevant for OSM2World,
+ *                          see {@link CompactOSMDataBuilder#CompactOSMDataBuilder(boolean)}
  */
-public record OSMFileReader(File file) implements OSMDataReader {
+public record OSMFileReader(File file, boolean relevantDataOnly) implements OSMDataReader {
+
+	public OSMFileReader(File file) {
+		this(file, false);
+	}
 
 	@Override
 	public OSMData getAllData() throws IOException {
@@ -25,7 +34,8 @@ public record OSMFileReader(File file) implements OSMDataReader {
 			/* try to read file using osm4j */
 
 			try (FileInputStream is = new FileInputStream(file)) {
-				return new OSMStreamReader(is, CompressionMethod.fromFileName(file.getName()), false).getAllData();
+				return new OSMStreamReader(is, CompressionMethod.fromFileName(file.getName()), false,
+						relevantDataOnly).getAllData();
 			} catch (IOException e) {
 				System.out.println("could not read file, trying workaround for files created by JOSM");
 			}
@@ -35,7 +45,8 @@ public record OSMFileReader(File file) implements OSMDataReader {
 		/* try reading the file while taking into account JOSM-specific extensions */
 
 		try (FileInputStream is = new FileInputStream(file)) {
-			return new OSMStreamReader(is, CompressionMethod.fromFileName(file.getName()), true).getAllData();
+			return new OSMStreamReader(is, CompressionMethod.fromFileName(file.getName()), true,
+					relevantDataOnly).getAllData();
 		} catch (Exception e2) {
 			throw new IOException("could not read OSM file (not even with workaround for JOSM files)", e2);
 		}
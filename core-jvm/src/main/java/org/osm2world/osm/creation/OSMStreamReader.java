@@ -24,6 +24,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.NotImplementedException;
+import org.osm2world.osm.data.CompactOSMDataBuilder;
 import org.osm2world.osm.data.OSMData;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -32,8 +33,6 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import de.topobyte.osm4j.core.access.OsmIterator;
-import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
-import de.topobyte.osm4j.core.dataset.MapDataSetLoader;
 import de.topobyte.osm4j.pbf.seq.PbfIterator;
 import de.topobyte.osm4j.xml.dynsax.OsmXmlIterator;
 
@@ -67,23 +66,35 @@ public class OSMStreamReader implements OSMDataReader {
 	private final InputStream inputStream;
 	private final CompressionMethod compressionMethod;
 	private final boolean useJosmWorkaround;
+	private final boolean relevantDataOnly;
 
 	public OSMStreamReader(InputStream inputStream, CompressionMethod compressionMethod, boolean useJosmWorkaround) {
+		this(inputStream, compressionMethod, useJosmWorkaround, false);
+	}
+
+	/**
+	 * @param relevantDataOnly  whether to drop entities which are not relevant for OSM2World,
+	 *                          see {@link CompactOSMDataBuilder#CompactOSMDataBuilder(boolean)}
+	 */
+	public OSMStreamReader(InputStream inputStream, CompressionMethod compressionMethod, boolean useJosmWorkaround,
+			boolean relevantDataOnly) {
 		this.inputStream = inputStream;
 		this.compressionMethod = compressionMethod;
 		this.useJosmWorkaround = useJosmWorkaround;
+		this.relevantDataOnly = relevantDataOnly;
 	}
 
 	@Override
 	public OSMData getAllData() throws IOException {
 		if (!useJosmWorkaround) {
-			return getDataFromStream(inputStream, compressionMethod);
+			return getDataFromStream(inputStream, compressionMethod, relevantDataOnly);
 		} else {
-			return getDataFromStream(applyJosmWorkarounds(inputStream), CompressionMethod.None);
+			return getDataFromStream(applyJosmWorkarounds(inputStream), CompressionMethod.None, relevantDataOnly);
 		}
 	}
 
-	protected static OSMData getDataFromStream(InputStream inputStream, CompressionMethod compressionMethod) {
+	protected static OSMData getDataFromStream(InputStream inputStream, CompressionMethod compressionMethod,
+			boolean relevantDataOnly) {
 
 		OsmIterator iterator = switch (compressionMethod) {
 			case PBF -> new PbfIterator(inputStream, true);
@@ -91,8 +102,9 @@ public class OSMStreamReader implements OSMDataReader {
 			default -> throw new NotImplementedException("Compression method " + compressionMethod); // TODO: handle compression with GZip or BZip2!
 		};
 
-		InMemoryMapDataSet data = MapDataSetLoader.read(iterator, true, true, true);
-		return new OSMData(data);
+		CompactOSMDataBuilder builder = new CompactOSMDataBuilder(relevantDataOnly);
+		builder.addAll(iterator);
+		return builder.build();
 
 	}
 
@@ -0,0 +1,450 @@
+package org.osm2world.osm.creation;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.math.geo.LatLonBounds;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * low-level access to the blocks of an .osm.pbf file.
+ * Blocks can be located without decoding them, and each block can then be read and decoded independently.
+ * See <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">the PBF format documentation</a> for details.
+ */
+final class PbfBlocks {
+
+	/** the type of blobs containing OSM entities */
+	static final String DATA_BLOB_TYPE = "OSMData";
+
+	/** the type of the blob containing the file header */
+	static final String HEADER_BLOB_TYPE = "OSMHeader";
+
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+	private PbfBlocks() {}
+
+	/**
+	 * the location of a blob within the file
+	 *
+	 * @param offset  position of the serialized Blob message
+	 * @param size  size of the serialized Blob message
+	 */
+	record Blob(String type, long offset, int size) {}
+
+	/** thrown for blobs using a compression other than zlib, which can still be read using osm4j */
+	static class UnsupportedCompressionException extends IOException {
+		UnsupportedCompressionException(long offset) {
+			super("Unsupported PBF blob compression at position " + offset + " (only zlib is supported)");
+		}
+	}
+
+	/** receives the entities decoded from a block */
+	interface EntityHandler {
+
+		/** @param tags  keys and values, alternating */
+		void node(long id, double lat, double lon, String[] tags);
+
+		/** @param tags  keys and values, alternating */
+		void way(long id, long[] nodeIds, String[] tags);
+
+		/** @param tags  keys and values, alternating */
+		void relation(long id, long[] memberIds, EntityType[] memberTypes, String[] memberRoles, String[] tags);
+
+	}
+
+	/** finds all blobs in a file by reading only their headers */
+	static List<Blob> scan(FileChannel channel) throws IOException {
+
+		List<Blob> result = new ArrayList<>();
+
+		long position = 0;
+		long size = channel.size();
+
+		while (position < size) {
+
+			int headerSize = readFully(channel, position, 4).getInt();
+
+			if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+				throw new IOException("Invalid PBF blob header size " + headerSize + " at position " + position);
+			}
+
+			CodedInputStream in = CodedInputStream.newInstance(readFully(channel, position + 4, headerSize));
+
+			String type = null;
+			int dataSize = -1;
+
+			for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+				switch (WireFormat.getTagFieldNumber(tag)) {
+					case 1 -> type = in.readString();
+					case 3 -> dataSize = in.readInt32();
+					default -> in.skipField(tag);
+				}
+			}
+
+			if (type == null || dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+				throw new IOException("Invalid PBF blob header at position " + position);
+			}
+
+			result.add(new Blob(type, position + 4 + headerSize, dataSize));
+			position += 4 + headerSize + dataSize;
+
+		}
+
+		return result;
+
+	}
+
+	/** reads a blob and returns its uncompressed content */
+	static byte[] read(FileChannel channel, Blob blob) throws IOException {
+
+		CodedInputStream in = CodedInputStream.newInstance(readFully(channel, blob.offset, blob.size));
+
+		ByteString raw = null;
+		ByteString zlibData = null;
+		int rawSize = -1;
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case 1 -> raw = in.readBytes();
+				case 2 -> rawSize = in.readInt32();
+				case 3 -> zlibData = in.readBytes();
+				case 4, 5, 6, 7 -> throw new UnsupportedCompressionException(blob.offset);
+				default -> in.skipField(tag);
+			}
+		}
+
+		if (raw != null) {
+			return raw.toByteArray();
+		} else if (zlibData != null && rawSize >= 0 && rawSize <= MAX_BLOB_SIZE) {
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(zlibData.toByteArray());
+				byte[] result = new byte[rawSize];
+				int length = 0;
+				while (length < rawSize && !inflater.finished()) {
+					int inflated = inflater.inflate(result, length, rawSize - length);
+					if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+					length += inflated;
+				}
+				if (length != rawSize) {
+					throw new IOException("Corrupt PBF blob at position " + blob.offset);
+				}
+				return result;
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt PBF blob at position " + blob.offset, e);
+			} finally {
+				inflater.end();
+			}
+		} else {
+			throw new IOException("PBF blob without data at position " + blob.offset);
+		}
+
+	}
+
+	/** returns the bounding box from a HeaderBlock, or null if the header doesn't contain one */
+	static @Nullable LatLonBounds decodeHeaderBounds(byte[] header) throws IOException {
+
+		CodedInputStream in = CodedInputStream.newInstance(header);
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			if (WireFormat.getTagFieldNumber(tag) == 1) {
+				CodedInputStream bboxIn = in.readBytes().newCodedInput();
+				long left = 0, right = 0, top = 0, bottom = 0;
+				for (int t = bboxIn.readTag(); t != 0; t = bboxIn.readTag()) {
+					switch (WireFormat.getTagFieldNumber(t)) {
+						case 1 -> left = bboxIn.readSInt64();
+						case 2 -> right = bboxIn.readSInt64();
+						case 3 -> top = bboxIn.readSInt64();
+						case 4 -> bottom = bboxIn.readSInt64();
+						default -> bboxIn.skipField(t);
+					}
+				}
+				return new LatLonBounds(1e-9 * bottom, 1e-9 * left, 1e-9 * top, 1e-9 * right);
+			} else {
+				in.skipField(tag);
+			}
+		}
+
+		return null;
+
+	}
+
+	/** decodes the entities in a PrimitiveBlock */
+	static void decode(byte[] block, EntityHandler handler) throws IOException {
+
+		/* read the block-wide values first, they may appear after the groups */
+
+		CodedInputStream in = CodedInputStream.newInstance(block);
+
+		List<String> strings = new ArrayList<>();
+		List<ByteString> groups = new ArrayList<>();
+		int granularity = 100;
+		long latOffset = 0;
+		long lonOffset = 0;
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case 1 -> {
+					CodedInputStream stringTable = in.readBytes().newCodedInput();
+					for (int t = stringTable.readTag(); t != 0; t = stringTable.readTag()) {
+						if (WireFormat.getTagFieldNumber(t) == 1) {
+							strings.add(stringTable.readBytes().toString(UTF_8));
+						} else {
+							stringTable.skipField(t);
+						}
+					}
+				}
+				case 2 -> groups.add(in.readBytes());
+				case 17 -> granularity = in.readInt32();
+				case 19 -> latOffset = in.readInt64();
+				case 20 -> lonOffset = in.readInt64();
+				default -> in.skipField(tag);
+			}
+		}
+
+		var context = new BlockContext(strings.toArray(new String[0]), granularity, latOffset, lonOffset);
+
+		/* decode the groups */
+
+		for (ByteString group : groups) {
+			CodedInputStream groupIn = group.newCodedInput();
+			for (int tag = groupIn.readTag(); tag != 0; tag = groupIn.readTag()) {
+				switch (WireFormat.getTagFieldNumber(tag)) {
+					case 1 -> decodeNode(groupIn.readBytes().newCodedInput(), context, handler);
+					case 2 -> decodeDenseNodes(groupIn.readBytes().newCodedInput(), context, handler);
+					case 3 -> decodeWay(groupIn.readBytes().newCodedInput(), context, handler);
+					case 4 -> decodeRelation(groupIn.readBytes().newCodedInput(), context, handler);
+					default -> groupIn.skipField(tag);
+				}
+			}
+		}
+
+	}
+
+	private record BlockContext(String[] strings, int granularity, long latOffset, long lonOffset) {
+
+		double lat(long value) {
+			return 1e-9 * (latOffset + (long) granularity * value);
+		}
+
+		double lon(long value) {
+			return 1e-9 * (lonOffset + (long) granularity * value);
+		}
+
+		String[] tags(TIntArrayList keys, TIntArrayList values) throws IOException {
+			if (keys.size() != values.size()) {
+				throw new IOException("Invalid PBF data: different numbers of keys and values");
+			}
+			String[] result = new String[2 * keys.size()];
+			for (int i = 0; i < keys.size(); i++) {
+				result[2 * i] = strings[keys.get(i)];
+				result[2 * i + 1] = strings[values.get(i)];
+			}
+			return result;
+		}
+
+	}
+
+	private static void decodeNode(CodedInputStream in, BlockContext block, EntityHandler handler)
+			throws IOException {
+
+		long id = 0, lat = 0, lon = 0;
+		var keys = new TIntArrayList();
+		var values = new TIntArrayList();
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case 1 -> id = in.readSInt64();
+				case 2 -> readInts(in, tag, keys);
+				case 3 -> readInts(in, tag, values);
+				case 8 -> lat = in.readSInt64();
+				case 9 -> lon = in.readSInt64();
+				default -> in.skipField(tag);
+			}
+		}
+
+		handler.node(id, block.lat(lat), block.lon(lon), block.tags(keys, values));
+
+	}
+
+	private static void decodeDenseNodes(CodedInputStream in, BlockContext block, EntityHandler handler)
+			throws IOException {
+
+		var ids = new TLongArrayList();
+		var lats = new TLongArrayList();
+		var lons = new TLongArrayList();
+		var keysVals = new TIntArrayList();
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case 1 -> readSignedLongs(in, tag, ids);
+				case 8 -> readSignedLongs(in, tag, lats);
+				case 9 -> readSignedLongs(in, tag, lons);
+				case 10 -> readInts(in, tag, keysVals);
+				default -> in.skipField(tag);
+			}
+		}
+
+		if (lats.size() != ids.size() || lons.size() != ids.size()) {
+			throw new IOException("Invalid PBF data: inconsistent dense node arrays");
+		}
+
+		long id = 0, lat = 0, lon = 0;
+		int keysValsIndex = 0;
+
+		for (int i = 0; i < ids.size(); i++) {
+
+			id += ids.get(i);
+			lat += lats.get(i);
+			lon += lons.get(i);
+
+			/* keys and values of all nodes are stored in one array, with 0 marking the end of a node's tags */
+
+			int tagsEnd = keysValsIndex;
+			while (tagsEnd < keysVals.size() && keysVals.get(tagsEnd) != 0) {
+				tagsEnd += 2;
+			}
+
+			String[] tags = new String[tagsEnd - keysValsIndex];
+			for (int t = 0; t < tags.length; t++) {
+				tags[t] = block.strings[keysVals.get(keysValsIndex + t)];
+			}
+
+			keysValsIndex = tagsEnd + 1;
+
+			handler.node(id, block.lat(lat), block.lon(lon), tags);
+
+		}
+
+	}
+
+	private static void decodeWay(CodedInputStream in, BlockContext block, EntityHandler handler)
+			throws IOException {
+
+		long id = 0;
+		var keys = new TIntArrayList();
+		var values = new TIntArrayList();
+		var refs = new TLongArrayList();
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case 1 -> id = in.readInt64();
+				case 2 -> readInts(in, tag, keys);
+				case 3 -> readInts(in, tag, values);
+				case 8 -> readSignedLongs(in, tag, refs);
+				default -> in.skipField(tag);
+			}
+		}
+
+		long[] nodeIds = refs.toArray();
+		for (int i = 1; i < nodeIds.length; i++) {
+			nodeIds[i] += nodeIds[i - 1];
+		}
+
+		handler.way(id, nodeIds, block.tags(keys, values));
+
+	}
+
+	private static void decodeRelation(CodedInputStream in, BlockContext block, EntityHandler handler)
+			throws IOException {
+
+		long id = 0;
+		var keys = new TIntArrayList();
+		var values = new TIntArrayList();
+		var roles = new TIntArrayList();
+		var memberIds = new TLongArrayList();
+		var types = new TIntArrayList();
+
+		for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case 1 -> id = in.readInt64();
+				case 2 -> readInts(in, tag, keys);
+				case 3 -> readInts(in, tag, values);
+				case 8 -> readInts(in, tag, roles);
+				case 9 -> readSignedLongs(in, tag, memberIds);
+				case 10 -> readInts(in, tag, types);
+				default -> in.skipField(tag);
+			}
+		}
+
+		if (roles.size() != memberIds.size() || types.size() != memberIds.size()) {
+			throw new IOException("Invalid PBF data: inconsistent relation member arrays");
+		}
+
+		long[] ids = memberIds.toArray();
+		EntityType[] memberTypes = new EntityType[ids.length];
+		String[] memberRoles = new String[ids.length];
+
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				ids[i] += ids[i - 1];
+			}
+			memberTypes[i] = switch (types.get(i)) {
+				case 0 -> EntityType.Node;
+				case 1 -> EntityType.Way;
+				case 2 -> EntityType.Relation;
+				default -> throw new IOException("Invalid PBF data: relation member type " + types.get(i));
+			};
+			memberRoles[i] = block.strings[roles.get(i)];
+		}
+
+		handler.relation(id, ids, memberTypes, memberRoles, block.tags(keys, values));
+
+	}
+
+	/** reads a packed or unpacked repeated field of int32, uint32 or enum values */
+	private static void readInts(CodedInputStream in, int tag, TIntArrayList result) throws IOException {
+		if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+			int limit = in.pushLimit(in.readRawVarint32());
+			while (in.getBytesUntilLimit() > 0) {
+				result.add(in.readRawVarint32());
+			}
+			in.popLimit(limit);
+		} else {
+			result.add(in.readRawVarint32());
+		}
+	}
+
+	/** reads a packed or unpacked repeated field of sint64 values */
+	private static void readSignedLongs(CodedInputStream in, int tag, TLongArrayList result) throws IOException {
+		if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+			int limit = in.pushLimit(in.readRawVarint32());
+			while (in.getBytesUntilLimit() > 0) {
+				result.add(in.readSInt64());
+			}
+			in.popLimit(limit);
+		} else {
+			result.add(in.readSInt64());
+		}
+	}
+
+	/** reads bytes from a position in the file. Can be used by multiple threads at once. */
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of PBF file");
+			}
+		}
+		return buffer.flip();
+	}
+
+}
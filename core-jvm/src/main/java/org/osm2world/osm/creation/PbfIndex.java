@@ -0,0 +1,974 @@
+package org.osm2world.osm.creation;
+
+import static java.lang.Long.compareUnsigned;
+import static java.lang.Math.*;
+import static java.nio.file.StandardOpenOption.*;
+import static org.osm2world.osm.creation.PbfBlocks.DATA_BLOB_TYPE;
+
+import java.io.*;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.osm2world.map_data.data.TagDictionary;
+import org.osm2world.map_data.data.TagSet;
+import org.osm2world.math.geo.LatLonBounds;
+import org.osm2world.osm.creation.PbfBlocks.Blob;
+import org.osm2world.osm.creation.PbfBlocks.EntityHandler;
+import org.osm2world.osm.data.CompactOSMDataBuilder;
+import org.osm2world.osm.data.OSMData;
+import org.osm2world.osm.ruleset.HardcodedRuleset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.impl.Bounds;
+import gnu.trove.TLongCollection;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * a spatial index for an .osm.pbf file which is sorted by entity type and id.
+ *
+ * The index is built once by reading the entire file and is stored in a directory next to it.
+ * It contains the location of the file's blocks, the coordinates of all nodes,
+ * and the cells of a global grid touched by each way and relation.
+ * Data for some bounds can then be extracted by decoding only those blocks which contain relevant entities.
+ *
+ * Instances can be queried by multiple threads at once.
+ * They keep the file open until they are closed.
+ */
+final class PbfIndex implements Closeable {
+
+	private static final long FORMAT_VERSION = 2;
+
+	/** size of the index grid's cells in degrees */
+	private static final double CELL_SIZE = 0.01;
+	private static final int CELLS_X = 36000;
+	private static final int CELLS_Y = 18000;
+
+	/**
+	 * bits used for entity indices in entries combining a cell key and an entity index.
+	 * Cell keys need the remaining 30 bits, so these entries have to be treated as unsigned values.
+	 */
+	private static final int INDEX_BITS = 34;
+	private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+	/** ways spanning more cells are stored in a separate list instead of being added to each cell */
+	private static final int MAX_CELLS_PER_WAY = 64;
+
+	private static final int MAX_RELATION_NESTING_DEPTH = 3;
+
+	/** number of blocks which are decoded in parallel before their content is processed */
+	private static final int BATCH_SIZE = 64;
+
+	/** number of decoded blocks kept in memory for subsequent queries */
+	private static final int BLOCK_CACHE_SIZE = 32;
+
+	/** value of a cell box which does not contain any cells */
+	private static final long EMPTY_BOX = -1;
+
+	/** values in the block table for each block: offset, size, and first and last id for each entity type */
+	private static final int BLOCK_ENTRY_SIZE = 8;
+
+	private static final String META_FILE = "meta";
+	private static final String LOCK_FILE = "lock";
+	private static final String BLOCKS_FILE = "blocks";
+	private static final String NODES_FILE = "nodes";
+	private static final String TAGGED_NODE_CELLS_FILE = "taggedNodeCells";
+	private static final String WAY_IDS_FILE = "wayIds";
+	private static final String WAY_CELLS_FILE = "wayCells";
+	private static final String LARGE_WAYS_FILE = "largeWays";
+	private static final String RELATIONS_FILE = "relations";
+
+	private static final HardcodedRuleset RULESET = new HardcodedRuleset();
+
+	private final FileChannel channel;
+	private final List<Blob> blocks;
+
+	/** the blocks containing entities of each type */
+	private final BlockRange nodeBlocks, wayBlocks, relationBlocks;
+
+	/** two values for each node, ordered by id: (id << 1 | 1 if tagged) and the packed location */
+	private final MappedLongs nodes;
+
+	/** (cell key << {@link #INDEX_BITS} | node index) for each tagged node, sorted as unsigned values */
+	private final MappedLongs taggedNodeCells;
+
+	/** the ids of all ways, sorted */
+	private final MappedLongs wayIds;
+
+	/** (cell key << {@link #INDEX_BITS} | way index) for each cell touched by a way's bounding box, sorted as unsigned values */
+	private final MappedLongs wayCells;
+
+	/** two values for each way spanning too many cells: the way index and its cell box */
+	private final long[] largeWays;
+
+	/** two values for each relation: the id and the cell box of all its (possibly nested) members */
+	private final long[] relations;
+
+	private final Cache<Integer, DecodedBlock> blockCache =
+			CacheBuilder.newBuilder().maximumSize(BLOCK_CACHE_SIZE).build();
+
+	private PbfIndex(File pbfFile, File indexDirectory) throws IOException {
+
+		channel = FileChannel.open(pbfFile.toPath(), READ);
+
+		List<Blob> blocks = new ArrayList<>();
+		long[] blockTable = readLongs(new File(indexDirectory, BLOCKS_FILE));
+		for (int i = 0; i < blockTable.length; i += BLOCK_ENTRY_SIZE) {
+			blocks.add(new Blob(DATA_BLOB_TYPE, blockTable[i], (int) blockTable[i + 1]));
+		}
+		this.blocks = blocks;
+
+		nodeBlocks = BlockRange.of(blockTable, 2);
+		wayBlocks = BlockRange.of(blockTable, 4);
+		relationBlocks = BlockRange.of(blockTable, 6);
+
+		nodes = new MappedLongs(new File(indexDirectory, NODES_FILE));
+		taggedNodeCells = new MappedLongs(new File(indexDirectory, TAGGED_NODE_CELLS_FILE));
+		wayIds = new MappedLongs(new File(indexDirectory, WAY_IDS_FILE));
+		wayCells = new MappedLongs(new File(indexDirectory, WAY_CELLS_FILE));
+		largeWays = readLongs(new File(indexDirectory, LARGE_WAYS_FILE));
+		relations = readLongs(new File(indexDirectory, RELATIONS_FILE));
+
+	}
+
+	/**
+	 * opens the index for a file, building it first if it doesn't exist yet or if the file has been modified.
+	 * This may take a long time for large files.
+	 */
+	static PbfIndex open(File pbfFile) throws IOException {
+
+		if (!pbfFile.exists()) {
+			throw new FileNotFoundException("PBF file does not exist: " + pbfFile);
+		}
+
+		File indexDirectory = indexDirectory(pbfFile);
+
+		if (!indexDirectory.isDirectory() && !indexDirectory.mkdirs()) {
+			throw new IOException("Cannot create index directory " + indexDirectory);
+		}
+
+		/* lock the directory to prevent other processes from building the same index at the same time */
+
+		try (FileChannel lockChannel = FileChannel.open(new File(indexDirectory, LOCK_FILE).toPath(), CREATE, WRITE);
+			 FileLock lock = lockChannel.lock()) {
+
+			long[] expectedMeta = {FORMAT_VERSION, pbfFile.length(), pbfFile.lastModified()};
+
+			File metaFile = new File(indexDirectory, META_FILE);
+
+			if (!metaFile.exists() || !Arrays.equals(readLongs(metaFile), expectedMeta)) {
+
+				/* the meta file is written last, so an index without it is incomplete.
+				 * Old files are deleted rather than overwritten because they might still be memory-mapped. */
+
+				Files.deleteIfExists(metaFile.toPath());
+
+				for (String fileName : List.of(BLOCKS_FILE, NODES_FILE, TAGGED_NODE_CELLS_FILE,
+						WAY_IDS_FILE, WAY_CELLS_FILE, LARGE_WAYS_FILE, RELATIONS_FILE)) {
+					Files.deleteIfExists(new File(indexDirectory, fileName).toPath());
+				}
+
+				try (FileChannel pbfChannel = FileChannel.open(pbfFile.toPath(), READ)) {
+					new Builder(pbfChannel, indexDirectory).build();
+				}
+
+				writeLongs(metaFile, expectedMeta);
+
+			}
+
+			return new PbfIndex(pbfFile, indexDirectory);
+
+		}
+
+	}
+
+	/**
+	 * closes the file. The memory-mapped index files are released once the instance is no longer referenced.
+	 * Must not be called while the index is still being queried.
+	 */
+	@Override
+	public void close() throws IOException {
+		blockCache.invalidateAll();
+		channel.close();
+	}
+
+	/**
+	 * returns the directory for the index of a file.
+	 * This is a directory next to the file if possible, otherwise a directory within the temporary directory.
+	 */
+	static File indexDirectory(File pbfFile) {
+
+		File file = pbfFile.getAbsoluteFile();
+		File sidecarDirectory = new File(file.getParentFile(), file.getName() + ".o2w-index");
+
+		if (sidecarDirectory.isDirectory() || file.getParentFile().canWrite()) {
+			return sidecarDirectory;
+		} else {
+			return new File(new File(System.getProperty("java.io.tmpdir"), "osm2world-pbf-index"),
+					file.getName() + "-" + Integer.toHexString(file.getPath().hashCode()));
+		}
+
+	}
+
+	/**
+	 * returns the data within some bounds.
+	 * Ways are complete even if they cross the boundary,
+	 * and all members of relevant multipolygons touching the bounds are included.
+	 *
+	 * @param relevantDataOnly  see {@link CompactOSMDataBuilder#CompactOSMDataBuilder(boolean)}
+	 */
+	OSMData getData(LatLonBounds bounds, boolean relevantDataOnly) throws IOException {
+
+		CompactOSMDataBuilder builder = new CompactOSMDataBuilder(relevantDataOnly);
+
+		int minX = cellX(bounds.minlon), maxX = cellX(bounds.maxlon);
+		int minY = cellY(bounds.minlat), maxY = cellY(bounds.maxlat);
+		long queryBox = cellBox(minX, minY, maxX, maxY);
+
+		/* find tagged nodes and ways in the bounds using the cell index */
+
+		TLongSet nodeIds = new TLongHashSet();
+		TLongSet candidateWayIds = new TLongHashSet();
+
+		for (int y = minY; y <= maxY; y++) {
+
+			long from = cellKey(minX, y) << INDEX_BITS;
+			long to = (cellKey(maxX, y) + 1) << INDEX_BITS;
+
+			for (long i = taggedNodeCells.unsignedLowerBound(from);
+				 i < taggedNodeCells.size && compareUnsigned(taggedNodeCells.get(i), to) < 0; i++) {
+				long nodeIndex = taggedNodeCells.get(i) & INDEX_MASK;
+				long location = nodes.get(2 * nodeIndex + 1);
+				if (contains(bounds, lat(location), lon(location))) {
+					nodeIds.add(nodes.get(2 * nodeIndex) >> 1);
+				}
+			}
+
+			for (long i = wayCells.unsignedLowerBound(from);
+				 i < wayCells.size && compareUnsigned(wayCells.get(i), to) < 0; i++) {
+				candidateWayIds.add(wayIds.get(wayCells.get(i) & INDEX_MASK));
+			}
+
+		}
+
+		for (int i = 0; i < largeWays.length; i += 2) {
+			if (intersects(largeWays[i + 1], queryBox)) {
+				candidateWayIds.add(wayIds.get(largeWays[i]));
+			}
+		}
+
+		/* find relations, and the members of relevant multipolygons (which must be included completely) */
+
+		TLongSet readRelationIds = new TLongHashSet();
+		TLongSet requiredWayIds = new TLongHashSet();
+
+		TLongSet relationIds = new TLongHashSet();
+		for (int i = 0; i < relations.length; i += 2) {
+			if (intersects(relations[i + 1], queryBox)) {
+				relationIds.add(relations[i]);
+			}
+		}
+
+		for (int depth = 0; depth <= MAX_RELATION_NESTING_DEPTH && !relationIds.isEmpty(); depth++) {
+
+			TLongSet memberRelationIds = new TLongHashSet();
+
+			forEachEntity(relationBlocks, relationIds, EntityType.Relation, (block, i) -> {
+				block.addRelation(i, builder);
+				readRelationIds.add(block.relationIds.get(i));
+				if (membersShouldBeIncluded(block.relationTags.get(i))) {
+					long[] memberIds = block.relationMemberIds.get(i);
+					EntityType[] memberTypes = block.relationMemberTypes.get(i);
+					for (int m = 0; m < memberIds.length; m++) {
+						switch (memberTypes[m]) {
+							case Node -> nodeIds.add(memberIds[m]);
+							case Way -> requiredWayIds.add(memberIds[m]);
+							case Relation -> {
+								if (!readRelationIds.contains(memberIds[m])) {
+									memberRelationIds.add(memberIds[m]);
+								}
+							}
+						}
+					}
+				}
+			});
+
+			relationIds = memberRelationIds;
+
+		}
+
+		/* read the ways, skipping those which are only near the bounds */
+
+		TLongSet allWayIds = new TLongHashSet(candidateWayIds);
+		allWayIds.addAll(requiredWayIds);
+
+		forEachEntity(wayBlocks, allWayIds, EntityType.Way, (block, i) -> {
+			long[] wayNodeIds = block.wayNodes.get(i);
+			long id = block.wayIds.get(i);
+			if (requiredWayIds.contains(id) || intersects(wayNodeIds, bounds)) {
+				block.addWay(i, builder);
+				nodeIds.addAll(wayNodeIds);
+			}
+		});
+
+		/* read the nodes, decoding blocks only for tagged nodes */
+
+		TLongSet taggedNodeIds = new TLongHashSet();
+
+		for (long id : nodeIds.toArray()) {
+			long index = findNode(id);
+			if (index < 0) continue;
+			if ((nodes.get(2 * index) & 1) != 0) {
+				taggedNodeIds.add(id);
+			} else {
+				long location = nodes.get(2 * index + 1);
+				builder.addNode(id, lat(location), lon(location), DecodedBlock.NO_TAGS);
+			}
+		}
+
+		forEachEntity(nodeBlocks, taggedNodeIds, EntityType.Node, (block, i) -> block.addNode(i, builder));
+
+		builder.addBounds(new Bounds(bounds.minlon, bounds.maxlon, bounds.maxlat, bounds.minlat));
+
+		return builder.build();
+
+	}
+
+	private interface EntityConsumer {
+		void accept(DecodedBlock block, int index) throws IOException;
+	}
+
+	/** decodes the blocks containing a set of entities, and passes each entity to a consumer */
+	private void forEachEntity(BlockRange range, TLongCollection ids, EntityType type, EntityConsumer consumer)
+			throws IOException {
+
+		long[] sortedIds = ids.toArray();
+		Arrays.sort(sortedIds);
+
+		DecodedBlock block = null;
+		int blockIndex = -1;
+
+		for (long id : sortedIds) {
+
+			int b = range.find(id);
+			if (b < 0) continue;
+
+			if (b != blockIndex) {
+				block = getBlock(b);
+				blockIndex = b;
+			}
+
+			int i = block.ids(type).binarySearch(id);
+			if (i >= 0) {
+				consumer.accept(block, i);
+			}
+
+		}
+
+	}
+
+	private DecodedBlock getBlock(int blockIndex) throws IOException {
+		try {
+			return blockCache.get(blockIndex, () -> DecodedBlock.read(channel, blocks.get(blockIndex)));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException cause) {
+				throw cause;
+			} else {
+				throw new IOException(e.getCause());
+			}
+		} catch (UncheckedExecutionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			} else {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	/** returns the index of a node in {@link #nodes}, or -1 if the node is not part of the file */
+	private long findNode(long id) {
+		return findNode(nodes, id);
+	}
+
+	private static long findNode(MappedLongs nodes, long id) {
+		long i = nodes.lowerBound(id << 1, 2);
+		return (2 * i < nodes.size && nodes.get(2 * i) >> 1 == id) ? i : -1;
+	}
+
+	/** checks whether the bounding box of a way's nodes intersects the bounds */
+	private boolean intersects(long[] wayNodeIds, LatLonBounds bounds) {
+
+		double minLat = Double.POSITIVE_INFINITY, minLon = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+
+		for (long nodeId : wayNodeIds) {
+			long index = findNode(nodeId);
+			if (index >= 0) {
+				long location = nodes.get(2 * index + 1);
+				minLat = min(minLat, lat(location));
+				minLon = min(minLon, lon(location));
+				maxLat = max(maxLat, lat(location));
+				maxLon = max(maxLon, lon(location));
+			}
+		}
+
+		return minLat <= bounds.maxlat && maxLat >= bounds.minlat
+				&& minLon <= bounds.maxlon && maxLon >= bounds.minlon;
+
+	}
+
+	private static boolean contains(LatLonBounds bounds, double lat, double lon) {
+		return lat >= bounds.minlat && lat <= bounds.maxlat && lon >= bounds.minlon && lon <= bounds.maxlon;
+	}
+
+	private static boolean membersShouldBeIncluded(String[] tags) {
+
+		boolean isMultipolygon = false;
+		List<org.osm2world.map_data.data.Tag> tagList = new ArrayList<>(tags.length / 2);
+
+		for (int t = 0; t < tags.length; t += 2) {
+			isMultipolygon |= "type".equals(tags[t]) && "multipolygon".equals(tags[t + 1]);
+			tagList.add(TagDictionary.tag(tags[t], tags[t + 1]));
+		}
+
+		return isMultipolygon && RULESET.isRelevantRelation(TagSet.of(tagList));
+
+	}
+
+	/* coordinates, cells and cell boxes */
+
+	private static long packLocation(double lat, double lon) {
+		return (long) (int) Math.round(lat * 1e7) << 32 | ((int) Math.round(lon * 1e7) & 0xFFFFFFFFL);
+	}
+
+	private static double lat(long location) {
+		return (int) (location >> 32) * 1e-7;
+	}
+
+	private static double lon(long location) {
+		return (int) location * 1e-7;
+	}
+
+	private static int cellX(double lon) {
+		return max(0, min(CELLS_X - 1, (int) floor((lon + 180) / CELL_SIZE)));
+	}
+
+	private static int cellY(double lat) {
+		return max(0, min(CELLS_Y - 1, (int) floor((lat + 90) / CELL_SIZE)));
+	}
+
+	private static long cellKey(int cellX, int cellY) {
+		return (long) cellY * CELLS_X + cellX;
+	}
+
+	/** packs a rectangular range of cells into a single value */
+	private static long cellBox(int minX, int minY, int maxX, int maxY) {
+		return (long) minX << 48 | (long) minY << 32 | (long) maxX << 16 | maxY;
+	}
+
+	private static int boxMinX(long box) { return (int) (box >>> 48); }
+	private static int boxMinY(long box) { return (int) (box >>> 32) & 0xFFFF; }
+	private static int boxMaxX(long box) { return (int) (box >>> 16) & 0xFFFF; }
+	private static int boxMaxY(long box) { return (int) box & 0xFFFF; }
+
+	private static long union(long boxA, long boxB) {
+		if (boxA == EMPTY_BOX) {
+			return boxB;
+		} else if (boxB == EMPTY_BOX) {
+			return boxA;
+		} else {
+			return cellBox(min(boxMinX(boxA), boxMinX(boxB)), min(boxMinY(boxA), boxMinY(boxB)),
+					max(boxMaxX(boxA), boxMaxX(boxB)), max(boxMaxY(boxA), boxMaxY(boxB)));
+		}
+	}
+
+	private static boolean intersects(long boxA, long boxB) {
+		return boxA != EMPTY_BOX && boxB != EMPTY_BOX
+				&& boxMinX(boxA) <= boxMaxX(boxB) && boxMaxX(boxA) >= boxMinX(boxB)
+				&& boxMinY(boxA) <= boxMaxY(boxB) && boxMaxY(boxA) >= boxMinY(boxB);
+	}
+
+	/* building the index */
+
+	/** creates the files of an index by reading the PBF file three times */
+	private static class Builder {
+
+		private final FileChannel channel;
+		private final File indexDirectory;
+
+		private final List<Blob> blocks;
+		private final long[] blockTable;
+
+		/** the last id of each entity type, used to make sure the file is sorted */
+		private final long[] lastIds = {Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+
+		private long nodeCount = 0;
+		private long wayCount = 0;
+
+		private final TLongArrayList taggedNodeCells = new TLongArrayList();
+		private final TLongArrayList wayCells = new TLongArrayList();
+		private final TLongArrayList largeWays = new TLongArrayList();
+
+		/** ways which are relation members, and the cell boxes of those ways */
+		private final TLongSet memberWayIds = new TLongHashSet();
+		private final TLongLongMap memberWayBoxes = new TLongLongHashMap();
+
+		private MappedLongs nodes;
+
+		Builder(FileChannel channel, File indexDirectory) throws IOException {
+			this.channel = channel;
+			this.indexDirectory = indexDirectory;
+			this.blocks = PbfBlocks.scan(channel).stream().filter(b -> DATA_BLOB_TYPE.equals(b.type())).toList();
+			this.blockTable = new long[blocks.size() * BLOCK_ENTRY_SIZE];
+		}
+
+		void build() throws IOException {
+
+			/* first pass: block contents, node locations, and the ways which are relation members */
+
+			try (DataOutputStream nodesOut = openOutput(NODES_FILE)) {
+
+				forEachBlock(channel, blocks, allBlocks(), (b, block) -> {
+
+					blockTable[b * BLOCK_ENTRY_SIZE] = blocks.get(b).offset();
+					blockTable[b * BLOCK_ENTRY_SIZE + 1] = blocks.get(b).size();
+					storeIdRange(b, 2, block.nodeIds);
+					storeIdRange(b, 4, block.wayIds);
+					storeIdRange(b, 6, block.relationIds);
+
+					for (int i = 0; i < block.nodeIds.size(); i++) {
+						long id = block.nodeIds.get(i);
+						checkOrder(0, id);
+						boolean tagged = block.nodeTags.get(i).length > 0;
+						nodesOut.writeLong(id << 1 | (tagged ? 1 : 0));
+						nodesOut.writeLong(packLocation(block.nodeLats.get(i), block.nodeLons.get(i)));
+						if (tagged) {
+							long cellKey = cellKey(cellX(block.nodeLons.get(i)), cellY(block.nodeLats.get(i)));
+							taggedNodeCells.add(cellKey << INDEX_BITS | nodeCount);
+						}
+						nodeCount ++;
+					}
+
+					for (int i = 0; i < block.relationIds.size(); i++) {
+						for (int m = 0; m < block.relationMemberIds.get(i).length; m++) {
+							if (block.relationMemberTypes.get(i)[m] == EntityType.Way) {
+								memberWayIds.add(block.relationMemberIds.get(i)[m]);
+							}
+						}
+					}
+
+				});
+
+			}
+
+			writeSorted(TAGGED_NODE_CELLS_FILE, taggedNodeCells);
+			nodes = new MappedLongs(new File(indexDirectory, NODES_FILE));
+
+			/* second pass: cells touched by each way */
+
+			try (DataOutputStream wayIdsOut = openOutput(WAY_IDS_FILE)) {
+
+				forEachBlock(channel, blocks, blocksWith(4), (b, block) -> {
+					for (int i = 0; i < block.wayIds.size(); i++) {
+
+						long id = block.wayIds.get(i);
+						checkOrder(1, id);
+						wayIdsOut.writeLong(id);
+
+						long box = EMPTY_BOX;
+						for (long nodeId : block.wayNodes.get(i)) {
+							box = union(box, nodeBox(nodeId));
+						}
+
+						if (box != EMPTY_BOX) {
+							int cellCount = (boxMaxX(box) - boxMinX(box) + 1) * (boxMaxY(box) - boxMinY(box) + 1);
+							if (cellCount <= MAX_CELLS_PER_WAY) {
+								for (int y = boxMinY(box); y <= boxMaxY(box); y++) {
+									for (int x = boxMinX(box); x <= boxMaxX(box); x++) {
+										wayCells.add(cellKey(x, y) << INDEX_BITS | wayCount);
+									}
+								}
+							} else {
+								largeWays.add(wayCount);
+								largeWays.add(box);
+							}
+						}
+
+						if (memberWayIds.contains(id)) {
+							memberWayBoxes.put(id, box);
+						}
+
+						wayCount ++;
+
+					}
+				});
+
+			}
+
+			writeSorted(WAY_CELLS_FILE, wayCells);
+			writeLongs(new File(indexDirectory, LARGE_WAYS_FILE), largeWays.toArray());
+
+			/* third pass: cell boxes of relations, including those of their member relations */
+
+			TLongArrayList relationIds = new TLongArrayList();
+			TLongArrayList relationBoxes = new TLongArrayList();
+			List<long[]> memberRelationIds = new ArrayList<>();
+
+			forEachBlock(channel, blocks, blocksWith(6), (b, block) -> {
+				for (int i = 0; i < block.relationIds.size(); i++) {
+
+					long id = block.relationIds.get(i);
+					checkOrder(2, id);
+
+					long box = EMPTY_BOX;
+					TLongArrayList memberRelations = new TLongArrayList();
+
+					long[] memberIds = block.relationMemberIds.get(i);
+					EntityType[] memberTypes = block.relationMemberTypes.get(i);
+
+					for (int m = 0; m < memberIds.length; m++) {
+						switch (memberTypes[m]) {
+							case Node -> box = union(box, nodeBox(memberIds[m]));
+							case Way -> box = union(box,
+									memberWayBoxes.containsKey(memberIds[m]) ? memberWayBoxes.get(memberIds[m]) : EMPTY_BOX);
+							case Relation -> memberRelations.add(memberIds[m]);
+						}
+					}
+
+					relationIds.add(id);
+					relationBoxes.add(box);
+					memberRelationIds.add(memberRelations.toArray());
+
+				}
+			});
+
+			for (int depth = 0; depth < MAX_RELATION_NESTING_DEPTH; depth++) {
+				for (int i = 0; i < relationIds.size(); i++) {
+					for (long memberId : memberRelationIds.get(i)) {
+						int memberIndex = relationIds.binarySearch(memberId);
+						if (memberIndex >= 0) {
+							relationBoxes.set(i, union(relationBoxes.get(i), relationBoxes.get(memberIndex)));
+						}
+					}
+				}
+			}
+
+			long[] relationTable = new long[2 * relationIds.size()];
+			for (int i = 0; i < relationIds.size(); i++) {
+				relationTable[2 * i] = relationIds.get(i);
+				relationTable[2 * i + 1] = relationBoxes.get(i);
+			}
+			writeLongs(new File(indexDirectory, RELATIONS_FILE), relationTable);
+
+			writeLongs(new File(indexDirectory, BLOCKS_FILE), blockTable);
+
+		}
+
+		private void storeIdRange(int blockIndex, int offset, TLongArrayList ids) {
+			blockTable[blockIndex * BLOCK_ENTRY_SIZE + offset] = ids.isEmpty() ? Long.MAX_VALUE : ids.get(0);
+			blockTable[blockIndex * BLOCK_ENTRY_SIZE + offset + 1] = ids.isEmpty() ? Long.MIN_VALUE : ids.get(ids.size() - 1);
+		}
+
+		private void checkOrder(int type, long id) throws IOException {
+			if (id <= lastIds[type]) {
+				throw new IOException("PBF file is not sorted by type and id, it needs to be sorted first"
+						+ " (e.g. with 'osmium sort')");
+			}
+			lastIds[type] = id;
+		}
+
+		private long nodeBox(long nodeId) {
+			long index = findNode(nodes, nodeId);
+			if (index < 0) {
+				return EMPTY_BOX;
+			} else {
+				long location = nodes.get(2 * index + 1);
+				int x = cellX(lon(location));
+				int y = cellY(lat(location));
+				return cellBox(x, y, x, y);
+			}
+		}
+
+		private int[] allBlocks() {
+			int[] result = new int[blocks.size()];
+			Arrays.setAll(result, i -> i);
+			return result;
+		}
+
+		/** returns the blocks containing entities whose id range is stored at an offset of the block table */
+		private int[] blocksWith(int offset) {
+			return Arrays.stream(allBlocks())
+					.filter(b -> blockTable[b * BLOCK_ENTRY_SIZE + offset] != Long.MAX_VALUE)
+					.toArray();
+		}
+
+		private DataOutputStream openOutput(String fileName) throws IOException {
+			return new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(new File(indexDirectory, fileName)), 1 << 16));
+		}
+
+		/** writes values sorted as unsigned values, i.e. with the negative values after the positive ones */
+		private void writeSorted(String fileName, TLongArrayList values) throws IOException {
+			values.sort();
+			int zeroIndex = values.binarySearch(0);
+			int firstNonNegative = zeroIndex >= 0 ? zeroIndex : -zeroIndex - 1;
+			try (DataOutputStream out = openOutput(fileName)) {
+				for (int i = 0; i < values.size(); i++) {
+					out.writeLong(values.get((firstNonNegative + i) % values.size()));
+				}
+			}
+			values.clear(0);
+		}
+
+	}
+
+	interface BlockConsumer {
+		void accept(int blockIndex, DecodedBlock block) throws IOException;
+	}
+
+	/**
+	 * decodes some blocks of a file and passes them to a consumer in the order of the file.
+	 * Blocks are decoded in parallel, but the consumer is only called by the calling thread.
+	 */
+	static void forEachBlock(FileChannel channel, List<Blob> blobs, int[] blockIndices, BlockConsumer consumer)
+			throws IOException {
+
+		for (int start = 0; start < blockIndices.length; start += BATCH_SIZE) {
+
+			int[] batch = Arrays.copyOfRange(blockIndices, start, min(start + BATCH_SIZE, blockIndices.length));
+
+			List<DecodedBlock> decodedBlocks;
+
+			try {
+				decodedBlocks = Arrays.stream(batch).parallel().mapToObj(b -> {
+					try {
+						return DecodedBlock.read(channel, blobs.get(b));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}).toList();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			for (int i = 0; i < batch.length; i++) {
+				consumer.accept(batch[i], decodedBlocks.get(i));
+			}
+
+		}
+
+	}
+
+	/** the entities of a block in compact form */
+	static final class DecodedBlock implements EntityHandler {
+
+		private static final String[] NO_TAGS = {};
+
+		final TLongArrayList nodeIds = new TLongArrayList();
+		final TDoubleArrayList nodeLats = new TDoubleArrayList();
+		final TDoubleArrayList nodeLons = new TDoubleArrayList();
+		final List<String[]> nodeTags = new ArrayList<>();
+
+		final TLongArrayList wayIds = new TLongArrayList();
+		final List<long[]> wayNodes = new ArrayList<>();
+		final List<String[]> wayTags = new ArrayList<>();
+
+		final TLongArrayList relationIds = new TLongArrayList();
+		final List<long[]> relationMemberIds = new ArrayList<>();
+		final List<EntityType[]> relationMemberTypes = new ArrayList<>();
+		final List<String[]> relationMemberRoles = new ArrayList<>();
+		final List<String[]> relationTags = new ArrayList<>();
+
+		static DecodedBlock read(FileChannel channel, Blob blob) throws IOException {
+			DecodedBlock result = new DecodedBlock();
+			PbfBlocks.decode(PbfBlocks.read(channel, blob), result);
+			return result;
+		}
+
+		@Override
+		public void node(long id, double lat, double lon, String[] tags) {
+			nodeIds.add(id);
+			nodeLats.add(lat);
+			nodeLons.add(lon);
+			nodeTags.add(tags.length == 0 ? NO_TAGS : tags);
+		}
+
+		@Override
+		public void way(long id, long[] nodeIds, String[] tags) {
+			wayIds.add(id);
+			wayNodes.add(nodeIds);
+			wayTags.add(tags);
+		}
+
+		@Override
+		public void relation(long id, long[] memberIds, EntityType[] memberTypes, String[] memberRoles,
+				String[] tags) {
+			relationIds.add(id);
+			relationMemberIds.add(memberIds);
+			relationMemberTypes.add(memberTypes);
+			relationMemberRoles.add(memberRoles);
+			relationTags.add(tags);
+		}
+
+		TLongArrayList ids(EntityType type) {
+			return switch (type) {
+				case Node -> nodeIds;
+				case Way -> wayIds;
+				case Relation -> relationIds;
+			};
+		}
+
+		void addNode(int i, CompactOSMDataBuilder builder) {
+			builder.addNode(nodeIds.get(i), nodeLats.get(i), nodeLons.get(i), nodeTags.get(i));
+		}
+
+		void addWay(int i, CompactOSMDataBuilder builder) {
+			builder.addWay(wayIds.get(i), wayNodes.get(i), wayTags.get(i));
+		}
+
+		void addRelation(int i, CompactOSMDataBuilder builder) {
+			builder.addRelation(relationIds.get(i), relationMemberIds.get(i), relationMemberTypes.get(i),
+					relationMemberRoles.get(i), relationTags.get(i));
+		}
+
+	}
+
+	/**
+	 * the blocks containing entities of one type, with the range of ids in each block
+	 *
+	 * @param blockIndices  indices of the blocks, ordered by id
+	 */
+	private record BlockRange(int[] blockIndices, long[] firstIds, long[] lastIds) {
+
+		/** @param offset  position of the entity type's first id in each entry of the block table */
+		static BlockRange of(long[] blockTable, int offset) {
+
+			int blockCount = blockTable.length / BLOCK_ENTRY_SIZE;
+
+			int[] blockIndices = new int[blockCount];
+			long[] firstIds = new long[blockCount];
+			long[] lastIds = new long[blockCount];
+			int count = 0;
+
+			for (int b = 0; b < blockCount; b++) {
+				if (blockTable[b * BLOCK_ENTRY_SIZE + offset] != Long.MAX_VALUE) {
+					blockIndices[count] = b;
+					firstIds[count] = blockTable[b * BLOCK_ENTRY_SIZE + offset];
+					lastIds[count] = blockTable[b * BLOCK_ENTRY_SIZE + offset + 1];
+					count ++;
+				}
+			}
+
+			return new BlockRange(Arrays.copyOf(blockIndices, count),
+					Arrays.copyOf(firstIds, count), Arrays.copyOf(lastIds, count));
+
+		}
+
+		/** returns the index of the block which would contain an id, or -1 if no block does */
+		int find(long id) {
+			int i = Arrays.binarySearch(lastIds, id);
+			if (i < 0) {
+				i = -i - 1;
+			}
+			return (i < lastIds.length && firstIds[i] <= id) ? blockIndices[i] : -1;
+		}
+
+	}
+
+	/** a read-only array of longs in a file, mapped into memory in chunks to support files larger than 2 GB */
+	private static final class MappedLongs {
+
+		private static final int CHUNK_BITS = 27;
+		private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+		private final LongBuffer[] chunks;
+		final long size;
+
+		MappedLongs(File file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+				size = channel.size() / Long.BYTES;
+				chunks = new LongBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+				for (int c = 0; c < chunks.length; c++) {
+					long start = (long) c << CHUNK_BITS;
+					long length = min(1L << CHUNK_BITS, size - start);
+					chunks[c] = channel.map(MapMode.READ_ONLY, start * Long.BYTES, length * Long.BYTES).asLongBuffer();
+				}
+			}
+		}
+
+		long get(long index) {
+			return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+		}
+
+		/**
+		 * for an array consisting of entries with a length of stride values, sorted by their first value:
+		 * returns the index of the first entry whose first value is at least the given value
+		 */
+		long lowerBound(long value, int stride) {
+			long low = 0;
+			long high = size / stride;
+			while (low < high) {
+				long mid = (low + high) >>> 1;
+				if (get(mid * stride) < value) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * for an array sorted as unsigned values:
+		 * returns the index of the first value which is at least the given value when compared as unsigned values
+		 */
+		long unsignedLowerBound(long value) {
+			long low = 0;
+			long high = size;
+			while (low < high) {
+				long mid = (low + high) >>> 1;
+				if (compareUnsigned(get(mid), value) < 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+	}
+
+	private static long[] readLongs(File file) throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			long[] result = new long[(int) (file.length() / Long.BYTES)];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = in.readLong();
+			}
+			return result;
+		}
+	}
+
+	private static void writeLongs(File file, long[] values) throws IOException {
+		try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			for (long value : values) {
+				out.writeLong(value);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package org.osm2world.util;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.osm2world.conversion.ConversionLog;
+import org.osm2world.util.functions.CheckedConsumer;
+import org.osm2world.util.functions.CheckedFunction;
+
+/**
+ * keeps resources such as open databases so they can be reused by later operations,
+ * e.g. by the threads generating the tiles of a tileset.
+ *
+ * Resources are opened on demand for a key (such as a file).
+ * In an exclusive pool, each resource is only used by one thread at a time,
+ * and additional resources for the same key are opened when all existing ones are in use.
+ * In a shared pool, a single resource per key is used by all threads at once,
+ * which is only suitable for resources supporting concurrent access.
+ * If an operation fails, the resource it used is discarded and a new one will be opened for later operations.
+ *
+ * All resources are closed by {@link #close()}.
+ *
+ * @param <K>  the type of keys identifying the resources, such as files
+ * @param <R>  the type of the resources
+ */
+public class ResourcePool<K, R> implements AutoCloseable {
+
+	private final CheckedFunction<K, R, IOException> opener;
+	private final CheckedConsumer<R, Exception> closer;
+	private final boolean shared;
+
+	/** resources which are not currently in use. For shared pools, this contains all resources. */
+	private final Map<K, Deque<R>> availableResources = new HashMap<>();
+
+	/** the number of operations currently using each resource, resources which are not in use are omitted */
+	private final Map<R, Integer> useCounts = new IdentityHashMap<>();
+
+	private boolean closed = false;
+
+	private ResourcePool(CheckedFunction<K, R, IOException> opener, CheckedConsumer<R, Exception> closer,
+			boolean shared) {
+		this.opener = opener;
+		this.closer = closer;
+		this.shared = shared;
+	}
+
+	/**
+	 * creates a pool where each resource is used by one thread at a time
+	 *
+	 * @param opener  opens a new resource for a key
+	 * @param closer  closes a resource which is no longer needed
+	 */
+	public static <K, R> ResourcePool<K, R> exclusive(CheckedFunction<K, R, IOException> opener,
+			CheckedConsumer<R, Exception> closer) {
+		return new ResourcePool<>(opener, closer, false);
+	}
+
+	/**
+	 * creates a pool where the resource for each key is shared by all threads
+	 *
+	 * @param opener  opens a new resource for a key
+	 * @param closer  closes a resource which is no longer needed
+	 */
+	public static <K, R> ResourcePool<K, R> shared(CheckedFunction<K, R, IOException> opener,
+			CheckedConsumer<R, Exception> closer) {
+		return new ResourcePool<>(opener, closer, true);
+	}
+
+	/** makes sure that this pool is closed when the JVM shuts down. Returns the pool itself. */
+	public ResourcePool<K, R> closedAtShutdown() {
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+		return this;
+	}
+
+	/**
+	 * performs an operation using a resource for a key.
+	 * The resource is opened if necessary and is kept for later use after the operation has finished,
+	 * unless the operation throws an exception.
+	 */
+	public <T> T use(K key, CheckedFunction<R, T, IOException> operation) throws IOException {
+		R resource = acquire(key);
+		boolean failed = true;
+		try {
+			T result = operation.apply(resource);
+			failed = false;
+			return result;
+		} finally {
+			release(key, resource, failed);
+		}
+	}
+
+	/** returns the number of resources which are currently open and not in use */
+	public synchronized int availableResourceCount() {
+		return availableResources.values().stream().mapToInt(Deque::size).sum();
+	}
+
+	private R acquire(K key) throws IOException {
+
+		synchronized (this) {
+
+			if (closed) {
+				throw new IllegalStateException("resource pool has been closed");
+			}
+
+			Deque<R> available = availableResources.get(key);
+			if (available != null && !available.isEmpty()) {
+				return borrow(shared ? available.peek() : available.pop());
+			}
+
+		}
+
+		/* open a new resource without holding the lock, so other threads don't need to wait */
+
+		R resource = opener.apply(key);
+
+		synchronized (this) {
+
+			if (closed) {
+				closeResource(resource);
+				throw new IllegalStateException("resource pool has been closed");
+			}
+
+			if (shared) {
+				Deque<R> available = availableResources.computeIfAbsent(key, k -> new ArrayDeque<>());
+				if (available.isEmpty()) {
+					available.push(resource);
+				} else {
+					// another thread has opened a resource for this key in the meantime
+					closeResource(resource);
+				}
+				return borrow(available.peek());
+			}
+
+			return borrow(resource);
+
+		}
+
+	}
+
+	/** must be called while holding the lock */
+	private R borrow(R resource) {
+		useCounts.merge(resource, 1, Integer::sum);
+		return resource;
+	}
+
+	private synchronized void release(K key, R resource, boolean failed) {
+
+		int useCount = useCounts.get(resource) - 1;
+		if (useCount > 0) {
+			useCounts.put(resource, useCount);
+		} else {
+			useCounts.remove(resource);
+		}
+
+		Deque<R> available = availableResources.get(key);
+
+		if (shared) {
+			if (failed && available != null) {
+				// later operations will open a new resource, this one is closed once it's no longer in use
+				available.removeIf(r -> r == resource);
+			}
+			if (useCount == 0 && (available == null || available.stream().noneMatch(r -> r == resource))) {
+				closeResource(resource);
+			}
+		} else if (closed || failed) {
+			closeResource(resource);
+		} else {
+			availableResources.computeIfAbsent(key, k -> new ArrayDeque<>()).push(resource);
+		}
+
+	}
+
+	/**
+	 * closes all resources. Resources which are currently in use
+	 * are closed once their operations have finished. The pool cannot be used afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			for (Deque<R> resources : availableResources.values()) {
+				for (R resource : resources) {
+					if (!useCounts.containsKey(resource)) {
+						closeResource(resource);
+					}
+				}
+			}
+			availableResources.clear();
+		}
+	}
+
+	private void closeResource(R resource) {
+		try {
+			closer.accept(resource);
+		} catch (Exception e) {
+			ConversionLog.warn("Could not close resource " + resource, e);
+		}
+	}
+
+}
@@ -34,12 +34,29 @@ public class ImageImplementationJvm extends CachingImageImplementation {
 		ImageUtil.setImplementation(new ImageImplementationJvm());
 	}
 
+	/**
+	 * Variant of {@link #register()} with an explicit limit for the size of the image cache.
+	 *
+	 * @param maxCacheBytes  upper limit for the size of the pixel data of all cached images
+	 */
+	public static void register(long maxCacheBytes) {
+		ImageUtil.setImplementation(new ImageImplementationJvm(maxCacheBytes));
+	}
+
+	private ImageImplementationJvm() {
+		super();
+	}
+
+	private ImageImplementationJvm(long maxCacheBytes) {
+		super(maxCacheBytes);
+	}
+
 	@Override
 	protected BufferedImage createBufferedImage(TextureData texture, Resolution resolution) {
 		try {
 			if (texture instanceof RasterImageFileTexture
 					|| texture instanceof UriTexture) {
-				return getScaledImage(createBufferedImage(texture), resolution);
+				return getScaledImage(loadTextureImage(texture), resolution);
 			} else if (texture instanceof SvgImageFileTexture svgTexture) {
 				return svgToBufferedImage(svgTexture.getFile(), resolution);
 			} else if (texture instanceof RuntimeTexture runtimeTexture) {
@@ -14,7 +14,10 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.osm2world.map_data.data.MapArea;
 import org.osm2world.map_data.data.MapData;
+import org.osm2world.map_data.data.MapElement;
 import org.osm2world.map_data.data.MapNode;
+import org.osm2world.map_data.data.overlaps.MapOverlap;
+import org.osm2world.map_data.data.overlaps.MapOverlapNA;
 import org.osm2world.math.VectorXZ;
 import org.osm2world.math.geo.LatLon;
 import org.osm2world.math.geo.MapProjection;
@@ -244,4 +247,47 @@ public class OSMToMapDataConverterTest {
 
 	}
 
+	/**
+	 * checks that the overlaps found using the spatial index are the same as those found by testing all pairs
+	 */
+	@Test
+	public void testOverlapsMatchPairwiseCalculation() throws IOException, EntityNotFoundException {
+
+		MapData mapData = loadMapData("josmTest01.osm");
+
+		List<MapElement> elements = new ArrayList<>();
+		mapData.getMapElements().forEach(elements::add);
+
+		for (int i = 0; i < elements.size(); i++) {
+
+			MapElement element = elements.get(i);
+			List<MapOverlap<?, ?>> expectedOverlaps = new ArrayList<>();
+
+			for (int j = 0; j < elements.size(); j++) {
+				if (j == i) continue;
+				MapOverlap<?, ?> overlap = j < i
+						? OSMToMapDataConverter.calculateOverlap(element, elements.get(j))
+						: OSMToMapDataConverter.calculateOverlap(elements.get(j), element);
+				if (overlap != null && !(overlap instanceof MapOverlapNA && element instanceof MapNode)) {
+					expectedOverlaps.add(overlap);
+				}
+			}
+
+			List<MapOverlap<?, ?>> actualOverlaps = new ArrayList<>(element.getOverlaps());
+
+			assertEquals(element.toString(), expectedOverlaps.size(), actualOverlaps.size());
+
+			for (int k = 0; k < expectedOverlaps.size(); k++) {
+				MapOverlap<?, ?> expected = expectedOverlaps.get(k);
+				MapOverlap<?, ?> actual = actualOverlaps.get(k);
+				assertSame(expected.getClass(), actual.getClass());
+				assertSame(expected.type, actual.type);
+				assertSame(expected.e1, actual.e1);
+				assertSame(expected.e2, actual.e2);
+			}
+
+		}
+
+	}
+
 }
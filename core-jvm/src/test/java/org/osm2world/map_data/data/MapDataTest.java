@@ -0,0 +1,72 @@
+package org.osm2world.map_data.data;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osm2world.map_data.creation.MapDataBuilder;
+import org.osm2world.map_data.data.overlaps.MapElementId;
+import org.osm2world.scene.mesh.Mesh;
+import org.osm2world.world.data.NoOutlineNodeWorldObject;
+
+public class MapDataTest {
+
+	@Test
+	public void testGetElement() {
+
+		var builder = new MapDataBuilder();
+		MapNode n1 = builder.createNode(0, 0);
+		MapNode n2 = builder.createNode(10, 0);
+		MapNode n3 = builder.createNode(10, 10);
+		MapWay way = builder.createWay(List.of(n1, n2, n3), TagSet.of("highway", "path"));
+		MapRelation relation = builder.createRelation(List.of(Map.entry("", way)), TagSet.of("type", "route"));
+		MapData mapData = builder.build();
+
+		assertSame(n2, mapData.getMapNode(n2.getId()));
+		assertSame(way, mapData.getMapWay(way.getId()));
+		assertSame(relation, mapData.getMapRelation(relation.getId()));
+		assertNull(mapData.getMapNode(12345));
+
+		assertSame(n1, mapData.getElement(n1.toString()));
+		assertSame(way, mapData.getElement(way.toString()));
+		assertSame(way, mapData.getElement(way.toString().toUpperCase()));
+		assertSame(relation, mapData.getElement(new MapElementId(relation.toString())));
+
+		assertNull(mapData.getElement("x" + n1.getId()));
+		assertNull(mapData.getElement("n"));
+		assertNull(mapData.getElement("n-"));
+		assertNull(mapData.getElement("n1a"));
+		assertNull(mapData.getElement("n12345"));
+
+	}
+
+	@Test
+	public void testGetWorldObjects() {
+
+		var builder = new MapDataBuilder();
+		MapNode node = builder.createNode(0, 0);
+		MapData mapData = builder.build();
+
+		var id = new MapElementId(node.toString());
+
+		assertEquals(emptyList(), mapData.getWorldObjects(id));
+
+		// world objects added after the first call are found as well
+		var worldObject = new NoOutlineNodeWorldObject(node) {
+			@Override
+			public List<Mesh> buildMeshes() {
+				return emptyList();
+			}
+		};
+		node.addRepresentation(worldObject);
+
+		assertEquals(List.of(worldObject), mapData.getWorldObjects(id));
+		assertEquals(List.of(worldObject), mapData.getWorldObjects(new MapElementId("N" + node.getId())));
+		assertEquals(emptyList(), mapData.getWorldObjects(new MapElementId("w" + node.getId())));
+
+	}
+
+}
@@ -29,6 +29,18 @@ public class MapElementIdTest {
 
 	}
 
+	@Test
+	public void testUpperCasePrefix() {
+
+		var id = new MapElementId("W5");
+		assertEquals(new MapElementId("w5"), id);
+		assertEquals("w5", id.toString());
+		assertEquals(MapElementId.ElementType.WAY, id.type());
+
+		assertEquals(new MapElementId("n7"), MapElementId.parse("N7"));
+
+	}
+
 	@Test
 	public void testParse_invalid() {
 
@@ -4,6 +4,9 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 public class TagSetTest {
@@ -90,4 +93,42 @@ public class TagSetTest {
 
 	}
 
+	@Test
+	public void testKeyLookup() {
+
+		List<Tag> tags = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			tags.add(new Tag("testKeyLookup" + (i * 7 % 50), "value" + i));
+		}
+
+		TagSet set = TagSet.of(tags);
+
+		for (Tag tag : tags) {
+			assertEquals(tag.value, set.getValue(tag.key));
+			assertTrue(set.containsKey(tag.key));
+			assertTrue(set.contains(tag));
+			assertTrue(set.contains(tag.key, tag.value));
+			assertFalse(set.contains(tag.key, "other"));
+		}
+
+		assertNull(set.getValue("testKeyLookup50"));
+		assertFalse(set.containsKey("testKeyLookup-unknown"));
+		assertFalse(TagSet.of().containsKey("testKeyLookup0"));
+
+	}
+
+	@Test
+	public void testTagDictionary() {
+
+		Tag tag = TagDictionary.tag("highway", new String("residential"));
+		assertEquals(new Tag("highway", "residential"), tag);
+		assertSame(tag, TagDictionary.tag(new String("highway"), "residential"));
+
+		String longValue = "a value which is too long to be worth interning";
+		Tag longTag = TagDictionary.tag("description", longValue);
+		assertEquals(new Tag("description", longValue), longTag);
+		assertSame(longTag.key, TagDictionary.tag("description", longValue).key);
+
+	}
+
 }
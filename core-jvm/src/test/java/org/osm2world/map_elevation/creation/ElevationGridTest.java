@@ -0,0 +1,135 @@
+package org.osm2world.map_elevation.creation;
+
+import static org.junit.Assert.*;
+import static org.osm2world.map_elevation.creation.ElevationGrid.Sampling.BICUBIC;
+import static org.osm2world.map_elevation.creation.ElevationGrid.Sampling.BILINEAR;
+import static org.osm2world.util.test.TestFileUtil.createTempDirectory;
+import static org.osm2world.util.test.TestFileUtil.getTestFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+import org.osm2world.map_elevation.creation.RawElevationGrid.SampleType;
+import org.osm2world.math.geo.LatLon;
+import org.osm2world.math.geo.OrthographicAzimuthalMapProjection;
+
+public class ElevationGridTest {
+
+	/** creates a 4x4 grid covering lat 0..3 and lon 10..13 */
+	private static RawElevationGrid createTestGrid(float... samples) {
+		ByteBuffer data = ByteBuffer.allocate(4 * samples.length).order(ByteOrder.LITTLE_ENDIAN);
+		for (float sample : samples) {
+			data.putFloat(sample);
+		}
+		return new RawElevationGrid(0, 10, 3, 13, 4, 4, data, SampleType.FLOAT32, -9999.0);
+	}
+
+	@Test
+	public void testBilinear() {
+
+		RawElevationGrid grid = createTestGrid(
+				0, 1, 2, 3,
+				4, 5, 6, 7,
+				8, 9, 10, 11,
+				12, 13, 14, 15);
+
+		assertEquals(0, grid.getElevation(3, 10, BILINEAR), 1e-9);
+		assertEquals(15, grid.getElevation(0, 13, BILINEAR), 1e-9);
+		assertEquals(5, grid.getElevation(2, 11, BILINEAR), 1e-9);
+		assertEquals(7.5, grid.getElevation(1.5, 11.5, BILINEAR), 1e-9);
+		assertEquals(5.5, grid.getElevation(2, 11.5, BILINEAR), 1e-9);
+
+		assertTrue(Double.isNaN(grid.getElevation(3.5, 11, BILINEAR)));
+
+	}
+
+	@Test
+	public void testBicubicReproducesPlanes() {
+
+		RawElevationGrid grid = createTestGrid(
+				0, 1, 2, 3,
+				4, 5, 6, 7,
+				8, 9, 10, 11,
+				12, 13, 14, 15);
+
+		for (double lat = 1; lat <= 2; lat += 0.25) {
+			for (double lon = 11; lon <= 12; lon += 0.25) {
+				assertEquals(grid.getElevation(lat, lon, BILINEAR), grid.getElevation(lat, lon, BICUBIC), 1e-9);
+			}
+		}
+
+	}
+
+	@Test
+	public void testNoData() {
+
+		RawElevationGrid grid = createTestGrid(
+				0, 1, 2, 3,
+				4, -9999, 6, 7,
+				8, 9, 10, 11,
+				12, 13, 14, 15);
+
+		assertTrue(Double.isNaN(grid.sample(1, 1)));
+		assertTrue(Double.isNaN(grid.getElevation(2, 11, BILINEAR)));
+		assertEquals(6, grid.getElevation(2, 11.5, BILINEAR), 1e-9);
+		assertEquals(6, grid.getElevation(2, 11.5, BICUBIC), 1e-9);
+
+	}
+
+	@Test
+	public void testSRTM3() throws IOException {
+
+		var projection = new OrthographicAzimuthalMapProjection(new LatLon(4, 33));
+		var srtmData = new SRTMData(getTestFile("srtm"), projection,
+				new SRTMTileCache(Long.MAX_VALUE, createTempDirectory()));
+
+		SRTMTile tile = new SRTMTileCache(Long.MAX_VALUE, createTempDirectory()).getTile(getTestFile("srtm"), 33, 4);
+		assertNotNull(tile);
+		assertEquals(SRTMTile.SRTM3_PIXELS, tile.pixels);
+
+		double lat = 4 + 600.0 / 1200;
+		double lon = 33 + 300.0 / 1200;
+		assertEquals(tile.getData(300, 600), srtmData.getElevation(new LatLon(lat, lon), BILINEAR), 1e-6);
+		assertEquals(tile.getData(300, 600), srtmData.getElevation(projection.toXZ(lat, lon), BICUBIC), 1e-3);
+
+		assertTrue(Double.isNaN(srtmData.getElevation(new LatLon(10.5, 10.5), BILINEAR)));
+
+	}
+
+	@Test
+	public void testSRTM1() throws IOException {
+
+		int pixels = SRTMTile.SRTM1_PIXELS;
+
+		File srtmDir = createTempDirectory();
+		File hgtFile = new File(srtmDir, "S01W002.SRTMGL1.hgt");
+		hgtFile.deleteOnExit();
+
+		/* write a tile where the elevation increases from west to east */
+
+		try (var channel = new RandomAccessFile(hgtFile, "rw").getChannel()) {
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * pixels * pixels);
+			for (int row = 0; row < pixels; row++) {
+				for (int column = 0; column < pixels; column++) {
+					data.putShort((short) (column / 10));
+				}
+			}
+		}
+
+		var projection = new OrthographicAzimuthalMapProjection(new LatLon(-1, -2));
+		var srtmData = new SRTMData(srtmDir, projection, new SRTMTileCache(Long.MAX_VALUE, createTempDirectory()));
+
+		assertEquals(0, srtmData.getElevation(new LatLon(-0.5, -2), BILINEAR), 1e-6);
+		assertEquals(180, srtmData.getElevation(new LatLon(-0.5, -1.5), BILINEAR), 1e-6);
+		assertEquals(360, srtmData.getElevation(new LatLon(-0.5, -1.0), BILINEAR), 1e-6);
+
+		assertFalse(srtmData.getSites(-1.9, -0.9, -1.89, -0.89).isEmpty());
+
+	}
+
+}
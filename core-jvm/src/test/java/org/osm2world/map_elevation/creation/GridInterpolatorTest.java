@@ -0,0 +1,84 @@
+package org.osm2world.map_elevation.creation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.map_elevation.creation.ElevationGrid.Sampling;
+import org.osm2world.map_elevation.creation.RawElevationGrid.SampleType;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.geo.LatLon;
+import org.osm2world.math.geo.MapProjection;
+import org.osm2world.math.geo.OrthographicAzimuthalMapProjection;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+
+public class GridInterpolatorTest {
+
+	private static double planeEle(double lat, double lon) {
+		return 100 + 1000 * (lon - 8) - 2000 * (lat - 50);
+	}
+
+	/** creates a grid covering lat 50..50.01 and lon 8..8.01 with elevations from {@link #planeEle(double, double)} */
+	private static RawElevationGrid createPlaneGrid() {
+		int size = 101;
+		ByteBuffer data = ByteBuffer.allocate(4 * size * size).order(ByteOrder.LITTLE_ENDIAN);
+		for (int row = 0; row < size; row++) {
+			for (int column = 0; column < size; column++) {
+				data.putFloat((float) planeEle(50.01 - row * 0.0001, 8 + column * 0.0001));
+			}
+		}
+		return new RawElevationGrid(50, 8, 50.01, 8.01, size, size, data, SampleType.FLOAT32, null);
+	}
+
+	@Test
+	public void testPlane() throws IOException {
+
+		MapProjection projection = new OrthographicAzimuthalMapProjection(new LatLon(50.005, 8.005));
+		var eleData = new ElevationGridData(List.of(createPlaneGrid()), projection);
+		var bounds = new AxisAlignedRectangleXZ(-300, -300, 300, 300);
+
+		Random random = new Random(42);
+
+		for (Sampling sampling : Sampling.values()) {
+
+			var interpolator = new GridInterpolator(sampling);
+			interpolator.setElevationData(eleData, bounds);
+
+			for (int i = 0; i < 500; i++) {
+				var pos = new VectorXZ(random.nextDouble() * 600 - 300, random.nextDouble() * 600 - 300);
+				LatLon latLon = projection.toLatLon(pos);
+				assertEquals(planeEle(latLon.lat, latLon.lon), interpolator.interpolateEle(pos).y, 1e-3);
+			}
+
+			// outside the grid
+			assertEquals(0, interpolator.interpolateEle(new VectorXZ(5000, 0)).y, 0);
+
+		}
+
+	}
+
+	@Test
+	public void testFallbackForSites() throws IOException {
+
+		List<VectorXYZ> sites = new ArrayList<>();
+		for (int x = -10; x <= 10; x++) {
+			for (int z = -10; z <= 10; z++) {
+				sites.add(new VectorXYZ(x * 10, 5 + x - 0.5 * z, z * 10));
+			}
+		}
+
+		var interpolator = new GridInterpolator();
+		interpolator.setElevationData(bounds -> sites, new AxisAlignedRectangleXZ(-100, -100, 100, 100));
+
+		assertEquals(5 + 2.5 - 0.5 * 4.5, interpolator.interpolateEle(new VectorXZ(25, 45)).y, 1e-6);
+
+	}
+
+}
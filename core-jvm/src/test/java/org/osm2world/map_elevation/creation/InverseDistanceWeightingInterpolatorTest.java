@@ -0,0 +1,59 @@
+package org.osm2world.map_elevation.creation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+
+public class InverseDistanceWeightingInterpolatorTest {
+
+	/** straightforward implementation of inverse distance weighting with a cutoff of 300 */
+	private static double expectedEle(List<VectorXYZ> sites, VectorXZ pos, double exponent) {
+		double weightSum = 0;
+		double eleSum = 0;
+		for (VectorXYZ site : sites) {
+			double distance = site.distanceToXZ(pos);
+			if (distance < 300) {
+				double weight = Math.pow(distance, -exponent);
+				weightSum += weight;
+				eleSum += site.y * weight;
+			}
+		}
+		return eleSum / weightSum;
+	}
+
+	@Test
+	public void testMatchesDefinition() {
+
+		Random random = new Random(42);
+
+		List<VectorXYZ> sites = new ArrayList<>();
+		for (int x = 0; x < 40; x++) {
+			for (int z = 0; z < 40; z++) {
+				sites.add(new VectorXYZ(x * 30, random.nextDouble() * 100, z * 30));
+			}
+		}
+
+		for (double exponent : new double[] {1, 2, 3, 2.5}) {
+
+			var interpolator = new InverseDistanceWeightingInterpolator(exponent);
+			interpolator.setKnownSites(sites);
+
+			for (int i = 0; i < 300; i++) {
+				var pos = new VectorXZ(random.nextDouble() * 1300 - 50, random.nextDouble() * 1300 - 50);
+				assertEquals(expectedEle(sites, pos, exponent), interpolator.interpolateEle(pos).y, 1e-9);
+			}
+
+			VectorXYZ site = sites.get(123);
+			assertEquals(site.y, interpolator.interpolateEle(site.xz()).y, 0);
+
+		}
+
+	}
+
+}
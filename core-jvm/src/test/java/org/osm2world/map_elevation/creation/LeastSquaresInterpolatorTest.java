@@ -0,0 +1,58 @@
+package org.osm2world.map_elevation.creation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.map_elevation.creation.LeastSquaresInterpolator.SiteWithPolynomial;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+
+public class LeastSquaresInterpolatorTest {
+
+	private static double quadraticEle(double x, double z) {
+		return 20 + 0.1 * x - 0.05 * z + 2e-4 * x * x - 1e-4 * x * z + 3e-4 * z * z;
+	}
+
+	/** sites on a quadratic surface, which the polynomials should reproduce */
+	@Test
+	public void testQuadraticSurface() {
+
+		Random random = new Random(42);
+
+		List<VectorXYZ> sites = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			double x = random.nextDouble() * 500;
+			double z = random.nextDouble() * 500;
+			sites.add(new VectorXYZ(x, quadraticEle(x, z), z));
+		}
+
+		var interpolator = new LeastSquaresInterpolator();
+		interpolator.setKnownSites(sites);
+
+		assertEquals(sites.size(), interpolator.getSitesWithPolynomials().size());
+		for (SiteWithPolynomial site : interpolator.getSitesWithPolynomials()) {
+			assertNotNull(site.getPolynomial());
+		}
+
+		List<VectorXZ> positions = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			positions.add(new VectorXZ(50 + random.nextDouble() * 400, 50 + random.nextDouble() * 400));
+		}
+
+		for (VectorXZ pos : positions) {
+			assertEquals(quadraticEle(pos.x, pos.z), interpolator.interpolateEle(pos).y, 1e-3);
+		}
+
+		assertTrue(interpolator.supportsConcurrentQueries());
+
+		List<VectorXYZ> sequentialResults = positions.stream().map(interpolator::interpolateEle).toList();
+		List<VectorXYZ> parallelResults = positions.parallelStream().map(interpolator::interpolateEle).toList();
+		assertEquals(sequentialResults, parallelResults);
+
+	}
+
+}
@@ -0,0 +1,117 @@
+package org.osm2world.map_elevation.creation;
+
+import static java.util.Collections.nCopies;
+import static org.junit.Assert.assertEquals;
+import static org.osm2world.math.shapes.AxisAlignedRectangleXZ.bbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.osm2world.map_elevation.creation.DelaunayTriangulation.NaturalNeighbors;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+
+public class NaturalNeighborInterpolatorTest {
+
+	private static List<VectorXYZ> randomSites(Random random, int count) {
+		List<VectorXYZ> sites = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			sites.add(new VectorXYZ(random.nextDouble() * 1000, random.nextDouble() * 100, random.nextDouble() * 1000));
+		}
+		return sites;
+	}
+
+	/** returns random positions in the interior of the area covered by {@link #randomSites(Random, int)} */
+	private static List<VectorXZ> randomPositions(Random random, int count) {
+		List<VectorXZ> positions = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			positions.add(new VectorXZ(100 + random.nextDouble() * 800, 100 + random.nextDouble() * 800));
+		}
+		return positions;
+	}
+
+	/**
+	 * compares the results with those of inserting the position into the triangulation.
+	 * Only positions away from the edges are used, the handling of the artificial corner sites differs.
+	 */
+	@Test
+	public void testMatchesProbeResults() {
+
+		Random random = new Random(42);
+		List<VectorXYZ> sites = randomSites(random, 500);
+
+		var interpolator = new NaturalNeighborInterpolator();
+		interpolator.setKnownSites(sites);
+
+		var triangulation = new DelaunayTriangulation(bbox(sites).pad(100));
+		sites.forEach(triangulation::insert);
+
+		for (VectorXZ pos : randomPositions(random, 200)) {
+
+			NaturalNeighbors nn = triangulation.probe(pos);
+			double expectedEle = 0;
+			for (int i = 0; i < nn.neighbors.length; i++) {
+				expectedEle += nn.neighbors[i].y * nn.relativeWeights[i];
+			}
+
+			assertEquals(expectedEle, interpolator.interpolateEle(pos).y, 1e-6);
+
+		}
+
+	}
+
+	@Test
+	public void testSitesAndLinearFunctions() {
+
+		List<VectorXYZ> sites = new ArrayList<>();
+		for (int x = 0; x <= 20; x++) {
+			for (int z = 0; z <= 20; z++) {
+				// grid with co-circular sites and a planar elevation
+				sites.add(new VectorXYZ(x * 10, 2 * x + 3 * z, z * 10));
+			}
+		}
+
+		var interpolator = new NaturalNeighborInterpolator();
+		interpolator.setKnownSites(sites);
+
+		for (VectorXYZ site : sites) {
+			assertEquals(site.y, interpolator.interpolateEle(site.xz()).y, 1e-6);
+		}
+
+		for (VectorXZ pos : List.of(new VectorXZ(55, 55), new VectorXZ(60, 75), new VectorXZ(123.4, 87.6))) {
+			assertEquals(0.2 * pos.x + 0.3 * pos.z, interpolator.interpolateEle(pos).y, 1e-6);
+		}
+
+	}
+
+	@Test
+	public void testConcurrentQueries() throws Exception {
+
+		Random random = new Random(7);
+
+		var interpolator = new NaturalNeighborInterpolator();
+		interpolator.setKnownSites(randomSites(random, 1000));
+
+		List<VectorXZ> positions = randomPositions(random, 1000);
+		List<Double> expected = positions.stream().map(p -> interpolator.interpolateEle(p).y).toList();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			Callable<List<Double>> task = () -> positions.stream().map(p -> interpolator.interpolateEle(p).y).toList();
+			for (Future<List<Double>> future : executor.invokeAll(nCopies(8, task))) {
+				assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+}
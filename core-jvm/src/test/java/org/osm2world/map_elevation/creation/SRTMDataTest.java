@@ -8,6 +8,7 @@ import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.osm2world.map_elevation.creation.ElevationGrid.Sampling;
 import org.osm2world.math.geo.LatLon;
 import org.osm2world.math.geo.LatLonBounds;
 import org.osm2world.math.geo.OrthographicAzimuthalMapProjection;
@@ -36,6 +37,29 @@ public class SRTMDataTest {
 
 	}
 
+	@Test
+	public void testRestrictTo() throws IOException {
+
+		File srtmDir = getTestFile("srtm");
+
+		var projection = new OrthographicAzimuthalMapProjection(new LatLon(4, 33));
+		var srtmData = new SRTMData(srtmDir, projection);
+
+		var bounds = new LatLonBounds(4.1, 33.1, 4.2, 33.2);
+		GridElevationData restrictedData = srtmData.restrictTo(projectBounds(projection, bounds));
+
+		for (double lat = 4.1; lat <= 4.2; lat += 0.01) {
+			for (double lon = 33.1; lon <= 33.2; lon += 0.01) {
+				var pos = new LatLon(lat, lon);
+				for (Sampling sampling : Sampling.values()) {
+					Assert.assertEquals(srtmData.getElevation(pos, sampling),
+							restrictedData.getElevation(pos, sampling), 0);
+				}
+			}
+		}
+
+	}
+
 	private static AxisAlignedRectangleXZ projectBounds(OrthographicAzimuthalMapProjection projection, LatLonBounds latLonBounds) {
 		return AxisAlignedRectangleXZ.bbox(List.of(
 				projection.toXZ(latLonBounds.getMin()), projection.toXZ(latLonBounds.getMax())));
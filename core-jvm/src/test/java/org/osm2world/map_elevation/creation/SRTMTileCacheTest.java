@@ -0,0 +1,137 @@
+package org.osm2world.map_elevation.creation;
+
+import static java.util.Collections.nCopies;
+import static java.util.Objects.requireNonNull;
+import static org.junit.Assert.*;
+import static org.osm2world.util.test.TestFileUtil.createTempDirectory;
+import static org.osm2world.util.test.TestFileUtil.getTestFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+public class SRTMTileCacheTest {
+
+	private static final long MAX_CACHE_BYTES = 100L * 1201 * 1201 * 2;
+
+	@Test
+	public void testTilesAreReused() throws IOException {
+
+		File srtmDir = getTestFile("srtm");
+		var cache = new SRTMTileCache(MAX_CACHE_BYTES, createTempDirectory());
+
+		SRTMTile tile = cache.getTile(srtmDir, 33, 4);
+		assertNotNull(tile);
+		assertSame(tile, cache.getTile(srtmDir, 33, 4));
+		assertSame(tile, cache.getTile(new File(srtmDir.getPath()), 33, 4));
+
+		assertNotNull(cache.getTile(srtmDir, 34, 4));
+		assertNull(cache.getTile(srtmDir, 35, 4));
+
+		assertEquals(2, cache.getCacheStats().loadCount());
+
+	}
+
+	@Test
+	public void testZippedTileIsExtractedOnce() throws IOException {
+
+		File srtmDir = getTestFile("srtm");
+		File extractionDir = createTempDirectory();
+
+		SRTMTile tile = new SRTMTileCache(MAX_CACHE_BYTES, extractionDir).getTile(srtmDir, 34, 4);
+		assertNotNull(tile);
+
+		File[] extractedFiles = extractedFiles(extractionDir);
+		assertEquals(1, extractedFiles.length);
+		File extractedFile = extractedFiles[0];
+		assertEquals("N04E034.SRTMGL3.hgt", extractedFile.getName());
+		long lastModified = extractedFile.lastModified();
+
+		SRTMTile tile2 = new SRTMTileCache(MAX_CACHE_BYTES, extractionDir).getTile(srtmDir, 34, 4);
+		assertNotNull(tile2);
+		assertEquals(lastModified, extractedFile.lastModified());
+
+		for (int x = 0; x < SRTMTile.SRTM3_PIXELS; x += 100) {
+			for (int y = 0; y < SRTMTile.SRTM3_PIXELS; y += 100) {
+				assertEquals(tile.getData(x, y), tile2.getData(x, y));
+			}
+		}
+
+	}
+
+	@Test
+	public void testZippedTilesWithSameName() throws IOException {
+
+		File extractionDir = createTempDirectory();
+
+		/* create another zipped tile with the same name, but different content, in a separate directory */
+
+		File otherSrtmDir = createTempDirectory();
+		File otherZip = new File(otherSrtmDir, "N04E034.SRTMGL3.hgt.zip");
+		otherZip.deleteOnExit();
+
+		byte[] data = new byte[2 * SRTMTile.SRTM3_PIXELS * SRTMTile.SRTM3_PIXELS];
+		for (int i = 0; i < data.length; i += 2) {
+			data[i + 1] = 42;
+		}
+
+		try (var zipStream = new ZipOutputStream(new FileOutputStream(otherZip))) {
+			zipStream.putNextEntry(new ZipEntry("N04E034.hgt"));
+			zipStream.write(data);
+			zipStream.closeEntry();
+		}
+
+		/* make sure that each tile is extracted separately */
+
+		SRTMTile tile = new SRTMTileCache(MAX_CACHE_BYTES, extractionDir).getTile(getTestFile("srtm"), 34, 4);
+		SRTMTile otherTile = new SRTMTileCache(MAX_CACHE_BYTES, extractionDir).getTile(otherSrtmDir, 34, 4);
+
+		assertEquals(2, extractedFiles(extractionDir).length);
+		assertEquals(42, otherTile.getData(600, 600));
+		assertNotEquals(42, tile.getData(600, 600));
+
+	}
+
+	/** returns the hgt files in the subdirectories of an extraction directory */
+	private static File[] extractedFiles(File extractionDir) {
+		File[] directories = extractionDir.listFiles(File::isDirectory);
+		assertNotNull(directories);
+		return Arrays.stream(directories)
+				.flatMap(d -> Arrays.stream(requireNonNull(d.listFiles((dir, name) -> name.endsWith(".hgt")))))
+				.toArray(File[]::new);
+	}
+
+	@Test
+	public void testConcurrentRequestsLoadOnce() throws Exception {
+
+		File srtmDir = getTestFile("srtm");
+		var cache = new SRTMTileCache(MAX_CACHE_BYTES, createTempDirectory());
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+
+			List<Future<SRTMTile>> futures = executor.invokeAll(
+					nCopies(8, () -> cache.getTile(srtmDir, 34, 4)));
+
+			SRTMTile firstTile = futures.get(0).get();
+			for (Future<SRTMTile> future : futures) {
+				assertSame(firstTile, future.get());
+			}
+
+			assertEquals(1, cache.getCacheStats().loadCount());
+
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+}
@@ -0,0 +1,92 @@
+package org.osm2world.map_elevation.creation;
+
+import static java.util.Comparator.comparingDouble;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+
+public class SiteGridTest {
+
+	@Test
+	public void testLayout() {
+
+		Random random = new Random(42);
+		List<VectorXYZ> sites = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			sites.add(new VectorXYZ(random.nextDouble() * 500, random.nextDouble() * 50, random.nextDouble() * 300));
+		}
+
+		var grid = new SiteGrid(sites, 40);
+
+		assertEquals(sites.size(), grid.size());
+
+		int siteCount = 0;
+
+		for (int cellZ = 0; cellZ < grid.cellCountZ; cellZ++) {
+			for (int cellX = 0; cellX < grid.cellCountX; cellX++) {
+				for (int i = grid.cellStart(cellX, cellZ); i < grid.cellEnd(cellX, cellZ); i++) {
+					VectorXYZ site = sites.get(grid.originalIndex[i]);
+					assertEquals(site.x, grid.x[i], 0);
+					assertEquals(site.y, grid.ele[i], 0);
+					assertEquals(site.z, grid.z[i], 0);
+					assertEquals(cellX, grid.cellX(site.x));
+					assertEquals(cellZ, grid.cellZ(site.z));
+					siteCount ++;
+				}
+			}
+		}
+
+		assertEquals(sites.size(), siteCount);
+
+	}
+
+	@Test
+	public void testFindNearest() {
+
+		Random random = new Random(42);
+		List<VectorXYZ> sites = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			sites.add(new VectorXYZ(random.nextDouble() * 1000, 0, random.nextDouble() * 1000));
+		}
+
+		var grid = new SiteGrid(sites, 50);
+
+		for (int q = 0; q < 300; q++) {
+
+			// includes positions outside the grid
+			var pos = new VectorXZ(random.nextDouble() * 1400 - 200, random.nextDouble() * 1400 - 200);
+			boolean onlyEven = q % 2 == 0;
+
+			List<VectorXYZ> expected = new ArrayList<>(sites.stream()
+					.filter(s -> !onlyEven || sites.indexOf(s) % 2 == 0).toList());
+			expected.sort(comparingDouble(s -> s.xz().distanceTo(pos)));
+
+			int[] result = new int[9];
+			double[] distancesSquared = new double[9];
+			int count = grid.findNearest(pos.x, pos.z, i -> !onlyEven || grid.originalIndex[i] % 2 == 0,
+					result, distancesSquared);
+
+			assertEquals(9, count);
+
+			for (int n = 0; n < 9; n++) {
+				double expectedDistance = expected.get(n).xz().distanceTo(pos);
+				assertEquals(expectedDistance, sites.get(grid.originalIndex[result[n]]).xz().distanceTo(pos), 1e-9);
+				assertEquals(expectedDistance * expectedDistance, distancesSquared[n], 1e-6);
+			}
+
+		}
+
+		/* fewer sites than requested */
+
+		var smallGrid = new SiteGrid(sites.subList(0, 5), 50);
+		assertEquals(5, smallGrid.findNearest(0, 0, i -> true, new int[9], new double[9]));
+
+	}
+
+}
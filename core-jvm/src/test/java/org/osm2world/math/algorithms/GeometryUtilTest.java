@@ -9,7 +9,9 @@ import static org.osm2world.math.algorithms.GeometryUtil.*;
 import static org.osm2world.test.TestUtil.anyVectorXZ;
 import static org.osm2world.test.TestUtil.assertAlmostEquals;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 import org.osm2world.math.Vector3D;
@@ -263,4 +265,58 @@ public class GeometryUtilTest {
 
 	}
 
+	@Test
+	public void testDistributePointsOn() {
+
+		List<VectorXZ> outline = new ArrayList<>();
+		Random random = new Random(1);
+		for (int i = 0; i < 300; i++) {
+			outline.add(fromAngle(2 * Math.PI * i / 300).mult(150 + 50 * random.nextDouble()));
+		}
+
+		var polygon = new PolygonWithHolesXZ(new SimplePolygonXZ(closeLoop(outline)),
+				List.of(new AxisAlignedRectangleXZ(-40, -30, 10, 20).polygonXZ()));
+		var boundary = new AxisAlignedRectangleXZ(-150, -250, 250, 250);
+
+		assertEquals(distributePointsOnReference(42, polygon, boundary, 0.1),
+				distributePointsOn(42, polygon, boundary, 0.1, 0));
+
+	}
+
+	/** straightforward implementation of {@link GeometryUtil#distributePointsOn} without any spatial index */
+	private static List<VectorXZ> distributePointsOnReference(long seed, PolygonWithHolesXZ polygon,
+			AxisAlignedRectangleXZ boundary, double density) {
+
+		List<VectorXZ> result = new ArrayList<>();
+		Random rand = new Random(seed);
+		AxisAlignedRectangleXZ outerBox = polygon.boundingBox();
+		double boxSize = sqrt(100 / density);
+
+		for (int boxZ = 0; boxZ <= (int)(outerBox.sizeZ() / boxSize); ++boxZ) {
+			for (int boxX = 0; boxX <= (int)(outerBox.sizeX() / boxSize); ++boxX) {
+
+				AxisAlignedRectangleXZ box = new AxisAlignedRectangleXZ(
+						outerBox.minX + boxSize * boxX, outerBox.minZ + boxSize * boxZ,
+						outerBox.minX + boxSize * (boxX + 1), outerBox.minZ + boxSize * (boxZ + 1));
+
+				if (!boundary.overlaps(box)
+						|| (!polygon.contains(box.polygonXZ()) && !polygon.intersects(box.polygonXZ()))) {
+					continue;
+				}
+
+				for (int i = 0; i < 100; ++i) {
+					VectorXZ v = new VectorXZ(box.minX + boxSize * rand.nextDouble(),
+							box.minZ + boxSize * rand.nextDouble());
+					if (polygon.contains(v)) {
+						result.add(v);
+					}
+				}
+
+			}
+		}
+
+		return result;
+
+	}
+
 }
@@ -0,0 +1,92 @@
+package org.osm2world.math.datastructures;
+
+import static java.lang.Math.*;
+import static java.util.List.of;
+import static org.junit.Assert.assertEquals;
+import static org.osm2world.math.algorithms.GeometryUtil.closeLoop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+import org.osm2world.math.shapes.PolygonWithHolesXZ;
+import org.osm2world.math.shapes.SimplePolygonXZ;
+
+public class PointInPolygonIndexTest {
+
+	/** creates a star-shaped polygon with randomly varying radius */
+	private static SimplePolygonXZ randomStar(Random random, VectorXZ center,
+			double minRadius, double maxRadius, int vertexCount) {
+		List<VectorXZ> vertices = new ArrayList<>();
+		for (int i = 0; i < vertexCount; i++) {
+			double angle = 2 * PI * i / vertexCount;
+			double radius = minRadius + random.nextDouble() * (maxRadius - minRadius);
+			vertices.add(center.add(VectorXZ.fromAngle(angle).mult(radius)));
+		}
+		return new SimplePolygonXZ(closeLoop(vertices));
+	}
+
+	private static PolygonWithHolesXZ randomPolygonWithHoles(Random random) {
+		return new PolygonWithHolesXZ(
+				randomStar(random, new VectorXZ(0, 0), 50, 100, 500),
+				of(randomStar(random, new VectorXZ(-20, 0), 5, 15, 30),
+						randomStar(random, new VectorXZ(20, 0), 5, 15, 30)));
+	}
+
+	@Test
+	public void testContainsPoint() {
+
+		Random random = new Random(42);
+		PolygonWithHolesXZ polygon = randomPolygonWithHoles(random);
+		var index = new PointInPolygonIndex(polygon);
+
+		for (int i = 0; i < 10000; i++) {
+			VectorXZ v = new VectorXZ(random.nextDouble() * 240 - 120, random.nextDouble() * 240 - 120);
+			assertEquals(v.toString(), polygon.contains(v), index.contains(v));
+		}
+
+		for (SimplePolygonXZ ring : polygon.getRings()) {
+			for (int i = 0; i < ring.size(); i++) {
+				VectorXZ v1 = ring.getVertex(i);
+				VectorXZ v2 = ring.getVertex((i + 1) % ring.size());
+				assertEquals(polygon.contains(v1), index.contains(v1));
+				VectorXZ m = v1.add(v2).mult(0.5);
+				assertEquals(polygon.contains(m), index.contains(m));
+			}
+		}
+
+	}
+
+	@Test
+	public void testBoxes() {
+
+		Random random = new Random(42);
+		PolygonWithHolesXZ polygon = randomPolygonWithHoles(random);
+		var index = new PointInPolygonIndex(polygon);
+
+		for (double x = -110; x < 110; x += 7.3) {
+			for (double z = -110; z < 110; z += 7.3) {
+
+				var box = new AxisAlignedRectangleXZ(x, z, x + 7.3, z + 7.3);
+
+				assertEquals(polygon.contains(box.polygonXZ()), index.contains(box.polygonXZ()));
+				assertEquals(polygon.intersects(box.polygonXZ()), index.intersects(box.polygonXZ()));
+
+				if (!index.isNearOutline(box)) {
+					boolean expected = polygon.contains(box.center());
+					for (int i = 0; i < 20; i++) {
+						VectorXZ v = new VectorXZ(box.minX + random.nextDouble() * box.sizeX(),
+								box.minZ + random.nextDouble() * box.sizeZ());
+						assertEquals(expected, polygon.contains(v));
+					}
+				}
+
+			}
+		}
+
+	}
+
+}
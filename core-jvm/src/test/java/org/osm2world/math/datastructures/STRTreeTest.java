@@ -0,0 +1,150 @@
+package org.osm2world.math.datastructures;
+
+import static java.util.Comparator.comparingDouble;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+
+public class STRTreeTest {
+
+	/** creates boxes with sizes ranging from points to large areas */
+	private static List<AxisAlignedRectangleXZ> randomBoxes(Random random, int count) {
+		List<AxisAlignedRectangleXZ> result = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			double x = random.nextDouble() * 1000;
+			double z = random.nextDouble() * 1000;
+			double size = random.nextInt(10) == 0 ? random.nextDouble() * 500 : random.nextDouble() * 2;
+			result.add(new AxisAlignedRectangleXZ(x, z, x + size, z + size * random.nextDouble()));
+		}
+		return result;
+	}
+
+	private static boolean intersects(AxisAlignedRectangleXZ a, AxisAlignedRectangleXZ b) {
+		return a.minX <= b.maxX && b.minX <= a.maxX && a.minZ <= b.maxZ && b.minZ <= a.maxZ;
+	}
+
+	private static double distance(VectorXZ p, AxisAlignedRectangleXZ box) {
+		double dx = Math.max(0, Math.max(box.minX - p.x, p.x - box.maxX));
+		double dz = Math.max(0, Math.max(box.minZ - p.z, p.z - box.maxZ));
+		return Math.sqrt(dx * dx + dz * dz);
+	}
+
+	private static void assertCorrectProbes(STRTree<AxisAlignedRectangleXZ> tree,
+			List<AxisAlignedRectangleXZ> boxes, Random random) {
+
+		assertEquals(boxes.size(), tree.size());
+
+		for (int i = 0; i < 200; i++) {
+
+			AxisAlignedRectangleXZ query = randomBoxes(random, 1).get(0);
+
+			Set<AxisAlignedRectangleXZ> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+			boxes.stream().filter(b -> intersects(b, query)).forEach(expected::add);
+
+			List<AxisAlignedRectangleXZ> result = tree.probe(query);
+			assertEquals(expected.size(), result.size());
+			assertTrue(expected.containsAll(result));
+
+			Set<AxisAlignedRectangleXZ> leafContent = Collections.newSetFromMap(new IdentityHashMap<>());
+			tree.probeLeaves(query).forEach(leafContent::addAll);
+			assertTrue(leafContent.containsAll(expected));
+
+		}
+
+		int leafContentSize = 0;
+		for (List<AxisAlignedRectangleXZ> leaf : tree.getLeaves()) {
+			leafContentSize += leaf.size();
+		}
+		assertEquals(boxes.size(), leafContentSize);
+
+	}
+
+	@Test
+	public void testBulkLoad() {
+		Random random = new Random(42);
+		List<AxisAlignedRectangleXZ> boxes = randomBoxes(random, 5000);
+		assertCorrectProbes(new STRTree<>(boxes), boxes, random);
+	}
+
+	@Test
+	public void testInsert() {
+
+		Random random = new Random(42);
+		List<AxisAlignedRectangleXZ> boxes = randomBoxes(random, 3000);
+
+		var tree = new STRTree<AxisAlignedRectangleXZ>();
+		List<AxisAlignedRectangleXZ> insertedBoxes = new ArrayList<>();
+
+		for (AxisAlignedRectangleXZ box : boxes) {
+			tree.insert(box);
+			insertedBoxes.add(box);
+			if (insertedBoxes.size() % 500 == 1) {
+				assertCorrectProbes(tree, insertedBoxes, random);
+			}
+		}
+
+		assertCorrectProbes(tree, boxes, random);
+
+	}
+
+	@Test
+	public void testNearest() {
+
+		Random random = new Random(42);
+		List<AxisAlignedRectangleXZ> boxes = randomBoxes(random, 2000);
+
+		var tree = new STRTree<>(boxes.subList(0, 1990));
+		boxes.subList(1990, 2000).forEach(tree::insert);
+
+		for (int i = 0; i < 100; i++) {
+
+			var p = new VectorXZ(random.nextDouble() * 1200 - 100, random.nextDouble() * 1200 - 100);
+
+			List<AxisAlignedRectangleXZ> expected = new ArrayList<>(boxes);
+			expected.sort(comparingDouble(b -> distance(p, b)));
+
+			List<AxisAlignedRectangleXZ> result = tree.nearest(p, 10);
+			assertEquals(10, result.size());
+			for (int k = 0; k < 10; k++) {
+				assertEquals(distance(p, expected.get(k)), distance(p, result.get(k)), 0);
+			}
+
+			assertEquals(distance(p, expected.get(0)), distance(p, tree.nearest(p)), 0);
+
+			// distance to the center, which is never smaller than the distance to the bounding box
+			List<AxisAlignedRectangleXZ> resultByCenter = tree.nearest(p, 3, b -> b.center().distanceTo(p));
+			expected.sort(comparingDouble(b -> b.center().distanceTo(p)));
+			for (int k = 0; k < 3; k++) {
+				assertEquals(expected.get(k).center().distanceTo(p), resultByCenter.get(k).center().distanceTo(p), 0);
+			}
+
+		}
+
+		assertNull(new STRTree<AxisAlignedRectangleXZ>().nearest(VectorXZ.NULL_VECTOR));
+
+	}
+
+	@Test
+	public void testVisitorCanEndQuery() {
+
+		Random random = new Random(42);
+		List<AxisAlignedRectangleXZ> boxes = randomBoxes(random, 1000);
+		var tree = new STRTree<>(boxes);
+
+		var query = new AxisAlignedRectangleXZ(0, 0, 1000, 1000);
+		int[] visited = {0};
+
+		assertFalse(tree.visit(query, b -> ++visited[0] < 5));
+		assertEquals(5, visited[0]);
+
+		visited[0] = 0;
+		assertTrue(tree.visit(query, b -> ++visited[0] > 0));
+		assertEquals(tree.probe(query).size(), visited[0]);
+
+	}
+
+}
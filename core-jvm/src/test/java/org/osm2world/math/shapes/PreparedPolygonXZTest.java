@@ -0,0 +1,105 @@
+package org.osm2world.math.shapes;
+
+import static java.lang.Math.PI;
+import static java.util.List.of;
+import static org.junit.Assert.assertEquals;
+import static org.osm2world.math.algorithms.GeometryUtil.closeLoop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.math.VectorXZ;
+
+public class PreparedPolygonXZTest {
+
+	/** creates a star-shaped polygon with randomly varying radius */
+	private static SimplePolygonXZ randomStar(Random random, VectorXZ center,
+			double minRadius, double maxRadius, int vertexCount) {
+		List<VectorXZ> vertices = new ArrayList<>();
+		for (int i = 0; i < vertexCount; i++) {
+			double angle = 2 * PI * i / vertexCount;
+			double radius = minRadius + random.nextDouble() * (maxRadius - minRadius);
+			vertices.add(center.add(VectorXZ.fromAngle(angle).mult(radius)));
+		}
+		return new SimplePolygonXZ(closeLoop(vertices));
+	}
+
+	private static VectorXZ randomPoint(Random random) {
+		return new VectorXZ(random.nextDouble() * 240 - 120, random.nextDouble() * 240 - 120);
+	}
+
+	private static void assertSameResults(PolygonWithHolesXZ polygon, Random random) {
+
+		var prepared = new PreparedPolygonXZ(polygon);
+
+		AxisAlignedRectangleXZ bbox = polygon.boundingBox();
+		assertEquals(bbox.minX, prepared.boundingBox().minX, 0);
+		assertEquals(bbox.minZ, prepared.boundingBox().minZ, 0);
+		assertEquals(bbox.maxX, prepared.boundingBox().maxX, 0);
+		assertEquals(bbox.maxZ, prepared.boundingBox().maxZ, 0);
+		assertEquals(polygon.getArea(), prepared.getArea(), 0);
+
+		for (int i = 0; i < 2000; i++) {
+
+			VectorXZ v = randomPoint(random);
+			assertEquals(polygon.contains(v), prepared.contains(v));
+
+			var segment = new LineSegmentXZ(v, v.add(randomPoint(random).mult(0.3)));
+			assertEquals(polygon.contains(segment), prepared.contains(segment));
+			assertEquals(polygon.intersects(segment), prepared.intersects(segment));
+			assertEquals(polygon.intersectionPositions(segment), prepared.intersectionPositions(segment));
+
+		}
+
+		for (int i = 0; i < 100; i++) {
+			SimplePolygonXZ other = randomStar(random, randomPoint(random).mult(0.7), 2, 30, 12);
+			assertEquals(polygon.contains(other), prepared.contains(other));
+			assertEquals(polygon.intersects(other), prepared.intersects(other));
+			assertEquals(polygon.intersectionPositions(other), prepared.intersectionPositions(other));
+		}
+
+	}
+
+	@Test
+	public void testPolygonWithHoles() {
+		Random random = new Random(42);
+		assertSameResults(new PolygonWithHolesXZ(
+				randomStar(random, new VectorXZ(0, 0), 50, 100, 500),
+				of(randomStar(random, new VectorXZ(-20, 0), 5, 15, 30),
+						randomStar(random, new VectorXZ(20, 0), 5, 15, 30))), random);
+	}
+
+	@Test
+	public void testSmallPolygon() {
+		Random random = new Random(42);
+		assertSameResults(new PolygonWithHolesXZ(
+				randomStar(random, new VectorXZ(0, 0), 50, 100, 8), of()), random);
+	}
+
+	/** tests segments which pass exactly through vertices or along edges of the polygon */
+	@Test
+	public void testSegmentsThroughVertices() {
+
+		Random random = new Random(42);
+		var polygon = new PolygonWithHolesXZ(randomStar(random, new VectorXZ(0, 0), 50, 100, 100), of());
+		var prepared = new PreparedPolygonXZ(polygon);
+
+		List<VectorXZ> vertices = polygon.getOuter().vertices();
+
+		for (int i = 0; i + 2 < vertices.size(); i++) {
+			for (var segment : of(
+					new LineSegmentXZ(vertices.get(i), vertices.get(i + 1)),
+					new LineSegmentXZ(vertices.get(i), vertices.get(i + 2)),
+					new LineSegmentXZ(vertices.get(i), VectorXZ.NULL_VECTOR),
+					new LineSegmentXZ(vertices.get(i).mult(1.5), VectorXZ.NULL_VECTOR))) {
+				assertEquals(polygon.contains(segment), prepared.contains(segment));
+				assertEquals(polygon.intersects(segment), prepared.intersects(segment));
+				assertEquals(polygon.intersectionPositions(segment), prepared.intersectionPositions(segment));
+			}
+		}
+
+	}
+
+}
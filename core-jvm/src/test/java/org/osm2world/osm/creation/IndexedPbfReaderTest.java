@@ -0,0 +1,549 @@
+package org.osm2world.osm.creation;
+
+import static de.topobyte.osm4j.core.model.util.OsmModelUtil.getTagsAsMap;
+import static de.topobyte.osm4j.core.model.util.OsmModelUtil.nodesAsList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+import static org.osm2world.util.test.TestFileUtil.getTestFile;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osm2world.math.geo.LatLonBounds;
+import org.osm2world.math.geo.TileNumber;
+import org.osm2world.osm.data.OSMData;
+
+import com.google.protobuf.CodedOutputStream;
+
+import de.topobyte.osm4j.core.model.iface.*;
+import de.topobyte.osm4j.core.model.impl.*;
+
+public class IndexedPbfReaderTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testGetAllData() throws IOException {
+
+		OSMData expected = new OSMFileReader(getTestFile("simpleTest01.osm")).getAllData();
+		OSMData actual = new IndexedPbfReader(getTestFile("simpleTest01.osm.pbf")).getAllData();
+
+		assertSameData(expected, actual);
+
+	}
+
+	@Test
+	public void testGetDataForAllBounds() throws IOException {
+
+		File pbfFile = tempFolder.newFile("test.osm.pbf");
+		Files.copy(getTestFile("simpleTest01.osm.pbf").toPath(), pbfFile.toPath(), REPLACE_EXISTING);
+
+		var reader = new IndexedPbfReader(pbfFile);
+		OSMData allData = new OSMFileReader(getTestFile("simpleTest01.osm")).getAllData();
+
+		OSMData data = reader.getData(new LatLonBounds(-89, -179, 89, 179));
+
+		assertEquals(ids(allData.getWays()), ids(data.getWays()));
+		assertEquals(ids(allData.getRelations()), ids(data.getRelations()));
+		assertTrue(PbfIndex.indexDirectory(pbfFile).isDirectory());
+
+	}
+
+	@Test
+	public void testGetDataForBounds() throws IOException {
+
+		TestData testData = createTestData(40);
+		File pbfFile = tempFolder.newFile("grid.osm.pbf");
+		writePbf(pbfFile, testData.entities, 25);
+
+		var reader = new IndexedPbfReader(pbfFile);
+		Random random = new Random(1);
+
+		for (int i = 0; i < 30; i++) {
+			double lat = 49.99 + random.nextDouble() * 0.18;
+			double lon = 7.99 + random.nextDouble() * 0.18;
+			var bounds = new LatLonBounds(lat, lon, lat + random.nextDouble() * 0.03, lon + random.nextDouble() * 0.03);
+			checkResult(testData, bounds, reader.getData(bounds));
+		}
+
+		var tile = new TileNumber(15, 17116, 11106);
+		checkResult(testData, tile.latLonBounds(), reader.getData(tile));
+
+		/* the entire area should produce all entities */
+
+		OSMData allData = reader.getData(new LatLonBounds(49, 7, 51, 9));
+		assertEquals(testData.ways.size(), allData.getWays().size());
+		assertEquals(testData.relations.size(), allData.getRelations().size());
+
+	}
+
+	/**
+	 * uses data north of 59°N. Cell keys in this area use the highest bit of the index entries,
+	 * and the boundary to the cell keys which don't is within the data.
+	 */
+	@Test
+	public void testGetDataForBoundsInTheNorth() throws IOException {
+
+		double originLat = 59.12;
+		double originLon = -150.9;
+
+		TestData testData = createTestData(20, originLat, originLon);
+		File pbfFile = tempFolder.newFile("north.osm.pbf");
+		writePbf(pbfFile, testData.entities, 25);
+
+		var reader = new IndexedPbfReader(pbfFile);
+		Random random = new Random(3);
+
+		for (int i = 0; i < 30; i++) {
+			double lat = originLat - 0.01 + random.nextDouble() * 0.1;
+			double lon = originLon - 0.01 + random.nextDouble() * 0.1;
+			var bounds = new LatLonBounds(lat, lon, lat + random.nextDouble() * 0.03, lon + random.nextDouble() * 0.03);
+			checkResult(testData, bounds, reader.getData(bounds));
+		}
+
+		OSMData allData = reader.getData(new LatLonBounds(58, -152, 61, -149));
+		assertEquals(testData.ways.size(), allData.getWays().size());
+
+	}
+
+	@Test
+	public void testMultipolygonMembers() throws IOException {
+
+		TestData testData = createTestData(10);
+		File pbfFile = tempFolder.newFile("mp.osm.pbf");
+		writePbf(pbfFile, testData.entities, 10);
+
+		// only touches the western outer way of the multipolygon, which is near the grid
+		var bounds = new LatLonBounds(50.01, 7.9895, 50.02, 7.9905);
+		OSMData data = new IndexedPbfReader(pbfFile).getData(bounds);
+
+		Set<Long> wayIds = ids(data.getWays());
+		assertTrue(wayIds.contains(MP_WEST_WAY_ID));
+		assertTrue(wayIds.contains(MP_EAST_WAY_ID));
+		assertTrue(ids(data.getRelations()).contains(MP_RELATION_ID));
+
+		// members of other relations are not added
+		assertFalse(wayIds.contains(ROUTE_WAY_ID));
+
+	}
+
+	@Test
+	public void testParallelQueries() throws IOException {
+
+		TestData testData = createTestData(30);
+		File pbfFile = tempFolder.newFile("parallel.osm.pbf");
+		writePbf(pbfFile, testData.entities, 20);
+
+		var reader = new IndexedPbfReader(pbfFile);
+
+		List<LatLonBounds> boundsList = new ArrayList<>();
+		Random random = new Random(2);
+		for (int i = 0; i < 100; i++) {
+			double lat = 50 + random.nextDouble() * 0.12;
+			double lon = 8 + random.nextDouble() * 0.12;
+			boundsList.add(new LatLonBounds(lat, lon, lat + 0.01, lon + 0.01));
+		}
+
+		List<Set<Long>> sequentialResults = new ArrayList<>();
+		for (LatLonBounds bounds : boundsList) {
+			sequentialResults.add(ids(reader.getData(bounds).getWays()));
+		}
+
+		List<Set<Long>> parallelResults = IntStream.range(0, boundsList.size()).parallel().mapToObj(i -> {
+			try {
+				return ids(new IndexedPbfReader(pbfFile).getData(boundsList.get(i)).getWays());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}).toList();
+
+		assertEquals(sequentialResults, parallelResults);
+
+	}
+
+	@Test
+	public void testModifiedFile() throws IOException {
+
+		File pbfFile = tempFolder.newFile("modified.osm.pbf");
+		var bounds = new LatLonBounds(49, 7, 51, 9);
+
+		writePbf(pbfFile, createTestData(10).entities, 10);
+		pbfFile.setLastModified(1_000_000_000_000L);
+		assertEquals(createTestData(10).ways.size(), new IndexedPbfReader(pbfFile).getData(bounds).getWays().size());
+
+		writePbf(pbfFile, createTestData(5).entities, 10);
+		pbfFile.setLastModified(1_100_000_000_000L);
+		assertEquals(createTestData(5).ways.size(), new IndexedPbfReader(pbfFile).getData(bounds).getWays().size());
+
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsortedFile() throws IOException {
+
+		List<OsmEntity> entities = new ArrayList<>(createTestData(3).entities);
+		Collections.reverse(entities);
+
+		File pbfFile = tempFolder.newFile("unsorted.osm.pbf");
+		writePbf(pbfFile, entities, 5);
+
+		new IndexedPbfReader(pbfFile).getData(new LatLonBounds(50, 8, 50.01, 8.01));
+
+	}
+
+	/** compares the result of a query with the expected result calculated from the test data */
+	private static void checkResult(TestData testData, LatLonBounds bounds, OSMData result) {
+
+		Set<Long> wayIds = ids(result.getWays());
+		Set<Long> nodeIds = ids(result.getNodes());
+
+		/* all entities in the bounds are included */
+
+		for (OsmNode node : testData.nodes.values()) {
+			if (node.getNumberOfTags() > 0 && contains(bounds, node)) {
+				assertTrue(nodeIds.contains(node.getId()));
+			}
+		}
+
+		for (OsmWay way : testData.ways) {
+			if (intersects(bounds, way, testData.nodes)) {
+				assertTrue(wayIds.contains(way.getId()));
+			}
+		}
+
+		/* ways are complete, and are only included if they are in the bounds or multipolygon members */
+
+		Set<Long> multipolygonMemberIds = new HashSet<>();
+		for (OsmRelation relation : result.getRelations()) {
+			if ("multipolygon".equals(getTagsAsMap(relation).get("type"))) {
+				for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+					multipolygonMemberIds.add(relation.getMember(i).getId());
+				}
+			}
+		}
+
+		for (OsmWay way : result.getWays()) {
+			assertTrue(multipolygonMemberIds.contains(way.getId()) || intersects(bounds, way, testData.nodes));
+			for (long nodeId : nodesAsList(way).toArray()) {
+				assertTrue(nodeIds.contains(nodeId));
+			}
+		}
+
+		for (OsmNode node : result.getNodes()) {
+			OsmNode expectedNode = testData.nodes.get(node.getId());
+			assertEquals(expectedNode.getLatitude(), node.getLatitude(), 1e-7);
+			assertEquals(expectedNode.getLongitude(), node.getLongitude(), 1e-7);
+			assertEquals(getTagsAsMap(expectedNode), getTagsAsMap(node));
+		}
+
+	}
+
+	private static boolean contains(LatLonBounds bounds, OsmNode node) {
+		return node.getLatitude() >= bounds.minlat && node.getLatitude() <= bounds.maxlat
+				&& node.getLongitude() >= bounds.minlon && node.getLongitude() <= bounds.maxlon;
+	}
+
+	private static boolean intersects(LatLonBounds bounds, OsmWay way, Map<Long, OsmNode> nodes) {
+		List<OsmNode> wayNodes = Arrays.stream(nodesAsList(way).toArray()).mapToObj(nodes::get).toList();
+		return wayNodes.stream().mapToDouble(OsmNode::getLatitude).min().getAsDouble() <= bounds.maxlat
+				&& wayNodes.stream().mapToDouble(OsmNode::getLatitude).max().getAsDouble() >= bounds.minlat
+				&& wayNodes.stream().mapToDouble(OsmNode::getLongitude).min().getAsDouble() <= bounds.maxlon
+				&& wayNodes.stream().mapToDouble(OsmNode::getLongitude).max().getAsDouble() >= bounds.minlon;
+	}
+
+	private static void assertSameData(OSMData expected, OSMData actual) {
+
+		assertEquals(ids(expected.getNodes()), ids(actual.getNodes()));
+		assertEquals(ids(expected.getWays()), ids(actual.getWays()));
+		assertEquals(ids(expected.getRelations()), ids(actual.getRelations()));
+
+		try {
+
+			for (OsmNode node : expected.getNodes()) {
+				OsmNode actualNode = actual.getNode(node.getId());
+				assertEquals(node.getLatitude(), actualNode.getLatitude(), 1e-7);
+				assertEquals(node.getLongitude(), actualNode.getLongitude(), 1e-7);
+				assertEquals(getTagsAsMap(node), getTagsAsMap(actualNode));
+			}
+
+			for (OsmWay way : expected.getWays()) {
+				OsmWay actualWay = actual.getWay(way.getId());
+				assertArrayEquals(nodesAsList(way).toArray(), nodesAsList(actualWay).toArray());
+				assertEquals(getTagsAsMap(way), getTagsAsMap(actualWay));
+			}
+
+			for (OsmRelation relation : expected.getRelations()) {
+				OsmRelation actualRelation = actual.getRelation(relation.getId());
+				assertEquals(relation.getNumberOfMembers(), actualRelation.getNumberOfMembers());
+				for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+					assertEquals(relation.getMember(i).getId(), actualRelation.getMember(i).getId());
+					assertEquals(relation.getMember(i).getType(), actualRelation.getMember(i).getType());
+					assertEquals(relation.getMember(i).getRole(), actualRelation.getMember(i).getRole());
+				}
+				assertEquals(getTagsAsMap(relation), getTagsAsMap(actualRelation));
+			}
+
+		} catch (de.topobyte.osm4j.core.resolve.EntityNotFoundException e) {
+			throw new AssertionError(e);
+		}
+
+	}
+
+	private static Set<Long> ids(Collection<? extends OsmEntity> entities) {
+		return entities.stream().map(OsmEntity::getId).collect(toSet());
+	}
+
+	/* creating test data */
+
+	private static final long MP_WEST_WAY_ID = 1_000_000;
+	private static final long MP_EAST_WAY_ID = 1_000_001;
+	private static final long ROUTE_WAY_ID = 1_000_002;
+	private static final long MP_RELATION_ID = 1;
+
+	private record TestData(List<OsmEntity> entities, Map<Long, OsmNode> nodes,
+			List<OsmWay> ways, List<OsmRelation> relations) {}
+
+	private static TestData createTestData(int gridSize) {
+		return createTestData(gridSize, 50, 8);
+	}
+
+	/**
+	 * creates a grid of square buildings starting at a location (such as 50°N 8°E), with some tagged nodes,
+	 * a long road, and a multipolygon whose outer ring consists of two ways far apart
+	 */
+	private static TestData createTestData(int gridSize, double originLat, double originLon) {
+
+		Map<Long, OsmNode> nodes = new LinkedHashMap<>();
+		List<OsmWay> ways = new ArrayList<>();
+		List<OsmRelation> relations = new ArrayList<>();
+
+		for (int y = 0; y < gridSize; y++) {
+			for (int x = 0; x < gridSize; x++) {
+
+				double lat = originLat + y * 0.004;
+				double lon = originLon + x * 0.004;
+
+				long[] wayNodeIds = new long[5];
+				for (int i = 0; i < 4; i++) {
+					wayNodeIds[i] = addNode(nodes, lat + (i / 2) * 0.001, lon + ((i + 1) / 2 % 2) * 0.001);
+				}
+				wayNodeIds[4] = wayNodeIds[0];
+				ways.add(way(ways.size() + 1, wayNodeIds, "building", "yes"));
+
+				if ((x + y) % 3 == 0) {
+					long id = addNode(nodes, lat + 0.002, lon + 0.002);
+					((Node) nodes.get(id)).setTags(List.of(new Tag("amenity", "bench")));
+				}
+
+			}
+		}
+
+		long[] roadNodeIds = new long[10];
+		for (int i = 0; i < roadNodeIds.length; i++) {
+			roadNodeIds[i] = addNode(nodes, originLat + 0.0005 + i * 0.017, originLon + 0.0025 + i * 0.017);
+		}
+		ways.add(way(ways.size() + 1, roadNodeIds, "highway", "residential"));
+
+		double maxLat = originLat + gridSize * 0.004;
+		long nw = addNode(nodes, maxLat, originLon - 0.01);
+		long sw = addNode(nodes, originLat - 0.01, originLon - 0.01);
+		long se = addNode(nodes, originLat - 0.01, originLon + 0.2);
+		long ne = addNode(nodes, maxLat, originLon + 0.2);
+		ways.add(way(MP_WEST_WAY_ID, new long[] {ne, nw, sw}));
+		ways.add(way(MP_EAST_WAY_ID, new long[] {sw, se, ne}));
+
+		long routeNode = addNode(nodes, originLat + 1, originLon + 1);
+		ways.add(way(ROUTE_WAY_ID, new long[] {routeNode, addNode(nodes, originLat + 1, originLon + 1.001)}));
+
+		var multipolygon = new Relation(MP_RELATION_ID, List.of(
+				new RelationMember(MP_WEST_WAY_ID, EntityType.Way, "outer"),
+				new RelationMember(MP_EAST_WAY_ID, EntityType.Way, "outer")));
+		multipolygon.setTags(List.of(new Tag("type", "multipolygon"), new Tag("landuse", "forest")));
+		relations.add(multipolygon);
+
+		var route = new Relation(2, List.of(
+				new RelationMember(ways.get(0).getId(), EntityType.Way, ""),
+				new RelationMember(ROUTE_WAY_ID, EntityType.Way, ""),
+				new RelationMember(MP_RELATION_ID, EntityType.Relation, "")));
+		route.setTags(List.of(new Tag("type", "route")));
+		relations.add(route);
+
+		List<OsmEntity> entities = new ArrayList<>();
+		entities.addAll(nodes.values());
+		entities.addAll(ways);
+		entities.addAll(relations);
+
+		return new TestData(entities, nodes, ways, relations);
+
+	}
+
+	private static long addNode(Map<Long, OsmNode> nodes, double lat, double lon) {
+		long id = nodes.size() + 1;
+		nodes.put(id, new Node(id, lon, lat));
+		return id;
+	}
+
+	private static OsmWay way(long id, long[] nodeIds, String... tags) {
+		var way = new Way(id, new com.slimjars.dist.gnu.trove.list.array.TLongArrayList(nodeIds));
+		List<OsmTag> tagList = new ArrayList<>();
+		for (int i = 0; i < tags.length; i += 2) {
+			tagList.add(new Tag(tags[i], tags[i + 1]));
+		}
+		way.setTags(tagList);
+		return way;
+	}
+
+	/* writing .osm.pbf files */
+
+	/**
+	 * writes entities to an uncompressed .osm.pbf file
+	 *
+	 * @param blockSize  maximum number of entities in each block
+	 */
+	private static void writePbf(File file, List<OsmEntity> entities, int blockSize) throws IOException {
+
+		try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+
+			writeBlob(out, "OSMHeader", message(header -> {
+				header.writeString(4, "OsmSchema-V0.6");
+			}));
+
+			for (int start = 0; start < entities.size(); start += blockSize) {
+				writeBlob(out, "OSMData", primitiveBlock(
+						entities.subList(start, Math.min(start + blockSize, entities.size()))));
+			}
+
+		}
+
+	}
+
+	private static void writeBlob(DataOutputStream out, String type, byte[] content) throws IOException {
+
+		byte[] blob = message(b -> {
+			b.writeByteArray(1, content);
+			b.writeInt32(2, content.length);
+		});
+
+		byte[] blobHeader = message(h -> {
+			h.writeString(1, type);
+			h.writeInt32(3, blob.length);
+		});
+
+		out.writeInt(blobHeader.length);
+		out.write(blobHeader);
+		out.write(blob);
+
+	}
+
+	private static byte[] primitiveBlock(List<OsmEntity> entities) throws IOException {
+
+		List<String> strings = new ArrayList<>(List.of(""));
+		Map<String, Integer> stringIndices = new HashMap<>();
+
+		var indexOf = new Object() {
+			long of(String s) {
+				return stringIndices.computeIfAbsent(s, it -> {
+					strings.add(it);
+					return strings.size() - 1;
+				});
+			}
+		};
+
+		byte[] group = message(g -> {
+			for (OsmEntity entity : entities) {
+
+				long[] keys = new long[entity.getNumberOfTags()];
+				long[] values = new long[entity.getNumberOfTags()];
+				for (int i = 0; i < entity.getNumberOfTags(); i++) {
+					keys[i] = indexOf.of(entity.getTag(i).getKey());
+					values[i] = indexOf.of(entity.getTag(i).getValue());
+				}
+
+				if (entity instanceof OsmNode node) {
+					g.writeByteArray(1, message(n -> {
+						n.writeSInt64(1, node.getId());
+						n.writeByteArray(2, packed(keys, false));
+						n.writeByteArray(3, packed(values, false));
+						n.writeSInt64(8, Math.round(node.getLatitude() * 1e7));
+						n.writeSInt64(9, Math.round(node.getLongitude() * 1e7));
+					}));
+				} else if (entity instanceof OsmWay way) {
+					g.writeByteArray(3, message(w -> {
+						w.writeInt64(1, way.getId());
+						w.writeByteArray(2, packed(keys, false));
+						w.writeByteArray(3, packed(values, false));
+						w.writeByteArray(8, packed(deltas(nodesAsList(way).toArray()), true));
+					}));
+				} else if (entity instanceof OsmRelation relation) {
+					long[] roles = new long[relation.getNumberOfMembers()];
+					long[] memberIds = new long[relation.getNumberOfMembers()];
+					long[] types = new long[relation.getNumberOfMembers()];
+					for (int i = 0; i < relation.getNumberOfMembers(); i++) {
+						roles[i] = indexOf.of(relation.getMember(i).getRole());
+						memberIds[i] = relation.getMember(i).getId();
+						types[i] = relation.getMember(i).getType().ordinal();
+					}
+					g.writeByteArray(4, message(r -> {
+						r.writeInt64(1, relation.getId());
+						r.writeByteArray(2, packed(keys, false));
+						r.writeByteArray(3, packed(values, false));
+						r.writeByteArray(8, packed(roles, false));
+						r.writeByteArray(9, packed(deltas(memberIds), true));
+						r.writeByteArray(10, packed(types, false));
+					}));
+				}
+
+			}
+		});
+
+		return message(b -> {
+			b.writeByteArray(1, message(stringTable -> {
+				for (String s : strings) {
+					stringTable.writeByteArray(1, s.getBytes(UTF_8));
+				}
+			}));
+			b.writeByteArray(2, group);
+		});
+
+	}
+
+	private static long[] deltas(long[] values) {
+		long[] result = values.clone();
+		for (int i = result.length - 1; i > 0; i--) {
+			result[i] -= result[i - 1];
+		}
+		return result;
+	}
+
+	private static byte[] packed(long[] values, boolean signed) throws IOException {
+		return message(out -> {
+			for (long value : values) {
+				if (signed) {
+					out.writeSInt64NoTag(value);
+				} else {
+					out.writeUInt64NoTag(value);
+				}
+			}
+		});
+	}
+
+	private interface MessageWriter {
+		void write(CodedOutputStream out) throws IOException;
+	}
+
+	private static byte[] message(MessageWriter writer) throws IOException {
+		var bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		writer.write(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.osm2world.osm.data;
+
+import static de.topobyte.osm4j.core.model.util.OsmModelUtil.getTagsAsMap;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+import static org.osm2world.util.test.TestFileUtil.getTestFile;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import org.junit.Test;
+import org.osm2world.map_data.creation.OSMToMapDataConverter;
+import org.osm2world.map_data.data.MapData;
+import org.osm2world.math.geo.LatLonBounds;
+import org.osm2world.math.geo.MetricMapProjection;
+
+import de.topobyte.osm4j.core.dataset.MapDataSetLoader;
+import de.topobyte.osm4j.core.model.iface.EntityType;
+import de.topobyte.osm4j.core.model.iface.OsmEntity;
+import de.topobyte.osm4j.core.model.iface.OsmWay;
+import de.topobyte.osm4j.core.resolve.EntityNotFoundException;
+import de.topobyte.osm4j.xml.dynsax.OsmXmlIterator;
+
+public class CompactOSMDataBuilderTest {
+
+	private static final String[] NO_TAGS = {};
+
+	@Test
+	public void testFiltering() throws EntityNotFoundException {
+
+		var builder = new CompactOSMDataBuilder(true);
+
+		builder.addNode(1, 50.0, 8.0, NO_TAGS);
+		builder.addNode(2, 50.1, 8.0, NO_TAGS);
+		builder.addNode(3, 50.1, 8.1, NO_TAGS);
+		builder.addNode(4, 49.9, 7.9, NO_TAGS);
+		builder.addNode(5, 50.0, 8.1, new String[] {"natural", "tree"});
+		builder.addNode(6, 50.2, 8.2, NO_TAGS);
+
+		builder.addWay(10, new long[] {1, 2, 3, 1}, NO_TAGS);
+		builder.addWay(11, new long[] {4, 1}, new String[] {"highway", "path"});
+		builder.addWay(12, new long[] {4, 6}, NO_TAGS);
+
+		builder.addRelation(20, new long[] {10}, new EntityType[] {EntityType.Way}, new String[] {"outer"},
+				new String[] {"type", "multipolygon", "landuse", "meadow"});
+		builder.addRelation(21, new long[] {11, 12}, new EntityType[] {EntityType.Way, EntityType.Way},
+				new String[] {"", ""}, new String[] {"type", "route", "route", "hiking"});
+
+		CompactOSMData data = builder.build();
+
+		assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), ids(data.getNodes()));
+		assertEquals(Set.of(10L, 11L), ids(data.getWays()));
+		assertEquals(Set.of(20L), ids(data.getRelations()));
+
+		assertEquals(4, data.getWay(10).getNumberOfNodes());
+		assertEquals(50.1, data.getNode(3).getLatitude(), 0);
+		assertEquals("tree", getTagsAsMap(data.getNode(5)).get("natural"));
+		assertEquals("outer", data.getRelation(20).getMember(0).getRole());
+
+		assertThrows(EntityNotFoundException.class, () -> data.getNode(6));
+		assertThrows(EntityNotFoundException.class, () -> data.getRelation(21));
+
+		// the bounds still include the nodes which have been dropped
+		assertEquals(new LatLonBounds(49.9, 7.9, 50.2, 8.2), data.getLatLonBounds());
+
+	}
+
+	@Test
+	public void testNoFiltering() {
+
+		var builder = new CompactOSMDataBuilder();
+
+		builder.addNode(1, 50.0, 8.0, NO_TAGS);
+		builder.addNode(2, 50.1, 8.0, NO_TAGS);
+		builder.addNode(3, 50.1, 8.1, NO_TAGS);
+
+		builder.addWay(10, new long[] {1, 2}, NO_TAGS);
+
+		builder.addRelation(20, new long[] {10}, new EntityType[] {EntityType.Way}, new String[] {""},
+				new String[] {"type", "route", "route", "hiking"});
+
+		CompactOSMData data = builder.build();
+
+		assertEquals(Set.of(1L, 2L, 3L), ids(data.getNodes()));
+		assertEquals(Set.of(10L), ids(data.getWays()));
+		assertEquals(Set.of(20L), ids(data.getRelations()));
+
+	}
+
+	/** checks that untagged member ways of relevant relations other than multipolygons are kept */
+	@Test
+	public void testBuildingRelationMembers() throws EntityNotFoundException {
+
+		var builder = new CompactOSMDataBuilder(true);
+
+		builder.addNode(1, 50.0, 8.0, NO_TAGS);
+		builder.addNode(2, 50.1, 8.0, NO_TAGS);
+		builder.addNode(3, 50.1, 8.1, NO_TAGS);
+		builder.addNode(4, 50.0, 8.1, NO_TAGS);
+		builder.addNode(5, 50.2, 8.2, NO_TAGS);
+
+		builder.addWay(10, new long[] {1, 2, 3, 4, 1}, NO_TAGS);
+		builder.addWay(11, new long[] {1, 2, 3, 1}, NO_TAGS);
+		builder.addWay(12, new long[] {3, 5}, NO_TAGS);
+
+		builder.addRelation(20, new long[] {10, 11}, new EntityType[] {EntityType.Way, EntityType.Way},
+				new String[] {"outline", "part"}, new String[] {"type", "building"});
+
+		CompactOSMData data = builder.build();
+
+		assertEquals(Set.of(20L), ids(data.getRelations()));
+		assertEquals(Set.of(10L, 11L), ids(data.getWays()));
+		assertEquals(Set.of(1L, 2L, 3L, 4L), ids(data.getNodes()));
+
+		// all members of the relation can be resolved
+		for (int m = 0; m < data.getRelation(20).getNumberOfMembers(); m++) {
+			OsmWay way = data.getWay(data.getRelation(20).getMember(m).getId());
+			for (int n = 0; n < way.getNumberOfNodes(); n++) {
+				assertNotNull(data.getNode(way.getNodeId(n)));
+			}
+		}
+
+	}
+
+	@Test
+	public void testDuplicateIds() throws EntityNotFoundException {
+
+		var builder = new CompactOSMDataBuilder();
+		builder.addNode(1, 50.0, 8.0, new String[] {"natural", "tree"});
+		builder.addNode(1, 51.0, 9.0, new String[] {"natural", "peak"});
+
+		CompactOSMData data = builder.build();
+
+		assertEquals(1, data.getNodes().size());
+		assertEquals(51.0, data.getNode(1).getLatitude(), 0);
+		assertEquals("peak", getTagsAsMap(data.getNode(1)).get("natural"));
+
+	}
+
+	/** checks that the same map data is created from compact data as from osm4j's data set */
+	@Test
+	public void testSameMapData() throws IOException {
+
+		for (String fileName : List.of("simpleTest01.osm", "mp_two_holes_advanced.osm", "mp_two_outer_roof.osm",
+				"coastline_islands.osm", "issue-203.osm")) {
+
+			OSMData fullData;
+			try (InputStream is = new FileInputStream(getTestFile(fileName))) {
+				fullData = new OSMData(MapDataSetLoader.read(new OsmXmlIterator(is, true), true, true, true));
+			}
+
+			CompactOSMData compactData;
+			try (InputStream is = new FileInputStream(getTestFile(fileName))) {
+				var builder = new CompactOSMDataBuilder(true);
+				builder.addAll(new OsmXmlIterator(is, true));
+				compactData = builder.build();
+			}
+
+			assertEquals(fullData.getLatLonBounds(), compactData.getLatLonBounds());
+
+			MapData expected = createMapData(fullData);
+			MapData actual = createMapData(compactData);
+
+			assertEquals(fileName, describe(expected), describe(actual));
+
+		}
+
+	}
+
+	private static MapData createMapData(OSMData osmData) {
+		var converter = new OSMToMapDataConverter(new MetricMapProjection(osmData.getCenter()));
+		try {
+			return converter.createMapData(osmData, null);
+		} catch (EntityNotFoundException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/** returns a description of the tagged elements in map data */
+	private static List<String> describe(MapData mapData) {
+		List<String> result = new ArrayList<>();
+		mapData.getMapNodes().stream()
+				.filter(n -> !n.getTags().isEmpty())
+				.forEach(n -> result.add("n" + n.getId() + " " + n.getTags() + " " + n.getPos()));
+		mapData.getMapWays().forEach(w -> result.add("w" + w.getId() + " " + w.getTags() + " " + w.getNodes()));
+		mapData.getMapAreas().forEach(a -> result.add("a " + a.getTags() + " " + a.getPolygon().getArea()));
+		mapData.getMapRelations().forEach(r -> result.add("r" + r.getId() + " " + r.getTags()));
+		Collections.sort(result);
+		return result;
+	}
+
+	private static Set<Long> ids(Collection<? extends OsmEntity> entities) {
+		return entities.stream().map(OsmEntity::getId).collect(toSet());
+	}
+
+}
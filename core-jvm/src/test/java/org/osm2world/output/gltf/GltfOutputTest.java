@@ -1,20 +1,44 @@
 package org.osm2world.output.gltf;
 
+import static java.lang.Math.PI;
+import static java.util.Comparator.comparingDouble;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.osm2world.math.VectorXYZ.NULL_VECTOR;
+import static org.osm2world.scene.material.DefaultMaterials.PLASTIC;
 import static org.osm2world.scene.material.DefaultMaterials.STEEL;
 import static org.osm2world.util.test.TestFileUtil.createTempFile;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
 
 import org.junit.Test;
+import org.osm2world.conversion.O2WConfig;
+import org.osm2world.conversion.O2WConfig.GltfInstancing;
 import org.osm2world.map_data.creation.MapDataBuilder;
 import org.osm2world.map_data.data.MapNode;
+import org.osm2world.output.gltf.data.Gltf;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.shapes.TriangleXYZ;
 import org.osm2world.scene.Scene;
 import org.osm2world.scene.material.Material;
+import org.osm2world.scene.material.Material.Interpolation;
 import org.osm2world.scene.mesh.ExtrusionGeometry;
 import org.osm2world.scene.mesh.Mesh;
+import org.osm2world.scene.mesh.TriangleGeometry;
+import org.osm2world.scene.model.InstanceParameters;
+import org.osm2world.scene.model.Model;
+import org.osm2world.scene.model.ModelInstance;
 import org.osm2world.util.platform.json.JsonImplementationJvm;
+import org.osm2world.util.platform.json.JsonUtil;
 import org.osm2world.util.test.TestWorldModule;
 
 public class GltfOutputTest {
@@ -53,7 +77,256 @@ public class GltfOutputTest {
 		createTemporaryTestGltf(".glb.zip");
 	}
 
+	@Test
+	public void testGlbTempFile() throws IOException {
+
+		for (String fileExtension : List.of(".glb", ".glb.gz")) {
+
+			File inMemoryFile = createTemporaryTestGltf(fileExtension, new O2WConfig(Map.of("glbTempFile", false)));
+			File tempFileFile = createTemporaryTestGltf(fileExtension, new O2WConfig(Map.of("glbTempFile", true)));
+
+			assertArrayEquals(readUncompressed(inMemoryFile), readUncompressed(tempFileFile));
+
+		}
+
+	}
+
+	@Test
+	public void testIndexedGeometry() throws IOException {
+
+		for (String fileExtension : List.of(".gltf", ".glb")) {
+
+			List<List<List<VectorXYZ>>> results = new ArrayList<>();
+
+			for (O2WConfig config : List.of(
+					new O2WConfig(Map.of("gltfIndexedGeometry", false)),
+					new O2WConfig(Map.of("gltfIndexedGeometry", true)),
+					new O2WConfig(Map.of("gltfIndexedGeometry", true, "gltfOptimizeVertexCache", true)))) {
+
+				File file = createTemporaryTestGltf(fileExtension, config);
+				List<Mesh> meshes = GltfModel.loadFromFile(file).getMeshes();
+				assertEquals(1, meshes.size());
+				results.add(meshes.get(0).geometry.asTriangles().triangles.stream().map(TriangleXYZ::verticesNoDup).toList());
+
+			}
+
+			for (List<List<VectorXYZ>> result : results) {
+				assertEquals(results.get(0).size(), result.size());
+				assertTrue(result.containsAll(results.get(0)));
+			}
+
+		}
+
+	}
+
+	@Test
+	public void testQuantization() throws IOException {
+
+		for (String fileExtension : List.of(".gltf", ".glb")) {
+			for (boolean indexed : List.of(false, true)) {
+
+				List<List<TriangleXYZ>> results = new ArrayList<>();
+
+				for (boolean quantization : List.of(false, true)) {
+					File file = createTemporaryTestGltf(fileExtension, new O2WConfig(Map.of(
+							"gltfIndexedGeometry", indexed, "gltfQuantization", quantization)));
+					List<Mesh> meshes = GltfModel.loadFromFile(file).getMeshes();
+					assertEquals(1, meshes.size());
+					results.add(meshes.get(0).geometry.asTriangles().triangles);
+				}
+
+				assertEquals(results.get(0).size(), results.get(1).size());
+
+				for (int i = 0; i < results.get(0).size(); i++) {
+					List<VectorXYZ> expected = results.get(0).get(i).verticesNoDup();
+					List<VectorXYZ> actual = results.get(1).get(i).verticesNoDup();
+					for (int v = 0; v < 3; v++) {
+						assertEquals(0, expected.get(v).distanceTo(actual.get(v)), 0.001);
+					}
+				}
+
+			}
+		}
+
+	}
+
+	@Test
+	public void testInstancing() throws IOException {
+
+		for (String fileExtension : List.of(".gltf", ".glb")) {
+
+			List<List<VectorXYZ>> results = new ArrayList<>();
+
+			for (GltfInstancing instancing : GltfInstancing.values()) {
+
+				File file = createTempFile(fileExtension);
+
+				var target = new GltfOutput(file);
+				target.setConfiguration(new O2WConfig(Map.of(
+						"gltfInstancing", instancing.name(),
+						"keepOsmElements", false)));
+				target.outputScene(createInstancingTestScene());
+
+				if (fileExtension.equals(".gltf")) {
+					String json = new String(readUncompressed(file));
+					assertEquals(instancing == GltfInstancing.EXT_MESH_GPU_INSTANCING,
+							json.contains("EXT_mesh_gpu_instancing"));
+					assertEquals(instancing == GltfInstancing.EXT_MESH_GPU_INSTANCING,
+							json.contains("SCALE"));
+				}
+
+				results.add(GltfModel.loadFromFile(file).getMeshes().stream()
+						.flatMap(m -> m.geometry.asTriangles().vertices().stream())
+						.sorted(comparingDouble((VectorXYZ v) -> v.x).thenComparingDouble(v -> v.y))
+						.toList());
+
+			}
+
+			for (List<VectorXYZ> result : results) {
+				assertEquals(5 * 3, result.size());
+				for (int i = 0; i < result.size(); i++) {
+					assertEquals(0, results.get(0).get(i).distanceTo(result.get(i)), 0.001);
+				}
+			}
+
+		}
+
+	}
+
+	@Test
+	public void testInstancingWithOsmElements() throws IOException {
+
+		File file = createTempFile(".gltf");
+
+		var target = new GltfOutput(file);
+		target.setConfiguration(new O2WConfig(Map.of(
+				"gltfInstancing", GltfInstancing.EXT_MESH_GPU_INSTANCING.name(),
+				"keepOsmElements", true)));
+		target.outputScene(createInstancingTestScene());
+
+		// the extension cannot store metadata for each instance, so separate nodes are used instead
+		String json = new String(readUncompressed(file));
+		assertFalse(json.contains("EXT_mesh_gpu_instancing"));
+		assertEquals(5 * 3, GltfModel.loadFromFile(file).getMeshes().stream()
+				.mapToInt(m -> m.geometry.asTriangles().vertices().size()).sum());
+
+	}
+
+	@Test
+	public void testQuantizationWithInstancing() throws IOException {
+
+		var mesh = new Mesh(ExtrusionGeometry.createColumn(null, new VectorXYZ(100, 0, 100), 10, 2, 0, true, false,
+				null, PLASTIC.defaultAppearance().textureDimensions()), PLASTIC.defaultAppearance());
+
+		for (GltfInstancing instancing : GltfInstancing.values()) {
+
+			List<List<VectorXYZ>> results = new ArrayList<>();
+
+			for (boolean quantization : List.of(false, true)) {
+
+				File file = createTempFile(".gltf");
+
+				var target = new GltfOutput(file);
+				target.setConfiguration(new O2WConfig(Map.of(
+						"gltfInstancing", instancing.name(),
+						"gltfQuantization", quantization)));
+				target.outputScene(createInstancingTestScene(mesh));
+
+				// everything is below the root node, which is the only node of the scene
+				Gltf gltf = JsonUtil.fromJson(new String(readUncompressed(file)), Gltf.class);
+				assertEquals(List.of(0), gltf.scenes.get(0).nodes);
+				assertEquals("OSM2World scene", gltf.nodes.get(0).name);
+
+				results.add(GltfModel.loadFromFile(file).getMeshes().stream()
+						.flatMap(m -> m.geometry.asTriangles().vertices().stream())
+						.sorted(comparingDouble((VectorXYZ v) -> v.x).thenComparingDouble(v -> v.y)
+								.thenComparingDouble(v -> v.z))
+						.toList());
+
+			}
+
+			assertEquals(results.get(0).size(), results.get(1).size());
+			for (int i = 0; i < results.get(0).size(); i++) {
+				assertEquals(0, results.get(0).get(i).distanceTo(results.get(1).get(i)), 0.01);
+			}
+
+		}
+
+	}
+
+	/**
+	 * a model consisting of a single triangle which can be placed using translation and rotation,
+	 * and is scaled by its height
+	 */
+	private static class InstanceableTestModel implements Model {
+
+		@Override
+		public List<Mesh> buildMeshes(InstanceParameters params) {
+			double scale = params.height() != null ? params.height() : 1.0;
+			List<VectorXYZ> vertices = Stream.of(new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0), new VectorXYZ(0, 2, 1))
+					.map(v -> v.mult(scale).rotateY(params.direction()).add(params.position()))
+					.toList();
+			var geometryBuilder = new TriangleGeometry.Builder(0, null, Interpolation.FLAT);
+			geometryBuilder.addTriangles(new TriangleXYZ(vertices.get(0), vertices.get(1), vertices.get(2)));
+			return List.of(new Mesh(geometryBuilder.build(), PLASTIC.defaultAppearance()));
+		}
+
+		@Override
+		public boolean isInstanceable() {
+			return true;
+		}
+
+		@Override
+		public boolean isScalableByHeight() {
+			return true;
+		}
+
+	}
+
+	private static Scene createInstancingTestScene() {
+		return createInstancingTestScene(null);
+	}
+
+	/** @param mesh  an additional mesh which is not part of a model instance, can be null */
+	private static Scene createInstancingTestScene(@Nullable Mesh mesh) {
+
+		var model = new InstanceableTestModel();
+
+		MapDataBuilder dataBuilder = new MapDataBuilder();
+		MapNode node = dataBuilder.createNode(0, 0);
+		node.addRepresentation(new TestWorldModule.TestNodeWorldObject(node, null) {
+			@Override
+			public List<Mesh> buildMeshes() {
+				return mesh == null ? List.of() : List.of(mesh);
+			}
+			@Override
+			public List<ModelInstance> getSubModels() {
+				return List.of(
+						new ModelInstance(model, new InstanceParameters(new VectorXYZ(10, 0, 0), 0)),
+						new ModelInstance(model, new InstanceParameters(new VectorXYZ(-20, 3, 5), PI / 2)),
+						new ModelInstance(model, new InstanceParameters(new VectorXYZ(30, 1, -40), 2.5)),
+						new ModelInstance(model, new InstanceParameters(new VectorXYZ(0, 2, 20), 1.0, 3.5)),
+						new ModelInstance(model, new InstanceParameters(new VectorXYZ(-5, 0, 60), 4.0, 0.5)));
+			}
+		});
+
+		return new Scene(null, dataBuilder.build());
+
+	}
+
+	private static byte[] readUncompressed(File file) throws IOException {
+		try (InputStream stream = new FileInputStream(file)) {
+			return file.getName().endsWith(".gz")
+					? new GZIPInputStream(stream).readAllBytes()
+					: stream.readAllBytes();
+		}
+	}
+
 	private static void createTemporaryTestGltf(String fileExtension) throws IOException {
+		createTemporaryTestGltf(fileExtension, new O2WConfig());
+	}
+
+	private static File createTemporaryTestGltf(String fileExtension, O2WConfig config) throws IOException {
 
 		File tempFile = createTempFile(fileExtension);
 
@@ -69,8 +342,11 @@ public class GltfOutputTest {
 		Scene scene = new Scene(null, dataBuilder.build());
 
 		var target = new GltfOutput(tempFile);
+		target.setConfiguration(config);
 		target.outputScene(scene);
 
+		return tempFile;
+
 	}
 
 }
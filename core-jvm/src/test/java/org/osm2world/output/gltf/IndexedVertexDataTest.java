@@ -0,0 +1,95 @@
+package org.osm2world.output.gltf;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IndexedVertexDataTest {
+
+	@Test
+	public void testWeldQuad() {
+
+		float[] vertexData = {
+				0, 0, 0,  1, 0, 0,  1, 1, 0,
+				0, 0, 0,  1, 1, 0,  0, 1, 0
+		};
+
+		IndexedVertexData result = IndexedVertexData.weld(vertexData, 3);
+
+		assertEquals(4, result.vertexCount);
+		assertEquals(12, result.vertices.length);
+		assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3}, result.indices);
+
+	}
+
+	@Test
+	public void testWeldDistinguishesAttributes() {
+
+		// same position, but different second attribute
+		float[] vertexData = {
+				0, 0,  0, 1,  0, 0,  -0f, 0
+		};
+
+		IndexedVertexData result = IndexedVertexData.weld(vertexData, 2);
+
+		assertEquals(2, result.vertexCount);
+		assertArrayEquals(new int[] {0, 1, 0, 0}, result.indices);
+		assertArrayEquals(new float[] {0, 1}, result.attribute(1, 1), 0);
+
+	}
+
+	@Test
+	public void testOptimizeVertexCache() {
+
+		/* create a grid of triangles */
+
+		int size = 20;
+		float[] vertexData = new float[(size - 1) * (size - 1) * 6 * 2];
+		int i = 0;
+		for (int x = 0; x < size - 1; x++) {
+			for (int y = 0; y < size - 1; y++) {
+				float[] quad = {x, y, x + 1, y, x + 1, y + 1, x, y, x + 1, y + 1, x, y + 1};
+				System.arraycopy(quad, 0, vertexData, i, quad.length);
+				i += quad.length;
+			}
+		}
+
+		IndexedVertexData data = IndexedVertexData.weld(vertexData, 2);
+		IndexedVertexData optimizedData = data.withOptimizedVertexCache();
+
+		assertEquals(size * size, data.vertexCount);
+		assertEquals(data.vertexCount, optimizedData.vertexCount);
+		assertEquals(triangleSet(data), triangleSet(optimizedData));
+
+		/* vertices are ordered by first use */
+
+		int maxIndex = -1;
+		for (int index : optimizedData.indices) {
+			assertTrue(index <= maxIndex + 1);
+			maxIndex = Math.max(maxIndex, index);
+		}
+
+	}
+
+	/** returns the triangles as strings of vertex data, so they can be compared regardless of order */
+	private static Set<String> triangleSet(IndexedVertexData data) {
+		Set<String> result = new HashSet<>();
+		for (int t = 0; t < data.indices.length; t += 3) {
+			StringBuilder sb = new StringBuilder();
+			for (int c = 0; c < 3; c++) {
+				int index = data.indices[t + c];
+				for (int j = 0; j < data.stride; j++) {
+					sb.append(data.vertices[index * data.stride + j]).append(",");
+				}
+				sb.append(";");
+			}
+			result.add(sb.toString());
+		}
+		assertEquals(data.indices.length / 3, result.size());
+		return result;
+	}
+
+}
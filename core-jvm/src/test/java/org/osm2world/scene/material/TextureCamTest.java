@@ -85,4 +85,23 @@ public class TextureCamTest {
 
 	}
 
+	@Test
+	public void testFlatSurfaceFromTop() {
+
+		TriangleXYZ t = new TriangleXYZ(new VectorXYZ(0, 5, 0), new VectorXYZ(1, 5, 0), new VectorXYZ(0, 5, 1));
+
+		TriangleGeometry.Builder geometryBuilder = new TriangleGeometry.Builder(0, GRAY, Interpolation.FLAT);
+		geometryBuilder.addTriangles(t);
+
+		List<Mesh> meshes = List.of(new Mesh(geometryBuilder.build(), new Material(Interpolation.FLAT, WHITE)));
+
+		TextureLayer result = TextureCam.renderTextures(meshes, ViewDirection.FROM_TOP, "test",
+				new TextureDataDimensions(1.0, 1.0),
+				Wrap.CLAMP, new VectorXYZ(0.5, 5, 0.5), 0.0);
+
+		assertAlmostEquals(new LColor(0f, 0f, 0f),
+				result.displacementTexture.getColorAt(new VectorXZ(0.25, 0.75), Wrap.CLAMP));
+
+	}
+
 }
@@ -2,6 +2,7 @@ package org.osm2world.scene.mesh;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.osm2world.scene.color.Color.*;
 import static org.osm2world.scene.material.Material.Interpolation.FLAT;
 import static org.osm2world.scene.mesh.MeshStore.ClipToBounds.clipToBounds;
 import static org.osm2world.scene.mesh.MeshStore.ClipToBounds.getSegmentsCCW;
@@ -62,4 +63,57 @@ public class MeshStoreTest {
 
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testClipToBoundsKeepsVertexAttributes() {
+
+		var tInside1 = new TriangleXYZ(new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0), new VectorXYZ(0, 0, 1));
+		var tOutside = new TriangleXYZ(new VectorXYZ(20, 0, 0), new VectorXYZ(21, 0, 0), new VectorXYZ(20, 0, 1));
+		var tSplit = new TriangleXYZ(new VectorXYZ(0, 1, 0), new VectorXYZ(20, 1, 0), new VectorXYZ(0, 1, 5));
+		var tInside2 = new TriangleXYZ(new VectorXYZ(2, 0, 2), new VectorXYZ(3, 0, 2), new VectorXYZ(2, 0, 3));
+
+		var geometryBuilder = new TriangleGeometry.Builder(0, null, FLAT);
+		geometryBuilder.addTriangles(List.of(tInside1, tOutside, tSplit, tInside2), List.of(),
+				List.of(RED, RED, RED, GREEN, GREEN, GREEN, BLUE, BLUE, BLUE, WHITE, WHITE, WHITE));
+
+		var mesh = new Mesh(geometryBuilder.build(), new Material(FLAT, WHITE));
+		MeshStore input = new MeshStore(List.of(mesh), null);
+
+		MeshStore result = input.process(List.of(
+				new MeshStore.ClipToBounds(new AxisAlignedRectangleXZ(-10, -10, 10, 10), true)));
+
+		assertEquals(1, result.meshes().size());
+		TriangleGeometry tg = result.meshes().get(0).geometry.asTriangles();
+		assertTrue(tg.triangleCount() > 2);
+
+		assertEquals(tInside1.verticesNoDup(), tg.triangles.get(0).verticesNoDup());
+		assertEquals(tInside2.verticesNoDup(), tg.triangles.get(tg.triangleCount() - 1).verticesNoDup());
+		assertEquals(List.of(RED, RED, RED), tg.colors.subList(0, 3));
+		assertEquals(List.of(WHITE, WHITE, WHITE), tg.colors.subList(tg.vertexCount() - 3, tg.vertexCount()));
+
+		for (int i = 1; i < tg.triangleCount() - 1; i++) {
+			TriangleXYZ t = tg.triangles.get(i);
+			assertTrue(t.verticesNoDup().stream().allMatch(v -> v.y == 1 && v.x <= 10 + 1e-6));
+			assertEquals(List.of(BLUE, BLUE, BLUE), tg.colors.subList(3 * i, 3 * i + 3));
+		}
+
+	}
+
+	@Test
+	public void testMoveColorsToVertices() {
+
+		var t = new TriangleXYZ(new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0), new VectorXYZ(0, 0, 1));
+
+		var geometryBuilder = new TriangleGeometry.Builder(0, null, FLAT);
+		geometryBuilder.addTriangles(t);
+		var mesh = new Mesh(geometryBuilder.build(), new Material(FLAT, RED));
+
+		MeshStore result = new MeshStore(List.of(mesh), null).process(List.of(new MeshStore.MoveColorsToVertices()));
+
+		TriangleGeometry tg = result.meshes().get(0).geometry.asTriangles();
+		assertEquals(WHITE, result.meshes().get(0).material.color());
+		assertEquals(List.of(RED, RED, RED), tg.colors);
+		assertEquals(t.verticesNoDup(), tg.vertices());
+
+	}
+
+}
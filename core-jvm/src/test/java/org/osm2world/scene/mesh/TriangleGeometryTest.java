@@ -4,6 +4,7 @@ import static java.lang.Math.PI;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.nCopies;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.osm2world.scene.color.Color.RED;
@@ -14,11 +15,18 @@ import static org.osm2world.test.TestUtil.assertSameCyclicOrder;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.osm2world.math.Angle;
 import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.algorithms.NormalCalculationUtil;
 import org.osm2world.math.shapes.TriangleXYZ;
+import org.osm2world.scene.color.Color;
 import org.osm2world.scene.material.Material.Interpolation;
 
 public class TriangleGeometryTest {
@@ -94,4 +102,77 @@ public class TriangleGeometryTest {
 
 	}
 
+	@Test
+	public void testCalculatedNormalsConcurrentAccess() throws Exception {
+
+		var builder = new TriangleGeometry.Builder(0, null, Interpolation.SMOOTH);
+		for (int i = 0; i < 100; i++) {
+			builder.addTriangles(new TriangleXYZ(
+					new VectorXYZ(i, 0, 0), new VectorXYZ(i + 1, 0, 0), new VectorXYZ(i, 1, -i % 3)));
+		}
+		TriangleGeometry geometry = builder.build();
+
+		List<VectorXYZ> expected = NormalCalculationUtil.calculateTriangleNormals(geometry.triangles, true);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			Callable<List<VectorXYZ>> task = geometry.normalData::normals;
+			for (Future<List<VectorXYZ>> future : executor.invokeAll(nCopies(8, task))) {
+				List<VectorXYZ> normals = future.get();
+				assertEquals(expected.size(), normals.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(0, expected.get(i).distanceTo(normals.get(i)), 1e-6);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+	@Test
+	public void testPrimitiveArrayStorage() {
+
+		var t1 = new TriangleXYZ(new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0), new VectorXYZ(0, 1, 0));
+		var t2 = new TriangleXYZ(new VectorXYZ(0, 0, 5), new VectorXYZ(1, 0, 5), new VectorXYZ(0, 1, 5));
+		List<VectorXZ> texCoords = List.of(new VectorXZ(0, 0), new VectorXZ(1, 0), new VectorXZ(0, 1),
+				new VectorXZ(0, 0.5), new VectorXZ(1, 0.5), new VectorXZ(0, 1.5));
+		List<Color> colors = asList(RED, RED, RED, null, YELLOW, null);
+
+		var builder = new TriangleGeometry.Builder(1, null, Interpolation.FLAT);
+		builder.addTriangles(List.of(t1, t2), List.of(texCoords), colors);
+		TriangleGeometry geometry = builder.build();
+
+		assertEquals(2, geometry.triangleCount());
+		assertEquals(6, geometry.vertexCount());
+		assertEquals(List.of(t1.v1, t1.v2, t1.v3, t2.v1, t2.v2, t2.v3), geometry.vertices());
+		assertEquals(List.of(texCoords), geometry.texCoords);
+		assertEquals(colors, geometry.colors);
+		assertArrayEquals(new float[] {0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 5, 1, 0, 5, 0, 1, 5},
+				geometry.positionArray(), 0);
+		assertArrayEquals(new float[] {0, 0, 1, 0, 0, 1, 0, 0.5f, 1, 0.5f, 0, 1.5f},
+				geometry.texCoordArray(0), 0);
+
+		/* copy a range of triangles, materializing the normals */
+
+		var copyBuilder = new TriangleGeometry.Builder(1, null, null);
+		copyBuilder.addTriangles(geometry, 1, 2);
+		TriangleGeometry copy = copyBuilder.build();
+
+		assertEquals(List.of(t2.v1, t2.v2, t2.v3), copy.vertices());
+		assertEquals(colors.subList(3, 6), copy.colors);
+		assertEquals(geometry.normalData.normals().subList(3, 6), copy.normalData.normals());
+
+		/* add triangles from primitive arrays */
+
+		var arrayBuilder = new TriangleGeometry.Builder(0, YELLOW, Interpolation.FLAT);
+		arrayBuilder.addTriangles(new double[] {0, 0, 0, 1, 0, 0, 0, 1, 0}, new double[0][], null, null);
+		TriangleGeometry arrayGeometry = arrayBuilder.build();
+
+		assertEquals(List.of(t1.v1, t1.v2, t1.v3), arrayGeometry.vertices());
+		assertEquals(nCopies(3, YELLOW), arrayGeometry.colors);
+
+	}
+
 }
@@ -1,10 +1,13 @@
 package org.osm2world.style;
 
 import static java.util.Objects.requireNonNull;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 import static org.osm2world.scene.material.DefaultMaterials.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 
 import org.junit.Test;
@@ -13,9 +16,16 @@ import org.osm2world.scene.color.Color;
 import org.osm2world.scene.material.TextureData;
 import org.osm2world.scene.material.TextureLayer;
 import org.osm2world.scene.material.UriTexture;
+import org.osm2world.scene.model.Model;
+import org.osm2world.util.platform.json.JsonImplementationJvm;
+import org.osm2world.util.test.TestFileUtil;
 
 public class PropertyStyleTest {
 
+	static {
+		JsonImplementationJvm.register();
+	}
+
 	@Test
 	public void testResolveMaterial() {
 
@@ -60,4 +70,42 @@ public class PropertyStyleTest {
 
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testSharedStyle() {
+
+		var config = new O2WConfig(Map.of("material_ASPHALT_color", "#ABCDEF", "lod", 1));
+
+		PropertyStyle style = PropertyStyle.forConfig(config);
+
+		assertSame(style, PropertyStyle.forConfig(config));
+		assertSame(style, PropertyStyle.forConfig(config.withProperty("lod", 4)));
+		assertSame(style, config.withProperty("keepOsmElements", false).mapStyle());
+
+		assertNotSame(style, PropertyStyle.forConfig(config.withProperty("material_ASPHALT_color", "#FEDCBA")));
+		assertNotSame(style, PropertyStyle.forConfig(config.withProperty("configBaseURI", "file:///tmp/")));
+
+	}
+
+	@Test
+	public void testSharedStyleAfterModelFileEdit() throws IOException {
+
+		File modelFile = TestFileUtil.createTempFile(".glb");
+		Files.copy(TestFileUtil.getTestFile("gltf/Triangle/Triangle.glb").toPath(), modelFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+
+		var config = new O2WConfig(Map.of("model_TEST", modelFile.getAbsolutePath()));
+
+		PropertyStyle style = PropertyStyle.forConfig(config);
+		Model model = style.getModel("TEST");
+		assertNotNull(model);
+		assertSame(style, PropertyStyle.forConfig(config));
+
+		assertTrue(modelFile.setLastModified(modelFile.lastModified() + 10_000));
+
+		PropertyStyle reloadedStyle = PropertyStyle.forConfig(config);
+		assertNotSame(style, reloadedStyle);
+		assertNotSame(model, reloadedStyle.getModel("TEST"));
+
+	}
+
+}
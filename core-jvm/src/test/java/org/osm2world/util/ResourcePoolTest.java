@@ -0,0 +1,171 @@
+package org.osm2world.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+public class ResourcePoolTest {
+
+	private static class TestResource {
+
+		final String key;
+		boolean closed = false;
+
+		TestResource(String key) {
+			this.key = key;
+		}
+
+	}
+
+	private final List<TestResource> openedResources = new CopyOnWriteArrayList<>();
+
+	private TestResource open(String key) {
+		var resource = new TestResource(key);
+		openedResources.add(resource);
+		return resource;
+	}
+
+	@Test
+	public void testSequentialUse() throws IOException {
+
+		var pool = ResourcePool.exclusive(this::open, (TestResource r) -> r.closed = true);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals("a", pool.use("a", r -> r.key));
+			assertEquals("b", pool.use("b", r -> r.key));
+		}
+
+		assertEquals(2, openedResources.size());
+		assertEquals(2, pool.availableResourceCount());
+
+		pool.close();
+
+		assertTrue(openedResources.stream().allMatch(r -> r.closed));
+
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+
+		var exclusivePool = ResourcePool.exclusive(this::open, (TestResource r) -> r.closed = true);
+		assertEquals(3, concurrentlyUsedResources(exclusivePool, 3).size());
+		assertEquals(3, exclusivePool.availableResourceCount());
+
+		openedResources.clear();
+
+		var sharedPool = ResourcePool.shared(this::open, (TestResource r) -> r.closed = true);
+		assertEquals(1, concurrentlyUsedResources(sharedPool, 3).size());
+		assertEquals(1, sharedPool.availableResourceCount());
+		assertEquals(1, openedResources.stream().filter(r -> !r.closed).count());
+
+	}
+
+	/** uses a pool from multiple threads at the same time, returns the distinct resources that were used */
+	private static Set<TestResource> concurrentlyUsedResources(ResourcePool<String, TestResource> pool,
+			int threadCount) throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		CyclicBarrier barrier = new CyclicBarrier(threadCount);
+
+		try {
+
+			List<Future<TestResource>> futures = new ArrayList<>();
+
+			for (int i = 0; i < threadCount; i++) {
+				futures.add(executor.submit(() -> pool.use("a", r -> {
+					try {
+						// make sure all threads use a resource at the same time
+						barrier.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+						throw new IOException(e);
+					}
+					return r;
+				})));
+			}
+
+			Set<TestResource> result = ConcurrentHashMap.newKeySet();
+			for (Future<TestResource> future : futures) {
+				result.add(future.get());
+			}
+			return result;
+
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+	@Test
+	public void testCloseWhileInUse() throws IOException {
+
+		var pool = ResourcePool.exclusive(this::open, (TestResource r) -> r.closed = true);
+
+		pool.use("a", r -> {
+			pool.close();
+			assertFalse(r.closed);
+			return null;
+		});
+
+		assertTrue(openedResources.get(0).closed);
+
+		assertThrows(IllegalStateException.class, () -> pool.use("a", r -> null));
+
+	}
+
+	@Test
+	public void testCloseSharedWhileInUse() throws IOException {
+
+		var pool = ResourcePool.shared(this::open, (TestResource r) -> r.closed = true);
+
+		pool.use("a", r -> null);
+
+		pool.use("a", r -> {
+			pool.close();
+			assertFalse(r.closed);
+			return null;
+		});
+
+		assertEquals(1, openedResources.size());
+		assertTrue(openedResources.get(0).closed);
+
+	}
+
+	@Test
+	public void testFailedOperation() throws IOException {
+
+		for (boolean shared : List.of(false, true)) {
+
+			openedResources.clear();
+
+			var pool = shared
+					? ResourcePool.shared(this::open, (TestResource r) -> r.closed = true)
+					: ResourcePool.exclusive(this::open, (TestResource r) -> r.closed = true);
+
+			pool.use("a", r -> null);
+
+			assertThrows(IOException.class, () -> pool.use("a", r -> {
+				throw new IOException("test failure");
+			}));
+
+			// the resource used by the failed operation has been discarded
+			assertEquals(1, openedResources.size());
+			assertTrue(openedResources.get(0).closed);
+			assertEquals(0, pool.availableResourceCount());
+
+			pool.use("a", r -> null);
+			assertEquals(2, openedResources.size());
+			assertFalse(openedResources.get(1).closed);
+
+			pool.close();
+
+		}
+
+	}
+
+}
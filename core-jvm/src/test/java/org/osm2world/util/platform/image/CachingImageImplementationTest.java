@@ -0,0 +1,133 @@
+package org.osm2world.util.platform.image;
+
+import static java.util.Collections.nCopies;
+import static org.junit.Assert.*;
+import static org.osm2world.scene.texcoord.NamedTexCoordFunction.GLOBAL_X_Z;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.osm2world.scene.material.RuntimeTexture;
+import org.osm2world.scene.material.TextureData;
+import org.osm2world.scene.material.TextureDataDimensions;
+import org.osm2world.util.Resolution;
+
+public class CachingImageImplementationTest {
+
+	private static final Resolution TEST_RESOLUTION = new Resolution(16, 16);
+
+	/** size of an image with {@link #TEST_RESOLUTION} and 4 bytes per pixel */
+	private static final long TEST_IMAGE_BYTES = 16 * 16 * 4;
+
+	private static class CountingImageImplementation extends CachingImageImplementation {
+
+		final AtomicInteger createdImages = new AtomicInteger();
+
+		CountingImageImplementation(long maxCacheBytes) {
+			super(maxCacheBytes);
+		}
+
+		@Override
+		protected BufferedImage createBufferedImage(TextureData texture, Resolution resolution) {
+			createdImages.incrementAndGet();
+			return new BufferedImage(resolution.width, resolution.height, BufferedImage.TYPE_INT_ARGB);
+		}
+
+		@Override
+		protected BufferedImage createBufferedImage(TextureData texture) {
+			return createBufferedImage(texture, TEST_RESOLUTION);
+		}
+
+		@Override
+		public Float getAspectRatio(TextureData texture) {
+			return 1f;
+		}
+
+	}
+
+	private static TextureData createTestTexture() {
+		return new RuntimeTexture(new TextureDataDimensions(1, 1), TextureData.Wrap.REPEAT, GLOBAL_X_Z) {
+			@Override
+			public BufferedImage createBufferedImage() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Test
+	public void testCachedImageIsReused() {
+
+		var implementation = new CountingImageImplementation(100 * TEST_IMAGE_BYTES);
+		TextureData texture = createTestTexture();
+
+		BufferedImage image = implementation.loadTextureImage(texture);
+		assertSame(image, implementation.loadTextureImage(texture));
+		assertSame(image, implementation.loadTextureImage(texture, TEST_RESOLUTION));
+		assertEquals(1, implementation.createdImages.get());
+
+		implementation.loadTextureImage(texture, new Resolution(8, 8));
+		assertEquals(2, implementation.createdImages.get());
+
+		assertEquals(2, implementation.getCacheStats().missCount());
+		assertEquals(1, implementation.getCacheStats().hitCount());
+
+	}
+
+	@Test
+	public void testEviction() {
+
+		var implementation = new CountingImageImplementation(3 * TEST_IMAGE_BYTES);
+
+		List<TextureData> textures = List.of(createTestTexture(), createTestTexture(),
+				createTestTexture(), createTestTexture(), createTestTexture());
+
+		for (TextureData texture : textures) {
+			implementation.loadTextureImage(texture);
+		}
+
+		assertEquals(textures.size(), implementation.createdImages.get());
+		assertTrue(implementation.getCacheStats().evictionCount() >= 2);
+
+	}
+
+	@Test
+	public void testConcurrentRequestsLoadOnce() throws Exception {
+
+		var implementation = new CountingImageImplementation(100 * TEST_IMAGE_BYTES) {
+			@Override
+			protected BufferedImage createBufferedImage(TextureData texture, Resolution resolution) {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return super.createBufferedImage(texture, resolution);
+			}
+		};
+
+		TextureData texture = createTestTexture();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+
+			List<Future<BufferedImage>> futures = executor.invokeAll(
+					nCopies(8, () -> implementation.loadTextureImage(texture)));
+
+			BufferedImage firstImage = futures.get(0).get();
+			for (Future<BufferedImage> future : futures) {
+				assertSame(firstImage, future.get());
+			}
+
+			assertEquals(1, implementation.createdImages.get());
+
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+package org.osm2world.world.creation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osm2world.conversion.ConversionLog;
+import org.osm2world.conversion.O2WConfig;
+import org.osm2world.map_data.creation.MapDataBuilder;
+import org.osm2world.map_data.data.MapData;
+import org.osm2world.map_data.data.MapNode;
+import org.osm2world.map_data.data.TagSet;
+import org.osm2world.util.test.TestWorldModule;
+import org.osm2world.world.data.WorldObject;
+import org.osm2world.world.modules.RoadModule;
+import org.osm2world.world.modules.StreetFurnitureModule;
+
+public class WorldCreatorTest {
+
+	private static MapData createTestData() {
+
+		MapDataBuilder builder = new MapDataBuilder();
+
+		List<MapNode> roadNodes = new ArrayList<>();
+
+		for (int i = 0; i < 200; i++) {
+			builder.createNode(i * 5, 10, TagSet.of("highway", "street_lamp"));
+			builder.createNode(i * 5, -10, TagSet.of("amenity", "bench"));
+			builder.createNode(i * 5, 20);
+			roadNodes.add(builder.createNode(i * 5, 0));
+		}
+
+		builder.createWay(roadNodes, TagSet.of("highway", "residential"));
+
+		return builder.build();
+
+	}
+
+	private static List<String> representationTypes(MapData mapData) {
+		List<String> result = new ArrayList<>();
+		for (WorldObject worldObject : mapData.getWorldObjects()) {
+			result.add(worldObject.getPrimaryMapElement() + ":" + worldObject.getClass().getSimpleName());
+		}
+		return result;
+	}
+
+	@Test
+	public void testParallelResultMatchesSequential() {
+
+		List<List<String>> results = new ArrayList<>();
+
+		for (boolean parallel : List.of(false, true)) {
+
+			MapData mapData = createTestData();
+
+			var config = new O2WConfig(Map.of("parallelWorldModules", parallel));
+			new WorldCreator(config, new RoadModule(), new StreetFurnitureModule(), new TestWorldModule())
+					.addRepresentationsTo(mapData);
+
+			results.add(representationTypes(mapData));
+
+		}
+
+		assertEquals(results.get(0), results.get(1));
+
+	}
+
+	@Test
+	public void testParallelLogOrder() {
+
+		ConversionLog.clear();
+
+		MapData mapData = createTestData();
+
+		var config = new O2WConfig(Map.of("parallelWorldModules", true, "consoleLogLevels", ""));
+		ConversionLog.setConsoleLogLevels(config.consoleLogLevels());
+
+		new WorldCreator(config, new TestWorldModule() {
+			@Override
+			protected void applyToNode(MapNode node) {
+				ConversionLog.warn("test", node);
+			}
+		}).addRepresentationsTo(mapData);
+
+		List<ConversionLog.Entry> log = ConversionLog.getLog();
+
+		assertEquals(mapData.getMapNodes().size(), log.size());
+
+		int i = 0;
+		for (MapNode node : mapData.getMapNodes()) {
+			assertEquals(node, log.get(i++).element());
+		}
+
+		ConversionLog.clear();
+
+	}
+
+}
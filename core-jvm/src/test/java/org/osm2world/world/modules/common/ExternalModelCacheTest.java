@@ -0,0 +1,175 @@
+package org.osm2world.world.modules.common;
+
+import static org.junit.Assert.*;
+import static org.osm2world.util.test.TestFileUtil.getTestFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osm2world.output.gltf.GltfFlavor;
+import org.osm2world.output.gltf.GltfModel;
+import org.osm2world.util.platform.json.JsonImplementationJvm;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class ExternalModelCacheTest {
+
+	static {
+		JsonImplementationJvm.register();
+	}
+
+	private static final String ETAG = "\"v1\"";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	/** a local stand-in for a model server, serves the same model at /model/* */
+	private HttpServer server;
+
+	/** the requests received by the server, as "path status" */
+	private final List<String> requests = new CopyOnWriteArrayList<>();
+
+	@Before
+	public void startServer() throws IOException {
+
+		byte[] glb = Files.readAllBytes(getTestFile("gltf/Triangle/Triangle.glb").toPath());
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			int status;
+			if (!path.startsWith("/model/")) {
+				status = 404;
+			} else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				status = 304;
+			} else {
+				status = 200;
+			}
+			requests.add(path + " " + status);
+			exchange.getResponseHeaders().add("ETag", ETAG);
+			if (status == 200) {
+				exchange.sendResponseHeaders(status, glb.length);
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(glb);
+				}
+			} else {
+				exchange.sendResponseHeaders(status, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	private URL url(String path) throws IOException {
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static ExternalModelCache createCache(File cacheDir, long maxDiskBytes, Duration maxAge) {
+		return new ExternalModelCache(cacheDir, maxDiskBytes, 100, maxAge, Duration.ofHours(1));
+	}
+
+	@Test
+	public void testMemoryCache() throws IOException {
+
+		var cache = createCache(null, 0, Duration.ofHours(1));
+
+		GltfModel model = cache.loadFromHttpUrl(url("/model/1"), GltfFlavor.GLB, null);
+		assertSame(model, cache.loadFromHttpUrl(url("/model/1"), GltfFlavor.GLB, null));
+
+		assertEquals(List.of("/model/1 200"), requests);
+
+	}
+
+	@Test
+	public void testRevalidation() throws IOException {
+
+		File cacheDir = tempFolder.newFolder();
+
+		createCache(cacheDir, 1_000_000, Duration.ofHours(1)).loadFromHttpUrl(url("/model/1"), GltfFlavor.GLB, null);
+
+		// a new cache using the same directory doesn't need to download the model again
+		createCache(cacheDir, 1_000_000, Duration.ofHours(1)).loadFromHttpUrl(url("/model/1"), GltfFlavor.GLB, null);
+		assertEquals(List.of("/model/1 200"), requests);
+
+		// once the download is outdated, it is revalidated with a conditional request
+		GltfModel model = createCache(cacheDir, 1_000_000, Duration.ZERO)
+				.loadFromHttpUrl(url("/model/1"), GltfFlavor.GLB, null);
+		assertNotNull(model);
+		assertEquals(List.of("/model/1 200", "/model/1 304"), requests);
+
+	}
+
+	@Test
+	public void testStaleCopyWhenServerIsUnavailable() throws IOException {
+
+		File cacheDir = tempFolder.newFolder();
+		URL url = url("/model/1");
+
+		createCache(cacheDir, 1_000_000, Duration.ZERO).loadFromHttpUrl(url, GltfFlavor.GLB, null);
+
+		server.stop(0);
+
+		assertNotNull(createCache(cacheDir, 1_000_000, Duration.ZERO).loadFromHttpUrl(url, GltfFlavor.GLB, null));
+
+	}
+
+	@Test
+	public void testNegativeCaching() throws IOException {
+
+		var cache = createCache(null, 0, Duration.ofHours(1));
+
+		for (int i = 0; i < 3; i++) {
+			assertThrows(IOException.class, () -> cache.loadFromHttpUrl(url("/missing"), GltfFlavor.GLB, null));
+		}
+
+		assertEquals(List.of("/missing 404"), requests);
+
+	}
+
+	@Test
+	public void testDiskSizeLimit() throws IOException {
+
+		File cacheDir = tempFolder.newFolder();
+		long glbSize = getTestFile("gltf/Triangle/Triangle.glb").length();
+
+		var cache = createCache(cacheDir, (long) (glbSize * 2.5), Duration.ofHours(1));
+
+		for (int i = 0; i < 5; i++) {
+			cache.loadFromHttpUrl(url("/model/" + i), GltfFlavor.GLB, null);
+		}
+
+		File[] dataFiles = cacheDir.listFiles((dir, name) -> name.endsWith(".bin"));
+		assertNotNull(dataFiles);
+		assertEquals(2, dataFiles.length);
+
+	}
+
+	@Test
+	public void testLocalFile() throws IOException {
+
+		var cache = createCache(null, 0, Duration.ofHours(1));
+		File file = getTestFile("gltf/Triangle/Triangle.glb");
+
+		assertSame(cache.loadFromFile(file), cache.loadFromFile(file));
+
+	}
+
+}
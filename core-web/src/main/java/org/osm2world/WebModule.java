@@ -14,8 +14,6 @@ import javax.annotation.Nullable;
 import org.osm2world.map_data.data.MapData;
 import org.osm2world.map_data.data.MapRelation;
 import org.osm2world.map_data.data.overlaps.MapElementId;
-import org.osm2world.math.VectorXYZ;
-import org.osm2world.math.VectorXZ;
 import org.osm2world.osm.creation.JsonStringReader;
 import org.osm2world.output.common.MeshOutput;
 import org.osm2world.scene.Scene;
@@ -177,32 +175,21 @@ public class WebModule {
 
 			/* geometry fields */
 
-			List<VectorXYZ> geomVertices = geom.vertices();
-			List<VectorXYZ> geomNormals = geom.normalData.normals();
-			List<List<VectorXZ>> geomTexCoords = geom.texCoords;
-
-			this.positions = new float[geomVertices.size() * 3];
-			this.indices = new int[geomVertices.size()];
-			this.normals = new float[geomVertices.size() * 3];
-			this.uvs = new float[geomVertices.size() * 2];
-
-			for (int i = 0; i < geomVertices.size(); i++) {
-
-				this.positions[i * 3] = (float) geomVertices.get(i).x;
-				this.positions[i * 3 + 1] = (float) geomVertices.get(i).y;
-				this.positions[i * 3 + 2] = (float) geomVertices.get(i).z;
+			this.positions = geom.positionArray();
+			this.normals = geom.normalArray();
+			this.indices = new int[geom.vertexCount()];
+			this.uvs = new float[geom.vertexCount() * 2];
 
+			for (int i = 0; i < indices.length; i++) {
 				this.indices[i] = i;
+			}
 
-				this.normals[i * 3] = (float) geomNormals.get(i).x;
-				this.normals[i * 3 + 1] = (float) geomNormals.get(i).y;
-				this.normals[i * 3 + 2] = (float) geomNormals.get(i).z;
-
-				if (!geomTexCoords.isEmpty()) {
-					this.uvs[i * 2] = (float) geomTexCoords.get(0).get(i).x;
-					this.uvs[i * 2 + 1] = 1.0f - (float) geomTexCoords.get(0).get(i).z;
+			if (!geom.texCoords.isEmpty()) {
+				float[] texCoords = geom.texCoordArray(0);
+				for (int i = 0; i < indices.length; i++) {
+					this.uvs[i * 2] = texCoords[i * 2];
+					this.uvs[i * 2 + 1] = 1.0f - texCoords[i * 2 + 1];
 				}
-
 			}
 
 		}
@@ -291,10 +278,12 @@ public class WebModule {
 			Predicate<WorldObject> filter = x -> true;
 
 			if (!filterIds.isEmpty()) {
-				List<String> expandedFilterIds = expandRelations(scene.getMapData(), filterIds);
-				filter = worldObject -> getAncestorsAndAttachmentTargets(worldObject).stream()
-								.map(o -> o.getPrimaryMapElement().getElementWithId().toString())
-								.anyMatch(expandedFilterIds::contains);
+				MapData mapData = scene.getMapData();
+				List<WorldObject> filterObjects = new ArrayList<>();
+				for (MapElementId id : expandRelations(mapData, filterIds)) {
+					filterObjects.addAll(mapData.getWorldObjects(id));
+				}
+				filter = getDescendantsAndAttachedObjects(mapData, filterObjects)::contains;
 			}
 
 			var meshOutput = new MeshOutput(filter);
@@ -328,17 +317,21 @@ public class WebModule {
 		}
 
 		/**
-		 * returns the input ids, plus the ids of relation members if the input contains relation ids
+		 * returns the input ids, plus the ids of relation members if the input contains relation ids.
+		 * Strings which are not valid ids are ignored.
 		 */
-		private static List<String> expandRelations(MapData mapData, List<String> elementIds) {
+		private static List<MapElementId> expandRelations(MapData mapData, List<String> elementIds) {
 
-			List<String> result = new ArrayList<>(elementIds);
+			List<MapElementId> result = new ArrayList<>(elementIds.size());
 
 			for (String elementId : elementIds) {
 				MapElementId id = MapElementId.parse(elementId);
-				if (id != null && mapData.getElement(id.string()) instanceof MapRelation relation) {
-					for (var membership : relation.getMembers()) {
-						result.add(membership.getElement().toString());
+				if (id != null) {
+					result.add(id);
+					if (mapData.getElement(id) instanceof MapRelation relation) {
+						for (var membership : relation.getMembers()) {
+							result.add(new MapElementId(membership.getElement().toString()));
+						}
 					}
 				}
 			}
@@ -348,45 +341,46 @@ public class WebModule {
 		}
 
 		/**
-		 * returns a set containing the world object itself, its ancestors (by reecursing through
-		 * {@link WorldObject#getParent()}) and anything this object's {@link AttachmentConnector}s
-		 * are attached to (again, recursively).
+		 * returns a set containing the world objects, their descendants (objects which have them as
+		 * {@link WorldObject#getParent()}) and anything attached to them through an {@link AttachmentConnector}
+		 * (again, recursively).
 		 */
-		private static Set<WorldObject> getAncestorsAndAttachmentTargets(WorldObject worldObject) {
-
-			Set<WorldObject> result = new HashSet<>();
+		private static Set<WorldObject> getDescendantsAndAttachedObjects(MapData mapData,
+				Collection<WorldObject> worldObjects) {
 
-			Set<WorldObject> currentObjects = new HashSet<>();
-			currentObjects.add(worldObject);
+			/* find the objects directly depending on each object, in a single pass over all world objects */
 
-			while (!currentObjects.isEmpty()) {
+			Map<WorldObject, List<WorldObject>> dependentObjects = new HashMap<>();
 
-				result.addAll(currentObjects);
-				if (result.size() > 1000) throw new Error("Likely recursive loop detected");
+			for (WorldObject worldObject : mapData.getWorldObjects()) {
 
-				Set<WorldObject> nextObjects = new HashSet<>();
-
-				for (WorldObject currentObject : currentObjects) {
-
-					if (currentObject.getParent() != null) {
-						nextObjects.add(currentObject.getParent());
-					}
+				if (worldObject.getParent() != null) {
+					dependentObjects.computeIfAbsent(worldObject.getParent(), k -> new ArrayList<>()).add(worldObject);
+				}
 
-					for (AttachmentConnector connector : currentObject.getAttachmentConnectors()) {
-						if (connector.isAttached()) {
-							WorldObject attachmentTarget = connector.getAttachedSurface().getWorldObject();
-							if (attachmentTarget != null) {
-								nextObjects.add(attachmentTarget);
-							}
+				for (AttachmentConnector connector : worldObject.getAttachmentConnectors()) {
+					if (connector.isAttached()) {
+						WorldObject attachmentTarget = connector.getAttachedSurface().getWorldObject();
+						if (attachmentTarget != null) {
+							dependentObjects.computeIfAbsent(attachmentTarget, k -> new ArrayList<>()).add(worldObject);
 						}
 					}
+				}
 
-					nextObjects.removeIf(result::contains);
+			}
 
-				}
+			/* collect the dependent objects, recursively */
 
-				currentObjects = nextObjects;
+			Set<WorldObject> result = new HashSet<>(worldObjects);
+			Deque<WorldObject> unprocessedObjects = new ArrayDeque<>(worldObjects);
 
+			while (!unprocessedObjects.isEmpty()) {
+				WorldObject currentObject = unprocessedObjects.removeFirst();
+				for (WorldObject dependentObject : dependentObjects.getOrDefault(currentObject, List.of())) {
+					if (result.add(dependentObject)) {
+						unprocessedObjects.addLast(dependentObject);
+					}
+				}
 			}
 
 			return result;
@@ -4,7 +4,6 @@ import static java.lang.Math.abs;
 import static java.lang.Math.ceil;
 import static java.time.Instant.now;
 import static java.util.Arrays.asList;
-import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
 import static java.util.Comparator.comparingDouble;
 import static java.util.Objects.requireNonNullElse;
@@ -36,8 +35,7 @@ import org.osm2world.map_data.data.MapData;
 import org.osm2world.map_elevation.creation.*;
 import org.osm2world.map_elevation.data.EleConnector;
 import org.osm2world.math.VectorXYZ;
-import org.osm2world.math.datastructures.IndexGrid;
-import org.osm2world.math.datastructures.SpatialIndex;
+import org.osm2world.math.datastructures.STRTree;
 import org.osm2world.math.geo.GeoBounds;
 import org.osm2world.math.geo.MapProjection;
 import org.osm2world.math.geo.TileNumber;
@@ -244,15 +242,16 @@ class O2WConverterImpl {
 
 		/* collect the surfaces */
 
-		SpatialIndex<AttachmentSurface> attachmentSurfaceIndex =
-				new IndexGrid<>(mapData.getDataBoundary().pad(50), 100, 100);
+		List<AttachmentSurface> attachmentSurfaces = new ArrayList<>();
 
 		FaultTolerantIterationUtil.forEach(mapData.getWorldObjects(), object -> {
 			if (object.getParent() == null) {
-				object.getAttachmentSurfaces().forEach(attachmentSurfaceIndex::insert);
+				attachmentSurfaces.addAll(object.getAttachmentSurfaces());
 			}
 		});
 
+		var attachmentSurfaceIndex = new STRTree<>(attachmentSurfaces);
+
 		/* attach connectors to the surfaces */
 
 		for (WorldObject object : mapData.getWorldObjects()) {
@@ -361,18 +360,10 @@ class O2WConverterImpl {
 
 		if (!(interpolator instanceof ZeroInterpolator)) {
 
-			Collection<VectorXYZ> sites = emptyList();
-
 			try {
-				sites = eleData.getSites(mapData.getDataBoundary().pad(10));
+				interpolator.setElevationData(eleData, mapData.getDataBoundary().pad(10));
 			} catch (IOException e) {
 				ConversionLog.error("Could not read elevation data: " + e.getMessage(), e);
-			}
-
-			if (!sites.isEmpty()) {
-				interpolator.setKnownSites(sites);
-			} else {
-				ConversionLog.error("No sites with known elevation available");
 				interpolator = new ZeroInterpolator();
 			}
 
@@ -380,13 +371,21 @@ class O2WConverterImpl {
 
 		/* interpolate terrain elevation for each connector */
 
-		final TerrainInterpolator finalInterpolator = interpolator;
+		if (interpolator.supportsConcurrentQueries()) {
 
-		FaultTolerantIterationUtil.forEach(mapData.getWorldObjects(), (WorldObject worldObject) -> {
-			for (EleConnector conn : worldObject.getEleConnectors()) {
-				conn.setPosXYZ(finalInterpolator.interpolateEle(conn.pos));
-			}
-		});
+			interpolateElevationsInParallel(mapData, interpolator);
+
+		} else {
+
+			final TerrainInterpolator finalInterpolator = interpolator;
+
+			FaultTolerantIterationUtil.forEach(mapData.getWorldObjects(), (WorldObject worldObject) -> {
+				for (EleConnector conn : worldObject.getEleConnectors()) {
+					conn.setPosXYZ(finalInterpolator.interpolateEle(conn.pos));
+				}
+			});
+
+		}
 
 		/* refine terrain-based elevation with information from map data */
 
@@ -395,6 +394,64 @@ class O2WConverterImpl {
 
 	}
 
+	/**
+	 * sets the terrain elevation of each {@link EleConnector} using an interpolator which supports concurrent queries.
+	 * Only the interpolation itself runs in parallel. Connectors are collected and updated on the calling thread,
+	 * and log entries are added in the order of the world objects, so the result does not depend on scheduling.
+	 * If interpolation fails for a connector, the object's other connectors are still updated.
+	 */
+	private static void interpolateElevationsInParallel(MapData mapData, TerrainInterpolator interpolator) {
+
+		/* collect the connectors of each world object */
+
+		List<WorldObject> worldObjects = new ArrayList<>();
+		List<List<EleConnector>> connectors = new ArrayList<>();
+
+		FaultTolerantIterationUtil.forEach(mapData.getWorldObjects(), (WorldObject worldObject) -> {
+			List<EleConnector> objectConnectors = new ArrayList<>();
+			worldObject.getEleConnectors().forEach(objectConnectors::add);
+			worldObjects.add(worldObject);
+			connectors.add(objectConnectors);
+		});
+
+		/* interpolate the elevations */
+
+		VectorXYZ[][] positions = new VectorXYZ[worldObjects.size()][];
+
+		List<List<ConversionLog.Entry>> logEntries = IntStream.range(0, worldObjects.size()).parallel()
+				.mapToObj(i -> ConversionLog.capture(() -> {
+					List<EleConnector> objectConnectors = connectors.get(i);
+					positions[i] = new VectorXYZ[objectConnectors.size()];
+					Throwable firstFailure = null;
+					for (int j = 0; j < objectConnectors.size(); j++) {
+						try {
+							positions[i][j] = interpolator.interpolateEle(objectConnectors.get(j).pos);
+						} catch (Exception | AssertionError e) {
+							if (firstFailure == null) {
+								firstFailure = e;
+							}
+						}
+					}
+					if (firstFailure != null) {
+						// only reported once per object, the other failures usually have the same cause
+						FaultTolerantIterationUtil.DEFAULT_EXCEPTION_HANDLER.accept(firstFailure, worldObjects.get(i));
+					}
+				}))
+				.toList();
+
+		/* apply the results */
+
+		for (int i = 0; i < worldObjects.size(); i++) {
+			logEntries.get(i).forEach(ConversionLog::log);
+			for (int j = 0; j < positions[i].length; j++) {
+				if (positions[i][j] != null) {
+					connectors.get(i).get(j).setPosXYZ(positions[i][j]);
+				}
+			}
+		}
+
+	}
+
 	private void updatePhase(PerformanceListener perfListener, ProgressListener.Phase newPhase) {
 		double progress = newPhase.ordinal() * 1.0 / (ProgressListener.Phase.values().length - 1);
 		for (ProgressListener listener : Iterables.concat(listeners, List.of(perfListener))) {
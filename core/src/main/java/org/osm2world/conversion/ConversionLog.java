@@ -94,6 +94,34 @@ public class ConversionLog {
 		}
 	}
 
+	/**
+	 * Runs an action and returns the entries it logged instead of adding them to the current thread's log.
+	 * Because each thread has its own log, this is needed when parts of a conversion are run on other threads.
+	 * The returned entries can then be passed to {@link #log(Entry)} on the thread running the conversion.
+	 * Entries are not printed to the console while they are being captured.
+	 */
+	public static List<Entry> capture(Runnable action) {
+
+		List<Entry> previousLog = log.get();
+		EnumSet<LogLevel> previousConsoleLogLevels = consoleLogLevels.get();
+		Integer previousSuppressedCopies = suppressedCopiesOfLastEntry.get();
+
+		log.set(new ArrayList<>());
+		consoleLogLevels.set(EnumSet.noneOf(LogLevel.class));
+		suppressedCopiesOfLastEntry.set(0);
+
+		try {
+			action.run();
+			flushSuppressedCopies();
+			return log.get();
+		} finally {
+			log.set(previousLog);
+			consoleLogLevels.set(previousConsoleLogLevels);
+			suppressedCopiesOfLastEntry.set(previousSuppressedCopies);
+		}
+
+	}
+
 	public static void log(LogLevel level, String message, @Nullable Throwable e, @Nullable MapRelationElement element) {
 		log(new Entry(level, Instant.now(), message, e, element));
 	}
@@ -17,6 +17,7 @@ import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 import org.osm2world.map_elevation.creation.*;
+import org.osm2world.map_elevation.creation.ElevationGrid.Sampling;
 import org.osm2world.math.geo.LatLon;
 import org.osm2world.math.geo.MapProjection;
 import org.osm2world.math.geo.MetricMapProjection;
@@ -392,6 +393,47 @@ public class O2WConfig {
 		return getBoolean("forceUnbufferedPNGRendering", false);
 	}
 
+	/**
+	 * Whether binary data for glb output should be collected in a temporary file instead of in memory
+	 * until the output file is written. Reduces heap usage for large outputs. Off by default.
+	 */
+	public boolean glbTempFile() {
+		return getBoolean("glbTempFile", false);
+	}
+
+	/**
+	 * How glTF output should represent multiple instances of the same model, such as trees in a forest.
+	 * By default, each instance is converted to separate geometry.
+	 */
+	public GltfInstancing gltfInstancing() {
+		return Objects.requireNonNullElse(getEnum(GltfInstancing.class, "gltfInstancing"), GltfInstancing.NONE);
+	}
+
+	/**
+	 * Whether glTF output should merge identical vertices and reference them using indices.
+	 * This significantly reduces file size. On by default.
+	 */
+	public boolean gltfIndexedGeometry() {
+		return getBoolean("gltfIndexedGeometry", true);
+	}
+
+	/**
+	 * Whether the triangles of indexed glTF geometry should be reordered to improve rendering performance.
+	 * Only has an effect if {@link #gltfIndexedGeometry()} is enabled. Off by default.
+	 */
+	public boolean gltfOptimizeVertexCache() {
+		return getBoolean("gltfOptimizeVertexCache", false);
+	}
+
+	/**
+	 * Whether glTF output should store positions, normals and texture coordinates as 8 or 16 bit integers
+	 * using the KHR_mesh_quantization extension. Positions are placed on a grid with 2^16 steps along the largest
+	 * dimension of the output, so this is intended for small outputs such as tiles. Off by default.
+	 */
+	public boolean gltfQuantization() {
+		return getBoolean("gltfQuantization", false);
+	}
+
 	/**
 	 * whether underground {@link org.osm2world.world.data.WorldObject}s should be rendered
 	 */
@@ -448,11 +490,12 @@ public class O2WConfig {
 	}
 
 	/**
-	 * Returns the map style which should be used to control the visual appearance of the scene
+	 * Returns the map style which should be used to control the visual appearance of the scene.
+	 * Configs with the same material and model properties share a style, see {@link PropertyStyle#forConfig(O2WConfig)}.
 	 */
 	public Style mapStyle() {
 		if (style == null) {
-			style = new PropertyStyle(this);
+			style = PropertyStyle.forConfig(this);
 		}
 		return style;
 	}
@@ -494,6 +537,39 @@ public class O2WConfig {
 		return getString("3dmrUrl", null);
 	}
 
+	/**
+	 * A directory for storing models downloaded from 3DMR or other external sources.
+	 * If this is not set, downloaded models are only cached in memory.
+	 */
+	public @Nullable File modelCacheDir() {
+		URI uri = resolveFileConfigProperty(getString("modelCacheDir", null), true, false);
+		return uri != null ? new File(uri) : null;
+	}
+
+	/**
+	 * The maximum total size of the models in the {@link #modelCacheDir()}, in megabytes.
+	 * Least recently used models are deleted first.
+	 */
+	public int modelCacheMaxMegabytes() {
+		return getInt("modelCacheMaxMegabytes", 500);
+	}
+
+	/**
+	 * The time in seconds after which cached downloads of models are checked for changes on the server.
+	 */
+	public int modelCacheMaxAge() {
+		return getInt("modelCacheMaxAge", 24 * 60 * 60);
+	}
+
+	/**
+	 * Whether {@link org.osm2world.world.creation.WorldModule}s may process map elements in parallel.
+	 * Modules are still applied one after another, see {@link org.osm2world.world.creation.WorldCreator}.
+	 * Off by default.
+	 */
+	public boolean parallelWorldModules() {
+		return getBoolean("parallelWorldModules", false);
+	}
+
 	/**
 	 * A directory with SRTM data in .hgt or .hgt.zip format
 	 */
@@ -513,10 +589,19 @@ public class O2WConfig {
 			case "LeastSquaresInterpolator" -> LeastSquaresInterpolator::new;
 			case "NaturalNeighborInterpolator" -> NaturalNeighborInterpolator::new;
 			case "InverseDistanceWeightingInterpolator" -> InverseDistanceWeightingInterpolator::new;
+			case "GridInterpolator" -> () -> new GridInterpolator(elevationGridSampling());
 			default -> ZeroInterpolator::new;
 		};
 	}
 
+	/**
+	 * How elevations between the samples of raster elevation data such as SRTM are calculated
+	 * by the GridInterpolator. Bicubic by default.
+	 */
+	public Sampling elevationGridSampling() {
+		return Objects.requireNonNullElse(getEnum(Sampling.class, "elevationGridSampling"), Sampling.BICUBIC);
+	}
+
 	/**
 	 * Image quality for embedded textures.
 	 */
@@ -659,4 +744,16 @@ public class O2WConfig {
 		ID, TAGS
 	}
 
+	public enum GltfInstancing {
+		/** build separate geometry for each instance */
+		NONE,
+		/** use one glTF node for each instance, with all nodes referencing the same mesh */
+		NODES,
+		/**
+		 * use the EXT_mesh_gpu_instancing extension.
+		 * Falls back to {@link #NODES} for instances of OSM elements if {@link O2WConfig#keepOsmElements()} is enabled.
+		 */
+		EXT_MESH_GPU_INSTANCING
+	}
+
 }
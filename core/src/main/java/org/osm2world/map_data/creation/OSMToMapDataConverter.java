@@ -10,6 +10,7 @@ import static org.osm2world.util.FaultTolerantIterationUtil.forEach;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 import javax.annotation.Nullable;
 
@@ -17,11 +18,11 @@ import org.osm2world.conversion.ConversionLog;
 import org.osm2world.conversion.O2WConfig;
 import org.osm2world.map_data.data.*;
 import org.osm2world.map_data.data.overlaps.*;
+import org.osm2world.math.BoundedObject;
 import org.osm2world.math.VectorXZ;
 import org.osm2world.math.algorithms.CAGUtil;
 import org.osm2world.math.algorithms.GeometryUtil;
-import org.osm2world.math.datastructures.IndexGrid;
-import org.osm2world.math.datastructures.SpatialIndex;
+import org.osm2world.math.datastructures.STRTree;
 import org.osm2world.math.geo.LatLonBounds;
 import org.osm2world.math.geo.MapProjection;
 import org.osm2world.math.shapes.*;
@@ -33,6 +34,7 @@ import org.osm2world.util.exception.InvalidGeometryException;
 
 import de.topobyte.osm4j.core.model.iface.*;
 import de.topobyte.osm4j.core.resolve.EntityNotFoundException;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
@@ -391,7 +393,7 @@ public class OSMToMapDataConverter {
 		Tag[] tags =
 				new Tag[entity.getNumberOfTags()];
 		for (int i = 0; i < entity.getNumberOfTags(); i++) {
-			tags[i] = new Tag(entity.getTag(i).getKey(), entity.getTag(i).getValue());
+			tags[i] = TagDictionary.tag(entity.getTag(i).getKey(), entity.getTag(i).getValue());
 		}
 		return TagSet.of(tags);
 
@@ -411,82 +413,181 @@ public class OSMToMapDataConverter {
 		return result;
 	}
 
+	/** margin for the bounding box test, much larger than the rounding errors of the overlap calculations */
+	private static final double OVERLAP_BBOX_MARGIN = 1e-3;
+
+	/** a {@link MapElement} and its position in the spatial index used by {@link #calculateIntersectionsInMapData(MapData)} */
+	private static final class IndexedElement implements BoundedObject {
+
+		final int index;
+		final MapElement element;
+		final AxisAlignedRectangleXZ bbox;
+
+		IndexedElement(int index, MapElement element) {
+			this.index = index;
+			this.element = element;
+			this.bbox = element.boundingBox();
+		}
+
+		@Override
+		public AxisAlignedRectangleXZ boundingBox() {
+			return bbox;
+		}
+
+	}
+
 	/**
 	 * calculates intersections and adds the information to the
 	 * {@link MapElement}s
+	 *
+	 * Candidate pairs with intersecting bounding boxes are collected using a spatial index,
+	 * then the expensive geometric tests are performed in parallel. Finally, the overlaps are added to the elements
+	 * in a deterministic order: The overlaps of each element are sorted by the other element's position in
+	 * {@link MapData#getMapElements()}.
 	 */
 	private static void calculateIntersectionsInMapData(MapData mapData) {
 
-		AxisAlignedRectangleXZ bounds = mapData.getDataBoundary().pad(10);
-		SpatialIndex<MapElement> index = new IndexGrid<>(bounds, bounds.sizeX() / 1000, bounds.sizeZ() / 1000);
+		List<MapElement> elements = new ArrayList<>();
+		List<IndexedElement> indexedElements = new ArrayList<>();
+
+		for (MapElement element : mapData.getMapElements()) {
+			indexedElements.add(new IndexedElement(elements.size(), element));
+			elements.add(element);
+		}
 
-		for (MapElement e1 : mapData.getMapElements()) {
+		var index = new STRTree<>(indexedElements);
 
-			/* collect all nearby elements */
+		/* collect candidate pairs, each element is paired with earlier nearby elements */
 
-			Iterable<MapElement> nearbyElements = index.insertAndProbe(e1);
+		TIntArrayList candidates = new TIntArrayList();
+		TIntArrayList nearbyIndices = new TIntArrayList();
 
-			for (MapElement e2 : nearbyElements) {
+		for (IndexedElement e1 : indexedElements) {
 
-				if (e1 == e2) { continue; }
+			AxisAlignedRectangleXZ bbox1 = e1.bbox.pad(OVERLAP_BBOX_MARGIN);
+
+			nearbyIndices.resetQuick();
+
+			index.visit(bbox1, e2 -> {
+				if (e2.index < e1.index && canOverlap(e1.element, e2.element)) {
+					nearbyIndices.add(e2.index);
+				}
+				return true;
+			});
 
-				addOverlapBetween(e1, e2);
+			nearbyIndices.sort();
 
+			for (int i = 0; i < nearbyIndices.size(); i++) {
+				candidates.add(e1.index);
+				candidates.add(nearbyIndices.get(i));
 			}
 
 		}
 
+		/* test the candidates in parallel */
+
+		List<MapOverlap<?, ?>> overlaps = IntStream.range(0, candidates.size() / 2).parallel()
+				.<MapOverlap<?, ?>>mapToObj(i -> calculateOverlap(
+						elements.get(candidates.get(2 * i)),
+						elements.get(candidates.get(2 * i + 1))))
+				.toList();
+
+		/* add the overlaps to the elements */
+
+		for (MapOverlap<?, ?> overlap : overlaps) {
+			if (overlap != null) {
+				addOverlap(overlap);
+			}
+		}
+
+	}
+
+	/** returns whether {@link #calculateOverlap(MapElement, MapElement)} can ever find an overlap for these types */
+	private static boolean canOverlap(MapElement e1, MapElement e2) {
+		return e1 instanceof MapArea || e2 instanceof MapArea
+				|| (e1 instanceof MapWaySegment && e2 instanceof MapWaySegment);
 	}
 
 	/**
 	 * adds the overlap between two {@link MapElement}s
 	 * to both, if it exists. It calls the appropriate
-	 * subtype-specific addOverlapBetween method
+	 * subtype-specific calculateOverlap method
 	 */
 	static void addOverlapBetween(MapElement e1, MapElement e2) {
+		MapOverlap<?, ?> overlap = calculateOverlap(e1, e2);
+		if (overlap != null) {
+			addOverlap(overlap);
+		}
+	}
+
+	/**
+	 * adds an overlap to the elements it involves.
+	 * Overlaps between a node and an area are only added to the area.
+	 */
+	private static void addOverlap(MapOverlap<?, ?> overlap) {
+		if (overlap instanceof MapIntersectionWW o) {
+			o.e1.addOverlap(o);
+			o.e2.addOverlap(o);
+		} else if (overlap instanceof MapOverlapWA o) {
+			o.e1.addOverlap(o);
+			o.e2.addOverlap(o);
+		} else if (overlap instanceof MapOverlapAA o) {
+			o.e1.addOverlap(o);
+			o.e2.addOverlap(o);
+		} else if (overlap instanceof MapOverlapNA o) {
+			o.e2.addOverlap(o);
+		}
+	}
+
+	/**
+	 * calculates the overlap between two {@link MapElement}s without modifying them.
+	 * Can be called for multiple pairs of elements in parallel.
+	 *
+	 * @return  the overlap, or null if the elements do not overlap
+	 */
+	static @Nullable MapOverlap<?, ?> calculateOverlap(MapElement e1, MapElement e2) {
 
 		if (e1 instanceof MapWaySegment s1
 				&& e2 instanceof MapWaySegment s2) {
 
-			addOverlapBetween(s1, s2);
+			return calculateOverlap(s1, s2);
 
 		} else if (e1 instanceof MapWaySegment s
 				&& e2 instanceof MapArea area) {
 
-			addOverlapBetween(s, area);
+			return calculateOverlap(s, area);
 
 		} else if (e1 instanceof MapArea area
 				&& e2 instanceof MapWaySegment s) {
 
-			addOverlapBetween(s, area);
+			return calculateOverlap(s, area);
 
 		} else if (e1 instanceof MapArea area1
 				&& e2 instanceof MapArea area2) {
 
-			addOverlapBetween(area1, area2);
+			return calculateOverlap(area1, area2);
 
 		} else if (e1 instanceof MapNode node
 				&& e2 instanceof MapArea area) {
 
-			addOverlapBetween(node, area);
+			return calculateOverlap(node, area);
 
 		} else if (e1 instanceof MapArea area
 				&& e2 instanceof MapNode node) {
 
-			addOverlapBetween(node, area);
+			return calculateOverlap(node, area);
 
+		} else {
+			return null;
 		}
 
 	}
 
-	/**
-	 * adds the overlap between two {@link MapWaySegment}s
-	 * to both, if it exists
-	 */
-	private static void addOverlapBetween(
+	/** calculates the overlap between two {@link MapWaySegment}s, if it exists */
+	private static @Nullable MapIntersectionWW calculateOverlap(
 			MapWaySegment line1, MapWaySegment line2) {
 
-		if (line1.isConnectedTo(line2)) { return; }
+		if (line1.isConnectedTo(line2)) { return null; }
 
 		VectorXZ intersection = GeometryUtil.getLineSegmentIntersection(
 				line1.getStartNode().getPos(),
@@ -495,24 +596,18 @@ public class OSMToMapDataConverter {
 				line2.getEndNode().getPos());
 
 		if (intersection != null) {
-
-			/* add the intersection */
-
-			MapIntersectionWW newIntersection =
-				new MapIntersectionWW(line1, line2, intersection);
-
-			line1.addOverlap(newIntersection);
-			line2.addOverlap(newIntersection);
-
+			return new MapIntersectionWW(line1, line2, intersection);
+		} else {
+			return null;
 		}
 
 	}
 
 	/**
-	 * adds the overlap between a {@link MapWaySegment}
-	 * and a {@link MapArea} to both, if it exists
+	 * calculates the overlap between a {@link MapWaySegment}
+	 * and a {@link MapArea}, if it exists
 	 */
-	private static void addOverlapBetween(
+	private static @Nullable MapOverlapWA calculateOverlap(
 			MapWaySegment line, MapArea area) {
 
 		final LineSegmentXZ segmentXZ = line.getLineSegment();
@@ -522,15 +617,9 @@ public class OSMToMapDataConverter {
 		for (MapAreaSegment areaSegment : area.getAreaSegments()) {
 			if (areaSegment.sharesBothNodes(line)) {
 
-				MapOverlapWA newOverlap =
-					new MapOverlapWA(line, area, MapOverlapType.SHARE_SEGMENT,
-							Collections.<VectorXZ>emptyList(),
-							Collections.<MapAreaSegment>emptyList());
-
-				line.addOverlap(newOverlap);
-				area.addOverlap(newOverlap);
-
-				return;
+				return new MapOverlapWA(line, area, MapOverlapType.SHARE_SEGMENT,
+						Collections.<VectorXZ>emptyList(),
+						Collections.<MapAreaSegment>emptyList());
 
 			}
 		}
@@ -577,7 +666,7 @@ public class OSMToMapDataConverter {
 
 		}
 
-		/* add an overlap if detected */
+		/* create an overlap if detected */
 
 		if (contains || intersects) {
 
@@ -606,21 +695,18 @@ public class OSMToMapDataConverter {
 
 			}
 
-			/* add the overlap */
-
-			MapOverlapWA newOverlap = new MapOverlapWA(line, area,
+			return new MapOverlapWA(line, area,
 						intersects ? MapOverlapType.INTERSECT : MapOverlapType.CONTAIN,
 						intersectionPositions, intersectingSegments);
 
-			line.addOverlap(newOverlap);
-			area.addOverlap(newOverlap);
-
+		} else {
+			return null;
 		}
 
 	}
 
-	/** adds the overlap between two {@link MapArea}s to both, if it exists */
-	private static void addOverlapBetween(MapArea area1, MapArea area2) {
+	/** calculates the overlap between two {@link MapArea}s, if it exists */
+	private static @Nullable MapOverlapAA calculateOverlap(MapArea area1, MapArea area2) {
 
 		/* check whether the areas have a shared segment */
 
@@ -630,14 +716,7 @@ public class OSMToMapDataConverter {
 		for (MapAreaSegment area1Segment : area1Segments) {
 			for (MapAreaSegment area2Segment : area2Segments) {
 				if (area1Segment.sharesBothNodes(area2Segment)) {
-
-					MapOverlapAA newOverlap =
-						new MapOverlapAA(area1, area2, MapOverlapType.SHARE_SEGMENT);
-					area1.addOverlap(newOverlap);
-					area2.addOverlap(newOverlap);
-
-					return;
-
+					return new MapOverlapAA(area1, area2, MapOverlapType.SHARE_SEGMENT);
 				}
 			}
 		}
@@ -694,40 +773,26 @@ public class OSMToMapDataConverter {
 
 		}
 
-		/* add an overlap if detected */
-
-		if (contains1 || contains2 || intersects) {
-
-			/* add the overlap */
-
-			MapOverlapAA newOverlap = null;
-
-			if (contains1) {
-				newOverlap = new MapOverlapAA(area2, area1, MapOverlapType.CONTAIN);
-			} else if (contains2) {
-				newOverlap = new MapOverlapAA(area1, area2, MapOverlapType.CONTAIN);
-			} else {
-				newOverlap = new MapOverlapAA(area1, area2, MapOverlapType.INTERSECT);
-			}
-
-			area1.addOverlap(newOverlap);
-			area2.addOverlap(newOverlap);
+		/* create an overlap if detected */
 
+		if (contains1) {
+			return new MapOverlapAA(area2, area1, MapOverlapType.CONTAIN);
+		} else if (contains2) {
+			return new MapOverlapAA(area1, area2, MapOverlapType.CONTAIN);
+		} else if (intersects) {
+			return new MapOverlapAA(area1, area2, MapOverlapType.INTERSECT);
+		} else {
+			return null;
 		}
 
 	}
 
-	private static void addOverlapBetween(MapNode node, MapArea area) {
+	private static @Nullable MapOverlapNA calculateOverlap(MapNode node, MapArea area) {
 
 		if (area.getPolygon().contains(node.getPos())) {
-
-			/* add the overlap */
-
-			MapOverlapNA newOverlap =
-					new MapOverlapNA(node, area, MapOverlapType.CONTAIN);
-
-			area.addOverlap(newOverlap);
-
+			return new MapOverlapNA(node, area, MapOverlapType.CONTAIN);
+		} else {
+			return null;
 		}
 
 	}
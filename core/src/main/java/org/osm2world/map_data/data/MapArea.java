@@ -13,6 +13,7 @@ import org.osm2world.map_data.data.overlaps.MapOverlap;
 import org.osm2world.math.VectorXZ;
 import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
 import org.osm2world.math.shapes.PolygonWithHolesXZ;
+import org.osm2world.math.shapes.PreparedPolygonXZ;
 import org.osm2world.math.shapes.SimplePolygonXZ;
 import org.osm2world.util.exception.InvalidGeometryException;
 import org.osm2world.world.data.AreaWorldObject;
@@ -31,7 +32,7 @@ public class MapArea extends MapRelationElement implements MapElement {
 	private final List<MapNode> nodes;
 	private final List<List<MapNode>> holes;
 
-	private final PolygonWithHolesXZ polygon;
+	private final PreparedPolygonXZ polygon;
 
 	private Collection<MapAreaSegment> areaSegments;
 
@@ -75,13 +76,13 @@ public class MapArea extends MapRelationElement implements MapElement {
 		this.nodes = withoutConsecutiveDuplicates(nodes);
 		this.holes = new ArrayList<>(holes.size());
 		holes.forEach(h -> this.holes.add(withoutConsecutiveDuplicates(h)));
-		this.polygon = polygon;
+		this.polygon = polygon instanceof PreparedPolygonXZ p ? p : new PreparedPolygonXZ(polygon);
 
 		finishConstruction();
 
 	}
 
-	private static final PolygonWithHolesXZ convertToPolygon(List<MapNode> nodes, List<List<MapNode>> holes) {
+	private static final PreparedPolygonXZ convertToPolygon(List<MapNode> nodes, List<List<MapNode>> holes) {
 
 		SimplePolygonXZ outerPolygon = polygonFromMapNodeLoop(nodes);
 
@@ -90,7 +91,7 @@ public class MapArea extends MapRelationElement implements MapElement {
 			holePolygons.add(polygonFromMapNodeLoop(hole));
 		}
 
-		return new PolygonWithHolesXZ(outerPolygon, holePolygons);
+		return new PreparedPolygonXZ(outerPolygon, holePolygons);
 
 	}
 
@@ -175,8 +176,9 @@ public class MapArea extends MapRelationElement implements MapElement {
 
 	/**
 	 * returns the area as a polygon.
+	 * The polygon is prepared for repeated containment and intersection tests.
 	 */
-	public PolygonWithHolesXZ getPolygon() {
+	public PreparedPolygonXZ getPolygon() {
 		return polygon;
 	}
 
@@ -227,7 +229,7 @@ public class MapArea extends MapRelationElement implements MapElement {
 
 	@Override
 	public AxisAlignedRectangleXZ boundingBox() {
-		return getOuterPolygon().boundingBox();
+		return getPolygon().boundingBox();
 	}
 
 	@Override
@@ -1,8 +1,8 @@
 package org.osm2world.map_data.data;
 
 import static java.util.stream.Collectors.toList;
-import static org.osm2world.map_data.data.overlaps.MapElementId.TYPED_ID_PATTERN;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -13,7 +13,12 @@ import org.osm2world.math.VectorXZ;
 import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
 import org.osm2world.world.data.WorldObject;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 
 /**
  * OSM2World's abstraction of OSM data, consists of {@link MapElement}s.
@@ -35,6 +40,12 @@ public class MapData {
 	AxisAlignedRectangleXZ fileBoundary;
 	AxisAlignedRectangleXZ dataBoundary;
 
+	/** indices for looking up elements by id, created when they are first needed */
+	private volatile @Nullable TLongObjectMap<MapNode> nodesById = null;
+	private volatile @Nullable TLongObjectMap<MapWay> waysById = null;
+	private volatile @Nullable TLongObjectMap<MapRelation> relationsById = null;
+	private volatile @Nullable Multimap<MapElementId, MapElement> elementsById = null;
+
 	public MapData(List<MapNode> mapNodes, List<MapWay> mapWays, List<MapArea> mapAreas,
 			List<MapRelation> mapRelations, AxisAlignedRectangleXZ fileBoundary) {
 
@@ -115,42 +126,99 @@ public class MapData {
 	 * @param id  id formatted according to the syntax defined for {@link MapElementId}
 	 */
 	public @Nullable MapRelationElement getElement(String id) {
-		if (TYPED_ID_PATTERN.matcher(id).matches()) {
-			var mapId = new MapElementId(id);
-			return switch (mapId.type()) {
-				case NODE -> getMapNode(mapId.getId());
-				case WAY -> getMapWay(mapId.getId());
-				case RELATION -> getMapRelation(mapId.getId());
-			};
+
+		if (id.length() < 2) return null;
+
+		/* check the syntax without using the regular expression from TYPED_ID_PATTERN */
+
+		for (int i = 1; i < id.length(); i++) {
+			char c = id.charAt(i);
+			if (!(c >= '0' && c <= '9') && !(c == '-' && i == 1 && id.length() > 2)) {
+				return null;
+			}
 		}
-		return null;
+
+		long numericId = Long.parseLong(id.substring(1));
+
+		return switch (id.charAt(0)) {
+			case 'n', 'N' -> getMapNode(numericId);
+			case 'w', 'W' -> getMapWay(numericId);
+			case 'r', 'R' -> getMapRelation(numericId);
+			default -> null;
+		};
+
+	}
+
+	/** returns the element with the given ID */
+	public @Nullable MapRelationElement getElement(MapElementId id) {
+		return switch (id.type()) {
+			case NODE -> getMapNode(id.getId());
+			case WAY -> getMapWay(id.getId());
+			case RELATION -> getMapRelation(id.getId());
+		};
 	}
 
 	public @Nullable MapRelation getMapRelation(long id) {
-		for (MapRelation relation : mapRelations) {
-			if (relation.getId() == id) {
-				return relation;
-			}
+		TLongObjectMap<MapRelation> index = relationsById;
+		if (index == null) {
+			relationsById = index = indexById(mapRelations);
 		}
-		return null;
+		return index.get(id);
 	}
 
 	public @Nullable MapWay getMapWay(long id) {
-		for (MapWay way : mapWays) {
-			if (way.getId() == id) {
-				return way;
-			}
+		TLongObjectMap<MapWay> index = waysById;
+		if (index == null) {
+			waysById = index = indexById(mapWays);
 		}
-		return null;
+		return index.get(id);
 	}
 
 	public @Nullable MapNode getMapNode(long id) {
-		for (MapNode node : mapNodes) {
-			if (node.getId() == id) {
-				return node;
+		TLongObjectMap<MapNode> index = nodesById;
+		if (index == null) {
+			nodesById = index = indexById(mapNodes);
+		}
+		return index.get(id);
+	}
+
+	/**
+	 * creates an index of elements by their id.
+	 * If multiple elements have the same id, the first one is used.
+	 */
+	private static <E extends MapRelationElement> TLongObjectMap<E> indexById(List<E> elements) {
+		TLongObjectMap<E> result = new TLongObjectHashMap<>(elements.size());
+		for (E element : elements) {
+			result.putIfAbsent(element.getId(), element);
+		}
+		return result;
+	}
+
+	/**
+	 * returns all {@link WorldObject}s which represent the element with a given ID.
+	 * Ways can be represented by multiple {@link MapWaySegment}s, each with their own {@link WorldObject}s.
+	 *
+	 * The index of elements is created when this is first called, but the {@link WorldObject}s are looked up
+	 * each time. Therefore, this method can be used while world objects are still being added.
+	 */
+	public List<WorldObject> getWorldObjects(MapElementId id) {
+
+		Multimap<MapElementId, MapElement> index = elementsById;
+
+		if (index == null) {
+			index = ArrayListMultimap.create();
+			for (MapElement element : getMapElements()) {
+				index.put(new MapElementId(element.getElementWithId().toString()), element);
 			}
+			elementsById = index;
 		}
-		return null;
+
+		List<WorldObject> result = new ArrayList<>();
+		for (MapElement element : index.get(id)) {
+			result.addAll(element.getRepresentations());
+		}
+		return result;
+
 	}
 
 	/**
@@ -19,7 +19,7 @@ public class Tag {
 
 	@Override
 	public boolean equals(Object obj) {
-		return obj instanceof Tag otherTag && key.equals(otherTag.key) && value.equals(otherTag.value);
+		return obj == this || obj instanceof Tag otherTag && key.equals(otherTag.key) && value.equals(otherTag.value);
 	}
 
 	@Override
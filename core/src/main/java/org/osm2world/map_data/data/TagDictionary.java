@@ -0,0 +1,94 @@
+package org.osm2world.map_data.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * process-wide dictionary of tag keys and values.
+ *
+ * Keys used in a {@link TagSet} are assigned an integer id, which allows {@link TagSet} to look up keys
+ * using a binary search over ints. In addition, tags read from OSM data can be interned using
+ * {@link #tag(String, String)}, so that the many duplicate keys, values and tags in typical data
+ * share the same instances.
+ *
+ * All methods can be used by multiple threads at once.
+ */
+public final class TagDictionary {
+
+	/** upper limit for the number of interned tags, to avoid unbounded growth in long-running processes */
+	private static final int MAX_INTERNED_TAGS = 1 << 20;
+
+	/**
+	 * upper limit for the number of keys with an id. Typical data uses far fewer distinct keys.
+	 * Can be exceeded slightly if several threads add keys at the same time.
+	 */
+	private static final int MAX_KEYS = 1 << 16;
+
+	/** values longer than this (e.g. names, descriptions) are rarely shared and will not be interned */
+	private static final int MAX_INTERNED_VALUE_LENGTH = 32;
+
+	/** a key's canonical instance and id */
+	private record KeyEntry(String key, int id) {}
+
+	private static final Map<String, KeyEntry> keys = new ConcurrentHashMap<>();
+	private static final AtomicInteger nextKeyId = new AtomicInteger();
+	private static final Map<Tag, Tag> internedTags = new ConcurrentHashMap<>();
+
+	private TagDictionary() {}
+
+	/**
+	 * returns the id of a key, assigning a new id if the key has not been seen before.
+	 * Ids are non-negative and remain the same for the lifetime of the process.
+	 *
+	 * @return  the key's id, or -1 if the key has no id and the maximum number of keys has been reached
+	 */
+	static int keyId(String key) {
+		KeyEntry entry = keyEntry(key);
+		return entry == null ? -1 : entry.id;
+	}
+
+	private static @Nullable KeyEntry keyEntry(String key) {
+		KeyEntry entry = keys.get(key);
+		if (entry == null && keys.size() < MAX_KEYS) {
+			// the mapping function is called at most once per key, so each id is only assigned once
+			entry = keys.computeIfAbsent(key, k -> new KeyEntry(k, nextKeyId.getAndIncrement()));
+		}
+		return entry;
+	}
+
+	/**
+	 * returns the id of a key without assigning a new id
+	 *
+	 * @return  the key's id, or -1 if the key has no id (e.g. because no {@link TagSet} with this key
+	 *          has been created yet)
+	 */
+	static int existingKeyId(String key) {
+		KeyEntry entry = keys.get(key);
+		return entry == null ? -1 : entry.id;
+	}
+
+	/**
+	 * returns a tag with the given key and value.
+	 * Equal tags will usually be represented by the same instance, and so will equal keys and values.
+	 */
+	public static Tag tag(String key, String value) {
+
+		Tag tag = internedTags.get(new Tag(key, value));
+		if (tag != null) return tag;
+
+		KeyEntry keyEntry = keyEntry(key);
+		var newTag = new Tag(keyEntry != null ? keyEntry.key : key, value);
+
+		if (value.length() > MAX_INTERNED_VALUE_LENGTH || internedTags.size() >= MAX_INTERNED_TAGS) {
+			return newTag;
+		}
+
+		tag = internedTags.putIfAbsent(newTag, newTag);
+		return tag != null ? tag : newTag;
+
+	}
+
+}
@@ -22,6 +22,13 @@ public final class TagSet implements Iterable<Tag> {
 	/** the backing array. Will not be modified after construction. Sorted alphabetically (for equality behavior). */
 	private final Tag[] tags;
 
+	/**
+	 * index for looking up tags by key. Each entry contains a key id from {@link TagDictionary}
+	 * in the upper 32 bits and the index of the tag in {@link #tags} in the lower 32 bits.
+	 * Sorted by key id. Null if one of the keys has no id, in which case the tags are searched by key.
+	 */
+	private final @Nullable long[] keyIndex;
+
 	private TagSet(Tag[] tags) {
 
 		this.tags = tags;
@@ -34,6 +41,63 @@ public final class TagSet implements Iterable<Tag> {
 			}
 		}
 
+		long[] keyIndex = new long[tags.length];
+		for (int i = 0; i < tags.length; i++) {
+			int keyId = TagDictionary.keyId(tags[i].key);
+			if (keyId < 0) {
+				keyIndex = null;
+				break;
+			}
+			keyIndex[i] = ((long) keyId << 32) | i;
+		}
+		if (keyIndex != null) {
+			sort(keyIndex);
+		}
+		this.keyIndex = keyIndex;
+
+	}
+
+	/** returns the tag with the given key, or null if there is none */
+	private @Nullable Tag getTag(String key) {
+
+		if (keyIndex == null) {
+			// relies on the tags being sorted by key
+			int low = 0;
+			int high = tags.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int comparison = tags[mid].key.compareTo(key);
+				if (comparison < 0) {
+					low = mid + 1;
+				} else if (comparison > 0) {
+					high = mid - 1;
+				} else {
+					return tags[mid];
+				}
+			}
+			return null;
+		}
+
+		int keyId = TagDictionary.existingKeyId(key);
+		if (keyId < 0) return null;
+
+		int low = 0;
+		int high = keyIndex.length - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midKeyId = (int) (keyIndex[mid] >>> 32);
+			if (midKeyId < keyId) {
+				low = mid + 1;
+			} else if (midKeyId > keyId) {
+				high = mid - 1;
+			} else {
+				return tags[(int) keyIndex[mid]];
+			}
+		}
+
+		return null;
+
 	}
 
 	public static final TagSet of() {
@@ -112,12 +176,8 @@ public final class TagSet implements Iterable<Tag> {
 	 */
 	public String getValue(String key) {
 		assert key != null;
-		for (Tag tag : tags) {
-			if (tag.key.equals(key)) {
-				return tag.value;
-			}
-		}
-		return null;
+		Tag tag = getTag(key);
+		return tag == null ? null : tag.value;
 	}
 
 	/**
@@ -126,12 +186,8 @@ public final class TagSet implements Iterable<Tag> {
 	 */
 	public boolean contains(Tag tag) {
 		assert tag != null;
-		for (Tag t : tags) {
-			if (t.equals(tag)) {
-				return true;
-			}
-		}
-		return false;
+		Tag t = getTag(tag.key);
+		return t != null && t.value.equals(tag.value);
 	}
 
 	/**
@@ -140,7 +196,9 @@ public final class TagSet implements Iterable<Tag> {
 	 * @param value  value of the tag to check for; != null
 	 */
 	public boolean contains(String key, String value) {
-		return contains(new Tag(key, value));
+		assert key != null && value != null;
+		Tag t = getTag(key);
+		return t != null && t.value.equals(value);
 	}
 
 	/**
@@ -148,12 +206,7 @@ public final class TagSet implements Iterable<Tag> {
 	 * @param key  key to check for; != null
 	 */
 	public boolean containsKey(String key) {
-		for (Tag tag : tags) {
-			if (tag.key.equals(key)) {
-				return true;
-			}
-		}
-		return false;
+		return getTag(key) != null;
 	}
 
 	/**
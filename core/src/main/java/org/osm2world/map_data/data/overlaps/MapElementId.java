@@ -10,6 +10,7 @@ import javax.annotation.Nullable;
  * ID of an element from an OSM dataset.
  * The string representation consists of a numeric ID prefixed with a single letter:
  * n for node, w for way, r for relation.
+ * Upper case prefixes are accepted and converted to lower case.
  */
 public record MapElementId(String string) {
 
@@ -18,7 +19,6 @@ public record MapElementId(String string) {
 	public enum ElementType {NODE, WAY, RELATION}
 
 	public static @Nullable MapElementId parse(String id) {
-		id = id.toLowerCase(Locale.ROOT);
 		if (TYPED_ID_PATTERN.matcher(id).matches()) {
 			return new MapElementId(id);
 		} else {
@@ -30,6 +30,7 @@ public record MapElementId(String string) {
 		if (!TYPED_ID_PATTERN.matcher(string).matches()) {
 			throw new IllegalArgumentException("Invalid ID: " + string);
 		}
+		string = string.toLowerCase(Locale.ROOT);
 	}
 
 	public ElementType type() {
@@ -0,0 +1,123 @@
+package org.osm2world.map_elevation.creation;
+
+import static java.lang.Math.*;
+
+/**
+ * a regular raster of elevation samples, aligned with lines of latitude and longitude.
+ * Samples are located exactly on the grid lines ("pixel is point"), so the first and last row and column
+ * lie on the edges of the grid's bounds. This is the layout used by SRTM and many other DEM formats.
+ *
+ * Implementations must allow concurrent reads from multiple threads.
+ */
+public interface ElevationGrid {
+
+	/** how to calculate elevations between grid samples */
+	enum Sampling {
+		/** bilinear interpolation between the 4 surrounding samples */
+		BILINEAR,
+		/**
+		 * bicubic (Catmull-Rom) interpolation using the 16 surrounding samples.
+		 * At the edges of the grid, the outermost samples are repeated.
+		 */
+		BICUBIC
+	}
+
+	double minLat();
+	double minLon();
+	double maxLat();
+	double maxLon();
+
+	/** number of samples in each row */
+	int columns();
+
+	/** number of samples in each column */
+	int rows();
+
+	/**
+	 * returns the elevation of a single sample
+	 *
+	 * @param column  0 for the westernmost column
+	 * @param row     0 for the northernmost row
+	 * @return  elevation in meters, NaN if the sample has no value
+	 */
+	double sample(int column, int row);
+
+	/** returns whether a position is within the grid's bounds */
+	default boolean contains(double lat, double lon) {
+		return minLat() <= lat && lat <= maxLat() && minLon() <= lon && lon <= maxLon();
+	}
+
+	/**
+	 * returns the elevation at any position within the grid's bounds by interpolating between samples.
+	 * Samples without a value are ignored.
+	 *
+	 * @return  elevation in meters, NaN if the position is outside the grid or no samples with a value are nearby
+	 */
+	default double getElevation(double lat, double lon, Sampling sampling) {
+
+		if (!contains(lat, lon)) return Double.NaN;
+
+		double column = (lon - minLon()) / (maxLon() - minLon()) * (columns() - 1);
+		double row = (maxLat() - lat) / (maxLat() - minLat()) * (rows() - 1);
+
+		int c = min((int) floor(column), columns() - 2);
+		int r = min((int) floor(row), rows() - 2);
+		double fc = column - c;
+		double fr = row - r;
+
+		if (sampling == Sampling.BICUBIC) {
+
+			double result = 0;
+
+			for (int j = -1; j <= 2; j++) {
+				double rowResult = 0;
+				for (int i = -1; i <= 2; i++) {
+					double s = sample(clamp(c + i, columns()), clamp(r + j, rows()));
+					rowResult += s * cubicWeight(i - fc);
+				}
+				result += rowResult * cubicWeight(j - fr);
+			}
+
+			if (!Double.isNaN(result)) {
+				return result;
+			}
+
+			// some samples lack a value, use bilinear interpolation instead
+
+		}
+
+		double sum = 0;
+		double weightSum = 0;
+
+		for (int j = 0; j <= 1; j++) {
+			for (int i = 0; i <= 1; i++) {
+				double s = sample(c + i, r + j);
+				double weight = (i == 0 ? 1 - fc : fc) * (j == 0 ? 1 - fr : fr);
+				if (!Double.isNaN(s) && weight > 0) {
+					sum += s * weight;
+					weightSum += weight;
+				}
+			}
+		}
+
+		return weightSum > 0 ? sum / weightSum : Double.NaN;
+
+	}
+
+	private static int clamp(int index, int size) {
+		return max(0, min(size - 1, index));
+	}
+
+	/** Catmull-Rom weight for a sample at distance x from the interpolated position */
+	private static double cubicWeight(double x) {
+		x = abs(x);
+		if (x < 1) {
+			return 1.5 * x * x * x - 2.5 * x * x + 1;
+		} else if (x < 2) {
+			return -0.5 * x * x * x + 2.5 * x * x - 4 * x + 2;
+		} else {
+			return 0;
+		}
+	}
+
+}
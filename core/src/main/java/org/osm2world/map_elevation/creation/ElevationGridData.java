@@ -0,0 +1,85 @@
+package org.osm2world.map_elevation.creation;
+
+import static java.lang.Math.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.osm2world.map_elevation.creation.ElevationGrid.Sampling;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.geo.LatLon;
+import org.osm2world.math.geo.LatLonBounds;
+import org.osm2world.math.geo.MapProjection;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+
+/**
+ * {@link GridElevationData} from a fixed set of {@link ElevationGrid}s, e.g. raw DEM files.
+ * If grids overlap, the first grid with a value for a position is used.
+ */
+public class ElevationGridData implements GridElevationData {
+
+	private final List<? extends ElevationGrid> grids;
+	private final MapProjection projection;
+
+	public ElevationGridData(List<? extends ElevationGrid> grids, MapProjection projection) {
+		this.grids = List.copyOf(grids);
+		this.projection = projection;
+	}
+
+	@Override
+	public MapProjection getProjection() {
+		return projection;
+	}
+
+	@Override
+	public double getElevation(LatLon pos, Sampling sampling) {
+		for (ElevationGrid grid : grids) {
+			double result = grid.getElevation(pos.lat, pos.lon, sampling);
+			if (!Double.isNaN(result)) {
+				return result;
+			}
+		}
+		return Double.NaN;
+	}
+
+	@Override
+	public Collection<VectorXYZ> getSites(AxisAlignedRectangleXZ bounds) {
+
+		var latLonBounds = new LatLonBounds(
+				projection.toLatLon(bounds.bottomLeft()),
+				projection.toLatLon(bounds.topRight()));
+
+		Collection<VectorXYZ> result = new ArrayList<>();
+
+		for (ElevationGrid grid : grids) {
+
+			double lonStep = (grid.maxLon() - grid.minLon()) / (grid.columns() - 1);
+			double latStep = (grid.maxLat() - grid.minLat()) / (grid.rows() - 1);
+
+			int minColumn = max(0, (int) floor((latLonBounds.minlon - grid.minLon()) / lonStep));
+			int maxColumn = min(grid.columns() - 1, (int) ceil((latLonBounds.maxlon - grid.minLon()) / lonStep));
+			int minRow = max(0, (int) floor((grid.maxLat() - latLonBounds.maxlat) / latStep));
+			int maxRow = min(grid.rows() - 1, (int) ceil((grid.maxLat() - latLonBounds.minlat) / latStep));
+
+			for (int row = minRow; row <= maxRow; row++) {
+				for (int column = minColumn; column <= maxColumn; column++) {
+
+					double value = grid.sample(column, row);
+					VectorXZ pos = projection.toXZ(grid.maxLat() - row * latStep, grid.minLon() + column * lonStep);
+
+					if (!Double.isNaN(value) && !Double.isNaN(pos.x) && !Double.isNaN(pos.z)) {
+						result.add(pos.xyz(value));
+					}
+
+				}
+			}
+
+		}
+
+		return result;
+
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.osm2world.map_elevation.creation;
+
+import java.io.IOException;
+
+import org.osm2world.map_elevation.creation.ElevationGrid.Sampling;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.geo.LatLon;
+import org.osm2world.math.geo.MapProjection;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+
+/**
+ * {@link TerrainElevationData} based on raster data, such as a digital elevation model (DEM).
+ * In addition to providing sites, it can look up the elevation at any position directly from the raster.
+ * This avoids creating an object for every sample of the raster.
+ *
+ * Implementations must allow concurrent calls from multiple threads.
+ */
+public interface GridElevationData extends TerrainElevationData {
+
+	/** returns the projection which is used to convert between lat/lon coordinates and the XZ plane */
+	MapProjection getProjection();
+
+	/**
+	 * returns the elevation at a position
+	 *
+	 * @return  elevation in meters, NaN if there is no data for this position
+	 */
+	double getElevation(LatLon pos, Sampling sampling) throws IOException;
+
+	/**
+	 * returns the elevation at a position in the XZ plane
+	 *
+	 * @return  elevation in meters, NaN if there is no data for this position
+	 */
+	default double getElevation(VectorXZ pos, Sampling sampling) throws IOException {
+		return getElevation(getProjection().toLatLon(pos), sampling);
+	}
+
+	/**
+	 * returns elevation data with the same values as this data within the bounds.
+	 * Lookups in the result may be faster, e.g. because the relevant files have already been loaded.
+	 * Values outside the bounds may be missing from the result.
+	 * The default implementation returns this object.
+	 *
+	 * @throws IOException  if no data is available within the bounds
+	 */
+	default GridElevationData restrictTo(AxisAlignedRectangleXZ bounds) throws IOException {
+		return this;
+	}
+
+}
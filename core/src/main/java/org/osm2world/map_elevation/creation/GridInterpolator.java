@@ -0,0 +1,82 @@
+package org.osm2world.map_elevation.creation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.map_elevation.creation.ElevationGrid.Sampling;
+import org.osm2world.math.VectorXYZ;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+
+/**
+ * interpolates elevations directly from raster data such as SRTM.
+ *
+ * Positions are projected back to lat/lon coordinates and looked up in the raster,
+ * using bilinear or bicubic interpolation between the samples.
+ * Each query takes constant time, and no triangulation or search for neighboring sites is needed.
+ * Positions without a value in the raster are assigned an elevation of 0.
+ *
+ * If the elevation data is not a raster (i.e. not {@link GridElevationData}) or only sites are provided,
+ * a {@link NaturalNeighborInterpolator} is used instead.
+ */
+public class GridInterpolator implements TerrainInterpolator {
+
+	private final Sampling sampling;
+
+	private @Nullable GridElevationData gridData = null;
+	private @Nullable TerrainInterpolator fallbackInterpolator = null;
+
+	public GridInterpolator(Sampling sampling) {
+		this.sampling = sampling;
+	}
+
+	public GridInterpolator() {
+		this(Sampling.BICUBIC);
+	}
+
+	@Override
+	public void setElevationData(TerrainElevationData eleData, AxisAlignedRectangleXZ bounds) throws IOException {
+		if (eleData instanceof GridElevationData data) {
+			gridData = data.restrictTo(bounds);
+			fallbackInterpolator = null;
+		} else {
+			TerrainInterpolator.super.setElevationData(eleData, bounds);
+		}
+	}
+
+	@Override
+	public void setKnownSites(Collection<VectorXYZ> sites) {
+		gridData = null;
+		fallbackInterpolator = new NaturalNeighborInterpolator();
+		fallbackInterpolator.setKnownSites(sites);
+	}
+
+	@Override
+	public VectorXYZ interpolateEle(VectorXZ pos) {
+
+		if (gridData != null) {
+
+			try {
+				double ele = gridData.getElevation(pos, sampling);
+				return pos.xyz(Double.isNaN(ele) ? 0 : ele);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+		} else if (fallbackInterpolator != null) {
+			return fallbackInterpolator.interpolateEle(pos);
+		} else {
+			throw new IllegalStateException("elevation data has not been set");
+		}
+
+	}
+
+	@Override
+	public boolean supportsConcurrentQueries() {
+		return true;
+	}
+
+}
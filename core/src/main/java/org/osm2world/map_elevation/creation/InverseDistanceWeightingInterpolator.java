@@ -1,75 +1,77 @@
 package org.osm2world.map_elevation.creation;
 
 import static java.lang.Math.*;
-import static org.osm2world.math.shapes.AxisAlignedRectangleXZ.bbox;
 
 import java.util.Collection;
 
 import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXZ;
-import org.osm2world.math.datastructures.IndexGrid;
-
 
+/**
+ * uses inverse distance weighting of all sites within a cutoff distance.
+ * Queries do not allocate any objects other than the result, and can be performed by multiple threads at once.
+ */
 public class InverseDistanceWeightingInterpolator implements TerrainInterpolator {
 
 	private static final double CUTOFF = 300;
 
-	private final double negExp;
-	private Collection<VectorXYZ> sites;
-	private IndexGrid<VectorXYZ> siteGrid;
+	/** size of the grid cells relative to the cutoff distance */
+	private static final int CELLS_PER_CUTOFF = 2;
+
+	private final double exponent;
+
+	/** the exponent if it is a small positive integer, otherwise -1 */
+	private final int intExponent;
+
+	private SiteGrid siteGrid;
 
 	public InverseDistanceWeightingInterpolator() {
 		this(2);
 	}
 
 	public InverseDistanceWeightingInterpolator(double exponent) {
-		this.negExp = -exponent;
+		this.exponent = exponent;
+		this.intExponent = (exponent == rint(exponent) && exponent >= 1 && exponent <= 16) ? (int) exponent : -1;
 	}
 
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> sites) {
-
-		if (sites.isEmpty()) {
-			throw new IllegalArgumentException("No sites with elevation available");
-		}
-
-		this.sites = sites;
-
-		siteGrid = new IndexGrid<VectorXYZ>(
-				bbox(sites).pad(CUTOFF/2),
-				CUTOFF, CUTOFF);
-
-		for (VectorXYZ site : sites) {
-			siteGrid.insert(site);
-		}
-
+		siteGrid = new SiteGrid(sites, CUTOFF / CELLS_PER_CUTOFF);
 	}
 
 	@Override
 	public VectorXYZ interpolateEle(VectorXZ pos) {
 
+		final SiteGrid grid = siteGrid;
+		final double[] x = grid.x, z = grid.z, ele = grid.ele;
+
 		double weightSum = 0;
 		double eleSum = 0;
 
-		Collection<VectorXYZ>[][] cellArray = siteGrid.getCellArray();
-		int cellX = siteGrid.cellXForCoord(pos.x);
-		int cellZ = siteGrid.cellZForCoord(pos.z);
+		int cellX = grid.cellX(pos.x);
+		int cellZ = grid.cellZ(pos.z);
+
+		for (int j = max(cellZ - CELLS_PER_CUTOFF, 0); j <= min(cellZ + CELLS_PER_CUTOFF, grid.cellCountZ - 1); j++) {
+			for (int i = max(cellX - CELLS_PER_CUTOFF, 0); i <= min(cellX + CELLS_PER_CUTOFF, grid.cellCountX - 1); i++) {
 
-		for (int i = max(cellX-1, 0); i < min(cellX+2, cellArray.length); i++) {
-			for (int j = max(cellZ-1, 0); j < min(cellZ+2, cellArray[i].length); j++) {
+				if (grid.cellDistanceSquared(i, j, pos.x, pos.z) >= CUTOFF * CUTOFF) continue;
 
-				Collection<VectorXYZ> sitesInCell = cellArray[i][j];
+				for (int s = grid.cellStart(i, j); s < grid.cellEnd(i, j); s++) {
 
-				if (sitesInCell == null) continue;
+					double dx = x[s] - pos.x;
+					double dz = z[s] - pos.z;
+					double distanceSquared = dx * dx + dz * dz;
 
-				for (VectorXYZ site : sitesInCell) {
+					if (distanceSquared < CUTOFF * CUTOFF) {
 
-					double distance = site.distanceToXZ(pos);
+						if (distanceSquared == 0) {
+							return pos.xyz(ele[s]);
+						}
 
-					if (distance < CUTOFF) {
-						double weight = pow(distance, negExp);
+						double weight = weight(distanceSquared);
 						weightSum += weight;
-						eleSum += site.y * weight;
+						eleSum += ele[s] * weight;
+
 					}
 
 				}
@@ -77,10 +79,33 @@ public class InverseDistanceWeightingInterpolator implements TerrainInterpolator
 			}
 		}
 
-		//System.out.println(pos + ": " + eleSum + ", " + weightSum + ", " + eleSum / weightSum);
-
 		return pos.xyz(eleSum / weightSum);
 
 	}
 
+	/** returns distance^-exponent, avoiding square roots and {@link Math#pow(double, double)} where possible */
+	private double weight(double distanceSquared) {
+
+		if (intExponent < 0) {
+			return pow(distanceSquared, -exponent / 2);
+		}
+
+		double result = 1;
+		for (int i = 0; i < intExponent / 2; i++) {
+			result *= distanceSquared;
+		}
+
+		if (intExponent % 2 != 0) {
+			result *= sqrt(distanceSquared);
+		}
+
+		return 1 / result;
+
+	}
+
+	@Override
+	public boolean supportsConcurrentQueries() {
+		return true;
+	}
+
 }
@@ -1,18 +1,19 @@
 package org.osm2world.map_elevation.creation;
 
 import static java.lang.Math.max;
-import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
 import static java.util.Locale.ROOT;
-import static org.osm2world.math.shapes.AxisAlignedRectangleXZ.bbox;
 
 import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nullable;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.math3.linear.*;
 import org.osm2world.math.BoundedObject;
 import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXZ;
-import org.osm2world.math.datastructures.IndexGrid;
 import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
 
 /**
@@ -25,8 +26,12 @@ public class LeastSquaresInterpolator implements TerrainInterpolator {
 	private static final int SITES_FOR_APPROX = 9;
 	private static final int SITES_FOR_INTERPOL = 29;
 
-	private Collection<SiteWithPolynomial> sites;
-	private IndexGrid<SiteWithPolynomial> siteGrid;
+	private SiteGrid siteGrid;
+
+	/** the sites, in the order used by {@link #siteGrid} */
+	private SiteWithPolynomial[] sites;
+
+	private final IntPredicate hasPolynomial = i -> sites[i].polynomial != null;
 
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> siteVectors) {
@@ -35,98 +40,82 @@ public class LeastSquaresInterpolator implements TerrainInterpolator {
 			throw new IllegalArgumentException("No sites with elevation available");
 		}
 
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
+		List<VectorXYZ> siteVectorList = new ArrayList<>(siteVectors);
 
-		sites = new ArrayList<SiteWithPolynomial>(siteVectors.size());
+		siteGrid = new SiteGrid(siteVectorList, CELL_SIZE);
 
-		siteGrid = new IndexGrid<SiteWithPolynomial>(
-				bbox(siteVectors).pad(CELL_SIZE/2),
-				CELL_SIZE, CELL_SIZE);
+		sites = new SiteWithPolynomial[siteGrid.size()];
 
-		for (VectorXYZ siteVector : siteVectors) {
-			SiteWithPolynomial s = new SiteWithPolynomial(siteVector);
-			sites.add(s);
-			siteGrid.insert(s);
+		for (int i = 0; i < sites.length; i++) {
+			sites[i] = new SiteWithPolynomial(siteVectorList.get(siteGrid.originalIndex[i]));
 		}
 
-		System.out.println("  time grid: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		/* approximate a polynomial at each site. Each site's polynomial is independent of the others'. */
 
-		/* approximate a polynomial at each site */
-
-		Map<SiteWithPolynomial, List<SiteWithPolynomial>> nearestSiteMap
-			= new HashMap<SiteWithPolynomial, List<SiteWithPolynomial>>();
+		IntStream.range(0, sites.length).parallel().forEach(i -> {
+			int[] nearestSites = new int[SITES_FOR_APPROX];
+			int count = siteGrid.findNearest(siteGrid.x[i], siteGrid.z[i], s -> true,
+					nearestSites, new double[SITES_FOR_APPROX]);
+			if (count == SITES_FOR_APPROX) {
+				sites[i].setPolynomial(approximatePolynomial(nearestSites));
+			}
+		});
 
-		for (SiteWithPolynomial site : sites) {
+	}
 
-			List<SiteWithPolynomial> nearestSites =
-					findNearestSites(site.pos.xz(), SITES_FOR_APPROX, false);
+	/**
+	 * fits a polynomial to a site's nearest sites using least squares
+	 *
+	 * @param nearestSites  indices of the sites in {@link #siteGrid}
+	 * @return  the polynomial, or null if it is unsuitable due to extreme coefficients
+	 */
+	private @Nullable Polynomial approximatePolynomial(int[] nearestSites) {
 
-			nearestSiteMap.put(site, nearestSites);
+		RealVector vector = new ArrayRealVector(SITES_FOR_APPROX);
+		RealMatrix matrix = new Array2DRowRealMatrix(
+				SITES_FOR_APPROX, DefaultPolynomial.NUM_COEFFS);
 
+		for (int row = 0; row < SITES_FOR_APPROX; row++) {
+			int nearSite = nearestSites[row];
+			DefaultPolynomial.populateMatrix(matrix, row, siteGrid.x[nearSite], siteGrid.z[nearSite]);
+			vector.setEntry(row, siteGrid.ele[nearSite]);
 		}
 
-		System.out.println("  time nearest sites: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
-
-		calculatePolynomials:
-		for (SiteWithPolynomial site : sites) {
-
-			List<SiteWithPolynomial> nearestSites =
-					nearestSiteMap.get(site);
-
-			RealVector vector = new ArrayRealVector(SITES_FOR_APPROX);
-			RealMatrix matrix = new Array2DRowRealMatrix(
-					SITES_FOR_APPROX, DefaultPolynomial.NUM_COEFFS);
-
-			for (int row = 0; row < SITES_FOR_APPROX; row++) {
-				SiteWithPolynomial nearSite = nearestSites.get(row);
-				DefaultPolynomial.populateMatrix(matrix, row, nearSite.pos.x, nearSite.pos.z);
-				vector.setEntry(row, nearSite.pos.y);
-			}
-
-			QRDecomposition qr = new QRDecomposition(matrix);
-			RealVector solution = qr.getSolver().solve(vector);
+		QRDecomposition qr = new QRDecomposition(matrix);
+		RealVector solution = qr.getSolver().solve(vector);
 
-			double[] coeffs = solution.toArray();
+		double[] coeffs = solution.toArray();
 
-			for (double coeff : coeffs) {
-				if (coeff > 10e3) {
-					continue calculatePolynomials;
-				}
+		for (double coeff : coeffs) {
+			if (coeff > 10e3) {
+				return null;
 			}
-
-			site.setPolynomial(new DefaultPolynomial(coeffs));
-
 		}
 
-		System.out.println("  time polyonmials: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		return new DefaultPolynomial(coeffs);
 
 	}
 
 	@Override
 	public VectorXYZ interpolateEle(VectorXZ pos) {
 
-		List<SiteWithPolynomial> nearestSites =
-				findNearestSites(pos, SITES_FOR_INTERPOL, true);
+		int[] nearestSites = new int[SITES_FOR_INTERPOL];
+		double[] distancesSquared = new double[SITES_FOR_INTERPOL];
+
+		int count = siteGrid.findNearest(pos.x, pos.z, hasPolynomial, nearestSites, distancesSquared);
 
 		double eleSum = 0;
 		double weightSum = 0;
 
-		for (SiteWithPolynomial site : nearestSites) {
+		for (int n = 0; n < count; n++) {
 
-			double distance = site.pos.distanceToXZ(pos);
+			double distance = sqrt(distancesSquared[n]);
 
 			double weight = max(1 - distance / 120, 0);
 
 			weightSum += weight;
 
-			eleSum += weight * site.getPolynomial().evaluateAt(pos.x, pos.z);
+			eleSum += weight * sites[nearestSites[n]].getPolynomial().evaluateAt(pos.x, pos.z);
 
 		}
 
@@ -136,84 +125,17 @@ public class LeastSquaresInterpolator implements TerrainInterpolator {
 
 	}
 
+	@Override
+	public boolean supportsConcurrentQueries() {
+		return true;
+	}
+
 	/**
 	 * provides access to the polynomials approximated internally.
 	 * This is usually only interesting for debugging or similar tasks.
 	 */
 	public Collection<SiteWithPolynomial> getSitesWithPolynomials() {
-		return sites;
-	}
-
-	private List<SiteWithPolynomial> findNearestSites(
-			final VectorXZ pos, int numberSites, boolean requirePolynomial) {
-
-		PriorityQueue<SiteWithPolynomial> result =
-				new PriorityQueue<SiteWithPolynomial>(numberSites,
-						new Comparator<SiteWithPolynomial>() {
-					@Override
-					public int compare(SiteWithPolynomial s1, SiteWithPolynomial s2) {
-						return - Double.compare(s1.pos.distanceToXZ(pos),
-								s2.pos.distanceToXZ(pos));
-					}
-				});
-
-		Collection<SiteWithPolynomial>[][] cellArray = siteGrid.getCellArray();
-		int cellX = siteGrid.cellXForCoord(pos.x);
-		int cellZ = siteGrid.cellZForCoord(pos.z);
-
-		int cellRange = 0;
-
-		do {
-
-			for (int i = max(cellX-cellRange, 0); i < min(cellX+cellRange+1, cellArray.length); i++) {
-				for (int j = max(cellZ-cellRange, 0); j < min(cellZ+cellRange+1, cellArray[i].length); j++) {
-
-					//needs to be on the outer ring of cells (others have been checked before)
-					if (i == cellX-cellRange || i == cellX+cellRange
-							|| j == cellZ-cellRange || j == cellZ+cellRange) {
-
-						Collection<SiteWithPolynomial> sitesInCell = cellArray[i][j];
-
-						if (sitesInCell != null) {
-							for (SiteWithPolynomial site : sitesInCell) {
-
-								if (requirePolynomial && site.polynomial == null) continue;
-
-								if (result.size() < numberSites) {
-
-									result.add(site);
-
-								} else if (site.pos.distanceToXZ(pos) <
-										result.peek().pos.distanceToXZ(pos)) {
-
-									result.remove();
-									result.add(site);
-
-								}
-							}
-						}
-
-					}
-
-				}
-			}
-
-			cellRange ++;
-
-		} while (result.size() < numberSites
-				|| cellRange * CELL_SIZE < result.peek().pos.distanceToXZ(pos));
-
-		//TODO error handling (not enough sites)
-
-		/* get the result as a list with ascending distance */
-
-		List<SiteWithPolynomial> resultList =
-				new ArrayList<SiteWithPolynomial>(result);
-
-		Collections.reverse(resultList);
-
-		return resultList;
-
+		return Arrays.asList(sites);
 	}
 
 	public static interface Polynomial {
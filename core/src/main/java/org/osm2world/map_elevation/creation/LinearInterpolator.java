@@ -12,7 +12,8 @@ import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
 /**
  * triangulates the point set of elevation sites,
  * then interpolates linearly within each triangle
- * (i.e. treats the triangles as flat)
+ * (i.e. treats the triangles as flat).
+ * Queries only read the triangulation, so they can be performed by multiple threads at once.
  */
 public class LinearInterpolator implements TerrainInterpolator {
 
@@ -47,4 +48,9 @@ public class LinearInterpolator implements TerrainInterpolator {
 
 	}
 
+	@Override
+	public boolean supportsConcurrentQueries() {
+		return true;
+	}
+
 }
@@ -2,19 +2,30 @@ package org.osm2world.map_elevation.creation;
 
 import static org.osm2world.math.shapes.AxisAlignedRectangleXZ.bbox;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
-import org.osm2world.map_elevation.creation.DelaunayTriangulation.NaturalNeighbors;
+import javax.annotation.Nullable;
+
+import org.osm2world.map_elevation.creation.DelaunayTriangulation.DelaunayTriangle;
 import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXZ;
 import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
 
 /**
- * uses natural neighbor interpolation of heights
+ * uses natural neighbor interpolation (with Sibson's weights) of heights.
+ *
+ * The Delaunay triangulation of the sites is built once in {@link #setKnownSites(Collection)}.
+ * Queries do not modify it: The natural neighbors of a position are found by collecting the triangles
+ * whose circumcircle contains the position, and the area each neighbor's Voronoi cell would lose
+ * to the position is calculated from circumcircle centers (Watson's method).
+ * Therefore, {@link #interpolateEle(VectorXZ)} can be called from multiple threads at once.
  */
 public class NaturalNeighborInterpolator implements TerrainInterpolator {
 
-	private DelaunayTriangulation triangulation;
+	private @Nullable Triangulation triangulation;
 
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> sites) {
@@ -26,33 +37,326 @@ public class NaturalNeighborInterpolator implements TerrainInterpolator {
 		AxisAlignedRectangleXZ boundingBox = bbox(sites);
 		boundingBox = boundingBox.pad(100);
 
-		triangulation = new DelaunayTriangulation(boundingBox);
-
-		int i = 0; //TODO remove
-		int total = sites.size();
-		long startTime = System.currentTimeMillis();
+		var delaunayTriangulation = new DelaunayTriangulation(boundingBox);
 
 		for (VectorXYZ site : sites) {
-			if (++i % 1000 == 0) System.out.println("KS: " + i + "/" + total
-					+ " after " + ((System.currentTimeMillis() - startTime) / 1e3));
-			triangulation.insert(site);
-
+			delaunayTriangulation.insert(site);
 		}
 
+		triangulation = new Triangulation(delaunayTriangulation, boundingBox);
+
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Positions outside the bounding box of the sites (plus a margin) are assigned an elevation of 0.
+	 */
 	@Override
 	public VectorXYZ interpolateEle(VectorXZ pos) {
 
-		NaturalNeighbors nn = triangulation.probe(pos);
+		if (triangulation == null) {
+			throw new IllegalStateException("known sites have not been set");
+		}
+
+		return pos.xyz(triangulation.interpolate(pos.x, pos.z));
+
+	}
+
+	@Override
+	public boolean supportsConcurrentQueries() {
+		return true;
+	}
+
+	/**
+	 * an immutable copy of a {@link DelaunayTriangulation}, stored in arrays for compactness.
+	 * Each triangle has 3 vertices in counter-clockwise order. Its neighbor i is adjacent to the edge
+	 * from vertex i to vertex i+1, or -1 if there is no neighbor.
+	 */
+	private static final class Triangulation {
+
+		/** number of cells of the grid of walk starting points in each dimension */
+		private static final int START_GRID_SIZE = 64;
+
+		private final double[] vertexX, vertexZ, vertexEle;
+
+		private final int[] triangleVertices;
+		private final int[] triangleNeighbors;
+
+		/** center and squared radius of each triangle's circumcircle */
+		private final double[] centerX, centerZ, radiusSquared;
+
+		private final AxisAlignedRectangleXZ bounds;
+
+		/** a triangle close to each cell of a grid across the bounds, used as a start for walks */
+		private final int[] startTriangles;
+
+		Triangulation(DelaunayTriangulation delaunayTriangulation, AxisAlignedRectangleXZ bounds) {
+
+			this.bounds = bounds;
+
+			/* number the vertices and triangles */
+
+			Map<VectorXYZ, Integer> vertexIndices = new IdentityHashMap<>();
+			Map<DelaunayTriangle, Integer> triangleIndices = new IdentityHashMap<>();
+
+			for (DelaunayTriangle t : delaunayTriangulation.getTriangles()) {
+				triangleIndices.put(t, triangleIndices.size());
+				for (int i = 0; i < 3; i++) {
+					vertexIndices.putIfAbsent(t.getPoint(i), vertexIndices.size());
+				}
+			}
+
+			/* copy the data to arrays */
 
-		double ele = 0;
+			vertexX = new double[vertexIndices.size()];
+			vertexZ = new double[vertexIndices.size()];
+			vertexEle = new double[vertexIndices.size()];
+
+			for (Map.Entry<VectorXYZ, Integer> e : vertexIndices.entrySet()) {
+				vertexX[e.getValue()] = e.getKey().x;
+				vertexZ[e.getValue()] = e.getKey().z;
+				vertexEle[e.getValue()] = e.getKey().y;
+			}
+
+			int triangleCount = triangleIndices.size();
+
+			triangleVertices = new int[3 * triangleCount];
+			triangleNeighbors = new int[3 * triangleCount];
+			centerX = new double[triangleCount];
+			centerZ = new double[triangleCount];
+			radiusSquared = new double[triangleCount];
+
+			for (Map.Entry<DelaunayTriangle, Integer> e : triangleIndices.entrySet()) {
+
+				DelaunayTriangle t = e.getKey();
+				int index = e.getValue();
+
+				for (int i = 0; i < 3; i++) {
+					triangleVertices[3 * index + i] = vertexIndices.get(t.getPoint(i));
+					DelaunayTriangle neighbor = t.getNeighbor(i);
+					// the neighbor might be the triangulation's handle triangle, which does not get an index
+					triangleNeighbors[3 * index + i] = neighbor == null ? -1 : triangleIndices.getOrDefault(neighbor, -1);
+				}
+
+				VectorXZ center = t.getCircumcircleCenter();
+				centerX[index] = center.x;
+				centerZ[index] = center.z;
+				radiusSquared[index] = center.subtract(t.p0.xz()).lengthSquared();
+
+			}
+
+			/* find starting triangles for walks, each walk starts from the result of the previous one */
+
+			startTriangles = new int[START_GRID_SIZE * START_GRID_SIZE];
+
+			int previousTriangle = 0;
+
+			for (int row = 0; row < START_GRID_SIZE; row++) {
+				for (int column = 0; column < START_GRID_SIZE; column++) {
+					int triangle = findEnclosingTriangle(
+							bounds.minX + (column + 0.5) * bounds.sizeX() / START_GRID_SIZE,
+							bounds.minZ + (row + 0.5) * bounds.sizeZ() / START_GRID_SIZE,
+							previousTriangle);
+					startTriangles[row * START_GRID_SIZE + column] = triangle >= 0 ? triangle : previousTriangle;
+					previousTriangle = startTriangles[row * START_GRID_SIZE + column];
+				}
+			}
 
-		for (int i = 0; i < nn.neighbors.length; i++) {
-			ele += nn.neighbors[i].y * nn.relativeWeights[i];
 		}
 
-		return pos.xyz(ele);
+		double interpolate(double x, double z) {
+
+			if (!bounds.contains(new VectorXZ(x, z))) return 0;
+
+			int column = Math.min(START_GRID_SIZE - 1, (int) ((x - bounds.minX) / bounds.sizeX() * START_GRID_SIZE));
+			int row = Math.min(START_GRID_SIZE - 1, (int) ((z - bounds.minZ) / bounds.sizeZ() * START_GRID_SIZE));
+
+			int enclosingTriangle = findEnclosingTriangle(x, z, startTriangles[row * START_GRID_SIZE + column]);
+
+			if (enclosingTriangle < 0) return 0;
+
+			/* return a site's elevation if the position is at that site */
+
+			for (int i = 0; i < 3; i++) {
+				int v = triangleVertices[3 * enclosingTriangle + i];
+				if (vertexX[v] == x && vertexZ[v] == z) {
+					return vertexEle[v];
+				}
+			}
+
+			double result = interpolate(x, z, enclosingTriangle);
+
+			if (Double.isNaN(result)) {
+				// the position is (almost) on an edge between sites, move it slightly into the triangle
+				double cx = 0, cz = 0;
+				for (int i = 0; i < 3; i++) {
+					cx += vertexX[triangleVertices[3 * enclosingTriangle + i]] / 3;
+					cz += vertexZ[triangleVertices[3 * enclosingTriangle + i]] / 3;
+				}
+				result = interpolate(x + (cx - x) * 1e-6, z + (cz - z) * 1e-6, enclosingTriangle);
+			}
+
+			return result;
+
+		}
+
+		/**
+		 * calculates the Sibson interpolation for a position within the triangle
+		 *
+		 * @return  the interpolated elevation, or NaN if the calculation is numerically unstable
+		 */
+		private double interpolate(double x, double z, int enclosingTriangle) {
+
+			/* collect all triangles whose circumcircle contains the position */
+
+			int[] cavity = new int[16];
+			int cavitySize = 0;
+			cavity[cavitySize++] = enclosingTriangle;
+
+			for (int c = 0; c < cavitySize; c++) {
+				for (int i = 0; i < 3; i++) {
+					int neighbor = triangleNeighbors[3 * cavity[c] + i];
+					if (neighbor >= 0 && !contains(cavity, cavitySize, neighbor)
+							&& circumcircleContains(neighbor, x, z)) {
+						if (cavitySize == cavity.length) {
+							cavity = Arrays.copyOf(cavity, 2 * cavitySize);
+						}
+						cavity[cavitySize++] = neighbor;
+					}
+				}
+			}
+
+			/* calculate the area each vertex's Voronoi cell loses to the position.
+			 * For each vertex, this is the sum of signed triangle areas formed by the circumcircle center
+			 * of each cavity triangle using the vertex, and the centers of two new triangles
+			 * formed by the position with the edges of that triangle which are adjacent to the vertex. */
+
+			int[] neighbors = new int[cavitySize + 2];
+			double[] weights = new double[cavitySize + 2];
+			int neighborCount = 0;
+
+			for (int c = 0; c < cavitySize; c++) {
+
+				int t = cavity[c];
+
+				for (int i = 0; i < 3; i++) {
+
+					int a = triangleVertices[3 * t + i];
+					int b = triangleVertices[3 * t + (i + 1) % 3];
+					int prev = triangleVertices[3 * t + (i + 2) % 3];
+
+					double d1 = 2 * ((vertexX[a] - x) * (vertexZ[b] - z) - (vertexZ[a] - z) * (vertexX[b] - x));
+					double d2 = 2 * ((vertexX[prev] - x) * (vertexZ[a] - z) - (vertexZ[prev] - z) * (vertexX[a] - x));
+
+					if (Math.abs(d1) < 1e-12 || Math.abs(d2) < 1e-12) return Double.NaN;
+
+					double g1x = circumcenterX(x, z, a, b, d1);
+					double g1z = circumcenterZ(x, z, a, b, d1);
+					double g2x = circumcenterX(x, z, prev, a, d2);
+					double g2z = circumcenterZ(x, z, prev, a, d2);
+
+					double area = ((g1x - centerX[t]) * (g2z - centerZ[t]) - (g1z - centerZ[t]) * (g2x - centerX[t])) / 2;
+
+					int n = indexOf(neighbors, neighborCount, a);
+					if (n < 0) {
+						if (neighborCount == neighbors.length) {
+							neighbors = Arrays.copyOf(neighbors, 2 * neighborCount);
+							weights = Arrays.copyOf(weights, 2 * neighborCount);
+						}
+						n = neighborCount++;
+						neighbors[n] = a;
+					}
+					weights[n] += area;
+
+				}
+
+			}
+
+			/* calculate the weighted average of the neighbors' elevations */
+
+			double weightSum = 0;
+			double result = 0;
+
+			for (int n = 0; n < neighborCount; n++) {
+				weightSum += weights[n];
+				result += weights[n] * vertexEle[neighbors[n]];
+			}
+
+			return weightSum != 0 ? result / weightSum : Double.NaN;
+
+		}
+
+		/** x coordinate of the circumcircle center of the position and two vertices, see {@link #interpolate} */
+		private double circumcenterX(double x, double z, int v1, int v2, double d) {
+			double bx = vertexX[v1] - x, bz = vertexZ[v1] - z;
+			double cx = vertexX[v2] - x, cz = vertexZ[v2] - z;
+			return x + (cz * (bx * bx + bz * bz) - bz * (cx * cx + cz * cz)) / d;
+		}
+
+		/** z coordinate of the circumcircle center of the position and two vertices, see {@link #interpolate} */
+		private double circumcenterZ(double x, double z, int v1, int v2, double d) {
+			double bx = vertexX[v1] - x, bz = vertexZ[v1] - z;
+			double cx = vertexX[v2] - x, cz = vertexZ[v2] - z;
+			return z + (bx * (cx * cx + cz * cz) - cx * (bx * bx + bz * bz)) / d;
+		}
+
+		private boolean circumcircleContains(int triangle, double x, double z) {
+			double dx = x - centerX[triangle];
+			double dz = z - centerZ[triangle];
+			return dx * dx + dz * dz < radiusSquared[triangle];
+		}
+
+		/**
+		 * finds the triangle containing a position using a visibility walk
+		 *
+		 * @return  the triangle's index, or -1 if the position is outside the triangulation
+		 */
+		private int findEnclosingTriangle(double x, double z, int startTriangle) {
+
+			int currentTriangle = startTriangle;
+
+			for (int step = 0; step <= centerX.length; step++) {
+
+				int nextTriangle = currentTriangle;
+
+				for (int i = 0; i < 3; i++) {
+
+					int v1 = triangleVertices[3 * currentTriangle + i];
+					int v2 = triangleVertices[3 * currentTriangle + (i + 1) % 3];
+
+					// (relies on counterclockwise winding)
+					if (0 > (z - vertexZ[v1]) * (vertexX[v2] - vertexX[v1]) - (x - vertexX[v1]) * (vertexZ[v2] - vertexZ[v1])) {
+						nextTriangle = triangleNeighbors[3 * currentTriangle + i];
+						break;
+					}
+
+				}
+
+				if (nextTriangle == currentTriangle) {
+					return currentTriangle;
+				} else if (nextTriangle < 0) {
+					return -1;
+				} else {
+					currentTriangle = nextTriangle;
+				}
+
+			}
+
+			return -1;
+
+		}
+
+		private static boolean contains(int[] array, int size, int value) {
+			return indexOf(array, size, value) >= 0;
+		}
+
+		private static int indexOf(int[] array, int size, int value) {
+			for (int i = 0; i < size; i++) {
+				if (array[i] == value) return i;
+			}
+			return -1;
+		}
 
 	}
 
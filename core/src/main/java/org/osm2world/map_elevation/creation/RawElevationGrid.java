@@ -0,0 +1,134 @@
+package org.osm2world.map_elevation.creation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nullable;
+
+/**
+ * an {@link ElevationGrid} backed by uncompressed samples stored row by row, starting in the north-west.
+ * Such grids can be memory-mapped directly from raw DEM files (e.g. SRTM .hgt or headerless .bil/.raw exports).
+ */
+public class RawElevationGrid implements ElevationGrid {
+
+	/** the data type of each sample */
+	public enum SampleType {
+
+		INT16(2), FLOAT32(4);
+
+		final int bytes;
+
+		SampleType(int bytes) {
+			this.bytes = bytes;
+		}
+
+	}
+
+	private final double minLat, minLon, maxLat, maxLon;
+	private final int columns, rows;
+	private final ByteBuffer data;
+	private final SampleType sampleType;
+	private final @Nullable Double noDataValue;
+
+	/**
+	 * @param data         the samples, with the byte order already set. Only absolute reads are used.
+	 * @param noDataValue  sample value indicating a lack of data, can be null
+	 */
+	public RawElevationGrid(double minLat, double minLon, double maxLat, double maxLon, int columns, int rows,
+			ByteBuffer data, SampleType sampleType, @Nullable Double noDataValue) {
+
+		if (columns < 2 || rows < 2) {
+			throw new IllegalArgumentException("grid needs at least 2 rows and columns");
+		} else if (data.capacity() < (long) columns * rows * sampleType.bytes) {
+			throw new IllegalArgumentException("Too few elevation values for a " + columns + "x" + rows + " grid: "
+					+ data.capacity() / sampleType.bytes);
+		}
+
+		this.minLat = minLat;
+		this.minLon = minLon;
+		this.maxLat = maxLat;
+		this.maxLon = maxLon;
+		this.columns = columns;
+		this.rows = rows;
+		this.data = data;
+		this.sampleType = sampleType;
+		this.noDataValue = noDataValue;
+
+	}
+
+	/**
+	 * memory-maps a raw grid file
+	 *
+	 * @see #RawElevationGrid(double, double, double, double, int, int, ByteBuffer, SampleType, Double)
+	 */
+	public static RawElevationGrid fromFile(File file, double minLat, double minLon, double maxLat, double maxLon,
+			int columns, int rows, SampleType sampleType, ByteOrder byteOrder, @Nullable Double noDataValue)
+			throws IOException {
+		return new RawElevationGrid(minLat, minLon, maxLat, maxLon, columns, rows,
+				mapFile(file).order(byteOrder), sampleType, noDataValue);
+	}
+
+	/** memory-maps an entire file for reading */
+	static ByteBuffer mapFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// the mapping remains valid after the channel has been closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	@Override
+	public double minLat() {
+		return minLat;
+	}
+
+	@Override
+	public double minLon() {
+		return minLon;
+	}
+
+	@Override
+	public double maxLat() {
+		return maxLat;
+	}
+
+	@Override
+	public double maxLon() {
+		return maxLon;
+	}
+
+	@Override
+	public int columns() {
+		return columns;
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public double sample(int column, int row) {
+
+		assert 0 <= column && column < columns && 0 <= row && row < rows;
+
+		int index = row * columns + column;
+
+		double value = switch (sampleType) {
+			case INT16 -> data.getShort(index * 2);
+			case FLOAT32 -> data.getFloat(index * 4);
+		};
+
+		return (noDataValue != null && value == noDataValue) ? Double.NaN : value;
+
+	}
+
+	/** returns the number of bytes of elevation data */
+	int sizeInBytes() {
+		return columns * rows * sampleType.bytes;
+	}
+
+}
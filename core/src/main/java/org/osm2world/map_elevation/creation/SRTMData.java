@@ -1,37 +1,67 @@
 package org.osm2world.map_elevation.creation;
 
 import static java.lang.Math.*;
-import static java.util.Arrays.stream;
-import static java.util.Locale.ROOT;
-import static java.util.Objects.requireNonNullElse;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.List;
 
 import org.osm2world.conversion.ConversionLog;
+import org.osm2world.map_elevation.creation.ElevationGrid.Sampling;
 import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXZ;
+import org.osm2world.math.geo.LatLon;
 import org.osm2world.math.geo.LatLonBounds;
 import org.osm2world.math.geo.MapProjection;
 import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
 
 /**
- * SRTM data for a part of the planet
+ * SRTM data for a part of the planet.
+ * Supports both SRTM3 and SRTM1 tiles.
  */
-public class SRTMData implements TerrainElevationData {
+public class SRTMData implements GridElevationData {
 
 	private final File tileDirectory;
 	private final MapProjection projection;
-	private final SRTMTile[][] tiles;
+	private final SRTMTileCache tileCache;
 
-	public SRTMData(File tileDirectory, MapProjection projection) {
+	public SRTMData(File tileDirectory, MapProjection projection, SRTMTileCache tileCache) {
 		this.tileDirectory = tileDirectory;
 		this.projection = projection;
-		this.tiles = new SRTMTile[360][180];
+		this.tileCache = tileCache;
+	}
+
+	/** uses the {@link SRTMTileCache#getDefault()} tile cache */
+	public SRTMData(File tileDirectory, MapProjection projection) {
+		this(tileDirectory, projection, SRTMTileCache.getDefault());
+	}
+
+	@Override
+	public MapProjection getProjection() {
+		return projection;
+	}
+
+	@Override
+	public double getElevation(LatLon pos, Sampling sampling) throws IOException {
+
+		int tileLon = (int) floor(pos.lon);
+		int tileLat = (int) floor(pos.lat);
+
+		// positions on a tile's western or southern edge are also on the edge of the adjacent tile
+		for (int lon = tileLon; lon >= (pos.lon == tileLon ? tileLon - 1 : tileLon); lon--) {
+			for (int lat = tileLat; lat >= (pos.lat == tileLat ? tileLat - 1 : tileLat); lat--) {
+				SRTMTile tile = tileCache.getTile(tileDirectory, lon, lat);
+				double result = tile == null ? Double.NaN : tile.getElevation(pos.lat, pos.lon, sampling);
+				if (!Double.isNaN(result)) {
+					return result;
+				}
+			}
+		}
+
+		return Double.NaN;
+
 	}
 
 	public Collection<VectorXYZ> getSites(double minLon, double minLat,
@@ -47,10 +77,13 @@ public class SRTMData implements TerrainElevationData {
 		for (int lon = minLonInt; lon < maxLonInt; lon++) {
 			for (int lat = minLatInt; lat < maxLatInt; lat++) {
 
-				loadTileIfNecessary(lon, lat);
+				SRTMTile tile = tileCache.getTile(tileDirectory, lon, lat);
 
-				addTileSites(result, lon, lat,
-						minLon, minLat, maxLon, maxLat);
+				if (tile != null) {
+					addTileSites(result, tile, lon, lat, minLon, minLat, maxLon, maxLat);
+				} else {
+					ConversionLog.error("Missing SRTM tile " + SRTMTileCache.tileName(lon, lat));
+				}
 
 			}
 		}
@@ -61,88 +94,81 @@ public class SRTMData implements TerrainElevationData {
 
 	@Override
 	public Collection<VectorXYZ> getSites(AxisAlignedRectangleXZ bounds) throws IOException {
+		LatLonBounds b = toPaddedLatLonBounds(bounds);
+		return getSites(b.minlon, b.minlat, b.maxlon, b.maxlat);
+	}
 
-		var latLonBounds = new LatLonBounds(
-				projection.toLatLon(bounds.bottomLeft()),
-				projection.toLatLon(bounds.topRight()));
-
-		double minLon = latLonBounds.minlon;
-		double minLat = latLonBounds.minlat;
-		double maxLon = latLonBounds.maxlon;
-		double maxLat = latLonBounds.maxlat;
-
-		// add a small seam for robustness
-		minLon -= 0.005; minLat -= 0.005;
-		maxLon += 0.005; maxLat += 0.005;
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The result contains the tiles intersecting the bounds, so lookups no longer need to go through the tile cache.
+	 */
+	@Override
+	public GridElevationData restrictTo(AxisAlignedRectangleXZ bounds) throws IOException {
 
-		return getSites(minLon, minLat, maxLon, maxLat);
+		LatLonBounds b = toPaddedLatLonBounds(bounds);
 
-	}
+		List<SRTMTile> tiles = new ArrayList<>();
 
-	private void loadTileIfNecessary(int lon, int lat) throws IOException {
+		for (int lon = (int) floor(b.minlon); lon < (int) ceil(b.maxlon); lon++) {
+			for (int lat = (int) floor(b.minlat); lat < (int) ceil(b.maxlat); lat++) {
 
-		if (getTile(lon, lat) == null) {
+				SRTMTile tile = tileCache.getTile(tileDirectory, lon, lat);
 
-			String fileNameRegex = "";
+				if (tile != null) {
+					tiles.add(tile);
+				} else {
+					ConversionLog.error("Missing SRTM tile " + SRTMTileCache.tileName(lon, lat));
+				}
 
-			if (lat >= 0) {
-				fileNameRegex += String.format(ROOT, "N%02d", lat);
-			} else {
-				fileNameRegex += String.format(ROOT, "S%02d", -lat);
 			}
+		}
 
-			if (lon >= 0) {
-				fileNameRegex += String.format(ROOT, "E%03d", lon);
-			} else {
-				fileNameRegex += String.format(ROOT, "W%03d", -lon);
-			}
+		if (tiles.isEmpty()) {
+			throw new IOException("No SRTM tiles available in " + tileDirectory);
+		}
 
-			fileNameRegex += "(?:\\.SRTMGL3)?\\.hgt(?:\\.zip)?";
+		return new ElevationGridData(tiles, projection);
 
-			Pattern pattern = Pattern.compile(fileNameRegex);
+	}
 
-			Optional<File> file = stream(requireNonNullElse(tileDirectory.listFiles(), new File[0]))
-					.filter(it -> pattern.matcher(it.getName()).matches())
-					.findFirst();
+	private LatLonBounds toPaddedLatLonBounds(AxisAlignedRectangleXZ bounds) {
 
-			if (file.isPresent()) {
-				setTile(lon, lat, new SRTMTile(file.get()));
-			} else {
-				ConversionLog.error("Missing SRTM tile " + fileNameRegex);
-			}
+		var latLonBounds = new LatLonBounds(
+				projection.toLatLon(bounds.bottomLeft()),
+				projection.toLatLon(bounds.topRight()));
 
-		}
+		// add a small seam for robustness
+		return new LatLonBounds(
+				latLonBounds.minlat - 0.005, latLonBounds.minlon - 0.005,
+				latLonBounds.maxlat + 0.005, latLonBounds.maxlon + 0.005);
 
 	}
 
-	private void addTileSites(Collection<VectorXYZ> result,
+	private void addTileSites(Collection<VectorXYZ> result, SRTMTile tile,
 			int tileLon, int tileLat,
 			double minLon, double minLat, double maxLon, double maxLat) {
 
-		SRTMTile tile = getTile(tileLon, tileLat);
-
-		if (tile == null) return;
-
 		/* add a site for each SRTM pixel (except last line and column,
 		 * which is duplicated in adjacent tiles) */
 
 		int minX = max(0,
-				(int)ceil(SRTMTile.PIXELS * (minLon - tileLon)));
-		int maxX = min(SRTMTile.PIXELS - 1,
-				(int)floor(SRTMTile.PIXELS * (maxLon - tileLon)));
+				(int)ceil(tile.pixels * (minLon - tileLon)));
+		int maxX = min(tile.pixels - 1,
+				(int)floor(tile.pixels * (maxLon - tileLon)));
 
 		int minY = max(0,
-				(int)ceil(SRTMTile.PIXELS * (minLat - tileLat)));
-		int maxY = min(SRTMTile.PIXELS - 1,
-				(int)floor(SRTMTile.PIXELS * (maxLat - tileLat)));
+				(int)ceil(tile.pixels * (minLat - tileLat)));
+		int maxY = min(tile.pixels - 1,
+				(int)floor(tile.pixels * (maxLat - tileLat)));
 
 		for (int x = minX; x < maxX; x++) {
 			for (int y = minY; y < maxY; y++) {
 
 				short value = tile.getData(x, y);
 
-				double lat = tileLat + 1.0 / SRTMTile.PIXELS * (y + 0.5);
-				double lon = tileLon + 1.0 / SRTMTile.PIXELS * (x + 0.5);
+				double lat = tileLat + 1.0 / tile.pixels * (y + 0.5);
+				double lon = tileLon + 1.0 / tile.pixels * (x + 0.5);
 
 				VectorXZ pos = projection.toXZ(lat, lon);
 
@@ -156,12 +182,4 @@ public class SRTMData implements TerrainElevationData {
 
 	}
 
-	private SRTMTile getTile(int tileLon, int tileLat) {
-		return tiles[tileLon+180][tileLat+90];
-	}
-
-	private void setTile(int tileLon, int tileLat, SRTMTile tile) {
-		tiles[tileLon+180][tileLat+90] = tile;
-	}
-
 }
@@ -1,105 +1,129 @@
 package org.osm2world.map_elevation.creation;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
-import javax.annotation.Nonnull;
-
-import org.osm2world.util.platform.uri.LoadUriUtil;
+import com.google.common.hash.Hashing;
 
 /**
- * a single SRTM data tile.
+ * a single SRTM data tile covering one degree of latitude and longitude.
+ * Both SRTM3 (1201x1201 samples) and SRTM1 (3601x3601 samples) tiles are supported,
+ * the resolution is determined from the file size.
  *
  * Multiple such tiles are used by {@link SRTMData} to build coverage
- * for larger regions.
+ * for larger regions. The data is memory-mapped and can be read from multiple threads.
  */
-class SRTMTile {
+class SRTMTile extends RawElevationGrid {
 
 	/** value indicating a lack of data */
 	public static final short BLANK_VALUE = -32768;
 
-	/** length of each dimension of an SRTM tile in pixels */
-	static final int PIXELS = 1201;
-
-	public final File file;
-	private final ShortBuffer data;
+	/** length of each dimension of an SRTM3 tile in pixels, the smallest supported resolution */
+	static final int SRTM3_PIXELS = 1201;
 
-	public SRTMTile(File file) throws IOException {
+	/** length of each dimension of an SRTM1 tile in pixels */
+	static final int SRTM1_PIXELS = 3601;
 
-		this.file = file;
+	public final File file;
 
-		data = loadDataFromFile(file);
+	/** length of each dimension of this tile in pixels */
+	final int pixels;
 
+	/**
+	 * @param lon, lat             the south-west corner of the tile
+	 * @param extractionDirectory  directory where the content of zipped tiles is stored.
+	 *                             Content which has been extracted previously is reused.
+	 */
+	public SRTMTile(File file, int lon, int lat, File extractionDirectory) throws IOException {
+		this(file, lon, lat, mapFile(file.getName().endsWith(".zip") ? extractFromZip(file, extractionDirectory) : file));
 	}
 
-	private static ShortBuffer loadDataFromFile(File file) throws IOException {
-
-		if (file.getName().endsWith(".zip")) {
-
-			try (
-				var inputStream = new FileInputStream(file);
-				var bufferedInputStream = new BufferedInputStream(inputStream);
-				var zipInputStream = new ZipInputStream(bufferedInputStream)
-			) {
+	private SRTMTile(File file, int lon, int lat, ByteBuffer data) throws IOException {
+		super(lat, lon, lat + 1, lon + 1, pixelsForSize(data.capacity()), pixelsForSize(data.capacity()),
+				data.order(ByteOrder.BIG_ENDIAN), SampleType.INT16, (double) BLANK_VALUE);
+		this.file = file;
+		this.pixels = columns();
+	}
 
-				ByteBuffer payloadData = null;
+	/** determines the tile resolution from the number of bytes */
+	private static int pixelsForSize(int bytes) throws IOException {
+		if (bytes >= 2 * SRTM1_PIXELS * SRTM1_PIXELS) {
+			return SRTM1_PIXELS;
+		} else if (bytes >= 2 * SRTM3_PIXELS * SRTM3_PIXELS) {
+			return SRTM3_PIXELS;
+		} else {
+			throw new IOException("Too few elevation values read from SRTM tile: " + bytes / 2);
+		}
+	}
 
-				ZipEntry zipEntry;
-				while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-					if (!zipEntry.isDirectory()) {
+	/**
+	 * extracts the hgt file from a zip archive, unless a copy exists in the extraction directory.
+	 * Each version of each zip file (identified by its path, size and modification time) is extracted
+	 * into a separate subdirectory, so zip files with the same name in different directories don't collide.
+	 *
+	 * @return  the extracted file
+	 */
+	private static File extractFromZip(File zipFile, File extractionDirectory) throws IOException {
 
-						byte[] buffer = new byte[2048];
-						var bos = new ByteArrayOutputStream();
-						int len;
-						while ((len = zipInputStream.read(buffer)) > 0) {
-							bos.write(buffer,0, len);
-						}
-						// convert bytes to string
-						byte[] zipFileBytes = bos.toByteArray();
-						payloadData = ByteBuffer.wrap(zipFileBytes);
+		String zipFileVersion = zipFile.getAbsolutePath() + "|" + zipFile.length() + "|" + zipFile.lastModified();
+		File directory = new File(extractionDirectory,
+				Hashing.sha256().hashString(zipFileVersion, UTF_8).toString().substring(0, 16));
 
-						break;
+		File extractedFile = new File(directory, zipFile.getName().replaceAll("\\.zip$", ""));
 
-					}
-				}
+		if (extractedFile.isFile() && extractedFile.length() >= 2L * SRTM3_PIXELS * SRTM3_PIXELS) {
+			return extractedFile;
+		}
 
-				if (payloadData == null) {
-					throw new IOException("No hgt payload file found in zip archive " + file);
-				} else {
-					return loadDataFromByteBuffer(payloadData);
-				}
+		Files.createDirectories(directory.toPath());
 
-			}
+		try (var zipInputStream = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)))) {
 
-		} else {
+			ZipEntry zipEntry;
+			while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+				if (!zipEntry.isDirectory()) {
 
-			byte[] bytes = LoadUriUtil.fetchBinary(file.toURI());
-			return loadDataFromByteBuffer(ByteBuffer.wrap(bytes));
+					/* write to a temporary file first, then move it in place to avoid exposing partial files */
 
-		}
+					Path tempFile = Files.createTempFile(directory.toPath(), extractedFile.getName(), ".tmp");
 
-	}
+					try {
+						Files.copy(zipInputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+						Files.move(tempFile, extractedFile.toPath(),
+								StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					} finally {
+						Files.deleteIfExists(tempFile);
+					}
 
-	private static ShortBuffer loadDataFromByteBuffer(@Nonnull ByteBuffer data) throws IOException {
+					return extractedFile;
 
-		// choose the right endianness
-		ShortBuffer shortBuffer = data.order(ByteOrder.BIG_ENDIAN).asShortBuffer();
+				}
+			}
 
-		if (shortBuffer.capacity() < 1201 * 1201) {
-			throw new IOException("Too few elevation values read from SRTM tile: " + shortBuffer.capacity());
 		}
 
-		return shortBuffer;
+		throw new IOException("No hgt payload file found in zip archive " + zipFile);
 
 	}
 
+	/**
+	 * returns the raw value of a pixel
+	 *
+	 * @param x  0 for the westernmost column
+	 * @param y  0 for the southernmost row
+	 */
 	public final short getData(int x, int y) {
-		assert 0 <= x && x < PIXELS && 0 <= y && y < PIXELS;
-		return data.get((1200 - y) * 1201 + x);
+		assert 0 <= x && x < pixels && 0 <= y && y < pixels;
+		double value = sample(x, pixels - 1 - y);
+		return Double.isNaN(value) ? BLANK_VALUE : (short) value;
 	}
 
 	@Override
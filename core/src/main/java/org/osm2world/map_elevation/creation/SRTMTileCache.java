@@ -0,0 +1,154 @@
+package org.osm2world.map_elevation.creation;
+
+import static java.util.Locale.ROOT;
+import static java.util.Objects.requireNonNullElse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Keeps loaded {@link SRTMTile}s so they can be shared by all {@link SRTMData} instances,
+ * e.g. across the conversions of a tileset job.
+ *
+ * The cache can be used from multiple threads at once. Its size is limited by the number of bytes
+ * of elevation data, least recently used tiles are evicted first.
+ * Zipped tiles are extracted to a directory once and are then memory-mapped like uncompressed tiles.
+ */
+public class SRTMTileCache {
+
+	/** matches the file names of SRTM tiles, the first group is the tile name (such as N04E033) */
+	private static final Pattern TILE_FILE_NAME_PATTERN =
+			Pattern.compile("([NS]\\d{2}[EW]\\d{3})(?:\\.SRTMGL[13])?\\.hgt(?:\\.zip)?");
+
+	private static final long DEFAULT_MAX_CACHE_BYTES = 1L << 30;
+
+	private static @Nullable SRTMTileCache defaultCache = null;
+
+	private record TileKey(File tileDirectory, int lon, int lat) {}
+
+	/** the tile files in a directory, by tile name */
+	private record DirectoryIndex(long lastModified, Map<String, File> tileFiles) {}
+
+	private final Cache<TileKey, SRTMTile> cachedTiles;
+	private final Map<File, DirectoryIndex> directoryIndices = new ConcurrentHashMap<>();
+	private final File extractionDirectory;
+
+	/**
+	 * @param maxCacheBytes        upper limit for the size of the elevation data of all cached tiles
+	 * @param extractionDirectory  directory where the content of zipped tiles is stored
+	 */
+	public SRTMTileCache(long maxCacheBytes, File extractionDirectory) {
+		cachedTiles = CacheBuilder.newBuilder()
+				.maximumWeight(maxCacheBytes)
+				.weigher((TileKey key, SRTMTile tile) -> tile.sizeInBytes())
+				.recordStats()
+				.build();
+		this.extractionDirectory = extractionDirectory;
+	}
+
+	/** returns the cache which is shared by default within the entire process */
+	public static synchronized SRTMTileCache getDefault() {
+		if (defaultCache == null) {
+			defaultCache = new SRTMTileCache(DEFAULT_MAX_CACHE_BYTES,
+					new File(System.getProperty("java.io.tmpdir"), "osm2world-srtm"));
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * returns the tile with the given south-west corner, loading it if necessary
+	 *
+	 * @return  the tile, or null if the directory does not contain a file for this tile
+	 */
+	public @Nullable SRTMTile getTile(File tileDirectory, int lon, int lat) throws IOException {
+
+		var key = new TileKey(tileDirectory.getAbsoluteFile(), lon, lat);
+
+		SRTMTile tile = cachedTiles.getIfPresent(key);
+		if (tile != null) return tile;
+
+		File file = findTileFile(key.tileDirectory, tileName(lon, lat));
+		if (file == null) return null;
+
+		try {
+			return cachedTiles.get(key, () -> new SRTMTile(file, lon, lat, extractionDirectory));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException cause) {
+				throw cause;
+			} else {
+				throw new IOException(e.getCause());
+			}
+		} catch (UncheckedExecutionException | ExecutionError e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			} else if (e.getCause() instanceof Error cause) {
+				throw cause;
+			} else {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+	}
+
+	/**
+	 * returns statistics about cache hits, misses and evictions
+	 */
+	public CacheStats getCacheStats() {
+		return cachedTiles.stats();
+	}
+
+	/**
+	 * finds the file for a tile using an index of the directory's content.
+	 * The index is only created again if the directory has been modified since it was last indexed.
+	 */
+	private @Nullable File findTileFile(File tileDirectory, String tileName) {
+
+		DirectoryIndex index = directoryIndices.get(tileDirectory);
+
+		if (index == null || (!index.tileFiles.containsKey(tileName)
+				&& tileDirectory.lastModified() != index.lastModified)) {
+			index = indexDirectory(tileDirectory);
+			directoryIndices.put(tileDirectory, index);
+		}
+
+		return index.tileFiles.get(tileName);
+
+	}
+
+	private static DirectoryIndex indexDirectory(File tileDirectory) {
+
+		long lastModified = tileDirectory.lastModified();
+		Map<String, File> tileFiles = new HashMap<>();
+
+		for (File file : requireNonNullElse(tileDirectory.listFiles(), new File[0])) {
+			Matcher matcher = TILE_FILE_NAME_PATTERN.matcher(file.getName());
+			if (matcher.matches()) {
+				tileFiles.putIfAbsent(matcher.group(1), file);
+			}
+		}
+
+		return new DirectoryIndex(lastModified, tileFiles);
+
+	}
+
+	/** returns the name of a tile, e.g. N04E033 */
+	static String tileName(int lon, int lat) {
+		return (lat >= 0 ? String.format(ROOT, "N%02d", lat) : String.format(ROOT, "S%02d", -lat))
+				+ (lon >= 0 ? String.format(ROOT, "E%03d", lon) : String.format(ROOT, "W%03d", -lon));
+	}
+
+}
@@ -0,0 +1,221 @@
+package org.osm2world.map_elevation.creation;
+
+import static java.lang.Math.*;
+
+import java.util.Collection;
+import java.util.function.IntPredicate;
+
+import org.osm2world.math.VectorXYZ;
+
+/**
+ * sites with known elevation, sorted into the cells of a regular grid.
+ *
+ * Coordinates are stored in flat arrays, with the sites of each cell stored consecutively
+ * (compressed sparse row layout). This keeps nearby sites close together in memory,
+ * and lets queries run without allocating any objects.
+ * Instances are immutable and can be queried by multiple threads at once.
+ */
+final class SiteGrid {
+
+	/** coordinates of the sites, sorted by cell */
+	final double[] x, z, ele;
+
+	/** for each site, its index in the collection passed to the constructor */
+	final int[] originalIndex;
+
+	final double cellSize;
+	final int cellCountX, cellCountZ;
+	private final double minX, minZ;
+
+	/**
+	 * the sites in the cell with index c = cellZ * cellCountX + cellX
+	 * have the indices from cellStart[c] (inclusive) to cellStart[c + 1] (exclusive)
+	 */
+	private final int[] cellStart;
+
+	/**
+	 * @param sites  non-empty collection of sites
+	 */
+	SiteGrid(Collection<VectorXYZ> sites, double cellSize) {
+
+		if (sites.isEmpty()) {
+			throw new IllegalArgumentException("No sites with elevation available");
+		}
+
+		double minX = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+
+		for (VectorXYZ site : sites) {
+			minX = min(minX, site.x);
+			minZ = min(minZ, site.z);
+			maxX = max(maxX, site.x);
+			maxZ = max(maxZ, site.z);
+		}
+
+		this.cellSize = cellSize;
+		this.minX = minX;
+		this.minZ = minZ;
+		this.cellCountX = max(1, (int) ceil((maxX - minX) / cellSize));
+		this.cellCountZ = max(1, (int) ceil((maxZ - minZ) / cellSize));
+
+		/* counting sort of the sites by cell, preserving their original order within each cell */
+
+		int[] siteCells = new int[sites.size()];
+		cellStart = new int[cellCountX * cellCountZ + 1];
+
+		int i = 0;
+		for (VectorXYZ site : sites) {
+			siteCells[i] = cellIndex(cellX(site.x), cellZ(site.z));
+			cellStart[siteCells[i] + 1] ++;
+			i++;
+		}
+
+		for (int c = 0; c < cellCountX * cellCountZ; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+
+		x = new double[sites.size()];
+		z = new double[sites.size()];
+		ele = new double[sites.size()];
+		originalIndex = new int[sites.size()];
+
+		int[] nextIndex = cellStart.clone();
+
+		i = 0;
+		for (VectorXYZ site : sites) {
+			int index = nextIndex[siteCells[i]] ++;
+			x[index] = site.x;
+			z[index] = site.z;
+			ele[index] = site.y;
+			originalIndex[index] = i;
+			i++;
+		}
+
+	}
+
+	int size() {
+		return x.length;
+	}
+
+	/** returns the x index of the cell containing a coordinate, or of the closest cell */
+	int cellX(double x) {
+		return max(0, min(cellCountX - 1, (int) ((x - minX) / cellSize)));
+	}
+
+	/** returns the z index of the cell containing a coordinate, or of the closest cell */
+	int cellZ(double z) {
+		return max(0, min(cellCountZ - 1, (int) ((z - minZ) / cellSize)));
+	}
+
+	private int cellIndex(int cellX, int cellZ) {
+		return cellZ * cellCountX + cellX;
+	}
+
+	/** index of the first site in a cell */
+	int cellStart(int cellX, int cellZ) {
+		return cellStart[cellIndex(cellX, cellZ)];
+	}
+
+	/** index after the last site in a cell */
+	int cellEnd(int cellX, int cellZ) {
+		return cellStart[cellIndex(cellX, cellZ) + 1];
+	}
+
+	/** squared distance from a position to the closest point of a cell */
+	double cellDistanceSquared(int cellX, int cellZ, double posX, double posZ) {
+		double cellMinX = minX + cellX * cellSize;
+		double cellMinZ = minZ + cellZ * cellSize;
+		double dx = max(0, max(cellMinX - posX, posX - (cellMinX + cellSize)));
+		double dz = max(0, max(cellMinZ - posZ, posZ - (cellMinZ + cellSize)));
+		return dx * dx + dz * dz;
+	}
+
+	/**
+	 * finds the sites closest to a position.
+	 * The number of sites to find is determined by the length of the result arrays.
+	 *
+	 * @param filter  only sites whose index is accepted by this filter will be part of the result
+	 * @param resultIndices  array which will be filled with the indices of the closest sites,
+	 *                       ordered by ascending distance
+	 * @param resultDistancesSquared  array which will be filled with the squared distances of the closest sites
+	 * @return  the number of sites found. Less than the length of the arrays only if there aren't enough sites.
+	 */
+	int findNearest(double posX, double posZ, IntPredicate filter,
+			int[] resultIndices, double[] resultDistancesSquared) {
+
+		int k = resultIndices.length;
+		int count = 0;
+
+		int centerX = cellX(posX);
+		int centerZ = cellZ(posZ);
+
+		for (int range = 0; ; range++) {
+
+			int minCellX = centerX - range, maxCellX = centerX + range;
+			int minCellZ = centerZ - range, maxCellZ = centerZ + range;
+
+			/* check the cells on the outer ring of the block (others have been checked before) */
+
+			for (int cellZ = max(minCellZ, 0); cellZ <= min(maxCellZ, cellCountZ - 1); cellZ++) {
+
+				boolean outerRow = cellZ == minCellZ || cellZ == maxCellZ;
+				int step = outerRow ? 1 : max(1, maxCellX - minCellX);
+
+				for (int cellX = minCellX; cellX <= maxCellX; cellX += step) {
+
+					if (cellX < 0 || cellX >= cellCountX) continue;
+
+					if (count == k && cellDistanceSquared(cellX, cellZ, posX, posZ)
+							>= resultDistancesSquared[k - 1]) continue;
+
+					for (int i = cellStart(cellX, cellZ); i < cellEnd(cellX, cellZ); i++) {
+
+						if (!filter.test(i)) continue;
+
+						double dx = x[i] - posX;
+						double dz = z[i] - posZ;
+						double distanceSquared = dx * dx + dz * dz;
+
+						if (count < k || distanceSquared < resultDistancesSquared[count - 1]) {
+
+							/* insert into the sorted result arrays */
+
+							int j = count < k ? count++ : k - 1;
+
+							while (j > 0 && resultDistancesSquared[j - 1] > distanceSquared) {
+								resultIndices[j] = resultIndices[j - 1];
+								resultDistancesSquared[j] = resultDistancesSquared[j - 1];
+								j--;
+							}
+
+							resultIndices[j] = i;
+							resultDistancesSquared[j] = distanceSquared;
+
+						}
+
+					}
+
+				}
+
+			}
+
+			/* stop when all sites closer than the current result have been checked */
+
+			// distance from the position to the closest cell outside the block of checked cells
+			double blockDistance = Double.POSITIVE_INFINITY;
+			if (minCellX > 0) blockDistance = min(blockDistance, posX - (minX + minCellX * cellSize));
+			if (minCellZ > 0) blockDistance = min(blockDistance, posZ - (minZ + minCellZ * cellSize));
+			if (maxCellX < cellCountX - 1) blockDistance = min(blockDistance, minX + (maxCellX + 1) * cellSize - posX);
+			if (maxCellZ < cellCountZ - 1) blockDistance = min(blockDistance, minZ + (maxCellZ + 1) * cellSize - posZ);
+
+			if (blockDistance == Double.POSITIVE_INFINITY) {
+				return count; // all cells have been checked
+			} else if (count == k && blockDistance * blockDistance >= resultDistancesSquared[k - 1]) {
+				return count;
+			}
+
+		}
+
+	}
+
+}
@@ -1,12 +1,19 @@
 package org.osm2world.map_elevation.creation;
 
+import java.io.IOException;
 import java.util.Collection;
 
 import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXZ;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
 
 /**
- * strategy for elevation interpolation from a set of known points
+ * strategy for elevation interpolation from a set of known points.
+ *
+ * {@link #setKnownSites(Collection)} or {@link #setElevationData(TerrainElevationData, AxisAlignedRectangleXZ)}
+ * is called once, before any calls to {@link #interpolateEle(VectorXZ)}.
+ * Implementations which return true for {@link #supportsConcurrentQueries()}
+ * may afterwards receive calls to {@link #interpolateEle(VectorXZ)} from multiple threads at once.
  */
 public interface TerrainInterpolator {
 
@@ -15,6 +22,36 @@ public interface TerrainInterpolator {
 	 */
 	void setKnownSites(Collection<VectorXYZ> sites);
 
+	/**
+	 * provides the source of elevation data for subsequent queries.
+	 * The default implementation passes the sites within the bounds to {@link #setKnownSites(Collection)}.
+	 * Implementations can override this to use the data in other ways, e.g. by reading a raster directly.
+	 *
+	 * @param bounds  area containing all positions which will be queried
+	 * @throws IOException  if the data could not be read, or contains no elevations within the bounds
+	 */
+	default void setElevationData(TerrainElevationData eleData, AxisAlignedRectangleXZ bounds) throws IOException {
+
+		Collection<VectorXYZ> sites = eleData.getSites(bounds);
+
+		if (sites.isEmpty()) {
+			throw new IOException("No sites with known elevation available");
+		}
+
+		setKnownSites(sites);
+
+	}
+
 	VectorXYZ interpolateEle(VectorXZ pos);
 
+	/**
+	 * whether {@link #interpolateEle(VectorXZ)} can safely be called by multiple threads at once
+	 * after {@link #setKnownSites(Collection)} has returned.
+	 * This is the case if queries do not modify the interpolator's state (other than through benign caching).
+	 * The default implementation returns false, so queries will be performed sequentially.
+	 */
+	default boolean supportsConcurrentQueries() {
+		return false;
+	}
+
 }
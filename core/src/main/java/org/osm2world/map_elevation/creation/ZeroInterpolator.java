@@ -20,4 +20,9 @@ public class ZeroInterpolator implements TerrainInterpolator {
 		return pos.xyz(0);
 	}
 
+	@Override
+	public boolean supportsConcurrentQueries() {
+		return true;
+	}
+
 }
@@ -21,6 +21,7 @@ import org.locationtech.jts.geom.LineSegment;
 import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXYZW;
 import org.osm2world.math.VectorXZ;
+import org.osm2world.math.datastructures.PointInPolygonIndex;
 import org.osm2world.math.shapes.*;
 import org.osm2world.scene.color.LColor;
 
@@ -753,6 +754,8 @@ GeometryUtil {
 
 		AxisAlignedRectangleXZ outerBox = polygonWithHolesXZ.boundingBox();
 
+		PointInPolygonIndex index = new PointInPolygonIndex(polygonWithHolesXZ);
+
 		double boxSize = sqrt(100 / density);
 
 		for (int boxZ = 0; boxZ <= (int)(outerBox.sizeZ() / boxSize); ++boxZ) {
@@ -768,19 +771,23 @@ GeometryUtil {
 					continue;
 				}
 
-				if (!polygonWithHolesXZ.contains(box.polygonXZ())
-						&& !polygonWithHolesXZ.intersects(box.polygonXZ())) {
+				if (!index.contains(box.polygonXZ())
+						&& !index.intersects(box.polygonXZ())) {
 					continue;
 				}
 
+				/* boxes away from the outline are entirely inside or outside, so a single test is sufficient */
+
+				Boolean boxInside = index.isNearOutline(box) ? null : index.contains(box.center());
+
 				for (int i = 0; i < POINTS_PER_BOX; ++i) {
 
 					double x = box.minX + boxSize * rand.nextDouble();
 					double z = box.minZ + boxSize * rand.nextDouble();
 
-					VectorXZ v = new VectorXZ(x, z);
+					if (boxInside != null ? boxInside : index.contains(x, z)) {
 
-					if (polygonWithHolesXZ.contains(v)) {
+						VectorXZ v = new VectorXZ(x, z);
 
 						//TODO: check minimumDistance
 
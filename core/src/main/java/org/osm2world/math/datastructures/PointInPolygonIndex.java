@@ -0,0 +1,368 @@
+package org.osm2world.math.datastructures;
+
+import static java.lang.Math.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.algorithms.GeometryUtil;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+import org.osm2world.math.shapes.LineSegmentXZ;
+import org.osm2world.math.shapes.PolygonShapeXZ;
+import org.osm2world.math.shapes.SimplePolygonShapeXZ;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * speeds up repeated point-in-polygon and intersection tests against the same polygon.
+ *
+ * The polygon's edges are sorted into horizontal bands, so a test only needs to look at the edges
+ * within the band of the tested point. The results are identical to those of
+ * {@link PolygonShapeXZ#contains(VectorXZ)}, {@link PolygonShapeXZ#contains(PolygonShapeXZ)},
+ * {@link PolygonShapeXZ#intersects(PolygonShapeXZ)} and the line segment tests of the polygon's rings.
+ *
+ * Instances are immutable and can be used by multiple threads at once.
+ */
+public class PointInPolygonIndex {
+
+	private static final int MAX_BAND_COUNT = 4096;
+
+	/**
+	 * tolerance for deciding that an edge is too far away to be relevant.
+	 * Much larger than the rounding errors of the tests, but small enough not to affect performance.
+	 */
+	private static final double MARGIN = 1e-3;
+
+	private final double minX, minZ, maxX, maxZ;
+
+	/** the outline of the polygon, as returned by {@link PolygonShapeXZ#vertices()} */
+	private final List<VectorXZ> outlineVertices;
+	private final Set<VectorXZ> outlineVertexSet;
+
+	/** the vertices of each ring. Ring 0 is the outline, the other rings are holes. */
+	private final List<List<VectorXZ>> vertexLoops;
+
+	/**
+	 * edge e goes from vertex (bx[e], bz[e]) to (ax[e], az[e]) and belongs to ring edgeRing[e].
+	 * Its end vertex is vertex edgeVertex[e] of that ring. Edges of the same ring have consecutive indices.
+	 */
+	private final double[] ax, az, bx, bz;
+	private final int[] edgeRing;
+	private final int[] edgeVertex;
+
+	/** the number of edges of the outline, these are the edges 0 to outlineEdgeCount - 1 */
+	private final int outlineEdgeCount;
+
+	private final int bandCount;
+	private final double bandHeight;
+
+	/** the edges of band b are bandEdges[bandStart[b]] to bandEdges[bandStart[b + 1] - 1], in ascending order */
+	private final int[] bandStart;
+	private final int[] bandEdges;
+
+	public PointInPolygonIndex(PolygonShapeXZ polygon) {
+
+		outlineVertices = polygon.vertices();
+		outlineVertexSet = new HashSet<>(outlineVertices);
+
+		vertexLoops = new ArrayList<>();
+		vertexLoops.add(outlineVertices);
+		for (SimplePolygonShapeXZ hole : polygon.getHoles()) {
+			vertexLoops.add(hole.vertices());
+		}
+
+		int edgeCount = vertexLoops.stream().mapToInt(List::size).sum();
+
+		ax = new double[edgeCount];
+		az = new double[edgeCount];
+		bx = new double[edgeCount];
+		bz = new double[edgeCount];
+		edgeRing = new int[edgeCount];
+		edgeVertex = new int[edgeCount];
+
+		/* store the edges in the same order as the loop in SimplePolygonShapeXZ.contains */
+
+		int e = 0;
+
+		for (int ring = 0; ring < vertexLoops.size(); ring++) {
+
+			List<VectorXZ> vertexLoop = vertexLoops.get(ring);
+
+			for (int i = 0, j = vertexLoop.size() - 1; i < vertexLoop.size(); j = i++) {
+				ax[e] = vertexLoop.get(i).x;
+				az[e] = vertexLoop.get(i).z;
+				bx[e] = vertexLoop.get(j).x;
+				bz[e] = vertexLoop.get(j).z;
+				edgeRing[e] = ring;
+				edgeVertex[e] = i;
+				e++;
+			}
+
+		}
+
+		outlineEdgeCount = outlineVertices.size();
+
+		/* sort the edges into bands */
+
+		AxisAlignedRectangleXZ bbox = polygon.boundingBox();
+		minX = bbox.minX;
+		minZ = bbox.minZ;
+		maxX = bbox.maxX;
+		maxZ = bbox.maxZ;
+
+		bandCount = max(1, min(edgeCount, MAX_BAND_COUNT));
+		bandHeight = max(bbox.sizeZ() / bandCount, Double.MIN_NORMAL);
+
+		bandStart = new int[bandCount + 1];
+
+		for (e = 0; e < edgeCount; e++) {
+			for (int b = bandForZ(min(az[e], bz[e])); b <= bandForZ(max(az[e], bz[e])); b++) {
+				bandStart[b + 1] ++;
+			}
+		}
+
+		for (int b = 0; b < bandCount; b++) {
+			bandStart[b + 1] += bandStart[b];
+		}
+
+		bandEdges = new int[bandStart[bandCount]];
+		int[] nextIndex = bandStart.clone();
+
+		for (e = 0; e < edgeCount; e++) {
+			for (int b = bandForZ(min(az[e], bz[e])); b <= bandForZ(max(az[e], bz[e])); b++) {
+				bandEdges[nextIndex[b] ++] = e;
+			}
+		}
+
+	}
+
+	private int bandForZ(double z) {
+		return max(0, min(bandCount - 1, (int) ((z - minZ) / bandHeight)));
+	}
+
+	/** equivalent to {@link PolygonShapeXZ#contains(VectorXZ)} for the indexed polygon */
+	public boolean contains(VectorXZ v) {
+		return contains(v.x, v.z);
+	}
+
+	/** @see #contains(VectorXZ) */
+	public boolean contains(double x, double z) {
+
+		if (z < minZ || z > maxZ) return false;
+
+		int band = bandForZ(z);
+
+		int currentRing = -1;
+		boolean inside = false;
+		boolean insideOutline = false;
+
+		for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+
+			int e = bandEdges[k];
+
+			if (edgeRing[e] != currentRing) {
+				if (currentRing == 0) {
+					if (!inside) return false;
+					insideOutline = true;
+				} else if (currentRing > 0 && inside) {
+					return false;
+				}
+				currentRing = edgeRing[e];
+				inside = false;
+			}
+
+			if (((az[e] > z) != (bz[e] > z))
+					&& (x < (bx[e] - ax[e]) * (z - az[e]) / (bz[e] - az[e]) + ax[e])) {
+				inside = !inside;
+			}
+
+		}
+
+		if (currentRing == 0) {
+			return inside;
+		} else {
+			return insideOutline && !inside;
+		}
+
+	}
+
+	/** equivalent to {@link PolygonShapeXZ#contains(PolygonShapeXZ)} for the indexed polygon */
+	public boolean contains(PolygonShapeXZ p) {
+		for (VectorXZ v : p.vertices()) {
+			if (!outlineVertexSet.contains(v) && !this.contains(v)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** equivalent to {@link PolygonShapeXZ#intersects(PolygonShapeXZ)} for the indexed polygon */
+	public boolean intersects(PolygonShapeXZ p) {
+
+		List<VectorXZ> vertexList = p.vertices();
+
+		for (int i = 0; i + 1 < vertexList.size(); i++) {
+
+			VectorXZ p1 = vertexList.get(i);
+			VectorXZ p2 = vertexList.get(i + 1);
+
+			double segMinX = min(p1.x, p2.x) - MARGIN;
+			double segMinZ = min(p1.z, p2.z) - MARGIN;
+			double segMaxX = max(p1.x, p2.x) + MARGIN;
+			double segMaxZ = max(p1.z, p2.z) + MARGIN;
+
+			if (segMaxZ < minZ || segMinZ > maxZ || segMaxX < minX || segMinX > maxX) continue;
+
+			for (int band = bandForZ(segMinZ); band <= bandForZ(segMaxZ); band++) {
+				for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+
+					int e = bandEdges[k];
+
+					// edge 0 closes the loop and is not one of the outline's segments
+					if (e == 0) continue;
+					if (e >= outlineEdgeCount) break;
+
+					if (max(ax[e], bx[e]) < segMinX || min(ax[e], bx[e]) > segMaxX
+							|| max(az[e], bz[e]) < segMinZ || min(az[e], bz[e]) > segMaxZ) continue;
+
+					if (GeometryUtil.getTrueLineSegmentIntersection(
+							outlineVertices.get(e - 1), outlineVertices.get(e), p1, p2) != null) {
+						return true;
+					}
+
+				}
+			}
+
+		}
+
+		return false;
+
+	}
+
+	/**
+	 * checks whether a line segment intersects one or all of the polygon's rings.
+	 * Equivalent to {@link SimplePolygonShapeXZ#intersects(VectorXZ, VectorXZ)} for the ring(s).
+	 *
+	 * @param ring  0 for the outline, 1 or more for a hole, -1 for all rings
+	 */
+	public boolean intersects(VectorXZ p1, VectorXZ p2, int ring) {
+
+		double segMinZ = min(p1.z, p2.z) - MARGIN;
+		double segMaxZ = max(p1.z, p2.z) + MARGIN;
+
+		if (!segmentMayTouchBounds(p1, p2)) return false;
+
+		for (int band = bandForZ(segMinZ); band <= bandForZ(segMaxZ); band++) {
+			for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+				int e = bandEdges[k];
+				if (isCandidateEdge(e, ring, p1, p2) && segmentIntersection(e, p1, p2) != null) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+
+	}
+
+	/**
+	 * returns the intersections of a line segment with one or all of the polygon's rings.
+	 * Equivalent to {@link SimplePolygonShapeXZ#intersectionPositions(LineSegmentXZ)} for the ring(s),
+	 * including the order of the results.
+	 *
+	 * @param ring  0 for the outline, 1 or more for a hole, -1 for all rings
+	 */
+	public List<VectorXZ> intersectionPositions(VectorXZ p1, VectorXZ p2, int ring) {
+
+		if (!segmentMayTouchBounds(p1, p2)) return new ArrayList<>();
+
+		/* collect candidate edges, which may be listed in several bands */
+
+		TIntArrayList candidateEdges = new TIntArrayList();
+
+		for (int band = bandForZ(min(p1.z, p2.z) - MARGIN); band <= bandForZ(max(p1.z, p2.z) + MARGIN); band++) {
+			for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+				int e = bandEdges[k];
+				if (isCandidateEdge(e, ring, p1, p2)) {
+					candidateEdges.add(e);
+				}
+			}
+		}
+
+		candidateEdges.sort();
+
+		/* calculate intersections in the order of the edges */
+
+		List<VectorXZ> result = new ArrayList<>();
+
+		for (int i = 0; i < candidateEdges.size(); i++) {
+			int e = candidateEdges.get(i);
+			if (i > 0 && candidateEdges.get(i - 1) == e) continue;
+			VectorXZ intersection = segmentIntersection(e, p1, p2);
+			if (intersection != null) {
+				result.add(intersection);
+			}
+		}
+
+		return result;
+
+	}
+
+	private boolean segmentMayTouchBounds(VectorXZ p1, VectorXZ p2) {
+		return max(p1.x, p2.x) + MARGIN >= minX && min(p1.x, p2.x) - MARGIN <= maxX
+				&& max(p1.z, p2.z) + MARGIN >= minZ && min(p1.z, p2.z) - MARGIN <= maxZ;
+	}
+
+	/**
+	 * checks whether edge e belongs to the ring and is close enough to the segment to possibly intersect it.
+	 * The first edge of each ring closes the vertex loop and is not one of the ring's segments.
+	 */
+	private boolean isCandidateEdge(int e, int ring, VectorXZ p1, VectorXZ p2) {
+		return (ring < 0 || edgeRing[e] == ring)
+				&& edgeVertex[e] > 0
+				&& max(ax[e], bx[e]) >= min(p1.x, p2.x) - MARGIN
+				&& min(ax[e], bx[e]) <= max(p1.x, p2.x) + MARGIN
+				&& max(az[e], bz[e]) >= min(p1.z, p2.z) - MARGIN
+				&& min(az[e], bz[e]) <= max(p1.z, p2.z) + MARGIN;
+	}
+
+	/** calculates the intersection of edge e with a line segment in the same way as the polygon's rings do */
+	private @Nullable VectorXZ segmentIntersection(int e, VectorXZ p1, VectorXZ p2) {
+		List<VectorXZ> vertexLoop = vertexLoops.get(edgeRing[e]);
+		return GeometryUtil.getTrueLineSegmentIntersection(p1, p2,
+				vertexLoop.get(edgeVertex[e] - 1), vertexLoop.get(edgeVertex[e]));
+	}
+
+	/**
+	 * checks whether any of the polygon's rings passes through or close to a box.
+	 * If this is not the case, {@link #contains(VectorXZ)} returns the same result for all points within the box.
+	 */
+	public boolean isNearOutline(AxisAlignedRectangleXZ box) {
+
+		double boxMinZ = box.minZ - MARGIN;
+		double boxMaxZ = box.maxZ + MARGIN;
+		double boxMinX = box.minX - MARGIN;
+		double boxMaxX = box.maxX + MARGIN;
+
+		if (boxMaxZ < minZ || boxMinZ > maxZ || boxMaxX < minX || boxMinX > maxX) return false;
+
+		for (int band = bandForZ(boxMinZ); band <= bandForZ(boxMaxZ); band++) {
+			for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+				int e = bandEdges[k];
+				if (max(ax[e], bx[e]) >= boxMinX && min(ax[e], bx[e]) <= boxMaxX
+						&& max(az[e], bz[e]) >= boxMinZ && min(az[e], bz[e]) <= boxMaxZ) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+
+	}
+
+}
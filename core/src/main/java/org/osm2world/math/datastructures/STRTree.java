@@ -0,0 +1,511 @@
+package org.osm2world.math.datastructures;
+
+import static java.lang.Math.*;
+import static java.util.Arrays.asList;
+import static java.util.Comparator.comparingDouble;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.math.BoundedObject;
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+/**
+ * an R-tree which is bulk-loaded using the sort-tile-recursive (STR) algorithm.
+ *
+ * Unlike {@link IndexGrid}, it does not need to know the bounds of the data or a cell size in advance,
+ * and it works well for elements with very different sizes.
+ * Elements inserted after construction are collected in a small buffer and then packed into additional trees,
+ * which are merged with each other as they grow. Queries are fastest if all elements are passed to the constructor.
+ *
+ * Queries do not modify the index, so they can be performed by multiple threads at once
+ * as long as no elements are inserted at the same time.
+ * The results of queries are in a deterministic order which only depends on the order of insertion.
+ */
+public class STRTree<T extends BoundedObject> implements SpatialIndex<T> {
+
+	/** maximum number of children of each node */
+	private static final int NODE_CAPACITY = 16;
+
+	/** maximum number of inserted elements which are not yet part of a packed tree */
+	private static final int BUFFER_CAPACITY = 64;
+
+	/** receives the results of {@link STRTree#visit(AxisAlignedRectangleXZ, Visitor)} */
+	@FunctionalInterface
+	public interface Visitor<T> {
+		/** @return  true to continue with the next element, false to end the query */
+		boolean visit(T element);
+	}
+
+	/** packed trees, ordered from largest to smallest */
+	private final List<PackedTree<T>> trees = new ArrayList<>();
+
+	/** elements which have been inserted but are not yet part of a tree, and their bounds */
+	private final List<T> buffer = new ArrayList<>();
+	private final TDoubleArrayList bufferBounds = new TDoubleArrayList();
+
+	/** creates an empty tree */
+	public STRTree() {}
+
+	/** creates a tree containing the elements */
+	public STRTree(Collection<? extends T> elements) {
+		if (!elements.isEmpty()) {
+			trees.add(new PackedTree<>(new ArrayList<>(elements)));
+		}
+	}
+
+	/** returns the number of elements in this index */
+	public int size() {
+		return trees.stream().mapToInt(t -> t.items.length).sum() + buffer.size();
+	}
+
+	@Override
+	public void insert(T e) {
+
+		buffer.add(e);
+		addBounds(bufferBounds, e.boundingBox());
+
+		if (buffer.size() >= BUFFER_CAPACITY) {
+
+			List<T> elements = new ArrayList<>(buffer);
+			buffer.clear();
+			bufferBounds.resetQuick();
+
+			while (!trees.isEmpty() && trees.get(trees.size() - 1).items.length <= elements.size()) {
+				List<T> mergedElements = new ArrayList<>(trees.remove(trees.size() - 1).elements());
+				mergedElements.addAll(elements);
+				elements = mergedElements;
+			}
+
+			trees.add(new PackedTree<>(elements));
+
+		}
+
+	}
+
+	/**
+	 * passes all elements with a bounding box intersecting the query box to the visitor.
+	 * Does not allocate any memory.
+	 *
+	 * @return  false if the visitor has ended the query, true otherwise
+	 */
+	public boolean visit(AxisAlignedRectangleXZ bounds, Visitor<? super T> visitor) {
+		return visit(bounds.minX, bounds.minZ, bounds.maxX, bounds.maxZ, visitor);
+	}
+
+	/** @see #visit(AxisAlignedRectangleXZ, Visitor) */
+	public boolean visit(double minX, double minZ, double maxX, double maxZ, Visitor<? super T> visitor) {
+
+		for (PackedTree<T> tree : trees) {
+			if (intersects(tree.nodeBounds, tree.root(), minX, minZ, maxX, maxZ)
+					&& !tree.visit(tree.root(), minX, minZ, maxX, maxZ, visitor)) {
+				return false;
+			}
+		}
+
+		for (int i = 0; i < buffer.size(); i++) {
+			if (bufferBounds.getQuick(4 * i) <= maxX && minX <= bufferBounds.getQuick(4 * i + 2)
+					&& bufferBounds.getQuick(4 * i + 1) <= maxZ && minZ <= bufferBounds.getQuick(4 * i + 3)
+					&& !visitor.visit(buffer.get(i))) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * returns all elements with a bounding box intersecting that of the parameter.
+	 * This is a subset of the elements in the {@link #probeLeaves(BoundedObject)} result.
+	 */
+	@Override
+	public List<T> probe(BoundedObject e) {
+		List<T> result = new ArrayList<>();
+		visit(e.boundingBox(), result::add);
+		return result;
+	}
+
+	/**
+	 * returns the leaves of the trees which intersect the object's bounding box,
+	 * as well as the elements which have not yet been packed into a tree.
+	 */
+	@Override
+	public Collection<List<T>> probeLeaves(BoundedObject e) {
+
+		AxisAlignedRectangleXZ bounds = e.boundingBox();
+		List<List<T>> result = new ArrayList<>();
+
+		for (PackedTree<T> tree : trees) {
+			if (intersects(tree.nodeBounds, tree.root(), bounds.minX, bounds.minZ, bounds.maxX, bounds.maxZ)) {
+				tree.collectLeaves(tree.root(), bounds.minX, bounds.minZ, bounds.maxX, bounds.maxZ, result);
+			}
+		}
+
+		if (!buffer.isEmpty()) {
+			result.add(buffer);
+		}
+
+		return result;
+
+	}
+
+	@Override
+	public Collection<List<T>> getLeaves() {
+
+		List<List<T>> result = new ArrayList<>();
+
+		for (PackedTree<T> tree : trees) {
+			for (int leaf = 0; leaf < tree.leafCount; leaf++) {
+				result.add(tree.elements().subList(tree.childStart[leaf], tree.childEnd[leaf]));
+			}
+		}
+
+		if (!buffer.isEmpty()) {
+			result.add(buffer);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * returns the element with the bounding box closest to a point
+	 *
+	 * @return  the nearest element, or null if the index is empty
+	 */
+	public @Nullable T nearest(VectorXZ point) {
+		List<T> result = nearest(point, 1);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * returns the k elements with the bounding boxes closest to a point, ordered by increasing distance
+	 */
+	public List<T> nearest(VectorXZ point, int k) {
+		return nearest(point, k, e -> distance(point, e.boundingBox()));
+	}
+
+	/**
+	 * returns the k elements which are closest to a point, ordered by increasing distance
+	 *
+	 * @param distance  calculates an element's distance to the point. For any element,
+	 *                  it must not be smaller than the distance between the point and the element's bounding box.
+	 */
+	public List<T> nearest(VectorXZ point, int k, ToDoubleFunction<? super T> distance) {
+
+		record QueueEntry(double distance, @Nullable PackedTree<?> tree, int node, @Nullable Object element) {}
+
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<>(comparingDouble(QueueEntry::distance));
+
+		for (PackedTree<T> tree : trees) {
+			queue.add(new QueueEntry(distance(point, tree.nodeBounds, tree.root()), tree, tree.root(), null));
+		}
+
+		for (T element : buffer) {
+			queue.add(new QueueEntry(distance.applyAsDouble(element), null, -1, element));
+		}
+
+		List<T> result = new ArrayList<>(min(k, size()));
+
+		while (result.size() < k && !queue.isEmpty()) {
+
+			QueueEntry entry = queue.poll();
+
+			if (entry.element != null) {
+				@SuppressWarnings("unchecked")
+				T element = (T) entry.element;
+				result.add(element);
+			} else {
+				@SuppressWarnings("unchecked")
+				PackedTree<T> tree = (PackedTree<T>) entry.tree;
+				assert tree != null;
+				int node = entry.node;
+				for (int child = tree.childStart[node]; child < tree.childEnd[node]; child++) {
+					if (node < tree.leafCount) {
+						T element = tree.item(child);
+						queue.add(new QueueEntry(distance.applyAsDouble(element), null, -1, element));
+					} else {
+						queue.add(new QueueEntry(distance(point, tree.nodeBounds, child), tree, child, null));
+					}
+				}
+			}
+
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * a static R-tree packed into arrays.
+	 * Nodes 0 to leafCount - 1 are leaves, their children are ranges of {@link #items}.
+	 * The children of other nodes are ranges of nodes. The last node is the root.
+	 */
+	private static class PackedTree<T extends BoundedObject> {
+
+		/** the elements, ordered so that the children of each leaf are contiguous */
+		final Object[] items;
+
+		/** minX, minZ, maxX and maxZ of each item and node */
+		final double[] itemBounds;
+		final double[] nodeBounds;
+
+		final int[] childStart;
+		final int[] childEnd;
+
+		final int leafCount;
+
+		PackedTree(List<? extends T> elements) {
+
+			int n = elements.size();
+
+			/* sort the elements */
+
+			double[] bounds = new double[4 * n];
+			for (int i = 0; i < n; i++) {
+				AxisAlignedRectangleXZ bbox = elements.get(i).boundingBox();
+				bounds[4 * i] = bbox.minX;
+				bounds[4 * i + 1] = bbox.minZ;
+				bounds[4 * i + 2] = bbox.maxX;
+				bounds[4 * i + 3] = bbox.maxZ;
+			}
+
+			int[] order = strOrder(n, bounds);
+
+			items = new Object[n];
+			itemBounds = new double[4 * n];
+
+			for (int i = 0; i < n; i++) {
+				items[i] = elements.get(order[i]);
+				System.arraycopy(bounds, 4 * order[i], itemBounds, 4 * i, 4);
+			}
+
+			/* build the levels of the tree from the bottom up */
+
+			List<double[]> levelBounds = new ArrayList<>();
+			List<int[]> levelChildStart = new ArrayList<>();
+			List<int[]> levelChildEnd = new ArrayList<>();
+
+			double[] childBounds = itemBounds;
+			int childCount = n;
+
+			do {
+
+				int nodeCount = (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+
+				double[] b = new double[4 * nodeCount];
+				int[] start = new int[nodeCount];
+				int[] end = new int[nodeCount];
+
+				for (int node = 0; node < nodeCount; node++) {
+					start[node] = node * NODE_CAPACITY;
+					end[node] = min(childCount, start[node] + NODE_CAPACITY);
+					b[4 * node] = b[4 * node + 1] = Double.POSITIVE_INFINITY;
+					b[4 * node + 2] = b[4 * node + 3] = Double.NEGATIVE_INFINITY;
+					for (int child = start[node]; child < end[node]; child++) {
+						b[4 * node] = min(b[4 * node], childBounds[4 * child]);
+						b[4 * node + 1] = min(b[4 * node + 1], childBounds[4 * child + 1]);
+						b[4 * node + 2] = max(b[4 * node + 2], childBounds[4 * child + 2]);
+						b[4 * node + 3] = max(b[4 * node + 3], childBounds[4 * child + 3]);
+					}
+				}
+
+				if (nodeCount > 1) {
+
+					// sort the nodes of this level so that the nodes grouped into a parent are close to each other
+
+					int[] nodeOrder = strOrder(nodeCount, b);
+
+					double[] sortedB = new double[b.length];
+					int[] sortedStart = new int[nodeCount];
+					int[] sortedEnd = new int[nodeCount];
+
+					for (int i = 0; i < nodeCount; i++) {
+						System.arraycopy(b, 4 * nodeOrder[i], sortedB, 4 * i, 4);
+						sortedStart[i] = start[nodeOrder[i]];
+						sortedEnd[i] = end[nodeOrder[i]];
+					}
+
+					b = sortedB;
+					start = sortedStart;
+					end = sortedEnd;
+
+				}
+
+				levelBounds.add(b);
+				levelChildStart.add(start);
+				levelChildEnd.add(end);
+
+				childBounds = b;
+				childCount = nodeCount;
+
+			} while (childCount > 1);
+
+			/* concatenate the levels */
+
+			int totalNodeCount = levelChildStart.stream().mapToInt(a -> a.length).sum();
+
+			nodeBounds = new double[4 * totalNodeCount];
+			childStart = new int[totalNodeCount];
+			childEnd = new int[totalNodeCount];
+
+			leafCount = levelChildStart.get(0).length;
+
+			int offset = 0;
+			int previousOffset = 0;
+
+			for (int level = 0; level < levelBounds.size(); level++) {
+
+				int nodeCount = levelChildStart.get(level).length;
+				int childOffset = level == 0 ? 0 : previousOffset;
+
+				System.arraycopy(levelBounds.get(level), 0, nodeBounds, 4 * offset, 4 * nodeCount);
+
+				for (int i = 0; i < nodeCount; i++) {
+					childStart[offset + i] = levelChildStart.get(level)[i] + childOffset;
+					childEnd[offset + i] = levelChildEnd.get(level)[i] + childOffset;
+				}
+
+				previousOffset = offset;
+				offset += nodeCount;
+
+			}
+
+		}
+
+		int root() {
+			return childStart.length - 1;
+		}
+
+		@SuppressWarnings("unchecked")
+		T item(int i) {
+			return (T) items[i];
+		}
+
+		@SuppressWarnings("unchecked")
+		List<T> elements() {
+			return (List<T>) (List<?>) asList(items);
+		}
+
+		boolean visit(int node, double minX, double minZ, double maxX, double maxZ, Visitor<? super T> visitor) {
+
+			if (node < leafCount) {
+				for (int i = childStart[node]; i < childEnd[node]; i++) {
+					if (intersects(itemBounds, i, minX, minZ, maxX, maxZ) && !visitor.visit(item(i))) {
+						return false;
+					}
+				}
+			} else {
+				for (int child = childStart[node]; child < childEnd[node]; child++) {
+					if (intersects(nodeBounds, child, minX, minZ, maxX, maxZ)
+							&& !visit(child, minX, minZ, maxX, maxZ, visitor)) {
+						return false;
+					}
+				}
+			}
+
+			return true;
+
+		}
+
+		void collectLeaves(int node, double minX, double minZ, double maxX, double maxZ, List<List<T>> result) {
+			if (node < leafCount) {
+				result.add(elements().subList(childStart[node], childEnd[node]));
+			} else {
+				for (int child = childStart[node]; child < childEnd[node]; child++) {
+					if (intersects(nodeBounds, child, minX, minZ, maxX, maxZ)) {
+						collectLeaves(child, minX, minZ, maxX, maxZ, result);
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * returns the sort-tile-recursive order of boxes: The boxes are sorted by the x coordinate of their center,
+	 * split into vertical slices, and sorted by the z coordinate of their center within each slice.
+	 *
+	 * @param bounds  minX, minZ, maxX and maxZ of each box
+	 * @return  the indices of the boxes in STR order
+	 */
+	private static int[] strOrder(int count, double[] bounds) {
+
+		int nodeCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int sliceCapacity = (int) ceil(sqrt(nodeCount)) * NODE_CAPACITY;
+
+		long[] keys = new long[count];
+		int[] order = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			keys[i] = sortKey(bounds[4 * i] + bounds[4 * i + 2], i);
+		}
+
+		Arrays.sort(keys);
+
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) keys[i];
+		}
+
+		for (int sliceStart = 0; sliceStart < count; sliceStart += sliceCapacity) {
+
+			int sliceEnd = min(count, sliceStart + sliceCapacity);
+
+			for (int i = sliceStart; i < sliceEnd; i++) {
+				keys[i] = sortKey(bounds[4 * order[i] + 1] + bounds[4 * order[i] + 3], order[i]);
+			}
+
+			Arrays.sort(keys, sliceStart, sliceEnd);
+
+			for (int i = sliceStart; i < sliceEnd; i++) {
+				order[i] = (int) keys[i];
+			}
+
+		}
+
+		return order;
+
+	}
+
+	/**
+	 * combines a value and an index into a long which sorts by value first, then by index.
+	 * The value is reduced to float precision, which is sufficient for building the tree.
+	 */
+	private static long sortKey(double value, int index) {
+		int bits = Float.floatToIntBits((float) value);
+		bits ^= (bits >> 31) & 0x7fffffff;
+		return ((long) bits << 32) | index;
+	}
+
+	private static boolean intersects(double[] bounds, int i,
+			double minX, double minZ, double maxX, double maxZ) {
+		return bounds[4 * i] <= maxX && minX <= bounds[4 * i + 2]
+				&& bounds[4 * i + 1] <= maxZ && minZ <= bounds[4 * i + 3];
+	}
+
+	private static double distance(VectorXZ point, double[] bounds, int i) {
+		double dx = max(0, max(bounds[4 * i] - point.x, point.x - bounds[4 * i + 2]));
+		double dz = max(0, max(bounds[4 * i + 1] - point.z, point.z - bounds[4 * i + 3]));
+		return sqrt(dx * dx + dz * dz);
+	}
+
+	private static double distance(VectorXZ point, AxisAlignedRectangleXZ bbox) {
+		double dx = max(0, max(bbox.minX - point.x, point.x - bbox.maxX));
+		double dz = max(0, max(bbox.minZ - point.z, point.z - bbox.maxZ));
+		return sqrt(dx * dx + dz * dz);
+	}
+
+	private static void addBounds(TDoubleArrayList list, AxisAlignedRectangleXZ bbox) {
+		list.add(bbox.minX);
+		list.add(bbox.minZ);
+		list.add(bbox.maxX);
+		list.add(bbox.maxZ);
+	}
+
+}
@@ -0,0 +1,145 @@
+package org.osm2world.math.shapes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.math.VectorXZ;
+import org.osm2world.math.datastructures.PointInPolygonIndex;
+
+/**
+ * a {@link PolygonWithHolesXZ} prepared for being queried many times, similar to JTS' PreparedGeometry.
+ *
+ * The bounding box and area are calculated once. Containment and intersection tests use a
+ * {@link PointInPolygonIndex}, which is created when the first such test is performed.
+ * Polygons with few vertices are tested without an index.
+ * All results are identical to those of an unprepared {@link PolygonWithHolesXZ} with the same rings.
+ *
+ * Instances can be used by multiple threads at once.
+ */
+public class PreparedPolygonXZ extends PolygonWithHolesXZ {
+
+	/** polygons with fewer vertices are not worth building an index for */
+	private static final int MIN_INDEXED_VERTEX_COUNT = 32;
+
+	private final AxisAlignedRectangleXZ boundingBox;
+	private final double area;
+
+	private final boolean useIndex;
+	private volatile @Nullable PointInPolygonIndex index = null;
+
+	public PreparedPolygonXZ(SimplePolygonXZ outerPolygon, List<SimplePolygonXZ> holes) {
+
+		super(outerPolygon, holes);
+
+		boundingBox = super.boundingBox();
+		area = super.getArea();
+
+		int vertexCount = outerPolygon.size();
+		for (SimplePolygonXZ hole : holes) {
+			vertexCount += hole.size();
+		}
+		useIndex = vertexCount >= MIN_INDEXED_VERTEX_COUNT;
+
+	}
+
+	public PreparedPolygonXZ(PolygonWithHolesXZ polygon) {
+		this(polygon.getOuter(), polygon.getHoles());
+	}
+
+	/** returns the index, or null if the polygon is too small to use one */
+	private @Nullable PointInPolygonIndex index() {
+		if (!useIndex) return null;
+		PointInPolygonIndex result = index;
+		if (result == null) {
+			synchronized (this) {
+				result = index;
+				if (result == null) {
+					result = new PointInPolygonIndex(this);
+					index = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public AxisAlignedRectangleXZ boundingBox() {
+		return boundingBox;
+	}
+
+	@Override
+	public double getArea() {
+		return area;
+	}
+
+	@Override
+	public boolean contains(VectorXZ v) {
+		PointInPolygonIndex index = index();
+		return index != null ? index.contains(v) : super.contains(v);
+	}
+
+	@Override
+	public boolean contains(LineSegmentXZ lineSegment) {
+		PointInPolygonIndex index = index();
+		if (index == null) {
+			return super.contains(lineSegment);
+		} else {
+			return index.contains(lineSegment.p1) && index.contains(lineSegment.p2)
+					&& !index.intersects(lineSegment.p1, lineSegment.p2, -1);
+		}
+	}
+
+	@Override
+	public boolean contains(PolygonShapeXZ p) {
+		PointInPolygonIndex index = index();
+		return index != null ? index.contains(p) : super.contains(p);
+	}
+
+	@Override
+	public boolean intersects(VectorXZ segmentP1, VectorXZ segmentP2) {
+		PointInPolygonIndex index = index();
+		if (index == null) {
+			return super.intersects(segmentP1, segmentP2);
+		} else {
+			return index.intersects(segmentP1, segmentP2, 0);
+		}
+	}
+
+	@Override
+	public boolean intersects(PolygonShapeXZ outlinePolygonXZ) {
+		PointInPolygonIndex index = index();
+		return index != null ? index.intersects(outlinePolygonXZ) : super.intersects(outlinePolygonXZ);
+	}
+
+	@Override
+	public List<VectorXZ> intersectionPositions(LineSegmentXZ lineSegment) {
+		PointInPolygonIndex index = index();
+		if (index == null) {
+			return super.intersectionPositions(lineSegment);
+		} else {
+			return index.intersectionPositions(lineSegment.p1, lineSegment.p2, -1);
+		}
+	}
+
+	@Override
+	public Collection<VectorXZ> intersectionPositions(PolygonShapeXZ p2) {
+		PointInPolygonIndex index = index();
+		if (index == null) {
+			return super.intersectionPositions(p2);
+		} else {
+			List<VectorXZ> result = new ArrayList<>();
+			for (int ring = 0; ring <= getHoles().size(); ring++) {
+				for (SimplePolygonShapeXZ otherRing : p2.getRings()) {
+					for (LineSegmentXZ segment : otherRing.getSegments()) {
+						result.addAll(index.intersectionPositions(segment.p1, segment.p2, ring));
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+}
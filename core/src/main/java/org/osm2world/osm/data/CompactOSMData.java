@@ -0,0 +1,320 @@
+package org.osm2world.osm.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.math.geo.LatLonBounds;
+
+import com.slimjars.dist.gnu.trove.list.array.TLongArrayList;
+
+import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
+import de.topobyte.osm4j.core.model.iface.*;
+import de.topobyte.osm4j.core.model.impl.*;
+import de.topobyte.osm4j.core.resolve.EntityNotFoundException;
+import gnu.trove.map.TLongIntMap;
+
+/**
+ * {@link OSMData} which stores its entities in arrays instead of one object per entity.
+ * The nodes, ways and relations returned by its methods are lightweight views which are created on demand.
+ * Instances are created using {@link CompactOSMDataBuilder}.
+ */
+public class CompactOSMData extends OSMData {
+
+	private final long[] nodeIds;
+	private final double[] nodeLats;
+	private final double[] nodeLons;
+	private final String[][] nodeTags;
+	private final TLongIntMap nodeIndices;
+
+	private final long[] wayIds;
+	private final long[][] wayNodeIds;
+	private final String[][] wayTags;
+	private final TLongIntMap wayIndices;
+
+	private final long[] relationIds;
+	private final long[][] memberIds;
+	private final EntityType[][] memberTypes;
+	private final String[][] memberRoles;
+	private final String[][] relationTags;
+	private final TLongIntMap relationIndices;
+
+	/** bounds of all nodes in the input, including those which have not been kept */
+	private final @Nullable LatLonBounds inputNodeBounds;
+
+	private @Nullable InMemoryMapDataSet dataSet = null;
+
+	CompactOSMData(Collection<OsmBounds> bounds, @Nullable LatLonBounds inputNodeBounds,
+			long[] nodeIds, double[] nodeLats, double[] nodeLons, String[][] nodeTags, TLongIntMap nodeIndices,
+			long[] wayIds, long[][] wayNodeIds, String[][] wayTags, TLongIntMap wayIndices,
+			long[] relationIds, long[][] memberIds, EntityType[][] memberTypes, String[][] memberRoles,
+			String[][] relationTags, TLongIntMap relationIndices) {
+		super(bounds);
+		this.inputNodeBounds = inputNodeBounds;
+		this.nodeIds = nodeIds;
+		this.nodeLats = nodeLats;
+		this.nodeLons = nodeLons;
+		this.nodeTags = nodeTags;
+		this.nodeIndices = nodeIndices;
+		this.wayIds = wayIds;
+		this.wayNodeIds = wayNodeIds;
+		this.wayTags = wayTags;
+		this.wayIndices = wayIndices;
+		this.relationIds = relationIds;
+		this.memberIds = memberIds;
+		this.memberTypes = memberTypes;
+		this.memberRoles = memberRoles;
+		this.relationTags = relationTags;
+		this.relationIndices = relationIndices;
+	}
+
+	/**
+	 * returns a copy of this data using osm4j's data structures.
+	 * This is only provided for compatibility, it needs considerably more memory than this object itself.
+	 */
+	@Override
+	public synchronized InMemoryMapDataSet getData() {
+
+		if (dataSet == null) {
+
+			dataSet = new InMemoryMapDataSet();
+
+			for (OsmNode n : getNodes()) {
+				dataSet.getNodes().put(n.getId(),
+						new Node(n.getId(), n.getLongitude(), n.getLatitude(), tagList(n)));
+			}
+
+			for (OsmWay w : getWays()) {
+				dataSet.getWays().put(w.getId(),
+						new Way(w.getId(), new TLongArrayList(wayNodeIds[wayIndices.get(w.getId())]), tagList(w)));
+			}
+
+			for (OsmRelation r : getRelations()) {
+				List<OsmRelationMember> members = new ArrayList<>();
+				for (int m = 0; m < r.getNumberOfMembers(); m++) {
+					OsmRelationMember member = r.getMember(m);
+					members.add(new RelationMember(member.getId(), member.getType(), member.getRole()));
+				}
+				dataSet.getRelations().put(r.getId(), new Relation(r.getId(), members, tagList(r)));
+			}
+
+			List<OsmBounds> bounds = getExplicitBounds().stream()
+					.map(b -> (OsmBounds) new Bounds(b.minlon, b.maxlon, b.maxlat, b.minlat))
+					.toList();
+			if (!bounds.isEmpty()) {
+				dataSet.setBounds(bounds.get(0));
+			}
+
+		}
+
+		return dataSet;
+
+	}
+
+	@Override
+	public Collection<OsmNode> getNodes() {
+		return views(nodeIds.length, NodeView::new);
+	}
+
+	@Override
+	public OsmNode getNode(long id) throws EntityNotFoundException {
+		return new NodeView(index(nodeIndices, id, "node"));
+	}
+
+	@Override
+	public Collection<OsmWay> getWays() {
+		return views(wayIds.length, WayView::new);
+	}
+
+	@Override
+	public OsmWay getWay(long id) throws EntityNotFoundException {
+		return new WayView(index(wayIndices, id, "way"));
+	}
+
+	@Override
+	public Collection<OsmRelation> getRelations() {
+		return views(relationIds.length, RelationView::new);
+	}
+
+	@Override
+	public OsmRelation getRelation(long id) throws EntityNotFoundException {
+		return new RelationView(index(relationIndices, id, "relation"));
+	}
+
+	/**
+	 * returns the explicit bounds or, if there are none, the bounds of all nodes in the input.
+	 * This also includes nodes which were not needed and have therefore not been kept,
+	 * so the result is the same as for an {@link OSMData} object containing all the input data.
+	 */
+	@Override
+	public LatLonBounds getLatLonBounds() {
+		if (getUnionOfExplicitBounds() != null) {
+			return getUnionOfExplicitBounds();
+		} else if (inputNodeBounds != null) {
+			return inputNodeBounds;
+		} else {
+			throw new IllegalArgumentException("OSM data must contain bounds or nodes");
+		}
+	}
+
+	private static int index(TLongIntMap indices, long id, String entityType) throws EntityNotFoundException {
+		if (!indices.containsKey(id)) {
+			throw new EntityNotFoundException("unable to find " + entityType + " with id: " + id);
+		}
+		return indices.get(id);
+	}
+
+	private static <T> List<T> views(int size, IntFunction<T> view) {
+		return new AbstractList<>() {
+			@Override
+			public T get(int index) {
+				return view.apply(index);
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private static List<OsmTag> tagList(OsmEntity entity) {
+		return views(entity.getNumberOfTags(), entity::getTag);
+	}
+
+	private static abstract class EntityView implements OsmEntity {
+
+		final int index;
+
+		EntityView(int index) {
+			this.index = index;
+		}
+
+		abstract String[] tags();
+
+		@Override
+		public int getNumberOfTags() {
+			return tags().length / 2;
+		}
+
+		@Override
+		public OsmTag getTag(int n) {
+			String[] tags = tags();
+			return new Tag(tags[2 * n], tags[2 * n + 1]);
+		}
+
+		@Override
+		public @Nullable OsmMetadata getMetadata() {
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return getType() + " " + getId();
+		}
+
+	}
+
+	private class NodeView extends EntityView implements OsmNode {
+
+		NodeView(int index) {
+			super(index);
+		}
+
+		@Override
+		public long getId() {
+			return nodeIds[index];
+		}
+
+		@Override
+		String[] tags() {
+			return nodeTags[index];
+		}
+
+		@Override
+		public EntityType getType() {
+			return EntityType.Node;
+		}
+
+		@Override
+		public double getLatitude() {
+			return nodeLats[index];
+		}
+
+		@Override
+		public double getLongitude() {
+			return nodeLons[index];
+		}
+
+	}
+
+	private class WayView extends EntityView implements OsmWay {
+
+		WayView(int index) {
+			super(index);
+		}
+
+		@Override
+		public long getId() {
+			return wayIds[index];
+		}
+
+		@Override
+		String[] tags() {
+			return wayTags[index];
+		}
+
+		@Override
+		public EntityType getType() {
+			return EntityType.Way;
+		}
+
+		@Override
+		public int getNumberOfNodes() {
+			return wayNodeIds[index].length;
+		}
+
+		@Override
+		public long getNodeId(int n) {
+			return wayNodeIds[index][n];
+		}
+
+	}
+
+	private class RelationView extends EntityView implements OsmRelation {
+
+		RelationView(int index) {
+			super(index);
+		}
+
+		@Override
+		public long getId() {
+			return relationIds[index];
+		}
+
+		@Override
+		String[] tags() {
+			return relationTags[index];
+		}
+
+		@Override
+		public EntityType getType() {
+			return EntityType.Relation;
+		}
+
+		@Override
+		public int getNumberOfMembers() {
+			return memberIds[index].length;
+		}
+
+		@Override
+		public OsmRelationMember getMember(int n) {
+			return new RelationMember(memberIds[index][n], memberTypes[index][n], memberRoles[index][n]);
+		}
+
+	}
+
+}
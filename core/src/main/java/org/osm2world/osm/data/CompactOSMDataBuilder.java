@@ -0,0 +1,330 @@
+package org.osm2world.osm.data;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.map_data.data.TagSet;
+import org.osm2world.math.geo.LatLonBounds;
+import org.osm2world.osm.ruleset.HardcodedRuleset;
+import org.osm2world.osm.ruleset.Ruleset;
+
+import de.topobyte.osm4j.core.access.OsmIterator;
+import de.topobyte.osm4j.core.model.iface.*;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+/**
+ * builds {@link CompactOSMData} from a stream of OSM entities, such as those read from a file.
+ * Each entity only needs to be passed to the builder once.
+ *
+ * Optionally, entities which are not relevant for OSM2World are dropped, see {@link #CompactOSMDataBuilder(boolean)}.
+ *
+ * Entities with the same type and id as an entity which has been added before replace the earlier entity.
+ */
+public class CompactOSMDataBuilder {
+
+	private static final String[] NO_TAGS = {};
+
+	private final Ruleset ruleset = new HardcodedRuleset();
+
+	private final boolean relevantDataOnly;
+
+	private final List<OsmBounds> bounds = new ArrayList<>();
+
+	private final TLongArrayList nodeIds = new TLongArrayList();
+	private final TDoubleArrayList nodeLats = new TDoubleArrayList();
+	private final TDoubleArrayList nodeLons = new TDoubleArrayList();
+	/** tags of each node, null for the (very common) untagged nodes */
+	private final List<String[]> nodeTags = new ArrayList<>();
+	private final TLongIntMap nodeIndices = new TLongIntHashMap();
+
+	private final TLongArrayList wayIds = new TLongArrayList();
+	private final List<long[]> wayNodeIds = new ArrayList<>();
+	private final List<String[]> wayTags = new ArrayList<>();
+	private final TLongIntMap wayIndices = new TLongIntHashMap();
+
+	private final TLongArrayList relationIds = new TLongArrayList();
+	private final List<long[]> memberIds = new ArrayList<>();
+	private final List<EntityType[]> memberTypes = new ArrayList<>();
+	private final List<String[]> memberRoles = new ArrayList<>();
+	private final List<String[]> relationTags = new ArrayList<>();
+	private final TLongIntMap relationIndices = new TLongIntHashMap();
+
+	private double minLat = Double.POSITIVE_INFINITY;
+	private double minLon = Double.POSITIVE_INFINITY;
+	private double maxLat = Double.NEGATIVE_INFINITY;
+	private double maxLon = Double.NEGATIVE_INFINITY;
+
+	/** creates a builder which keeps all entities */
+	public CompactOSMDataBuilder() {
+		this(false);
+	}
+
+	/**
+	 * @param relevantDataOnly  whether to drop entities which are not relevant for OSM2World, e.g. when reading data
+	 *                          for a conversion. Relations are then only kept if they are tagged multipolygons
+	 *                          or relevant according to {@link HardcodedRuleset}. Untagged ways are only kept if they
+	 *                          are members of a remaining relation. Untagged nodes are only kept if they are used by
+	 *                          one of the remaining ways or relations, so for most nodes, only the coordinates
+	 *                          are stored until {@link #build()} is called.
+	 */
+	public CompactOSMDataBuilder(boolean relevantDataOnly) {
+		this.relevantDataOnly = relevantDataOnly;
+	}
+
+	public void addBounds(OsmBounds bounds) {
+		this.bounds.add(bounds);
+	}
+
+	/**
+	 * adds a node
+	 * @param tags  alternating keys and values: key0, value0, key1, value1, ...
+	 */
+	public void addNode(long id, double lat, double lon, String[] tags) {
+
+		minLat = min(minLat, lat);
+		minLon = min(minLon, lon);
+		maxLat = max(maxLat, lat);
+		maxLon = max(maxLon, lon);
+
+		String[] storedTags = tags.length == 0 ? null : tags;
+
+		if (nodeIndices.containsKey(id)) {
+			int index = nodeIndices.get(id);
+			nodeLats.set(index, lat);
+			nodeLons.set(index, lon);
+			nodeTags.set(index, storedTags);
+		} else {
+			nodeIndices.put(id, nodeIds.size());
+			nodeIds.add(id);
+			nodeLats.add(lat);
+			nodeLons.add(lon);
+			nodeTags.add(storedTags);
+		}
+
+	}
+
+	/**
+	 * adds a way
+	 * @param tags  alternating keys and values: key0, value0, key1, value1, ...
+	 */
+	public void addWay(long id, long[] nodeIds, String[] tags) {
+		if (wayIndices.containsKey(id)) {
+			int index = wayIndices.get(id);
+			wayNodeIds.set(index, nodeIds);
+			wayTags.set(index, tags);
+		} else {
+			wayIndices.put(id, wayIds.size());
+			wayIds.add(id);
+			wayNodeIds.add(nodeIds);
+			wayTags.add(tags);
+		}
+	}
+
+	/**
+	 * adds a relation, unless only relevant data is kept and the relation is irrelevant for OSM2World
+	 * @param tags  alternating keys and values: key0, value0, key1, value1, ...
+	 */
+	public void addRelation(long id, long[] memberIds, EntityType[] memberTypes, String[] memberRoles,
+			String[] tags) {
+
+		if (relevantDataOnly && !isRelevantRelation(tags)) return;
+
+		if (relationIndices.containsKey(id)) {
+			int index = relationIndices.get(id);
+			this.memberIds.set(index, memberIds);
+			this.memberTypes.set(index, memberTypes);
+			this.memberRoles.set(index, memberRoles);
+			this.relationTags.set(index, tags);
+		} else {
+			relationIndices.put(id, relationIds.size());
+			relationIds.add(id);
+			this.memberIds.add(memberIds);
+			this.memberTypes.add(memberTypes);
+			this.memberRoles.add(memberRoles);
+			this.relationTags.add(tags);
+		}
+
+	}
+
+	/** adds an osm4j entity */
+	public void addEntity(OsmEntity entity) {
+		if (entity instanceof OsmNode node) {
+			addNode(node.getId(), node.getLatitude(), node.getLongitude(), tags(node));
+		} else if (entity instanceof OsmWay way) {
+			long[] nodeIds = new long[way.getNumberOfNodes()];
+			for (int i = 0; i < nodeIds.length; i++) {
+				nodeIds[i] = way.getNodeId(i);
+			}
+			addWay(way.getId(), nodeIds, tags(way));
+		} else if (entity instanceof OsmRelation relation) {
+			int memberCount = relation.getNumberOfMembers();
+			long[] memberIds = new long[memberCount];
+			EntityType[] memberTypes = new EntityType[memberCount];
+			String[] memberRoles = new String[memberCount];
+			for (int i = 0; i < memberCount; i++) {
+				OsmRelationMember member = relation.getMember(i);
+				memberIds[i] = member.getId();
+				memberTypes[i] = member.getType();
+				memberRoles[i] = member.getRole();
+			}
+			addRelation(relation.getId(), memberIds, memberTypes, memberRoles, tags(relation));
+		} else {
+			throw new IllegalArgumentException("unsupported entity: " + entity);
+		}
+	}
+
+	/** adds all bounds and entities provided by an osm4j iterator */
+	public void addAll(OsmIterator iterator) {
+		if (iterator.hasBounds()) {
+			addBounds(iterator.getBounds());
+		}
+		while (iterator.hasNext()) {
+			addEntity(iterator.next().getEntity());
+		}
+	}
+
+	/** creates the {@link CompactOSMData}. The builder should not be used afterwards. */
+	public CompactOSMData build() {
+
+		/* determine which ways and nodes are needed */
+
+		boolean[] wayNeeded = new boolean[wayIds.size()];
+		boolean[] nodeNeeded = new boolean[nodeIds.size()];
+
+		for (int w = 0; w < wayNeeded.length; w++) {
+			wayNeeded[w] = !relevantDataOnly || wayTags.get(w).length > 0;
+		}
+
+		for (int n = 0; n < nodeNeeded.length; n++) {
+			nodeNeeded[n] = !relevantDataOnly || nodeTags.get(n) != null;
+		}
+
+		for (int r = 0; r < relationIds.size(); r++) {
+			for (int m = 0; m < memberIds.get(r).length; m++) {
+				long id = memberIds.get(r)[m];
+				switch (memberTypes.get(r)[m]) {
+					case Node -> {
+						if (nodeIndices.containsKey(id)) nodeNeeded[nodeIndices.get(id)] = true;
+					}
+					case Way -> {
+						if (wayIndices.containsKey(id)) wayNeeded[wayIndices.get(id)] = true;
+					}
+					default -> {}
+				}
+			}
+		}
+
+		for (int w = 0; w < wayNeeded.length; w++) {
+			if (wayNeeded[w]) {
+				for (long id : wayNodeIds.get(w)) {
+					if (nodeIndices.containsKey(id)) nodeNeeded[nodeIndices.get(id)] = true;
+				}
+			}
+		}
+
+		/* copy the needed entities to arrays */
+
+		int nodeCount = count(nodeNeeded);
+		long[] keptNodeIds = new long[nodeCount];
+		double[] keptNodeLats = new double[nodeCount];
+		double[] keptNodeLons = new double[nodeCount];
+		String[][] keptNodeTags = new String[nodeCount][];
+		TLongIntMap keptNodeIndices = new TLongIntHashMap(nodeCount);
+
+		for (int n = 0, i = 0; n < nodeNeeded.length; n++) {
+			if (nodeNeeded[n]) {
+				keptNodeIds[i] = nodeIds.get(n);
+				keptNodeLats[i] = nodeLats.get(n);
+				keptNodeLons[i] = nodeLons.get(n);
+				keptNodeTags[i] = nodeTags.get(n) == null ? NO_TAGS : nodeTags.get(n);
+				keptNodeIndices.put(keptNodeIds[i], i);
+				i++;
+			}
+		}
+
+		int wayCount = count(wayNeeded);
+		long[] keptWayIds = new long[wayCount];
+		long[][] keptWayNodeIds = new long[wayCount][];
+		String[][] keptWayTags = new String[wayCount][];
+		TLongIntMap keptWayIndices = new TLongIntHashMap(wayCount);
+
+		for (int w = 0, i = 0; w < wayNeeded.length; w++) {
+			if (wayNeeded[w]) {
+				keptWayIds[i] = wayIds.get(w);
+				keptWayNodeIds[i] = wayNodeIds.get(w);
+				keptWayTags[i] = wayTags.get(w);
+				keptWayIndices.put(keptWayIds[i], i);
+				i++;
+			}
+		}
+
+		@Nullable LatLonBounds inputNodeBounds = nodeIds.isEmpty() ? null
+				: new LatLonBounds(minLat, minLon, maxLat, maxLon);
+
+		return new CompactOSMData(bounds, inputNodeBounds,
+				keptNodeIds, keptNodeLats, keptNodeLons, keptNodeTags, keptNodeIndices,
+				keptWayIds, keptWayNodeIds, keptWayTags, keptWayIndices,
+				relationIds.toArray(), memberIds.toArray(new long[0][]), memberTypes.toArray(new EntityType[0][]),
+				memberRoles.toArray(new String[0][]), relationTags.toArray(new String[0][]), relationIndices);
+
+	}
+
+	private boolean isRelevantRelation(String[] tags) {
+		if (tags.length == 0) {
+			return false;
+		} else if (isMultipolygon(tags)) {
+			return true;
+		} else {
+			return ruleset.isRelevantRelation(TagSet.of(tagMap(tags)));
+		}
+	}
+
+	private static boolean isMultipolygon(String[] tags) {
+		for (int i = 0; i + 1 < tags.length; i += 2) {
+			if ("type".equals(tags[i]) && "multipolygon".equals(tags[i + 1])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** converts tags to a map, later values replace earlier ones for duplicate keys */
+	private static Map<String, String> tagMap(String[] tags) {
+		Map<String, String> result = new HashMap<>(tags.length);
+		for (int i = 0; i + 1 < tags.length; i += 2) {
+			result.put(tags[i], tags[i + 1]);
+		}
+		return result;
+	}
+
+	private static String[] tags(OsmEntity entity) {
+		int tagCount = entity.getNumberOfTags();
+		if (tagCount == 0) return NO_TAGS;
+		String[] result = new String[2 * tagCount];
+		for (int i = 0; i < tagCount; i++) {
+			OsmTag tag = entity.getTag(i);
+			result[2 * i] = tag.getKey();
+			result[2 * i + 1] = tag.getValue();
+		}
+		return result;
+	}
+
+	private static int count(boolean[] values) {
+		int result = 0;
+		for (boolean value : values) {
+			if (value) result++;
+		}
+		return result;
+	}
+
+}
@@ -28,6 +28,15 @@ public class OSMData implements OsmEntityProvider {
 	private final Collection<OsmBounds> bounds;
 	private final InMemoryMapDataSet data;
 
+	/**
+	 * constructor for subclasses which store the entities themselves.
+	 * These need to override all methods which access nodes, ways and relations.
+	 */
+	protected OSMData(Collection<OsmBounds> bounds) {
+		this.bounds = bounds;
+		this.data = null;
+	}
+
 	public OSMData(InMemoryMapDataSet data) {
 
 		if (data.hasBounds()) {
@@ -69,7 +69,7 @@ public interface DrawBasedOutput extends Output, CommonTarget {
 	private void renderObject(WorldObject object) {
 		beginObject(object);
 		object.buildMeshes().forEach(this::drawMesh);
-		object.getSubModels().forEach(it -> it.render(this));
+		object.getSubModels().forEach(this::drawModel);
 	}
 
 	/**
@@ -1,12 +1,19 @@
 package org.osm2world.output.common;
 
+import static java.util.Objects.requireNonNullElse;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
 
+import org.osm2world.conversion.O2WConfig;
+import org.osm2world.conversion.O2WConfig.GltfInstancing;
 import org.osm2world.output.Output;
 import org.osm2world.scene.mesh.Mesh;
 import org.osm2world.scene.mesh.MeshStore;
 import org.osm2world.scene.mesh.MeshStore.MeshMetadata;
+import org.osm2world.scene.mesh.MeshStore.ModelInstanceWithMetadata;
+import org.osm2world.scene.model.ModelInstance;
 import org.osm2world.world.data.WorldObject;
 
 /**
@@ -16,16 +23,29 @@ import org.osm2world.world.data.WorldObject;
 public class MeshOutput extends AbstractOutput implements DrawBasedOutput {
 
 	private final Predicate<WorldObject> worldObjectFilter;
+	private final boolean keepModelInstances;
 
 	protected final MeshStore meshStore = new MeshStore();
+	protected final List<ModelInstanceWithMetadata> modelInstances = new ArrayList<>();
 
 	protected WorldObject currentWorldObject = null;
 
+	/**
+	 * @param worldObjectFilter   only {@link WorldObject}s matching this filter will be included in the output
+	 * @param keepModelInstances  whether instances of models which support instancing should be collected
+	 *                            as {@link ModelInstance}s rather than being converted to meshes.
+	 *                            Only has an effect if {@link O2WConfig#gltfInstancing()} is enabled.
+	 */
+	public MeshOutput(Predicate<WorldObject> worldObjectFilter, boolean keepModelInstances) {
+		this.worldObjectFilter = worldObjectFilter;
+		this.keepModelInstances = keepModelInstances;
+	}
+
 	/**
 	 * @param worldObjectFilter  only {@link WorldObject}s matching this filter will be included in the output
 	 */
 	public MeshOutput(Predicate<WorldObject> worldObjectFilter) {
-		this.worldObjectFilter = worldObjectFilter;
+		this(worldObjectFilter, false);
 	}
 
 	public MeshOutput() {
@@ -44,14 +64,24 @@ public class MeshOutput extends AbstractOutput implements DrawBasedOutput {
 
 	@Override
 	public void drawMesh(Mesh mesh) {
+		meshStore.addMesh(mesh, currentMetadata());
+	}
 
-		MeshMetadata metadata = (currentWorldObject != null)
+	@Override
+	public void drawModel(ModelInstance modelInstance) {
+		if (keepModelInstances && modelInstance.model().isInstanceable()
+				&& requireNonNullElse(getConfiguration(), new O2WConfig()).gltfInstancing() != GltfInstancing.NONE) {
+			modelInstances.add(new ModelInstanceWithMetadata(modelInstance, currentMetadata()));
+		} else {
+			DrawBasedOutput.super.drawModel(modelInstance);
+		}
+	}
+
+	private MeshMetadata currentMetadata() {
+		return (currentWorldObject != null)
 				? new MeshMetadata(currentWorldObject.getPrimaryMapElement().getElementWithId(),
 						currentWorldObject.getClass())
 				: new MeshMetadata(null, null);
-
-		meshStore.addMesh(mesh, metadata);
-
 	}
 
 	public List<Mesh> getMeshes() {
@@ -62,4 +92,12 @@ public class MeshOutput extends AbstractOutput implements DrawBasedOutput {
 		return meshStore.meshesWithMetadata();
 	}
 
+	/**
+	 * returns the model instances which have been kept as instances instead of being converted to meshes.
+	 * Always empty unless this output has been created with the keepModelInstances option.
+	 */
+	public List<ModelInstanceWithMetadata> getModelInstancesWithMetadata() {
+		return new ArrayList<>(modelInstances);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package org.osm2world.output.gltf;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * collects the content of a glb file's BIN chunk while the glTF asset is being built.
+ * The data can either be kept in memory or written to a temporary file as it arrives,
+ * which limits the heap usage for large outputs.
+ */
+abstract class GlbBinaryChunk implements Closeable {
+
+	private int length = 0;
+
+	/**
+	 * adds data to the end of the chunk
+	 *
+	 * @param data  data with a length which is a multiple of 4, all of the backing array is used
+	 * @return  the byte offset of the data within the chunk
+	 */
+	int append(ByteBuffer data) throws IOException {
+		int byteOffset = length;
+		appendData(data.array());
+		length += data.capacity();
+		return byteOffset;
+	}
+
+	/** returns the total number of bytes in the chunk */
+	int length() {
+		return length;
+	}
+
+	protected abstract void appendData(byte[] data) throws IOException;
+
+	/** writes the chunk's data (without chunk header) to a stream */
+	abstract void writeTo(OutputStream outputStream) throws IOException;
+
+	/** creates a chunk which keeps all data in memory */
+	static GlbBinaryChunk inMemory() {
+		return new InMemoryChunk();
+	}
+
+	/** creates a chunk which writes all data to a temporary file, which is deleted on {@link #close()} */
+	static GlbBinaryChunk inTempFile() throws IOException {
+		return new TempFileChunk();
+	}
+
+	private static class InMemoryChunk extends GlbBinaryChunk {
+
+		private final List<byte[]> data = new ArrayList<>();
+
+		@Override
+		protected void appendData(byte[] data) {
+			this.data.add(data);
+		}
+
+		@Override
+		void writeTo(OutputStream outputStream) throws IOException {
+			for (byte[] d : data) {
+				outputStream.write(d);
+			}
+		}
+
+		@Override
+		public void close() {
+			data.clear();
+		}
+
+	}
+
+	private static class TempFileChunk extends GlbBinaryChunk {
+
+		private final File file;
+		private final OutputStream fileOutputStream;
+
+		TempFileChunk() throws IOException {
+			file = File.createTempFile("osm2world-glb", ".bin");
+			file.deleteOnExit();
+			fileOutputStream = new BufferedOutputStream(new FileOutputStream(file));
+		}
+
+		@Override
+		protected void appendData(byte[] data) throws IOException {
+			fileOutputStream.write(data);
+		}
+
+		@Override
+		void writeTo(OutputStream outputStream) throws IOException {
+			fileOutputStream.flush();
+			Files.copy(file.toPath(), outputStream);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				fileOutputStream.close();
+			} finally {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+
+	}
+
+}
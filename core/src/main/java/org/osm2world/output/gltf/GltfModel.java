@@ -14,7 +14,9 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
@@ -49,7 +51,8 @@ public class GltfModel implements Model {
 	private final Gltf gltf;
 	private final @Nullable ExternalModelSource source;
 
-	private final Map<Pair<GltfImage, Wrap>, TextureData> imageCache = new HashMap<>();
+	/** images which have already been read. Models may be shared by threads, so this is filled concurrently. */
+	private final Map<Pair<GltfImage, Wrap>, TextureData> imageCache = new ConcurrentHashMap<>();
 
 	public GltfModel(Gltf gltf, @Nullable ExternalModelSource source) {
 
@@ -70,6 +73,11 @@ public class GltfModel implements Model {
 		return source != null ? source.toString() : super.toString();
 	}
 
+	@Override
+	public boolean isInstanceable() {
+		return true;
+	}
+
 	@Override
 	public List<Mesh> buildMeshes(InstanceParameters params) {
 
@@ -118,118 +126,122 @@ public class GltfModel implements Model {
 
 			GltfMesh mesh = gltf.meshes.get(node.mesh);
 
-			for (GltfMesh.Primitive primitive : mesh.primitives) {
+			for (TransformationMatrix meshTransform : getMeshTransforms(node, globalTransform)) {
+				for (GltfMesh.Primitive primitive : mesh.primitives) {
 
-				// construct the mesh material
+					// construct the mesh material
 
-				GltfMaterial gltfMaterial;
-				if (primitive.material == null) {
-					// spec: "The default material [...] is defined to be a material with no properties specified"
-					gltfMaterial = new GltfMaterial();
-				} else {
-					gltfMaterial = gltf.materials.get(primitive.material);
-				}
+					GltfMaterial gltfMaterial;
+					if (primitive.material == null) {
+						// spec: "The default material [...] is defined to be a material with no properties specified"
+						gltfMaterial = new GltfMaterial();
+					} else {
+						gltfMaterial = gltf.materials.get(primitive.material);
+					}
 
-				Material material = convertMaterial(gltfMaterial, instanceColor);
+					Material material = convertMaterial(gltfMaterial, instanceColor);
 
-				// construct the mesh geometry
+					// construct the mesh geometry
 
-				int mode = primitive.mode != null ? primitive.mode : GltfMesh.TRIANGLES;
+					int mode = primitive.mode != null ? primitive.mode : GltfMesh.TRIANGLES;
 
-				if (mode == GltfMesh.TRIANGLES) {
-					// TODO support strips and fans as well
+					if (mode == GltfMesh.TRIANGLES) {
+						// TODO support strips and fans as well
 
-					GltfAccessor positionAccessor = gltf.accessors.get(primitive.attributes.get("POSITION"));
-					List<VectorXYZ> positions = readDataFromAccessor(VectorXYZ.class, positionAccessor);
-					positions = positions.stream().map(globalTransform::applyTo).toList();
+						GltfAccessor positionAccessor = gltf.accessors.get(primitive.attributes.get("POSITION"));
+						List<VectorXYZ> positions = readDataFromAccessor(VectorXYZ.class, positionAccessor);
+						positions = positions.stream().map(meshTransform::applyTo).toList();
 
-					@Nullable List<Color> colors = null;
-					if (primitive.attributes.containsKey("COLOR_0")) {
-						GltfAccessor colorAccessor = gltf.accessors.get(primitive.attributes.get("COLOR_0"));
-						List<VectorXYZ> colorsXYZ = readDataFromAccessor(VectorXYZ.class, colorAccessor);
-						colors = colorsXYZ.stream()
-								.map(c -> new LColor(
-										min(max(0f, (float)c.x), 1f),
-										min(max(0f, (float)c.y), 1f),
-										min(max(0f, (float)-c.z), 1f))
-										.toRGB())
-								.toList();
-					}
+						@Nullable List<Color> colors = null;
+						if (primitive.attributes.containsKey("COLOR_0")) {
+							GltfAccessor colorAccessor = gltf.accessors.get(primitive.attributes.get("COLOR_0"));
+							List<VectorXYZ> colorsXYZ = readDataFromAccessor(VectorXYZ.class, colorAccessor);
+							colors = colorsXYZ.stream()
+									.map(c -> new LColor(
+											min(max(0f, (float)c.x), 1f),
+											min(max(0f, (float)c.y), 1f),
+											min(max(0f, (float)-c.z), 1f))
+											.toRGB())
+									.toList();
+						}
 
-					@Nullable List<VectorXYZ> normals = null;
-					if (primitive.attributes.containsKey("NORMAL")) {
-						GltfAccessor normalAccessor = gltf.accessors.get(primitive.attributes.get("NORMAL"));
-						normals = readDataFromAccessor(VectorXYZ.class, normalAccessor);
-						normals = normals.stream().map(globalTransform::applyToNormal).toList();
-					}
+						@Nullable List<VectorXYZ> normals = null;
+						if (primitive.attributes.containsKey("NORMAL")) {
+							GltfAccessor normalAccessor = gltf.accessors.get(primitive.attributes.get("NORMAL"));
+							normals = readDataFromAccessor(VectorXYZ.class, normalAccessor);
+							normals = normals.stream().map(meshTransform::applyToNormal)
+									.map(n -> n.lengthSquared() > 0 ? n.normalize() : n).toList();
+						}
 
-					@Nullable List<VectorXZ> texCoords = null;
-					if (primitive.attributes.containsKey("TEXCOORD_0")) {
-						GltfAccessor texCoordAccessor = gltf.accessors.get(primitive.attributes.get("TEXCOORD_0"));
-						texCoords = readDataFromAccessor(VectorXZ.class, texCoordAccessor);
-					}
+						@Nullable List<VectorXZ> texCoords = null;
+						if (primitive.attributes.containsKey("TEXCOORD_0")) {
+							GltfAccessor texCoordAccessor = gltf.accessors.get(primitive.attributes.get("TEXCOORD_0"));
+							texCoords = readDataFromAccessor(VectorXZ.class, texCoordAccessor);
+						}
 
-					@Nullable List<Integer> indices = null;
-					if (primitive.indices != null) {
-						GltfAccessor indexAccessor = gltf.accessors.get(primitive.indices);
-						indices = readDataFromAccessor(Integer.class, indexAccessor);
-					}
+						@Nullable List<Integer> indices = null;
+						if (primitive.indices != null) {
+							GltfAccessor indexAccessor = gltf.accessors.get(primitive.indices);
+							indices = readDataFromAccessor(Integer.class, indexAccessor);
+						}
 
-					assert colors == null || colors.size() == positions.size();
-					assert normals == null || normals.size() == positions.size();
-					assert texCoords == null || texCoords.size() == positions.size();
+						assert colors == null || colors.size() == positions.size();
+						assert normals == null || normals.size() == positions.size();
+						assert texCoords == null || texCoords.size() == positions.size();
 
-					/* build the geometry */
+						/* build the geometry */
 
-					var geometryBuilder = new TriangleGeometry.Builder(
-							material.textureLayers().size(),
-							null,
-							normals == null ? material.interpolation() : null);
+						var geometryBuilder = new TriangleGeometry.Builder(
+								material.textureLayers().size(),
+								null,
+								normals == null ? material.interpolation() : null);
 
-					if (indices == null) {
+						if (indices == null) {
 
-						assert positions.size() % 3 == 0;
+							assert positions.size() % 3 == 0;
 
-						List<TriangleXYZ> triangles = new ArrayList<>(positions.size() / 3);
-						for (int i = 0; i < positions.size(); i += 3) {
-							triangles.add(new TriangleXYZ(positions.get(i), positions.get(i + 1), positions.get(i + 2)));
-						}
+							List<TriangleXYZ> triangles = new ArrayList<>(positions.size() / 3);
+							for (int i = 0; i < positions.size(); i += 3) {
+								triangles.add(new TriangleXYZ(positions.get(i), positions.get(i + 1), positions.get(i + 2)));
+							}
 
-						geometryBuilder.addTriangles(triangles,
-								texCoords == null || material.textureLayers().size() == 0 ? List.of()
-										: List.of(texCoords),
-								colors, normals);
+							geometryBuilder.addTriangles(triangles,
+									texCoords == null || material.textureLayers().size() == 0 ? List.of()
+											: List.of(texCoords),
+									colors, normals);
 
-					} else {
+						} else {
+
+							assert indices.size() % 3 == 0;
 
-						assert indices.size() % 3 == 0;
+							for (int i = 0; i < indices.size(); i += 3) {
 
-						for (int i = 0; i < indices.size(); i += 3) {
+								int i0 = indices.get(i);
+								int i1 = indices.get(i + 1);
+								int i2 = indices.get(i + 2);
 
-							int i0 = indices.get(i);
-							int i1 = indices.get(i + 1);
-							int i2 = indices.get(i + 2);
+								try {
+									geometryBuilder.addTriangles(
+											List.of(new TriangleXYZ(positions.get(i0), positions.get(i1), positions.get(i2))),
+											texCoords == null || material.textureLayers().size() == 0 ? List.of()
+													: List.of(List.of(texCoords.get(i0), texCoords.get(i1), texCoords.get(i2))),
+											colors == null ? null : List.of(colors.get(i0), colors.get(i1), colors.get(i2)),
+											normals == null ? null : List.of(normals.get(i0), normals.get(i1), normals.get(i2))
+									);
+								} catch (InvalidGeometryException e) {
+									ConversionLog.warn("Invalid geometry in glTF asset " + this, e);
+								}
 
-							try {
-								geometryBuilder.addTriangles(
-										List.of(new TriangleXYZ(positions.get(i0), positions.get(i1), positions.get(i2))),
-										texCoords == null || material.textureLayers().size() == 0 ? List.of()
-												: List.of(List.of(texCoords.get(i0), texCoords.get(i1), texCoords.get(i2))),
-										colors == null ? null : List.of(colors.get(i0), colors.get(i1), colors.get(i2)),
-										normals == null ? null : List.of(normals.get(i0), normals.get(i1), normals.get(i2))
-								);
-							} catch (InvalidGeometryException e) {
-								ConversionLog.warn("Invalid geometry in glTF asset " + this, e);
 							}
 
 						}
 
-					}
+						result.add(new Mesh(geometryBuilder.build(), material, lodRange.min(), lodRange.max()));
 
-					result.add(new Mesh(geometryBuilder.build(), material, lodRange.min(), lodRange.max()));
+					} else {
+						ConversionLog.error("Unsupported mode " + mode + " in glTF asset " + this);
+					}
 
-				} else {
-					ConversionLog.error("Unsupported mode " + mode + " in glTF asset " + this);
 				}
 
 			}
@@ -248,10 +260,53 @@ public class GltfModel implements Model {
 
 	}
 
+	/**
+	 * returns the transformations for the node's mesh.
+	 * This is just the node's global transformation unless the node uses EXT_mesh_gpu_instancing,
+	 * in which case there is one transformation for each instance.
+	 */
+	private List<TransformationMatrix> getMeshTransforms(GltfNode node, TransformationMatrix globalTransform) {
+
+		if (node.extensions == null
+				|| !(node.extensions.get("EXT_mesh_gpu_instancing") instanceof Map<?, ?> instancing)
+				|| !(instancing.get("attributes") instanceof Map<?, ?> attributes)) {
+			return List.of(globalTransform);
+		}
+
+		@Nullable List<float[]> translations = readInstanceAttribute(attributes, "TRANSLATION");
+		@Nullable List<float[]> rotations = readInstanceAttribute(attributes, "ROTATION");
+		@Nullable List<float[]> scales = readInstanceAttribute(attributes, "SCALE");
+
+		int count = Stream.of(translations, rotations, scales)
+				.filter(Objects::nonNull).mapToInt(List::size).findFirst().orElse(0);
+
+		List<TransformationMatrix> result = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			result.add(globalTransform.times(TransformationMatrix.forTRS(
+					translations != null ? translations.get(i) : new float[] {0, 0, 0},
+					rotations != null ? rotations.get(i) : new float[] {0, 0, 0, 1},
+					scales != null ? scales.get(i) : new float[] {1, 1, 1})));
+		}
+
+		return result;
+
+	}
+
+	private @Nullable List<float[]> readInstanceAttribute(Map<?, ?> attributes, String name) {
+		if (attributes.get(name) instanceof Number accessorIndex) {
+			return readDataFromAccessor(float[].class, gltf.accessors.get(accessorIndex.intValue()));
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * reads scalars or vectors from a {@link GltfAccessor}
 	 *
-	 * @param type  can be {@link Integer}, {@link Float}, {@link VectorXZ} or {@link VectorXYZ}
+	 * @param type  can be {@link Integer}, {@link Float}, {@link VectorXZ} or {@link VectorXYZ}.
+	 *              Can also be float[], which returns the components of each element without conversion
+	 *              from glTF's coordinate system and is the only option for VEC4 accessors.
 	 */
 	@SuppressWarnings("unchecked")
 	private <T> List<T> readDataFromAccessor(Class<T> type, GltfAccessor accessor) {
@@ -264,6 +319,7 @@ public class GltfModel implements Model {
 			case "SCALAR" -> 1;
 			case "VEC2" -> 2;
 			case "VEC3" -> 3;
+			case "VEC4" -> 4;
 			default -> throw new UnsupportedOperationException("Unsupported accessor type " + accessor.type);
 		};
 
@@ -289,13 +345,25 @@ public class GltfModel implements Model {
 			for (int j = 0; j < numComponents; j++) {
 				components.add(readComponent(byteBuffer, accessor.componentType, normalized));
 			}
-			if (bufferView.byteStride != null && i + 1 < totalComponents && (i + 1) % numComponents == 0) {
+			if (bufferView.byteStride != null && i + 1 < accessor.count) {
 				byteBuffer.position(previousPosition + byteStride);
 			}
 		}
 
 		/* build the result from the components depending on accessor type */
 
+		if (type.equals(float[].class)) {
+			List<float[]> result = new ArrayList<>(accessor.count);
+			for (int i = 0; i < accessor.count; i++) {
+				float[] element = new float[numComponents];
+				for (int j = 0; j < numComponents; j++) {
+					element[j] = components.get(numComponents * i + j);
+				}
+				result.add(element);
+			}
+			return (List<T>) result;
+		}
+
 		switch (accessor.type) {
 
 			case "SCALAR" -> {
@@ -344,7 +412,15 @@ public class GltfModel implements Model {
 	}
 
 	static float readComponent(ByteBuffer b, int componentType, boolean normalized) {
-		if (normalized) throw new UnsupportedOperationException("Unsupported normalized option present");
+		if (normalized) {
+			return switch (componentType) {
+				case GltfAccessor.TYPE_BYTE -> max(b.get() / 127f, -1f);
+				case GltfAccessor.TYPE_UNSIGNED_BYTE -> (b.get() & 0xff) / 255f;
+				case GltfAccessor.TYPE_SHORT -> max(b.getShort() / 32767f, -1f);
+				case GltfAccessor.TYPE_UNSIGNED_SHORT -> (b.getShort() & 0xffff) / 65535f;
+				default -> throw new UnsupportedOperationException("Unsupported normalized component type " + componentType);
+			};
+		}
 		return switch (componentType) {
 			case GltfAccessor.TYPE_BYTE -> b.get();
 			case GltfAccessor.TYPE_UNSIGNED_BYTE -> b.get() & 0xff;
@@ -531,56 +607,64 @@ public class GltfModel implements Model {
 	}
 
 	private TextureData readImage(GltfImage image, Wrap wrap) throws IOException {
+		try {
+			return imageCache.computeIfAbsent(Pair.of(image, wrap), key -> {
+				try {
+					return createTextureData(image, wrap);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
 
-		if (!imageCache.containsKey(Pair.of(image, wrap))) {
+	private TextureData createTextureData(GltfImage image, Wrap wrap) throws IOException {
 
-			if ((image.uri == null) == (image.bufferView == null)) {
-				throw new IllegalArgumentException("Image must use either uri or bufferView");
-			} else if (image.bufferView != null && image.mimeType == null) {
-				throw new IllegalArgumentException("Image with bufferView requires mimeType");
-			}
+		if ((image.uri == null) == (image.bufferView == null)) {
+			throw new IllegalArgumentException("Image must use either uri or bufferView");
+		} else if (image.bufferView != null && image.mimeType == null) {
+			throw new IllegalArgumentException("Image with bufferView requires mimeType");
+		}
 
-			var dimensions = new TextureDataDimensions(1, 1);
+		var dimensions = new TextureDataDimensions(1, 1);
 
-			TextureData textureData;
+		TextureData textureData;
 
-			if (image.uri != null && image.uri.startsWith("data:")) {
-				textureData = new DataUriTexture(image.uri, dimensions, wrap, GLOBAL_X_Z);
-			} else if (image.uri != null) {
-				try {
-					URI imageUri = new URI(image.uri);
-					if (source instanceof ExternalModelSource.LocalFileSource localFileSource) {
-						imageUri = localFileSource.file().toURI().resolve(imageUri);
-					}
-					if (LoadUriUtil.checkExists(imageUri)) {
-						textureData = new UriTexture(imageUri, dimensions, wrap, GLOBAL_X_Z);
-					} else {
-						throw new IOException("Image URI does not exist: " + imageUri);
-					}
-				} catch (URISyntaxException e) {
-					throw new IOException(e);
+		if (image.uri != null && image.uri.startsWith("data:")) {
+			textureData = new DataUriTexture(image.uri, dimensions, wrap, GLOBAL_X_Z);
+		} else if (image.uri != null) {
+			try {
+				URI imageUri = new URI(image.uri);
+				if (source instanceof ExternalModelSource.LocalFileSource localFileSource) {
+					imageUri = localFileSource.file().toURI().resolve(imageUri);
 				}
-			} else {
-
-				// Handle image with bufferView
-				GltfBufferView bufferView = gltf.bufferViews.get(image.bufferView);
-				ByteBuffer imageData = readBufferView(bufferView);
-
-				// Create a data URI from the buffer view data
-				byte[] imageBytes = new byte[imageData.remaining()];
-				imageData.get(imageBytes);
-				String base64Data = Base64.getEncoder().encodeToString(imageBytes);
-				String dataUri = "data:" + image.mimeType + ";base64," + base64Data;
+				if (LoadUriUtil.checkExists(imageUri)) {
+					textureData = new UriTexture(imageUri, dimensions, wrap, GLOBAL_X_Z);
+				} else {
+					throw new IOException("Image URI does not exist: " + imageUri);
+				}
+			} catch (URISyntaxException e) {
+				throw new IOException(e);
+			}
+		} else {
 
-				textureData = new DataUriTexture(dataUri, dimensions, wrap, GLOBAL_X_Z);
+			// Handle image with bufferView
+			GltfBufferView bufferView = gltf.bufferViews.get(image.bufferView);
+			ByteBuffer imageData = readBufferView(bufferView);
 
-			}
+			// Create a data URI from the buffer view data
+			byte[] imageBytes = new byte[imageData.remaining()];
+			imageData.get(imageBytes);
+			String base64Data = Base64.getEncoder().encodeToString(imageBytes);
+			String dataUri = "data:" + image.mimeType + ";base64," + base64Data;
 
-			imageCache.put(Pair.of(image, wrap), textureData);
+			textureData = new DataUriTexture(dataUri, dimensions, wrap, GLOBAL_X_Z);
 
 		}
 
-		return imageCache.get(Pair.of(image, wrap));
+		return textureData;
 
 	}
 
@@ -5,14 +5,12 @@ import static java.util.Objects.requireNonNullElse;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static org.osm2world.conversion.O2WConfig.ObjectMetadataType;
-import static org.osm2world.math.algorithms.NormalCalculationUtil.calculateTriangleNormals;
 import static org.osm2world.output.common.ResourceOutputSettings.ResourceOutputMode.EMBED;
 import static org.osm2world.output.common.ResourceOutputSettings.ResourceOutputMode.REFERENCE;
 import static org.osm2world.output.common.compression.Compression.*;
 import static org.osm2world.output.common.compression.CompressionUtil.writeFileWithCompression;
 import static org.osm2world.output.gltf.GltfFlavor.GLB;
 import static org.osm2world.output.gltf.GltfFlavor.GLTF;
-import static org.osm2world.scene.material.Material.Interpolation.SMOOTH;
 import static org.osm2world.scene.mesh.MeshStore.*;
 import static org.osm2world.scene.texcoord.TexCoordUtil.mirroredVertically;
 
@@ -26,6 +24,7 @@ import javax.annotation.Nullable;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.osm2world.conversion.O2WConfig;
+import org.osm2world.conversion.O2WConfig.GltfInstancing;
 import org.osm2world.map_data.data.MapRelationElement;
 import org.osm2world.map_data.data.TagSet;
 import org.osm2world.math.Vector3D;
@@ -33,8 +32,8 @@ import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXZ;
 import org.osm2world.math.geo.LatLon;
 import org.osm2world.math.shapes.SimpleClosedShapeXZ;
-import org.osm2world.math.shapes.TriangleXYZ;
 import org.osm2world.output.common.AbstractOutput;
+import org.osm2world.output.common.MeshOutput;
 import org.osm2world.output.common.ResourceOutputSettings;
 import org.osm2world.output.common.compression.Compression;
 import org.osm2world.output.gltf.data.*;
@@ -43,12 +42,16 @@ import org.osm2world.output.gltf.data.GltfMaterial.OcclusionTextureInfo;
 import org.osm2world.output.gltf.data.GltfMaterial.PbrMetallicRoughness;
 import org.osm2world.output.gltf.data.GltfMaterial.TextureInfo;
 import org.osm2world.scene.Scene;
+import org.osm2world.scene.color.Color;
 import org.osm2world.scene.color.LColor;
 import org.osm2world.scene.material.Material;
 import org.osm2world.scene.material.TextureData;
 import org.osm2world.scene.material.TextureLayer;
 import org.osm2world.scene.mesh.*;
 import org.osm2world.scene.mesh.MeshStore.MergeMeshes.MergeOption;
+import org.osm2world.scene.model.InstanceParameters;
+import org.osm2world.scene.model.Model;
+import org.osm2world.scene.model.ModelInstance;
 import org.osm2world.util.FaultTolerantIterationUtil;
 import org.osm2world.util.GlobalValues;
 import org.osm2world.util.platform.json.JsonUtil;
@@ -71,8 +74,11 @@ public class GltfOutput extends AbstractOutput {
 	private final Map<Material, Integer> materialIndexMap = new HashMap<>();
 	private final Map<TextureData, Integer> textureIndexMap = new HashMap<>();
 
+	/** grid for quantized positions, null if positions are stored as floats */
+	private @Nullable PositionQuantization quantization = null;
+
 	/** data for the glb BIN chunk, only used if {@link #flavor} is {@link GltfFlavor#GLB} */
-	private final List<ByteBuffer> binChunkData = new ArrayList<>();
+	private @Nullable GlbBinaryChunk binChunk = null;
 
 	/**
 	 * Sets up an output to write a scene as glTF.
@@ -116,9 +122,19 @@ public class GltfOutput extends AbstractOutput {
 
 	@Override
 	public void outputScene(Scene scene) {
-		outputScene(scene.getMeshesWithMetadata(config),
-				scene.getMapProjection() != null ? scene.getMapProjection().getOrigin() : null,
-				scene.getBoundary());
+
+		@Nullable LatLon origin = scene.getMapProjection() != null ? scene.getMapProjection().getOrigin() : null;
+
+		if (config.gltfInstancing() == GltfInstancing.NONE) {
+			outputScene(scene.getMeshesWithMetadata(config), origin, scene.getBoundary());
+		} else {
+			var meshOutput = new MeshOutput(x -> true, true);
+			meshOutput.setConfiguration(config);
+			meshOutput.outputScene(scene);
+			outputScene(meshOutput.getMeshesWithMetadata(), meshOutput.getModelInstancesWithMetadata(),
+					origin, scene.getBoundary());
+		}
+
 	}
 
 	/**
@@ -127,6 +143,16 @@ public class GltfOutput extends AbstractOutput {
 	 */
 	public void outputScene(List<MeshWithMetadata> meshesWithMetadata, @Nullable LatLon origin,
 			@Nullable SimpleClosedShapeXZ bounds) {
+		outputScene(meshesWithMetadata, List.of(), origin, bounds);
+	}
+
+	/**
+	 * variant of {@link #outputScene(List, LatLon, SimpleClosedShapeXZ)} which also writes model instances.
+	 * These are represented as instances in the glTF as configured by {@link O2WConfig#gltfInstancing()}.
+	 */
+	public void outputScene(List<MeshWithMetadata> meshesWithMetadata,
+			List<ModelInstanceWithMetadata> modelInstances, @Nullable LatLon origin,
+			@Nullable SimpleClosedShapeXZ bounds) {
 
 		MeshStore meshStore = new MeshStore(meshesWithMetadata);
 
@@ -134,12 +160,16 @@ public class GltfOutput extends AbstractOutput {
 
 			try {
 				if (flavor == GltfFlavor.GLTF) {
-					writeJson(meshStore, origin, bounds, outputStream);
+					writeJson(meshStore, modelInstances, origin, bounds, outputStream);
 				} else {
-					try (var jsonChunkOutputStream = new ByteArrayOutputStream()) {
-						writeJson(meshStore, origin, bounds, jsonChunkOutputStream);
+					try (var jsonChunkOutputStream = new ByteArrayOutputStream();
+						 var binChunk = config.glbTempFile() ? GlbBinaryChunk.inTempFile() : GlbBinaryChunk.inMemory()) {
+						this.binChunk = binChunk;
+						writeJson(meshStore, modelInstances, origin, bounds, jsonChunkOutputStream);
 						ByteBuffer jsonChunkData = asPaddedByteBuffer(jsonChunkOutputStream.toByteArray(), (byte) 0x20);
-						writeGlb(outputStream, jsonChunkData, binChunkData);
+						writeGlb(outputStream, jsonChunkData, binChunk);
+					} finally {
+						this.binChunk = null;
 					}
 				}
 			} catch (IOException e) {
@@ -165,15 +195,18 @@ public class GltfOutput extends AbstractOutput {
 
 	}
 
-	/** creates a {@link GltfMesh} and returns its index in {@link Gltf#meshes} */
-	private int createMesh(Mesh mesh) throws IOException {
+	/**
+	 * creates a {@link GltfMesh} and returns its index in {@link Gltf#meshes}
+	 *
+	 * @param quantizePositions  whether positions should be quantized if {@link #quantization} is used
+	 */
+	private int createMesh(Mesh mesh, boolean quantizePositions) throws IOException {
 
 		GltfMesh gltfMesh = new GltfMesh();
 
 		Material material = mesh.material;
 
 		TriangleGeometry triangleGeometry = mesh.geometry.asTriangles();
-		List<? extends TriangleXYZ> triangles = triangleGeometry.triangles;
 		List<List<VectorXZ>> texCoordLists = triangleGeometry.texCoords;
 		List<LColor> colors = triangleGeometry.colors == null ? null
 				: triangleGeometry.colors.stream().map(LColor::fromRGB).toList();
@@ -194,24 +227,104 @@ public class GltfOutput extends AbstractOutput {
 		primitive.material = materialIndex;
 
 		/* put geometry into buffers and set up accessors */
-		// TODO consider using indices
 
 		primitive.mode = GltfMesh.TRIANGLES;
 
-		List<VectorXYZ> positions = new ArrayList<>(3 * triangles.size());
-		triangles.forEach(t -> positions.addAll(t.verticesNoDup()));
-		primitive.attributes.put("POSITION", createAccessor(3, positions));
+		boolean hasTexCoords = material.textureLayers().size() > 0;
 
-		List<VectorXYZ> normals = calculateTriangleNormals(triangles, material.interpolation() == SMOOTH);
-		primitive.attributes.put("NORMAL", createAccessor(3, normals));
+		float[] positions = triangleGeometry.positionArray();
+		for (int i = 2; i < positions.length; i += 3) {
+			positions[i] *= -1;
+		}
 
-		if (material.textureLayers().size() > 0) {
-			primitive.attributes.put("TEXCOORD_0", createAccessor(2, texCoordLists.get(0)));
+		float[] normals = triangleGeometry.normalArray();
+		for (int i = 2; i < normals.length; i += 3) {
+			normals[i] *= -1;
 		}
 
-		if (colors != null) {
-			List<VectorXYZ> colorsAsVectors = colors.stream().map(c -> new VectorXYZ(c.red, c.green, -c.blue)).collect(toList());
-			primitive.attributes.put("COLOR_0", createAccessor(3, colorsAsVectors));
+		float[] texCoords = hasTexCoords ? toFloatArray(2, texCoordLists.get(0)) : null;
+		float[] colorData = colors == null ? null : toFloatArray(3,
+				colors.stream().map(c -> new VectorXYZ(c.red, c.green, -c.blue)).collect(toList()));
+
+		if (config.gltfIndexedGeometry()) {
+
+			/* merge identical vertices and reference them using indices */
+
+			int vertexCount = triangleGeometry.vertexCount();
+			int stride = 3 + 3 + (texCoords != null ? 2 : 0) + (colorData != null ? 3 : 0);
+			float[] vertexData = new float[stride * vertexCount];
+
+			for (int v = 0; v < vertexCount; v++) {
+				int offset = v * stride;
+				System.arraycopy(positions, 3 * v, vertexData, offset, 3);
+				System.arraycopy(normals, 3 * v, vertexData, offset + 3, 3);
+				offset += 6;
+				if (texCoords != null) {
+					System.arraycopy(texCoords, 2 * v, vertexData, offset, 2);
+					offset += 2;
+				}
+				if (colorData != null) {
+					System.arraycopy(colorData, 3 * v, vertexData, offset, 3);
+				}
+			}
+
+			IndexedVertexData indexedData = IndexedVertexData.weld(vertexData, stride);
+
+			if (config.gltfOptimizeVertexCache()) {
+				indexedData = indexedData.withOptimizedVertexCache();
+			}
+
+			primitive.indices = createIndexAccessor(indexedData.indices, indexedData.vertexCount);
+
+			int offset = 0;
+			positions = indexedData.attribute(offset, 3);
+			offset += 3;
+			normals = indexedData.attribute(offset, 3);
+			offset += 3;
+			if (texCoords != null) {
+				texCoords = indexedData.attribute(offset, 2);
+				offset += 2;
+			}
+			if (colorData != null) {
+				colorData = indexedData.attribute(offset, 3);
+			}
+
+		}
+
+		if (quantization != null) {
+
+			if (quantizePositions) {
+				primitive.attributes.put("POSITION", createQuantizedAccessor(3, quantization.quantize(positions),
+						GltfAccessor.TYPE_UNSIGNED_SHORT, false));
+			} else {
+				primitive.attributes.put("POSITION", createAccessor(3, positions));
+			}
+			primitive.attributes.put("NORMAL", createQuantizedAccessor(3, quantizeNormalized(normals, 127),
+					GltfAccessor.TYPE_BYTE, true));
+
+			if (texCoords != null) {
+				if (isWithinUnitInterval(texCoords)) {
+					primitive.attributes.put("TEXCOORD_0", createQuantizedAccessor(2,
+							quantizeNormalized(texCoords, 0xFFFF), GltfAccessor.TYPE_UNSIGNED_SHORT, true));
+				} else {
+					// repeating textures can't be represented by normalized values
+					primitive.attributes.put("TEXCOORD_0", createAccessor(2, texCoords));
+				}
+			}
+
+		} else {
+
+			primitive.attributes.put("POSITION", createAccessor(3, positions));
+			primitive.attributes.put("NORMAL", createAccessor(3, normals));
+
+			if (texCoords != null) {
+				primitive.attributes.put("TEXCOORD_0", createAccessor(2, texCoords));
+			}
+
+		}
+
+		if (colorData != null) {
+			primitive.attributes.put("COLOR_0", createAccessor(3, colorData));
 		}
 
 		gltf.meshes.add(gltfMesh);
@@ -219,13 +332,24 @@ public class GltfOutput extends AbstractOutput {
 
 	}
 
-	private int createAccessor(int numComponents, List<? extends Vector3D> vs) {
+	/**
+	 * creates an accessor for vertex attribute data
+	 *
+	 * @param data  the attribute values, numComponents values per vertex
+	 */
+	private int createAccessor(int numComponents, float[] data) throws IOException {
+		return createAccessor(numComponents, data, GltfBufferView.TARGET_ARRAY_BUFFER);
+	}
 
-		String type = switch (numComponents) {
-			case 2 -> "VEC2";
-			case 3 -> "VEC3";
-			default -> throw new UnsupportedOperationException("invalid numComponents: " + numComponents);
-		};
+	/**
+	 * creates an accessor for float data
+	 *
+	 * @param data  the values, numComponents values per element
+	 * @param target  the target for the buffer view, can be null if the data is not used for vertex attributes
+	 */
+	private int createAccessor(int numComponents, float[] data, @Nullable Integer target) throws IOException {
+
+		String type = accessorType(numComponents);
 
 		float[] min = new float[numComponents];
 		float[] max = new float[numComponents];
@@ -233,34 +357,133 @@ public class GltfOutput extends AbstractOutput {
 		Arrays.fill(min, Float.POSITIVE_INFINITY);
 		Arrays.fill(max, Float.NEGATIVE_INFINITY);
 
-		int byteLength = 4 /* FLOAT */ * numComponents * vs.size();
+		int count = data.length / numComponents;
+		int byteLength = 4 /* FLOAT */ * data.length;
 
 		ByteBuffer byteBuffer = ByteBuffer.allocate(byteLength);
 		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
-		for (Vector3D v : vs) {
+		for (int i = 0; i < data.length; i++) {
+			byteBuffer.putFloat(data[i]);
+			min[i % numComponents] = Math.min(min[i % numComponents], data[i]);
+			max[i % numComponents] = Math.max(max[i % numComponents], data[i]);
+		}
 
-			float[] components = components(numComponents, v);
+		GltfAccessor accessor = new GltfAccessor(GltfAccessor.TYPE_FLOAT, count, type);
+		accessor.bufferView = createBufferView(byteBuffer, target);
+		accessor.min = min;
+		accessor.max = max;
+		gltf.accessors.add(accessor);
 
-			for (int i = 0; i < numComponents; i++) {
-				byteBuffer.putFloat(components[i]);
-				min[i] = Math.min(min[i], components[i]);
-				max[i] = Math.max(max[i], components[i]);
-			}
+		return gltf.accessors.size() - 1;
+
+	}
+
+	/**
+	 * creates an accessor for vertex attribute data stored as integers,
+	 * as permitted by the KHR_mesh_quantization extension.
+	 * Each element is padded to a multiple of 4 bytes, as the glTF spec requires for vertex attributes.
+	 *
+	 * @param data           the attribute values, numComponents values per vertex
+	 * @param componentType  one of the byte or short component types from {@link GltfAccessor}
+	 * @param normalized     whether the values are mapped to the range [0, 1] (or [-1, 1] if signed)
+	 */
+	private int createQuantizedAccessor(int numComponents, int[] data, int componentType, boolean normalized)
+			throws IOException {
+
+		int componentSize = switch (componentType) {
+			case GltfAccessor.TYPE_BYTE, GltfAccessor.TYPE_UNSIGNED_BYTE -> 1;
+			case GltfAccessor.TYPE_SHORT, GltfAccessor.TYPE_UNSIGNED_SHORT -> 2;
+			default -> throw new IllegalArgumentException("invalid componentType: " + componentType);
+		};
+
+		int elementSize = numComponents * componentSize;
+		int byteStride = elementSize + (4 - elementSize % 4) % 4;
+
+		int count = data.length / numComponents;
 
+		float[] min = new float[numComponents];
+		float[] max = new float[numComponents];
+
+		Arrays.fill(min, Float.POSITIVE_INFINITY);
+		Arrays.fill(max, Float.NEGATIVE_INFINITY);
+
+		ByteBuffer byteBuffer = ByteBuffer.allocate(byteStride * count);
+		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		for (int v = 0; v < count; v++) {
+			byteBuffer.position(v * byteStride);
+			for (int c = 0; c < numComponents; c++) {
+				int value = data[v * numComponents + c];
+				if (componentSize == 1) {
+					byteBuffer.put((byte) value);
+				} else {
+					byteBuffer.putShort((short) value);
+				}
+				min[c] = Math.min(min[c], value);
+				max[c] = Math.max(max[c], value);
+			}
 		}
 
-		GltfAccessor accessor = new GltfAccessor(GltfAccessor.TYPE_FLOAT, vs.size(), type);
+		GltfAccessor accessor = new GltfAccessor(componentType, count, accessorType(numComponents));
+		accessor.normalized = normalized ? true : null;
 		accessor.bufferView = createBufferView(byteBuffer, GltfBufferView.TARGET_ARRAY_BUFFER);
-		accessor.min = min;
-		accessor.max = max;
+		if (byteStride != elementSize) {
+			gltf.bufferViews.get(accessor.bufferView).byteStride = byteStride;
+		}
+		if (!normalized) {
+			accessor.min = min;
+			accessor.max = max;
+		}
 		gltf.accessors.add(accessor);
 
 		return gltf.accessors.size() - 1;
 
 	}
 
-	private int createBufferView(ByteBuffer byteBuffer, @Nullable Integer target) {
+	private static String accessorType(int numComponents) {
+		return switch (numComponents) {
+			case 2 -> "VEC2";
+			case 3 -> "VEC3";
+			case 4 -> "VEC4";
+			default -> throw new UnsupportedOperationException("invalid numComponents: " + numComponents);
+		};
+	}
+
+	/**
+	 * creates an accessor for vertex indices.
+	 * Uses the smallest component type which can represent all indices.
+	 */
+	private int createIndexAccessor(int[] indices, int vertexCount) throws IOException {
+
+		// the maximum value of each type is reserved for primitive restart, which glTF does not allow
+		boolean useShorts = vertexCount < 0xFFFF;
+
+		int byteLength = (useShorts ? 2 : 4) * indices.length;
+		byteLength += (4 - byteLength % 4) % 4; // keep the following buffer views aligned to 4 bytes
+
+		ByteBuffer byteBuffer = ByteBuffer.allocate(byteLength);
+		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		for (int index : indices) {
+			if (useShorts) {
+				byteBuffer.putShort((short) index);
+			} else {
+				byteBuffer.putInt(index);
+			}
+		}
+
+		GltfAccessor accessor = new GltfAccessor(
+				useShorts ? GltfAccessor.TYPE_UNSIGNED_SHORT : GltfAccessor.TYPE_UNSIGNED_INT,
+				indices.length, "SCALAR");
+		accessor.bufferView = createBufferView(byteBuffer, GltfBufferView.TARGET_ELEMENT_ARRAY_BUFFER);
+		gltf.accessors.add(accessor);
+
+		return gltf.accessors.size() - 1;
+
+	}
+
+	private int createBufferView(ByteBuffer byteBuffer, @Nullable Integer target) throws IOException {
 
 		GltfBufferView view = switch (flavor) {
 			case GLTF -> {
@@ -277,10 +500,8 @@ public class GltfOutput extends AbstractOutput {
 
 			}
 			case GLB -> {
-				int byteOffset = binChunkData.stream().mapToInt(ByteBuffer::capacity).sum();
-				binChunkData.add(byteBuffer);
 				var binBufferView = new GltfBufferView(0, byteBuffer.capacity());
-				binBufferView.byteOffset = byteOffset;
+				binBufferView.byteOffset = binChunk.append(byteBuffer);
 				yield binBufferView;
 			}
 		};
@@ -411,8 +632,8 @@ public class GltfOutput extends AbstractOutput {
 	 * constructs the JSON document after all parts of the glTF have been created
 	 * and outputs it to an {@link OutputStream}
 	 */
-	private void writeJson(MeshStore meshStore, @Nullable LatLon origin, SimpleClosedShapeXZ bounds,
-			OutputStream outputStream) throws IOException {
+	private void writeJson(MeshStore meshStore, List<ModelInstanceWithMetadata> modelInstances,
+			@Nullable LatLon origin, SimpleClosedShapeXZ bounds, OutputStream outputStream) throws IOException {
 
 		boolean keepOsmElements = config.keepOsmElements();
 		boolean clipToBounds = config.clipToBounds();
@@ -427,13 +648,7 @@ public class GltfOutput extends AbstractOutput {
 
 		LevelOfDetail lod = config.lod();
 
-		List<MeshProcessingStep> processingSteps = new ArrayList<>(asList(
-				new FilterLod(lod),
-				new ConvertToTriangles(lod),
-				new EmulateTextureLayers(lod.ordinal() <= 1 ? 1 : Integer.MAX_VALUE),
-				new MoveColorsToVertices(), // after EmulateTextureLayers because colorable is per layer
-				new ReplaceTexturesWithAtlas(t -> getResourceOutputSettings().modeForTexture(t) == REFERENCE),
-				new MergeMeshes(mergeOptions)));
+		List<MeshProcessingStep> processingSteps = processingSteps(lod, mergeOptions);
 
 		if (clipToBounds && bounds != null) {
 			processingSteps.add(1, new ClipToBounds(bounds, true));
@@ -459,7 +674,7 @@ public class GltfOutput extends AbstractOutput {
 
 		gltf.scene = 0;
 		gltf.scenes = List.of(new GltfScene());
-		gltf.scenes.get(0).nodes = List.of(0);
+		gltf.scenes.get(0).nodes = new ArrayList<>(List.of(0));
 		gltf.scenes.get(0).extras = sceneMetadata;
 
 		gltf.accessors = new ArrayList<>();
@@ -482,13 +697,46 @@ public class GltfOutput extends AbstractOutput {
 
 		rootNode.children = new ArrayList<>();
 
+		/* set up quantization of vertex attributes */
+
+		GltfNode meshParentNode = rootNode;
+
+		if (config.gltfQuantization() && !processedMeshStore.meshes().isEmpty()) {
+
+			float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+			float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+			for (Mesh mesh : processedMeshStore.meshes()) {
+				float[] positions = toFloatArray(3, mesh.geometry.asTriangles().vertices());
+				for (int i = 0; i < positions.length; i++) {
+					min[i % 3] = Math.min(min[i % 3], positions[i]);
+					max[i % 3] = Math.max(max[i % 3], positions[i]);
+				}
+			}
+
+			quantization = PositionQuantization.forBounds(min, max);
+
+			// the dequantization transform is applied by a child of the root node which holds the quantized meshes,
+			// so that instances of models (which are not quantized) can be added as its siblings
+			meshParentNode = new GltfNode();
+			meshParentNode.name = "Quantized meshes";
+			meshParentNode.translation = quantization.offset();
+			meshParentNode.scale = new float[] {quantization.scale(), quantization.scale(), quantization.scale()};
+			meshParentNode.children = new ArrayList<>();
+			gltf.nodes.add(meshParentNode);
+			rootNode.children.add(gltf.nodes.size() - 1);
+
+			addExtension("KHR_mesh_quantization", true);
+
+		}
+
 		for (MeshMetadata objectMetadata : meshesByMetadata.keySet()) {
 
 			List<Integer> meshNodeIndizes = new ArrayList<>(meshesByMetadata.size());
 
 			FaultTolerantIterationUtil.forEach(meshesByMetadata.get(objectMetadata), (Mesh mesh) -> {
 				try {
-					int index = createNode(createMesh(mesh), null);
+					int index = createNode(createMesh(mesh, true), null);
 					meshNodeIndizes.add(index);
 				} catch (IOException e) {
 					throw new RuntimeException(e);
@@ -508,14 +756,20 @@ public class GltfOutput extends AbstractOutput {
 
 			}
 
-			rootNode.children.addAll(meshNodeIndizes);
+			meshParentNode.children.addAll(meshNodeIndizes);
 
 		}
 
+		/* add models which are kept as instances */
+
+		if (!modelInstances.isEmpty()) {
+			createInstancedModels(modelInstances, clipToBounds ? bounds : null, rootNode.children);
+		}
+
 		/* add a buffer for the BIN chunk */
 
 		if (flavor == GltfFlavor.GLB) {
-			gltf.buffers.add(0, new GltfBuffer(binChunkData.stream().mapToInt(ByteBuffer::capacity).sum()));
+			gltf.buffers.add(0, new GltfBuffer(binChunk.length()));
 		}
 
 		/* use null instead of [] when lists are empty */
@@ -560,58 +814,305 @@ public class GltfOutput extends AbstractOutput {
 
 	}
 
-	/** writes a binary glTF */
-	private static void writeGlb(OutputStream outputStream, ByteBuffer jsonChunkData, List<ByteBuffer> binChunkData)
+	private List<MeshProcessingStep> processingSteps(LevelOfDetail lod, EnumSet<MergeOption> mergeOptions) {
+		return new ArrayList<>(asList(
+				new FilterLod(lod),
+				new ConvertToTriangles(lod),
+				new EmulateTextureLayers(lod.ordinal() <= 1 ? 1 : Integer.MAX_VALUE),
+				new MoveColorsToVertices(), // after EmulateTextureLayers because colorable is per layer
+				new ReplaceTexturesWithAtlas(t -> getResourceOutputSettings().modeForTexture(t) == REFERENCE),
+				new MergeMeshes(mergeOptions)));
+	}
+
+	/**
+	 * the parameters of a {@link ModelInstance} which cannot be expressed as a transformation of a glTF node.
+	 * Instances with identical parameters can share their meshes.
+	 * For models which are {@link Model#isScalableByHeight()}, the height is expressed as a scale instead
+	 * (unless it is null or zero) and is therefore not part of the key.
+	 */
+	private record PrototypeKey(Model model, boolean scaledByHeight, @Nullable Double height,
+			@Nullable Color color, LODRange lodRange) {
+
+		static PrototypeKey of(ModelInstance modelInstance) {
+			InstanceParameters params = modelInstance.params();
+			boolean scaledByHeight = params.height() != null && params.height() > 0
+					&& modelInstance.model().isScalableByHeight();
+			return new PrototypeKey(modelInstance.model(), scaledByHeight, scaledByHeight ? null : params.height(),
+					params.color(), params.lodRange());
+		}
+
+		/**
+		 * parameters for the shared meshes, which are placed at the origin with the default direction
+		 *
+		 * @param referenceHeight  the height of the shared meshes if {@link #scaledByHeight}
+		 */
+		InstanceParameters prototypeParams(double referenceHeight) {
+			Double prototypeHeight = scaledByHeight ? Double.valueOf(referenceHeight) : height;
+			return new InstanceParameters(VectorXYZ.NULL_VECTOR, 0, prototypeHeight, color, lodRange);
+		}
+
+	}
+
+	/**
+	 * adds models which are kept as instances to the glTF.
+	 * The meshes are created only once for each {@link PrototypeKey} and are then used by all instances,
+	 * either through the EXT_mesh_gpu_instancing extension or through one node per instance.
+	 * If {@link O2WConfig#keepOsmElements()} is enabled, instances of OSM elements use nodes even if the extension
+	 * has been configured, because the extension does not allow metadata to be stored for each instance.
+	 *
+	 * @param clipBounds         if not null, instances outside these bounds are omitted
+	 * @param parentNodeIndices  list which the indices of the created top-level nodes are added to
+	 */
+	private void createInstancedModels(List<ModelInstanceWithMetadata> modelInstances,
+			@Nullable SimpleClosedShapeXZ clipBounds, List<Integer> parentNodeIndices) throws IOException {
+
+		LevelOfDetail lod = config.lod();
+		boolean extensionEnabled = config.gltfInstancing() == GltfInstancing.EXT_MESH_GPU_INSTANCING;
+
+		/* group instances which can share meshes */
+
+		Map<PrototypeKey, List<ModelInstanceWithMetadata>> instancesByPrototype = new LinkedHashMap<>();
+
+		for (ModelInstanceWithMetadata m : modelInstances) {
+			InstanceParameters params = m.modelInstance().params();
+			if (params.lodRange().contains(lod)
+					&& (clipBounds == null || clipBounds.contains(params.position().xz()))) {
+				instancesByPrototype.computeIfAbsent(PrototypeKey.of(m.modelInstance()), k -> new ArrayList<>()).add(m);
+			}
+		}
+
+		/* create meshes and nodes */
+
+		for (PrototypeKey key : instancesByPrototype.keySet()) {
+
+			List<ModelInstanceWithMetadata> instances = instancesByPrototype.get(key);
+
+			// the first instance's height is used for the shared meshes, other instances are scaled relative to it
+			Double firstHeight = instances.get(0).modelInstance().params().height();
+			double referenceHeight = firstHeight != null ? firstHeight : 1.0;
+
+			MeshStore prototypeMeshStore = new MeshStore(
+					key.model().buildMeshes(key.prototypeParams(referenceHeight)), null)
+					.process(processingSteps(lod, EnumSet.noneOf(MergeOption.class)));
+
+			List<Integer> meshIndices = new ArrayList<>();
+			for (Mesh mesh : prototypeMeshStore.meshes()) {
+				meshIndices.add(createMesh(mesh, false));
+			}
+
+			if (meshIndices.isEmpty()) continue;
+
+			boolean useExtension = extensionEnabled && (!config.keepOsmElements()
+					|| instances.stream().allMatch(i -> i.metadata().mapElement() == null));
+
+			if (useExtension) {
+
+				float[] translations = new float[3 * instances.size()];
+				float[] rotations = new float[4 * instances.size()];
+				float[] scales = key.scaledByHeight() ? new float[3 * instances.size()] : null;
+
+				for (int i = 0; i < instances.size(); i++) {
+					InstanceParameters params = instances.get(i).modelInstance().params();
+					System.arraycopy(instanceTranslation(params), 0, translations, 3 * i, 3);
+					System.arraycopy(instanceRotation(params), 0, rotations, 4 * i, 4);
+					if (scales != null) {
+						System.arraycopy(instanceScale(params, referenceHeight), 0, scales, 3 * i, 3);
+					}
+				}
+
+				Map<String, Object> attributes = new HashMap<>();
+				attributes.put("TRANSLATION", createAccessor(3, translations, null));
+				attributes.put("ROTATION", createAccessor(4, rotations, null));
+				if (scales != null) {
+					attributes.put("SCALE", createAccessor(3, scales, null));
+				}
+
+				Map<String, Object> instancingExtension = Map.of("attributes", attributes);
+
+				for (int meshIndex : meshIndices) {
+					int nodeIndex = createNode(meshIndex, null);
+					gltf.nodes.get(nodeIndex).extensions = Map.of("EXT_mesh_gpu_instancing", instancingExtension);
+					parentNodeIndices.add(nodeIndex);
+				}
+
+				addExtension("EXT_mesh_gpu_instancing", true);
+
+			} else {
+
+				for (ModelInstanceWithMetadata instance : instances) {
+
+					int nodeIndex;
+
+					if (meshIndices.size() == 1) {
+						nodeIndex = createNode(meshIndices.get(0), null);
+					} else {
+						List<Integer> childNodeIndices = new ArrayList<>(meshIndices.size());
+						for (int meshIndex : meshIndices) {
+							childNodeIndices.add(createNode(meshIndex, null));
+						}
+						nodeIndex = createNode(null, childNodeIndices);
+					}
+
+					GltfNode node = gltf.nodes.get(nodeIndex);
+					node.translation = instanceTranslation(instance.modelInstance().params());
+					node.rotation = instanceRotation(instance.modelInstance().params());
+					if (key.scaledByHeight()) {
+						node.scale = instanceScale(instance.modelInstance().params(), referenceHeight);
+					}
+
+					if (config.keepOsmElements()) {
+						addMeshNameAndExtras(node, instance.metadata(), config);
+					}
+
+					parentNodeIndices.add(nodeIndex);
+
+				}
+
+			}
+
+		}
+
+	}
+
+	private static float[] instanceTranslation(InstanceParameters params) {
+		return new float[] {(float) params.position().x, (float) params.position().y, (float) -params.position().z};
+	}
+
+	/**
+	 * returns the rotation quaternion for an instance.
+	 * The direction is a clockwise angle when seen from above, see {@link VectorXZ#rotate(double)}.
+	 */
+	private static float[] instanceRotation(InstanceParameters params) {
+		double angle = params.direction();
+		return new float[] {0, (float) -Math.sin(angle / 2), 0, (float) Math.cos(angle / 2)};
+	}
+
+	/** returns the scale for an instance of a model which is {@link Model#isScalableByHeight()} */
+	private static float[] instanceScale(InstanceParameters params, double referenceHeight) {
+		float scale = (float) (params.height() / referenceHeight);
+		return new float[] {scale, scale, scale};
+	}
+
+	private void addExtension(String extensionName, boolean required) {
+		if (gltf.extensionsUsed == null) {
+			gltf.extensionsUsed = new ArrayList<>();
+		}
+		if (!gltf.extensionsUsed.contains(extensionName)) {
+			gltf.extensionsUsed.add(extensionName);
+		}
+		if (required) {
+			if (gltf.extensionsRequired == null) {
+				gltf.extensionsRequired = new ArrayList<>();
+			}
+			if (!gltf.extensionsRequired.contains(extensionName)) {
+				gltf.extensionsRequired.add(extensionName);
+			}
+		}
+	}
+
+	/**
+	 * writes a binary glTF.
+	 * The chunks are written to the stream one after another, without assembling the entire file in memory.
+	 */
+	private static void writeGlb(OutputStream outputStream, ByteBuffer jsonChunkData, GlbBinaryChunk binChunk)
 			throws IOException {
 
 		int jsonChunkDataLength = jsonChunkData.capacity();
-		int binChunkDataLength = binChunkData.stream().mapToInt(ByteBuffer::capacity).sum();
+		int binChunkDataLength = binChunk.length();
 
 		int length = 12 // header
 				+ 8 + jsonChunkDataLength // JSON chunk header + JSON chunk data
 				+ 8 + binChunkDataLength; // BIN chunk header + BIN chunk data
 
-		ByteBuffer result = ByteBuffer.allocate(length);
-		result.order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer headers = ByteBuffer.allocate(12 + 8);
+		headers.order(ByteOrder.LITTLE_ENDIAN);
 
 		/* write the header */
 
-		result.putInt(0x46546C67); // magic number
-		result.putInt(2); // version
-		result.putInt(length);
+		headers.putInt(0x46546C67); // magic number
+		headers.putInt(2); // version
+		headers.putInt(length);
 
 		/* write the JSON chunk */
 
-		result.putInt(jsonChunkDataLength);
-		result.putInt(0x4E4F534A); // chunk type "JSON"
-		result.put(jsonChunkData.array());
+		headers.putInt(jsonChunkDataLength);
+		headers.putInt(0x4E4F534A); // chunk type "JSON"
+		outputStream.write(headers.array());
+		outputStream.write(jsonChunkData.array());
 
 		/* write the BIN chunk */
 
-		result.putInt(binChunkDataLength);
-		result.putInt(0x004E4942); // chunk type "BIN"
-		binChunkData.forEach(it -> result.put(it.array()));
+		headers.clear();
+		headers.putInt(binChunkDataLength);
+		headers.putInt(0x004E4942); // chunk type "BIN"
+		outputStream.write(headers.array(), 0, 8);
+		binChunk.writeTo(outputStream);
 
-		/* output the result */
+	}
 
-		outputStream.write(result.array());
+	/** returns the components of a list of vectors, converted to glTF's coordinate system */
+	private static float[] toFloatArray(int numComponents, List<? extends Vector3D> vs) {
+		float[] result = new float[numComponents * vs.size()];
+		for (int i = 0; i < vs.size(); i++) {
+			if (numComponents == 2) {
+				result[2 * i] = (float)((VectorXZ)vs.get(i)).x;
+				result[2 * i + 1] = (float)((VectorXZ)vs.get(i)).z;
+			} else {
+				assert numComponents == 3;
+				result[3 * i] = (float)((VectorXYZ)vs.get(i)).x;
+				result[3 * i + 1] = (float)((VectorXYZ)vs.get(i)).y;
+				result[3 * i + 2] = (float)((VectorXYZ)vs.get(i)).z * -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * converts values to integers for use with a normalized accessor
+	 *
+	 * @param maxValue  the integer representing 1.0, e.g. 127 for signed bytes
+	 */
+	private static int[] quantizeNormalized(float[] values, int maxValue) {
+		int[] result = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = Math.round(Math.max(-1, Math.min(1, values[i])) * maxValue);
+		}
+		return result;
+	}
 
+	private static boolean isWithinUnitInterval(float[] values) {
+		for (float value : values) {
+			if (!(value >= 0 && value <= 1)) return false;
+		}
+		return true;
 	}
 
-	private static float[] components(int numComponents, Vector3D v) {
-		if (numComponents == 2) {
-			return new float[] {
-					(float)((VectorXZ)v).x,
-					(float)((VectorXZ)v).z
-			};
-		} else {
-			assert numComponents == 3;
-			return new float[] {
-					(float)((VectorXYZ)v).x,
-					(float)((VectorXYZ)v).y,
-					(float)((VectorXYZ)v).z * -1
-			};
+	/**
+	 * Maps positions to unsigned 16-bit integers on a grid covering all vertices of the output.
+	 * A shared grid is used to avoid cracks between meshes.
+	 * The dequantization (position = offset + scale * quantizedPosition) becomes the transform of the node
+	 * which all quantized meshes are attached to.
+	 * The scale is the same along all axes so that normals are not affected by the transform.
+	 */
+	private record PositionQuantization(float[] offset, float scale) {
+
+		static PositionQuantization forBounds(float[] min, float[] max) {
+			float maxExtent = 0;
+			for (int i = 0; i < 3; i++) {
+				maxExtent = Math.max(maxExtent, max[i] - min[i]);
+			}
+			return new PositionQuantization(min.clone(), maxExtent > 0 ? maxExtent / 0xFFFF : 1);
 		}
+
+		int[] quantize(float[] positions) {
+			int[] result = new int[positions.length];
+			for (int i = 0; i < positions.length; i++) {
+				int value = Math.round((positions[i] - offset[i % 3]) / scale);
+				result[i] = Math.max(0, Math.min(0xFFFF, value));
+			}
+			return result;
+		}
+
 	}
 
 	/**
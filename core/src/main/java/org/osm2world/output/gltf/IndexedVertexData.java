@@ -0,0 +1,310 @@
+package org.osm2world.output.gltf;
+
+import java.util.Arrays;
+
+/**
+ * Vertex data of a triangle list where identical vertices have been merged.
+ * Vertices are stored as interleaved floats, with {@link #stride} floats per vertex.
+ * Each group of three consecutive {@link #indices} forms a triangle.
+ */
+class IndexedVertexData {
+
+	/** number of floats per vertex */
+	final int stride;
+
+	/** interleaved vertex data, contains {@link #vertexCount} * {@link #stride} values */
+	final float[] vertices;
+
+	final int vertexCount;
+
+	/** indices into the vertex list, three per triangle */
+	final int[] indices;
+
+	private IndexedVertexData(int stride, float[] vertices, int vertexCount, int[] indices) {
+		this.stride = stride;
+		this.vertices = vertices;
+		this.vertexCount = vertexCount;
+		this.indices = indices;
+	}
+
+	/**
+	 * merges vertices which are identical in all their attributes
+	 *
+	 * @param vertexData  interleaved data of a non-indexed triangle list, with stride floats per vertex
+	 */
+	static IndexedVertexData weld(float[] vertexData, int stride) {
+
+		if (stride <= 0 || vertexData.length % stride != 0) {
+			throw new IllegalArgumentException("invalid stride " + stride + " for " + vertexData.length + " values");
+		}
+
+		int inputCount = vertexData.length / stride;
+
+		/* open addressing hash table which contains indices into the output vertex list (or -1 if empty) */
+
+		int tableSize = Integer.highestOneBit(Math.max(inputCount, 1) * 2 - 1) << 1;
+		int[] table = new int[tableSize];
+		Arrays.fill(table, -1);
+
+		float[] vertices = new float[vertexData.length];
+		int vertexCount = 0;
+		int[] indices = new int[inputCount];
+
+		for (int i = 0; i < inputCount; i++) {
+
+			int offset = i * stride;
+
+			int hash = 1;
+			for (int c = 0; c < stride; c++) {
+				// adding 0 turns -0 into +0, so both are treated as the same value
+				hash = 31 * hash + Float.floatToIntBits(vertexData[offset + c] + 0.0f);
+			}
+
+			int slot = (hash ^ (hash >>> 16)) & (tableSize - 1);
+
+			while (table[slot] >= 0 && !equalVertices(vertexData, offset, vertices, table[slot] * stride, stride)) {
+				slot = (slot + 1) & (tableSize - 1);
+			}
+
+			if (table[slot] < 0) {
+				System.arraycopy(vertexData, offset, vertices, vertexCount * stride, stride);
+				table[slot] = vertexCount++;
+			}
+
+			indices[i] = table[slot];
+
+		}
+
+		return new IndexedVertexData(stride, Arrays.copyOf(vertices, vertexCount * stride), vertexCount, indices);
+
+	}
+
+	private static boolean equalVertices(float[] a, int offsetA, float[] b, int offsetB, int stride) {
+		for (int c = 0; c < stride; c++) {
+			if (a[offsetA + c] + 0.0f != b[offsetB + c] + 0.0f
+					&& !(Float.isNaN(a[offsetA + c]) && Float.isNaN(b[offsetB + c]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a copy with triangles reordered to make better use of a GPU's post-transform vertex cache.
+	 * Vertices are then rearranged in the order of their first use.
+	 * Uses Tom Forsyth's "Linear-Speed Vertex Cache Optimisation" algorithm.
+	 */
+	IndexedVertexData withOptimizedVertexCache() {
+
+		int[] newIndices = VertexCacheOptimizer.optimize(indices, vertexCount);
+
+		/* renumber the vertices in the order in which they are first referenced */
+
+		int[] newVertexIndex = new int[vertexCount];
+		Arrays.fill(newVertexIndex, -1);
+		float[] newVertices = new float[vertices.length];
+		int nextIndex = 0;
+
+		for (int i = 0; i < newIndices.length; i++) {
+			int oldIndex = newIndices[i];
+			if (newVertexIndex[oldIndex] < 0) {
+				System.arraycopy(vertices, oldIndex * stride, newVertices, nextIndex * stride, stride);
+				newVertexIndex[oldIndex] = nextIndex++;
+			}
+			newIndices[i] = newVertexIndex[oldIndex];
+		}
+
+		return new IndexedVertexData(stride, newVertices, vertexCount, newIndices);
+
+	}
+
+	/**
+	 * returns the values of a single attribute for all vertices
+	 *
+	 * @param offset         position of the attribute's first component within a vertex
+	 * @param numComponents  number of components of the attribute
+	 */
+	float[] attribute(int offset, int numComponents) {
+		float[] result = new float[vertexCount * numComponents];
+		for (int v = 0; v < vertexCount; v++) {
+			System.arraycopy(vertices, v * stride + offset, result, v * numComponents, numComponents);
+		}
+		return result;
+	}
+
+	/**
+	 * implementation of the vertex cache optimization algorithm,
+	 * see https://tomforsyth1000.github.io/papers/fast_vert_cache_opt.html
+	 */
+	private static class VertexCacheOptimizer {
+
+		private static final int CACHE_SIZE = 32;
+		private static final float CACHE_DECAY_POWER = 1.5f;
+		private static final float LAST_TRI_SCORE = 0.75f;
+		private static final float VALENCE_BOOST_SCALE = 2.0f;
+		private static final float VALENCE_BOOST_POWER = 0.5f;
+
+		static int[] optimize(int[] indices, int vertexCount) {
+
+			int triangleCount = indices.length / 3;
+
+			/* build the vertex-triangle adjacency in compressed form */
+
+			int[] remainingValence = new int[vertexCount];
+			for (int index : indices) {
+				remainingValence[index]++;
+			}
+
+			int[] adjacencyStart = new int[vertexCount + 1];
+			for (int v = 0; v < vertexCount; v++) {
+				adjacencyStart[v + 1] = adjacencyStart[v] + remainingValence[v];
+			}
+
+			int[] adjacency = new int[indices.length];
+			int[] fill = Arrays.copyOf(adjacencyStart, vertexCount);
+			for (int i = 0; i < indices.length; i++) {
+				adjacency[fill[indices[i]]++] = i / 3;
+			}
+
+			/* calculate initial scores */
+
+			int[] cachePosition = new int[vertexCount];
+			Arrays.fill(cachePosition, -1);
+
+			float[] vertexScore = new float[vertexCount];
+			for (int v = 0; v < vertexCount; v++) {
+				vertexScore[v] = vertexScore(-1, remainingValence[v]);
+			}
+
+			float[] triangleScore = new float[triangleCount];
+			for (int t = 0; t < triangleCount; t++) {
+				triangleScore[t] = vertexScore[indices[3 * t]]
+						+ vertexScore[indices[3 * t + 1]] + vertexScore[indices[3 * t + 2]];
+			}
+
+			boolean[] emitted = new boolean[triangleCount];
+
+			/* add triangles one by one */
+
+			int[] result = new int[indices.length];
+			int[] cache = new int[CACHE_SIZE + 3];
+			int cacheCount = 0;
+			int[] newCache = new int[CACHE_SIZE + 3];
+
+			int bestTriangle = -1;
+			int scanPosition = 0;
+
+			for (int outputTriangle = 0; outputTriangle < triangleCount; outputTriangle++) {
+
+				if (bestTriangle < 0) {
+					// no candidate from the cache, continue with the first remaining triangle in input order
+					while (emitted[scanPosition]) {
+						scanPosition++;
+					}
+					bestTriangle = scanPosition;
+				}
+
+				/* emit the triangle */
+
+				emitted[bestTriangle] = true;
+
+				int newCacheCount = 0;
+
+				for (int c = 0; c < 3; c++) {
+
+					int v = indices[3 * bestTriangle + c];
+					result[3 * outputTriangle + c] = v;
+
+					newCache[newCacheCount++] = v;
+
+					int end = adjacencyStart[v] + remainingValence[v];
+					remainingValence[v]--;
+					for (int a = adjacencyStart[v]; a < end; a++) {
+						if (adjacency[a] == bestTriangle) {
+							// move the emitted triangle to the end of the vertex's remaining triangles
+							adjacency[a] = adjacency[adjacencyStart[v] + remainingValence[v]];
+							adjacency[adjacencyStart[v] + remainingValence[v]] = bestTriangle;
+							break;
+						}
+					}
+
+				}
+
+				/* update the cache: the triangle's vertices go to the front */
+
+				for (int i = 0; i < cacheCount; i++) {
+					int v = cache[i];
+					if (v != newCache[0] && v != newCache[1] && v != newCache[2]) {
+						newCache[newCacheCount++] = v;
+					}
+				}
+
+				cacheCount = Math.min(newCacheCount, CACHE_SIZE);
+
+				for (int i = 0; i < newCacheCount; i++) {
+					int v = newCache[i];
+					cachePosition[v] = i < CACHE_SIZE ? i : -1;
+				}
+
+				/* update the scores of vertices which are in the cache or have just been evicted from it */
+
+				for (int i = 0; i < newCacheCount; i++) {
+					int v = newCache[i];
+					float oldScore = vertexScore[v];
+					vertexScore[v] = vertexScore(cachePosition[v], remainingValence[v]);
+					float scoreChange = vertexScore[v] - oldScore;
+					for (int a = adjacencyStart[v]; a < adjacencyStart[v] + remainingValence[v]; a++) {
+						triangleScore[adjacency[a]] += scoreChange;
+					}
+				}
+
+				int[] swap = cache;
+				cache = newCache;
+				newCache = swap;
+
+				/* find the next triangle among those using a vertex in the cache */
+
+				bestTriangle = -1;
+				float bestScore = -1;
+
+				for (int i = 0; i < cacheCount; i++) {
+					int v = cache[i];
+					for (int a = adjacencyStart[v]; a < adjacencyStart[v] + remainingValence[v]; a++) {
+						int t = adjacency[a];
+						if (triangleScore[t] > bestScore) {
+							bestScore = triangleScore[t];
+							bestTriangle = t;
+						}
+					}
+				}
+
+			}
+
+			return result;
+
+		}
+
+		private static float vertexScore(int cachePosition, int remainingValence) {
+
+			if (remainingValence == 0) return -1;
+
+			float score = 0;
+
+			if (cachePosition >= 0) {
+				if (cachePosition < 3) {
+					score = LAST_TRI_SCORE;
+				} else {
+					float scaler = 1.0f / (CACHE_SIZE - 3);
+					score = (float) Math.pow(1.0f - (cachePosition - 3) * scaler, CACHE_DECAY_POWER);
+				}
+			}
+
+			score += VALENCE_BOOST_SCALE * (float) Math.pow(remainingValence, -VALENCE_BOOST_POWER);
+
+			return score;
+
+		}
+
+	}
+
+}
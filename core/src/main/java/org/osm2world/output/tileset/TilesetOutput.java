@@ -7,7 +7,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
@@ -27,6 +29,8 @@ import org.osm2world.output.tileset.tiles_data.TilesetEntry;
 import org.osm2world.output.tileset.tiles_data.TilesetParentEntry;
 import org.osm2world.output.tileset.tiles_data.TilesetRoot;
 import org.osm2world.scene.mesh.MeshStore;
+import org.osm2world.scene.model.InstanceParameters;
+import org.osm2world.scene.model.Model;
 import org.osm2world.util.platform.json.JsonUtil;
 
 /**
@@ -57,6 +61,7 @@ public class TilesetOutput extends MeshOutput {
 	public TilesetOutput(File outputFile,
 			GltfFlavor gltfFlavor, Compression gltfCompression,
 			MapProjection mapProjection, @Nullable SimpleClosedShapeXZ bounds) {
+		super(x -> true, true);
 		this.outputFile = outputFile;
 		this.gltfFlavor = gltfFlavor;
 		this.gltfCompression = gltfCompression;
@@ -79,10 +84,10 @@ public class TilesetOutput extends MeshOutput {
 	 */
 	private void createTileset() {
 
-		var dataBounds = new AxisAlignedBoundingBoxXYZ(
-				meshStore.meshesWithMetadata().stream()
-						.flatMap(m -> m.mesh().geometry.asTriangles().vertices().stream())
-						.toList());
+		List<VectorXYZ> dataPoints = new ArrayList<>();
+		meshStore.meshesWithMetadata().forEach(m -> dataPoints.addAll(m.mesh().geometry.asTriangles().vertices()));
+		dataPoints.addAll(modelInstanceBoundingPoints());
+		var dataBounds = new AxisAlignedBoundingBoxXYZ(dataPoints);
 
 		SimpleClosedShapeXZ bounds = requireNonNullElse(this.bounds, dataBounds.xz());
 
@@ -102,18 +107,18 @@ public class TilesetOutput extends MeshOutput {
 
 			File gltfFile0 = outputDir.resolve(baseFileName + "_0" + extension).toFile();
 			List<MeshStore.MeshWithMetadata> topMeshes = meshes.subList(0, Math.min(meshes.size(), NUM_MESHES_FOR_SUBDIVISION_TOP));
-			writeGltf(gltfFile0, topMeshes, bounds);
+			writeGltf(gltfFile0, topMeshes, List.of(), bounds);
 			tileContentFiles.add(gltfFile0);
 
 			File gltfFile1 = outputDir.resolve(baseFileName + "_1" + extension).toFile();
 			List<MeshStore.MeshWithMetadata> restMeshes = meshes.subList(Math.min(meshes.size(), 100), meshes.size());
-			writeGltf(gltfFile1, restMeshes, bounds);
+			writeGltf(gltfFile1, restMeshes, modelInstances, bounds);
 			tileContentFiles.add(gltfFile1);
 
 		} else {
 
 			File gltfFile = outputDir.resolve(baseFileName + extension).toFile();
-			writeGltf(gltfFile, meshStore.meshesWithMetadata(), bounds);
+			writeGltf(gltfFile, meshStore.meshesWithMetadata(), modelInstances, bounds);
 			tileContentFiles.add(gltfFile);
 
 		}
@@ -125,12 +130,49 @@ public class TilesetOutput extends MeshOutput {
 	}
 
 	private void writeGltf(File gltfFile, List<MeshStore.MeshWithMetadata> meshesWithMetadata,
-			SimpleClosedShapeXZ bounds) {
+			List<MeshStore.ModelInstanceWithMetadata> modelInstances, SimpleClosedShapeXZ bounds) {
 
 		GltfOutput gltfOutput = new GltfOutput(gltfFile, gltfFlavor, gltfCompression);
 		gltfOutput.setConfiguration(config);
 
-		gltfOutput.outputScene(meshesWithMetadata, null, bounds);
+		gltfOutput.outputScene(meshesWithMetadata, modelInstances, null, bounds);
+
+	}
+
+	/**
+	 * returns the corners of the bounding boxes of all {@link #modelInstances}.
+	 * Each model's meshes are only built once for each combination of parameters other than position and direction.
+	 */
+	private List<VectorXYZ> modelInstanceBoundingPoints() {
+
+		Map<Model, Map<InstanceParameters, AxisAlignedBoundingBoxXYZ>> prototypeBoundsByModel = new HashMap<>();
+
+		List<VectorXYZ> result = new ArrayList<>();
+
+		for (MeshStore.ModelInstanceWithMetadata m : modelInstances) {
+
+			InstanceParameters params = m.modelInstance().params();
+			var prototypeParams = new InstanceParameters(VectorXYZ.NULL_VECTOR, 0,
+					params.height(), params.color(), params.lodRange());
+
+			AxisAlignedBoundingBoxXYZ bbox = prototypeBoundsByModel
+					.computeIfAbsent(m.modelInstance().model(), k -> new HashMap<>())
+					.computeIfAbsent(prototypeParams, p -> {
+						List<VectorXYZ> vertices = new ArrayList<>();
+						m.modelInstance().model().buildMeshes(p)
+								.forEach(mesh -> vertices.addAll(mesh.geometry.asTriangles().vertices()));
+						return vertices.isEmpty() ? null : new AxisAlignedBoundingBoxXYZ(vertices);
+					});
+
+			if (bbox != null) {
+				for (VectorXYZ corner : bbox.corners()) {
+					result.add(corner.rotateY(params.direction()).add(params.position()));
+				}
+			}
+
+		}
+
+		return result;
 
 	}
 
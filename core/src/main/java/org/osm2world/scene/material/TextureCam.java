@@ -77,6 +77,7 @@ public class TextureCam {
 		for (Mesh mesh : meshes) {
 
 			TriangleGeometry tg = mesh.geometry.asTriangles();
+			List<VectorXYZ> tgNormals = tg.normalData.normals();
 
 			for (int i = 0; i < tg.triangles.size(); i++) {
 
@@ -102,9 +103,9 @@ public class TextureCam {
 					List<Double> vertexHeights = asList(t.v1.y, t.v2.y, t.v3.y);
 
 					List<VectorXYZ> normals = asList(
-							tg.normalData.normals().get(3 * i),
-							tg.normalData.normals().get(3 * i + 1),
-							tg.normalData.normals().get(3 * i + 2));
+							tgNormals.get(3 * i),
+							tgNormals.get(3 * i + 1),
+							tgNormals.get(3 * i + 2));
 
 					List<LColor> colors = null;
 
@@ -247,7 +248,9 @@ public class TextureCam {
 
 					double absoluteHeight = displacementHeights[x][y] != null ? displacementHeights[x][y] : minHeight;
 
-					float value = (float) ((absoluteHeight - minHeight) / (maxHeight - minHeight));
+					float value = maxHeight > minHeight
+							? (float) ((absoluteHeight - minHeight) / (maxHeight - minHeight))
+							: 0f; // all visible surfaces have the same height, e.g. a flat roof seen from the top
 
 					LColor cDisplacement = new LColor(value, value, value);
 					displacementImage.setRGB(x, y, cDisplacement.toRGB().getRGB());
@@ -1,7 +1,6 @@
 package org.osm2world.scene.mesh;
 
 import static java.util.Collections.emptyList;
-import static java.util.Collections.nCopies;
 import static java.util.stream.Collectors.toList;
 
 import java.util.List;
@@ -59,23 +58,7 @@ public interface Geometry {
 		TriangleGeometry.Builder builder = new TriangleGeometry.Builder(numTextureLayers, null, normalMode);
 
 		for (TriangleGeometry t : triangleGeometries) {
-
-			if (t.colors == null) {
-				if (normalMode != null) {
-					builder.addTriangles(t.triangles, t.texCoords);
-				} else {
-					builder.addTriangles(t.triangles, t.texCoords,
-							nCopies(t.triangles.size() * 3, builder.defaultColor),
-							t.normalData.normals());
-				}
-			} else {
-				if (normalMode != null) {
-					builder.addTriangles(t.triangles, t.texCoords, t.colors);
-				} else {
-					builder.addTriangles(t.triangles, t.texCoords, t.colors, t.normalData.normals());
-				}
-			}
-
+			builder.addGeometry(t);
 		}
 
 		/* build and return the result */
@@ -3,7 +3,6 @@ package org.osm2world.scene.mesh;
 import static java.lang.Math.min;
 import static java.util.Arrays.stream;
 import static java.util.Collections.emptyList;
-import static java.util.Collections.nCopies;
 import static java.util.stream.Collectors.toList;
 import static org.osm2world.math.algorithms.GeometryUtil.isRightOf;
 import static org.osm2world.scene.color.Color.WHITE;
@@ -28,6 +27,7 @@ import org.osm2world.math.shapes.TriangleXZ;
 import org.osm2world.scene.color.Color;
 import org.osm2world.scene.color.LColor;
 import org.osm2world.scene.material.*;
+import org.osm2world.scene.model.ModelInstance;
 import org.osm2world.util.FaultTolerantIterationUtil;
 import org.osm2world.world.data.WorldObject;
 
@@ -37,6 +37,9 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
 /** a collection of meshes along with some metadata */
 public class MeshStore {
 
@@ -79,6 +82,9 @@ public class MeshStore {
 
 	}
 
+	/** a {@link ModelInstance} which outputs may keep as an instance rather than as separate meshes */
+	public record ModelInstanceWithMetadata(@Nonnull ModelInstance modelInstance, @Nonnull MeshMetadata metadata) {}
+
 	private final List<MeshWithMetadata> meshes = new ArrayList<>();
 
 	public MeshStore() {}
@@ -360,11 +366,10 @@ public class MeshStore {
 
 				if (mesh.geometry instanceof TriangleGeometry tg) {
 
-					List<Color> colors = (tg.colors != null) ? tg.colors
-							: nCopies(tg.vertices().size(), mesh.material.color());
-
-					TriangleGeometry.Builder builder = new TriangleGeometry.Builder(tg.texCoords.size(), null, null);
-					builder.addTriangles(tg.triangles, tg.texCoords, colors, tg.normalData.normals());
+					// existing vertex colors are kept, the material color is only used for geometries without them
+					TriangleGeometry.Builder builder = new TriangleGeometry.Builder(tg.texCoords.size(),
+							mesh.material.color(), null);
+					builder.addGeometry(tg);
 					newGeometry = builder.build();
 
 				} else if (mesh.geometry instanceof ShapeGeometry sg) {
@@ -586,15 +591,17 @@ public class MeshStore {
 				Mesh mesh = meshWithMetadata.mesh();
 				TriangleGeometry tg = mesh.geometry.asTriangles();
 
-				Map<TriangleXYZ, Collection<TriangleXYZ>> trianglesToReplace = new HashMap<>();
+				List<TriangleXYZ> triangles = tg.triangles;
+
+				TIntObjectMap<Collection<TriangleXYZ>> trianglesToReplace = new TIntObjectHashMap<>();
 
 				if (!splitTriangles) {
 
 					/* mark triangles outside the bounds for removal */
 
-					for (TriangleXYZ t : tg.triangles) {
-						if (!bounds.contains(t.getCenter().xz())) {
-							trianglesToReplace.put(t, emptyList());
+					for (int i = 0; i < triangles.size(); i++) {
+						if (!bounds.contains(triangles.get(i).getCenter().xz())) {
+							trianglesToReplace.put(i, emptyList());
 						}
 					}
 
@@ -606,10 +613,11 @@ public class MeshStore {
 					// -> if it contains tBbox, the triangle is safely inside the bounds
 					// var tBbox = AxisAlignedRectangleXZ.bbox(t.vertices());
 
-					for (TriangleXYZ originalTriangle : tg.triangles) {
+					for (int i = 0; i < triangles.size(); i++) {
+						TriangleXYZ originalTriangle = triangles.get(i);
 						Collection<TriangleXYZ> splitTriangles = clipToBounds(originalTriangle, boundingSegments);
 						if (splitTriangles.size() != 1 || !splitTriangles.contains(originalTriangle)) {
-							trianglesToReplace.put(originalTriangle, splitTriangles);
+							trianglesToReplace.put(i, splitTriangles);
 						}
 					}
 
@@ -623,107 +631,99 @@ public class MeshStore {
 
 					List<VectorXYZ> normals = tg.normalData.normals();
 
-					List<TriangleXYZ> newTriangles = new ArrayList<>();
-					List<Color> newColors = tg.colors == null ? null : new ArrayList<>();
-					List<VectorXYZ> newNormals = new ArrayList<>();
-					List<List<VectorXZ>> newTexCoords = new ArrayList<>(tg.texCoords.size());
-
-					for (int layer = 0; layer < tg.texCoords.size(); layer++) {
-						newTexCoords.add(new ArrayList<>());
-					}
+					TriangleGeometry.Builder builder = new TriangleGeometry.Builder(tg.texCoords.size(), null, null);
 
-					for (int i = 0; i < tg.triangles.size(); i++) {
+					/* unchanged triangles are copied in runs directly from the original geometry's arrays */
 
-						TriangleXYZ triangle = tg.triangles.get(i);
+					int unchangedRunStart = 0;
 
-						if (!trianglesToReplace.containsKey(triangle)) {
+					for (int i = 0; i <= triangles.size(); i++) {
 
-							newTriangles.add(triangle);
+						if (i < triangles.size() && !trianglesToReplace.containsKey(i)) continue;
 
-							for (int j = 0; j <= 2; j++) {
+						if (unchangedRunStart < i) {
+							builder.addTriangles(tg, unchangedRunStart, i);
+						}
 
-								if (newColors != null) {
-									newColors.add(tg.colors.get(3 * i + j));
-								}
+						unchangedRunStart = i + 1;
 
-								newNormals.add(normals.get(3 * i + j));
+						if (i == triangles.size() || trianglesToReplace.get(i).isEmpty()) continue;
 
-								for (int layer = 0; layer < tg.texCoords.size(); layer ++) {
-									newTexCoords.get(layer).add(tg.texCoords.get(layer).get(3 * i + j));
-								}
+						TriangleXYZ triangle = triangles.get(i);
 
-							}
+						/* get the triangle's original vertex attributes */
 
-						} else if (!trianglesToReplace.get(triangle).isEmpty()) {
+						LColor[] origColors = tg.colors == null ? null : new LColor[3];
+						VectorXYZ[] origNormals = new VectorXYZ[3];
+						List<VectorXZ[]> origTexCoords = new ArrayList<>(tg.texCoords.size());
 
-							/* get the triangle's original vertex attributes */
+						for (int layer = 0; layer < tg.texCoords.size(); layer++) {
+							origTexCoords.add(new VectorXZ[3]);
+						}
 
-							LColor[] origColors = newColors == null ? null : new LColor[3];
-							VectorXYZ[] origNormals = new VectorXYZ[3];
-							List<VectorXZ[]> origTexCoords = new ArrayList<>(tg.texCoords.size());
+						for (int j = 0; j <= 2; j++) {
 
-							for (int layer = 0; layer < tg.texCoords.size(); layer++) {
-								origTexCoords.add(new VectorXZ[3]);
+							if (origColors != null) {
+								origColors[j] = LColor.fromRGB(tg.colors.get(3 * i + j));
 							}
 
-							for (int j = 0; j <= 2; j++) {
-
-								if (origColors != null) {
-									origColors[j] = LColor.fromRGB(tg.colors.get(3 * i + j));
-								}
-
-								origNormals[j] = normals.get(3 * i + j);
-
-								for (int layer = 0; layer < tg.texCoords.size(); layer ++) {
-									origTexCoords.get(layer)[j] = tg.texCoords.get(layer).get(3 * i + j);
-								}
+							origNormals[j] = normals.get(3 * i + j);
 
+							for (int layer = 0; layer < tg.texCoords.size(); layer ++) {
+								origTexCoords.get(layer)[j] = tg.texCoords.get(layer).get(3 * i + j);
 							}
 
-							/* determine the new triangles' vertex attributes by interpolating on the original triangle */
+						}
 
-							TriangleXZ projectedTriangle = new TriangleXZ(
-									triangle.toFacePlane(triangle.v1),
-									triangle.toFacePlane(triangle.v2),
-									triangle.toFacePlane(triangle.v3)
-							);
+						/* determine the new triangles' vertex attributes by interpolating on the original triangle */
 
-							for (TriangleXYZ newTriangle : trianglesToReplace.get(triangle)) {
+						TriangleXZ projectedTriangle = new TriangleXZ(
+								triangle.toFacePlane(triangle.v1),
+								triangle.toFacePlane(triangle.v2),
+								triangle.toFacePlane(triangle.v3)
+						);
 
-								newTriangles.add(newTriangle);
+						Collection<TriangleXYZ> newTriangles = trianglesToReplace.get(i);
+						List<Color> newColors = origColors == null ? null : new ArrayList<>();
+						List<VectorXYZ> newNormals = new ArrayList<>();
+						List<List<VectorXZ>> newTexCoords = new ArrayList<>(tg.texCoords.size());
 
-								for (int j = 0; j <= 2; j++) {
+						for (int layer = 0; layer < tg.texCoords.size(); layer++) {
+							newTexCoords.add(new ArrayList<>());
+						}
 
-									VectorXZ projectedV = triangle.toFacePlane(newTriangle.vertices().get(j));
+						for (TriangleXYZ newTriangle : newTriangles) {
 
-									if (origColors != null) {
-										newColors.add(GeometryUtil.interpolateOnTriangle(projectedV, projectedTriangle,
-												origColors[0], origColors[1], origColors[2]).toRGB());
-									}
+							for (int j = 0; j <= 2; j++) {
 
-									newNormals.add(GeometryUtil.interpolateOnTriangle(projectedV, projectedTriangle,
-											origNormals[0], origNormals[1], origNormals[2]));
+								VectorXZ projectedV = triangle.toFacePlane(newTriangle.vertices().get(j));
 
-									for (int layer = 0; layer < tg.texCoords.size(); layer ++) {
-										newTexCoords.get(layer).add(
-												GeometryUtil.interpolateOnTriangle(projectedV, projectedTriangle,
-														origTexCoords.get(layer)[0],
-														origTexCoords.get(layer)[1],
-														origTexCoords.get(layer)[2])
-										);
-									}
+								if (origColors != null) {
+									newColors.add(GeometryUtil.interpolateOnTriangle(projectedV, projectedTriangle,
+											origColors[0], origColors[1], origColors[2]).toRGB());
+								}
 
+								newNormals.add(GeometryUtil.interpolateOnTriangle(projectedV, projectedTriangle,
+										origNormals[0], origNormals[1], origNormals[2]));
+
+								for (int layer = 0; layer < tg.texCoords.size(); layer ++) {
+									newTexCoords.get(layer).add(
+											GeometryUtil.interpolateOnTriangle(projectedV, projectedTriangle,
+													origTexCoords.get(layer)[0],
+													origTexCoords.get(layer)[1],
+													origTexCoords.get(layer)[2])
+									);
 								}
 
 							}
 
 						}
 
+						builder.addTriangles(new ArrayList<>(newTriangles), newTexCoords, newColors, newNormals);
+
 					}
 
-					if (!newTriangles.isEmpty()) {
-						TriangleGeometry.Builder builder = new TriangleGeometry.Builder(newTexCoords.size(), null, null);
-						builder.addTriangles(newTriangles, newTexCoords, newColors, newNormals);
+					if (builder.triangleCount() > 0) {
 						result.add(new MeshWithMetadata(new Mesh(builder.build(), mesh.material), meshWithMetadata.metadata()));
 					}
 
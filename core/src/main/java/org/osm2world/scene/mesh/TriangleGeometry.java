@@ -3,6 +3,7 @@ package org.osm2world.scene.mesh;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.nCopies;
+import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static org.osm2world.math.VectorXYZ.NULL_VECTOR;
 import static org.osm2world.math.algorithms.GeometryUtil.*;
@@ -24,9 +25,18 @@ import org.osm2world.scene.texcoord.TexCoordFunction;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
-/** a geometry composed of triangles */
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * a geometry composed of triangles.
+ *
+ * Vertex attributes are stored in primitive arrays to keep the memory footprint of large scenes low.
+ * The public lists are read-only views of these arrays which create their elements when they are accessed.
+ */
 public class TriangleGeometry implements Geometry {
 
+	/** the triangles of this geometry, backed by {@link #positions} */
 	public final List<TriangleXYZ> triangles;
 
 	public final NormalData normalData;
@@ -37,8 +47,20 @@ public class TriangleGeometry implements Geometry {
 	/** vertex colors, one for each entry in {@link #vertices()}. Each color value can be null. null if all are null. */
 	public final @Nullable List</* @Nullable */ Color> colors;
 
+	/** x, y and z coordinates of each vertex, 3 vertices per triangle */
+	private final double[] positions;
+
+	/** x and z coordinates of each vertex's texture coordinates, one array per texture layer */
+	private final double[][] texCoordData;
+
+	/** {@link Color#value()} of each vertex, null if {@link #colors} is null */
+	private final @Nullable int[] colorData;
+
+	/** vertices which have a null color despite {@link #colorData} being present. null if there are none. */
+	private final @Nullable BitSet nullColors;
+
 	public List<VectorXYZ> vertices() {
-		return vertices(triangles);
+		return new VectorXYZList(positions);
 	}
 
 	private static List<VectorXYZ> vertices(List<TriangleXYZ> triangles) {
@@ -54,26 +76,36 @@ public class TriangleGeometry implements Geometry {
 		return this;
 	}
 
-	private TriangleGeometry(List<TriangleXYZ> triangles, List<VectorXYZ> normals,
+	/** constructor suitable for straightforward cases. Use the {@link Builder} when you need more flexibility. */
+	public TriangleGeometry(List<TriangleXYZ> triangles, Interpolation normalMode,
 			List<List<VectorXZ>> texCoords, @Nullable List<Color> colors) {
+		this(toPositionArray(triangles), null, normalMode, toTexCoordArrays(texCoords),
+				colors == null ? null : toColorArray(colors), colors == null ? null : toNullColorSet(colors));
+	}
 
-		this.triangles = triangles;
-		this.texCoords = texCoords;
-		this.normalData = new ExplicitNormals(normals);
-		this.colors = colors;
-
-		validate();
+	/**
+	 * constructor used internally. Takes ownership of the arrays, which must not be modified afterwards.
+	 *
+	 * @param normals     explicit normals, must be null if and only if normalMode is not null
+	 * @param normalMode  how to calculate normals, must be null if and only if normals is not null
+	 */
+	private TriangleGeometry(double[] positions, @Nullable double[] normals, @Nullable Interpolation normalMode,
+			double[][] texCoordData, @Nullable int[] colorData, @Nullable BitSet nullColors) {
 
-	}
+		this.positions = positions;
+		this.texCoordData = texCoordData;
+		this.colorData = colorData;
+		this.nullColors = (nullColors == null || nullColors.isEmpty()) ? null : nullColors;
 
-	/** constructor suitable for straightforward cases. Use the {@link Builder} when you need more flexibility. */
-	public TriangleGeometry(List<TriangleXYZ> triangles, Interpolation normalMode,
-			List<List<VectorXZ>> texCoords, @Nullable List<Color> colors) {
+		this.triangles = new TriangleList();
+		this.texCoords = Arrays.stream(texCoordData).<List<VectorXZ>>map(VectorXZList::new).toList();
+		this.colors = (colorData == null) ? null : new ColorList();
 
-		this.triangles = triangles;
-		this.texCoords = texCoords;
-		this.normalData = new CalculatedNormals(normalMode);
-		this.colors = colors;
+		if (normals != null) {
+			this.normalData = new ExplicitNormals(normals);
+		} else {
+			this.normalData = new CalculatedNormals(requireNonNull(normalMode));
+		}
 
 		validate();
 
@@ -82,23 +114,44 @@ public class TriangleGeometry implements Geometry {
 	/* perform validation during construction */
 	private void validate() {
 
-		if (triangles.isEmpty()) {
+		if (positions.length == 0) {
 			throw new IllegalArgumentException("empty geometry");
 		}
 
-		boolean assertionsEnabled = false;
-		assert assertionsEnabled = true;
+		assert positions.length % 9 == 0;
+		assert colorData == null || colorData.length == vertexCount();
+		assert Arrays.stream(texCoordData).allMatch(t -> t.length == 2 * vertexCount());
+		assert !(normalData instanceof ExplicitNormals n) || n.normalComponents.length == 3 * vertexCount();
 
-		if (assertionsEnabled) {
+	}
 
-			List<VectorXYZ> vs = vertices(triangles);
+	/** returns the number of triangles, same as the size of {@link #triangles} */
+	public int triangleCount() {
+		return positions.length / 9;
+	}
 
-			assert normalData.normals().size() == vs.size();
-			assert colors == null || colors.size() == vs.size();
-			assert texCoords.stream().allMatch(t -> t.size() == vs.size());
+	/** returns the number of vertices, same as the size of {@link #vertices()} */
+	public int vertexCount() {
+		return positions.length / 3;
+	}
+
+	/** returns x, y and z of each vertex in a newly created array */
+	public float[] positionArray() {
+		return toFloatArray(positions);
+	}
 
+	/** returns x, y and z of each vertex's normal in a newly created array */
+	public float[] normalArray() {
+		if (normalData instanceof CalculatedNormals n) {
+			return n.normalComponents().clone();
+		} else {
+			return toFloatArray(((ExplicitNormals) normalData).normalComponents);
 		}
+	}
 
+	/** returns x and z of each vertex's texture coordinates for one texture layer in a newly created array */
+	public float[] texCoordArray(int layer) {
+		return toFloatArray(texCoordData[layer]);
 	}
 
 	public interface NormalData {
@@ -106,35 +159,264 @@ public class TriangleGeometry implements Geometry {
 	}
 
 	public class ExplicitNormals implements NormalData {
+
 		public final List<VectorXYZ> normals;
+
+		/** x, y and z of each normal */
+		private final double[] normalComponents;
+
 		public ExplicitNormals(List<VectorXYZ> normals) {
-			this.normals = normals;
+			this(toVectorArray(normals));
+		}
+
+		private ExplicitNormals(double[] normalComponents) {
+			this.normalComponents = normalComponents;
+			this.normals = new VectorXYZList(normalComponents);
 		}
+
 		@Override
 		public List<VectorXYZ> normals() {
 			return normals;
 		}
+
 		@Override
 		public String toString() {
 			return normals.toString();
 		}
+
 	}
 
+	/**
+	 * normals which are calculated from the triangles when they are first needed.
+	 * The result is stored and then shared by all later calls, including calls from other threads.
+	 */
 	public class CalculatedNormals implements NormalData {
+
 		public final Interpolation normalMode;
+
+		/** x, y and z of each normal, null until calculated */
+		private volatile @Nullable float[] normalComponents = null;
+
 		public CalculatedNormals(Interpolation normalMode) {
 			this.normalMode = normalMode;
 		}
+
 		@Override
 		public List<VectorXYZ> normals() {
-			return NormalCalculationUtil.calculateTriangleNormals(triangles, normalMode == Interpolation.SMOOTH);
+			return new NormalList(normalComponents());
 		}
+
+		/** returns the calculated normals, the array must not be modified */
+		private float[] normalComponents() {
+
+			float[] components = normalComponents;
+
+			if (components == null) {
+				// concurrent calls may calculate the same result, but only fully calculated arrays are published
+				List<VectorXYZ> normals = NormalCalculationUtil.calculateTriangleNormals(
+						triangles, normalMode == Interpolation.SMOOTH);
+				components = new float[3 * normals.size()];
+				for (int i = 0; i < normals.size(); i++) {
+					components[3 * i] = (float) normals.get(i).x;
+					components[3 * i + 1] = (float) normals.get(i).y;
+					components[3 * i + 2] = (float) normals.get(i).z;
+				}
+				normalComponents = components;
+			}
+
+			return components;
+
+		}
+
 		@Override
 		public String toString() {
 			return "CalculatedNormals(" + normalMode + ")";
 		}
 	}
 
+	/** appends the normals of a range of vertices to a list of x, y and z components */
+	private void appendNormals(int firstVertex, int vertexCount, TDoubleArrayList target) {
+		if (normalData instanceof ExplicitNormals n) {
+			target.add(n.normalComponents, 3 * firstVertex, 3 * vertexCount);
+		} else {
+			float[] components = ((CalculatedNormals) normalData).normalComponents();
+			for (int i = 3 * firstVertex; i < 3 * (firstVertex + vertexCount); i++) {
+				target.add(components[i]);
+			}
+		}
+	}
+
+	/** read-only view of the triangles stored in {@link #positions} */
+	private class TriangleList extends AbstractList<TriangleXYZ> implements RandomAccess {
+
+		@Override
+		public TriangleXYZ get(int index) {
+			Objects.checkIndex(index, size());
+			int i = 9 * index;
+			return new TriangleXYZ(
+					new VectorXYZ(positions[i], positions[i + 1], positions[i + 2]),
+					new VectorXYZ(positions[i + 3], positions[i + 4], positions[i + 5]),
+					new VectorXYZ(positions[i + 6], positions[i + 7], positions[i + 8]));
+		}
+
+		@Override
+		public int size() {
+			return triangleCount();
+		}
+
+	}
+
+	/** read-only view of the colors stored in {@link #colorData} */
+	private class ColorList extends AbstractList</* @Nullable */ Color> implements RandomAccess {
+
+		@Override
+		public @Nullable Color get(int index) {
+			Objects.checkIndex(index, size());
+			if (nullColors != null && nullColors.get(index)) {
+				return null;
+			} else {
+				return new Color(colorData[index]);
+			}
+		}
+
+		@Override
+		public int size() {
+			return colorData.length;
+		}
+
+	}
+
+	/** read-only list view of vectors stored as x, y and z components in an array */
+	private static class VectorXYZList extends AbstractList<VectorXYZ> implements RandomAccess {
+
+		private final double[] components;
+
+		VectorXYZList(double[] components) {
+			this.components = components;
+		}
+
+		@Override
+		public VectorXYZ get(int index) {
+			Objects.checkIndex(index, size());
+			return new VectorXYZ(components[3 * index], components[3 * index + 1], components[3 * index + 2]);
+		}
+
+		@Override
+		public int size() {
+			return components.length / 3;
+		}
+
+	}
+
+	/** read-only list view of vectors stored as x and z components in an array */
+	private static class VectorXZList extends AbstractList<VectorXZ> implements RandomAccess {
+
+		private final double[] components;
+
+		VectorXZList(double[] components) {
+			this.components = components;
+		}
+
+		@Override
+		public VectorXZ get(int index) {
+			Objects.checkIndex(index, size());
+			return new VectorXZ(components[2 * index], components[2 * index + 1]);
+		}
+
+		@Override
+		public int size() {
+			return components.length / 2;
+		}
+
+	}
+
+	/** read-only list view of normals stored as x, y and z components in an array */
+	private static class NormalList extends AbstractList<VectorXYZ> implements RandomAccess {
+
+		private final float[] components;
+
+		NormalList(float[] components) {
+			this.components = components;
+		}
+
+		@Override
+		public VectorXYZ get(int index) {
+			Objects.checkIndex(index, size());
+			return new VectorXYZ(components[3 * index], components[3 * index + 1], components[3 * index + 2]);
+		}
+
+		@Override
+		public int size() {
+			return components.length / 3;
+		}
+
+	}
+
+	private static double[] toPositionArray(List<TriangleXYZ> triangles) {
+		double[] result = new double[9 * triangles.size()];
+		int i = 0;
+		for (TriangleXYZ t : triangles) {
+			for (VectorXYZ v : List.of(t.v1, t.v2, t.v3)) {
+				result[i++] = v.x;
+				result[i++] = v.y;
+				result[i++] = v.z;
+			}
+		}
+		return result;
+	}
+
+	private static double[] toVectorArray(List<VectorXYZ> vectors) {
+		double[] result = new double[3 * vectors.size()];
+		int i = 0;
+		for (VectorXYZ v : vectors) {
+			result[i++] = v.x;
+			result[i++] = v.y;
+			result[i++] = v.z;
+		}
+		return result;
+	}
+
+	private static double[][] toTexCoordArrays(List<List<VectorXZ>> texCoords) {
+		double[][] result = new double[texCoords.size()][];
+		for (int layer = 0; layer < texCoords.size(); layer++) {
+			List<VectorXZ> layerTexCoords = texCoords.get(layer);
+			result[layer] = new double[2 * layerTexCoords.size()];
+			int i = 0;
+			for (VectorXZ v : layerTexCoords) {
+				result[layer][i++] = v.x;
+				result[layer][i++] = v.z;
+			}
+		}
+		return result;
+	}
+
+	private static int[] toColorArray(List</* @Nullable */ Color> colors) {
+		int[] result = new int[colors.size()];
+		for (int i = 0; i < colors.size(); i++) {
+			Color c = colors.get(i);
+			result[i] = (c == null) ? 0 : c.value();
+		}
+		return result;
+	}
+
+	private static BitSet toNullColorSet(List</* @Nullable */ Color> colors) {
+		BitSet result = new BitSet();
+		for (int i = 0; i < colors.size(); i++) {
+			if (colors.get(i) == null) {
+				result.set(i);
+			}
+		}
+		return result;
+	}
+
+	private static float[] toFloatArray(double[] values) {
+		float[] result = new float[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (float) values[i];
+		}
+		return result;
+	}
+
 	/** a builder for flexibly constructing a {@link TriangleGeometry} */
 	public static class Builder {
 
@@ -143,10 +425,11 @@ public class TriangleGeometry implements Geometry {
 		public final @Nullable Color defaultColor;
 		public final @Nullable Interpolation normalMode;
 
-		private final List<TriangleXYZ> triangles = new ArrayList<>();
-		private final List<List<VectorXZ>> texCoords;
-		private final List</* @Nullable */ Color> colors = new ArrayList<>();
-		private final @Nullable List<VectorXYZ> normals;
+		private final TDoubleArrayList positions = new TDoubleArrayList();
+		private final List<TDoubleArrayList> texCoords;
+		private final TIntArrayList colors = new TIntArrayList();
+		private final BitSet nullColors = new BitSet();
+		private final @Nullable TDoubleArrayList normals;
 
 		/**
 		 *
@@ -164,10 +447,10 @@ public class TriangleGeometry implements Geometry {
 
 			this.texCoords = new ArrayList<>(numTextureLayers);
 			for (int i = 0; i < numTextureLayers; i++) {
-				texCoords.add(new ArrayList<>());
+				texCoords.add(new TDoubleArrayList());
 			}
 
-			normals = (normalMode == null) ? new ArrayList<>() : null;
+			normals = (normalMode == null) ? new TDoubleArrayList() : null;
 
 		}
 
@@ -185,10 +468,10 @@ public class TriangleGeometry implements Geometry {
 
 			this.texCoords = new ArrayList<>(numTextureLayers);
 			for (int i = 0; i < numTextureLayers; i++) {
-				texCoords.add(new ArrayList<>());
+				texCoords.add(new TDoubleArrayList());
 			}
 
-			normals = (normalMode == null) ? new ArrayList<>() : null;
+			normals = (normalMode == null) ? new TDoubleArrayList() : null;
 
 		}
 
@@ -211,29 +494,160 @@ public class TriangleGeometry implements Geometry {
 				throw new IllegalArgumentException("there must be 3 tex coord values for every triangle");
 			}
 
-			this.triangles.addAll(triangles);
-			this.colors.addAll(colors);
+			if (normals != null) {
+				if (normalMode != null) {
+					throw new IllegalStateException("If normal mode is set, normals must not be provided explicitly");
+				} else if (normals.size() != triangles.size() * 3) {
+					throw new IllegalArgumentException("there must be 3 normals for every triangle");
+				}
+			} else if (normalMode == null) {
+				throw new IllegalStateException("If normal mode is not set, normals must be provided explicitly");
+			}
+
+			for (TriangleXYZ t : triangles) {
+				appendVertex(t.v1);
+				appendVertex(t.v2);
+				appendVertex(t.v3);
+			}
+
+			for (Color c : colors) {
+				appendColor(c);
+			}
 
 			for (int layer = 0; layer < numTextureLayers; layer ++) {
-				this.texCoords.get(layer).addAll(texCoords.get(layer));
+				TDoubleArrayList layerTexCoords = this.texCoords.get(layer);
+				for (VectorXZ t : texCoords.get(layer)) {
+					layerTexCoords.add(t.x);
+					layerTexCoords.add(t.z);
+				}
 			}
 
 			if (normals != null) {
+				for (VectorXYZ n : normals) {
+					this.normals.add(n.x);
+					this.normals.add(n.y);
+					this.normals.add(n.z);
+				}
+			}
 
-				if (normalMode != null) {
-					throw new IllegalStateException("If normal mode is set, normals must not be provided explicitly");
-				} else if (normals.size() != triangles.size() * 3) {
-					throw new IllegalArgumentException("there must be 3 normals for every triangle");
+		}
+
+		/**
+		 * adds triangles from primitive arrays, avoiding the creation of vector objects.
+		 *
+		 * @param positions  x, y and z of each vertex, 9 values for every triangle
+		 * @param texCoords  x and z of each vertex's texture coordinates, one array for each texture layer
+		 * @param colors     {@link Color#value()} of each vertex's color, or null to use {@link #defaultColor}
+		 * @param normals    x, y and z of each vertex's normal. Must be provided if and only if
+		 *                   {@link #normalMode} is null.
+		 */
+		public void addTriangles(double[] positions, double[][] texCoords,
+				@Nullable int[] colors, @Nullable double[] normals) {
+
+			if (positions.length % 9 != 0) {
+				throw new IllegalArgumentException("there must be 9 position values for every triangle");
+			} else if (texCoords.length != numTextureLayers) {
+				throw new IllegalArgumentException(texCoords.length + " texCoord arrays, expected " + numTextureLayers);
+			} else if (Arrays.stream(texCoords).anyMatch(tcs -> tcs.length != positions.length / 3 * 2)) {
+				throw new IllegalArgumentException("there must be 6 tex coord values for every triangle");
+			} else if (colors != null && colors.length != positions.length / 3) {
+				throw new IllegalArgumentException("there must be 3 color values for every triangle");
+			} else if ((normals == null) != (normalMode != null)) {
+				throw new IllegalStateException("Normals must be provided explicitly if and only if normal mode is not set");
+			} else if (normals != null && normals.length != positions.length) {
+				throw new IllegalArgumentException("there must be 9 normal values for every triangle");
+			}
+
+			this.positions.add(positions);
+
+			for (int layer = 0; layer < numTextureLayers; layer ++) {
+				this.texCoords.get(layer).add(texCoords[layer]);
+			}
+
+			if (colors != null) {
+				this.colors.add(colors);
+			} else {
+				for (int i = 0; i < positions.length / 3; i++) {
+					appendColor(defaultColor);
 				}
+			}
 
-				this.normals.addAll(normals);
+			if (normals != null) {
+				this.normals.add(normals);
+			}
 
-			} else if (normalMode == null) {
-				throw new IllegalStateException("If normal mode is not set, normals must be provided explicitly");
+		}
+
+		/**
+		 * adds all triangles of an existing geometry, along with their vertex attributes.
+		 * Normals are copied if {@link #normalMode} is null, and calculated by the new geometry otherwise.
+		 * If the geometry has no vertex colors, {@link #defaultColor} is used.
+		 */
+		public void addGeometry(TriangleGeometry geometry) {
+			addTriangles(geometry, 0, geometry.triangleCount());
+		}
+
+		/**
+		 * adds a range of triangles from an existing geometry.
+		 *
+		 * @param fromTriangle  index of the first triangle to add
+		 * @param toTriangle    index after the last triangle to add
+		 * @see #addGeometry(TriangleGeometry)
+		 */
+		public void addTriangles(TriangleGeometry geometry, int fromTriangle, int toTriangle) {
+
+			if (geometry.texCoordData.length != numTextureLayers) {
+				throw new IllegalArgumentException(geometry.texCoordData.length + " texture layers, expected "
+						+ numTextureLayers);
+			}
+
+			Objects.checkFromToIndex(fromTriangle, toTriangle, geometry.triangleCount());
+
+			int firstVertex = 3 * fromTriangle;
+			int vertexCount = 3 * (toTriangle - fromTriangle);
+
+			positions.add(geometry.positions, 3 * firstVertex, 3 * vertexCount);
+
+			for (int layer = 0; layer < numTextureLayers; layer ++) {
+				texCoords.get(layer).add(geometry.texCoordData[layer], 2 * firstVertex, 2 * vertexCount);
+			}
+
+			for (int v = firstVertex; v < firstVertex + vertexCount; v++) {
+				if (geometry.colorData == null) {
+					appendColor(defaultColor);
+				} else if (geometry.nullColors != null && geometry.nullColors.get(v)) {
+					appendColor(null);
+				} else {
+					colors.add(geometry.colorData[v]);
+				}
+			}
+
+			if (normals != null) {
+				geometry.appendNormals(firstVertex, vertexCount, normals);
 			}
 
 		}
 
+		private void appendVertex(VectorXYZ v) {
+			positions.add(v.x);
+			positions.add(v.y);
+			positions.add(v.z);
+		}
+
+		private void appendColor(@Nullable Color c) {
+			if (c == null) {
+				nullColors.set(colors.size());
+				colors.add(0);
+			} else {
+				colors.add(c.value());
+			}
+		}
+
+		/** returns the number of triangles added so far */
+		public int triangleCount() {
+			return positions.size() / 9;
+		}
+
 		public void addTriangles(List<TriangleXYZ> triangles, @Nullable List<List<VectorXZ>> texCoords,
 				@Nullable List<Color> colors) {
 			addTriangles(triangles, texCoords, colors, null);
@@ -296,18 +710,16 @@ public class TriangleGeometry implements Geometry {
 
 			/* set colors to null if all values are null */
 
-			@Nullable List</* @Nullable */ Color> colors = this.colors;
-			if (colors.stream().allMatch(c -> c == null)) {
-				colors = null;
-			}
+			boolean hasColors = nullColors.cardinality() < colors.size();
 
 			/* build and return the result */
 
-			if (normalMode == null) {
-				return new TriangleGeometry(triangles, normals, texCoords, colors);
-			} else {
-				return new TriangleGeometry(triangles, normalMode, texCoords, colors);
-			}
+			return new TriangleGeometry(positions.toArray(),
+					normals == null ? null : normals.toArray(),
+					normalMode,
+					texCoords.stream().map(TDoubleArrayList::toArray).toArray(double[][]::new),
+					hasColors ? colors.toArray() : null,
+					hasColors ? (BitSet) nullColors.clone() : null);
 
 		}
 
@@ -345,13 +757,17 @@ public class TriangleGeometry implements Geometry {
 				.map(it -> it.scale(NULL_VECTOR, s))
 				.toList();
 
+		// vertex attributes other than positions and normals are unchanged, so their arrays can be shared
+
 		if (normalData instanceof CalculatedNormals calculatedNormals) {
-			return new TriangleGeometry(newTriangles, calculatedNormals.normalMode, texCoords, colors);
+			return new TriangleGeometry(toPositionArray(newTriangles), null, calculatedNormals.normalMode,
+					texCoordData, colorData, nullColors);
 		} else {
 			List<VectorXYZ> newNormals = normalData.normals().stream()
 					.map(it -> it.rotateY(r.radians))
 					.toList();
-			return new TriangleGeometry(newTriangles, newNormals, texCoords, colors);
+			return new TriangleGeometry(toPositionArray(newTriangles), toVectorArray(newNormals), null,
+					texCoordData, colorData, nullColors);
 		}
 
 	}
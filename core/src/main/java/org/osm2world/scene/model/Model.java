@@ -23,4 +23,24 @@ public interface Model {
 	 */
 	List<Mesh> buildMeshes(InstanceParameters params);
 
+	/**
+	 * Whether the meshes of an instance only depend on {@link InstanceParameters#position()} and
+	 * {@link InstanceParameters#direction()} through a translation and a rotation around the Y axis
+	 * (the texture coordinates of globally textured surfaces may still differ slightly).
+	 * If this is the case, outputs can use the instancing support of file formats instead of
+	 * building separate meshes for each instance. The other instance parameters may affect the meshes freely.
+	 */
+	default boolean isInstanceable() {
+		return false;
+	}
+
+	/**
+	 * Whether {@link InstanceParameters#height()} only affects the meshes of an {@link #isInstanceable()} model
+	 * through a uniform scaling around the instance's position (again except for texture coordinates).
+	 * If this is the case, outputs can use the same meshes for instances with different heights.
+	 */
+	default boolean isScalableByHeight() {
+		return false;
+	}
+
 }
\ No newline at end of file
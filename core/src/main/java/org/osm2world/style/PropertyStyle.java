@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.regex.Matcher;
@@ -24,8 +25,12 @@ import org.osm2world.scene.texcoord.NamedTexCoordFunction;
 import org.osm2world.scene.texcoord.TexCoordFunction;
 import org.osm2world.util.functions.Factory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * A map style based on properties files.
@@ -44,6 +49,61 @@ public class PropertyStyle implements Style {
 	private static final Pattern CONF_KEY_PATTERN = Pattern.compile(
 			"material_(.+)_(interpolation|color|doubleSided|shadow|ssao|transparency|texture\\d*_.+)");
 
+	/**
+	 * the properties of a config which affect the resulting {@link PropertyStyle}.
+	 * Configs with equal keys can share a style, even if they differ in other properties such as the LOD.
+	 * The key also contains the versions of the model files, so a style is reloaded after a model has been edited.
+	 */
+	private record StyleKey(SortedMap<String, String> properties, Set<ModelKey> models) {
+
+		static StyleKey of(O2WConfig config) {
+			SortedMap<String, String> properties = new TreeMap<>();
+			Set<ModelKey> models = new HashSet<>();
+			for (String key : config.getKeys()) {
+				if (key.startsWith("material_") || key.startsWith("model_") || key.equals("configBaseURI")) {
+					properties.put(key, config.getString(key));
+				}
+				if (key.startsWith("model_")) {
+					for (String fileName : config.getList(key)) {
+						URI modelUri = config.resolveFileConfigProperty(fileName, false, true);
+						if (modelUri != null) {
+							models.add(ModelKey.of(modelUri));
+						}
+					}
+				}
+			}
+			return new StyleKey(properties, models);
+		}
+
+	}
+
+	/**
+	 * identifies a version of a model.
+	 * For local files, the modification time and size are used to notice when a file has been edited.
+	 */
+	private record ModelKey(URI uri, long lastModified, long size) {
+
+		static ModelKey of(URI uri) {
+			if ("file".equals(uri.getScheme())) {
+				File file = new File(uri);
+				return new ModelKey(uri, file.lastModified(), file.length());
+			} else {
+				return new ModelKey(uri, 0, 0);
+			}
+		}
+
+	}
+
+	/** styles which have already been loaded, see {@link #forConfig(O2WConfig)} */
+	private static final Cache<StyleKey, PropertyStyle> sharedStyles = CacheBuilder.newBuilder()
+			.maximumSize(4)
+			.build();
+
+	/** models which have already been loaded, can be used by multiple styles and threads */
+	private static final Cache<ModelKey, Model> sharedModels = CacheBuilder.newBuilder()
+			.softValues()
+			.build();
+
 	/**
 	 * @param config  a configuration object which provides access to the properties
 	 */
@@ -59,6 +119,21 @@ public class PropertyStyle implements Style {
 
 	}
 
+	/**
+	 * returns a style for a config. The style is shared with other configs which have the same
+	 * material and model properties, so it is only loaded once when converting many tiles with similar configs.
+	 * The style is not modified after loading and can be used by multiple threads at once.
+	 * This includes its models; {@link GltfModel}s only fill an internal cache of texture images on use,
+	 * which is thread-safe.
+	 */
+	public static PropertyStyle forConfig(O2WConfig config) {
+		try {
+			return sharedStyles.get(StyleKey.of(config), () -> new PropertyStyle(config));
+		} catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+			throw uncheckedCause(e);
+		}
+	}
+
 	@Override
 	public Collection<Material> getMaterials() {
 		return materialsByName.values();
@@ -490,7 +565,7 @@ public class PropertyStyle implements Style {
 						if (modelUri == null) {
 							System.err.println("Can't read model file " + fileName);
 						} else {
-							ms.add(GltfModel.loadFromUri(modelUri, null, null));
+							ms.add(loadModel(modelUri));
 						}
 					}
 					models.put(modelName.toUpperCase(Locale.ROOT), ms);
@@ -506,4 +581,27 @@ public class PropertyStyle implements Style {
 
 	}
 
+	private static Model loadModel(URI modelUri) throws IOException {
+		try {
+			return sharedModels.get(ModelKey.of(modelUri), () -> GltfModel.loadFromUri(modelUri, null, null));
+		} catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+			if (e.getCause() instanceof IOException cause) {
+				throw cause;
+			} else {
+				throw uncheckedCause(e);
+			}
+		}
+	}
+
+	/** returns the unchecked exception to throw for a failure while loading cache entries */
+	private static RuntimeException uncheckedCause(Throwable e) {
+		if (e.getCause() instanceof RuntimeException cause) {
+			return cause;
+		} else if (e.getCause() instanceof Error cause) {
+			throw cause;
+		} else {
+			return new RuntimeException(e.getCause());
+		}
+	}
+
 }
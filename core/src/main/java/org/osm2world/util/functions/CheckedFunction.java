@@ -0,0 +1,7 @@
+package org.osm2world.util.functions;
+
+/** equivalent to a {@link java.util.function.Function} that throws checked exceptions */
+@FunctionalInterface
+public interface CheckedFunction<T, R, E extends Exception> {
+	R apply(T t) throws E;
+}
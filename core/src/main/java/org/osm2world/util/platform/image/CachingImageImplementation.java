@@ -1,41 +1,103 @@
 package org.osm2world.util.platform.image;
 
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.DataBuffer;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.osm2world.scene.material.TextureData;
 import org.osm2world.util.Resolution;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
  * An {@link ImageImplementation} which caches previously loaded texture images.
+ *
+ * The cache can be used from multiple threads at once. Its size is limited by the number of bytes
+ * needed for the images' pixel data, least recently used images are evicted first.
+ * If several threads request the same image at the same time, it is only created once.
  */
 abstract class CachingImageImplementation implements ImageImplementation {
 
-	/** Cached results of {@link #loadTextureImage(TextureData)} ()} */
-	private final Map<TextureData, BufferedImage> cachedImages = new HashMap<>();
+	/**
+	 * Key for the cache.
+	 *
+	 * @param resolution  the requested resolution, null for results of {@link #loadTextureImage(TextureData)}
+	 */
+	private record CacheKey(TextureData texture, @Nullable Resolution resolution) {}
+
+	private final Cache<CacheKey, BufferedImage> cachedImages;
+
+	/**
+	 * @param maxCacheBytes  upper limit for the size of the pixel data of all cached images
+	 */
+	protected CachingImageImplementation(long maxCacheBytes) {
+		cachedImages = CacheBuilder.newBuilder()
+				.maximumWeight(maxCacheBytes)
+				.weigher((CacheKey key, BufferedImage image) -> (int) Math.min(Integer.MAX_VALUE, sizeInBytes(image)))
+				.recordStats()
+				.build();
+	}
 
-	/** Cached results of {@link #loadTextureImage(TextureData, Resolution)} */
-	private final Map<Pair<TextureData, Resolution>, BufferedImage> cachedImagesByResolution = new HashMap<>();
+	/**
+	 * uses a quarter of the maximum heap size as the limit for the cache
+	 */
+	protected CachingImageImplementation() {
+		this(Runtime.getRuntime().maxMemory() / 4);
+	}
 
 	@Override
 	public BufferedImage loadTextureImage(TextureData texture, Resolution resolution) {
-		var key = Pair.of(texture, resolution);
-		if (!cachedImagesByResolution.containsKey(key)) {
-			cachedImagesByResolution.put(key, createBufferedImage(texture, resolution));
+
+		/* use the image at its original resolution if it is already available and matches the request */
+
+		BufferedImage originalImage = cachedImages.asMap().get(new CacheKey(texture, null));
+		if (originalImage != null && resolution.equals(Resolution.of(originalImage))) {
+			return originalImage;
 		}
-		return cachedImagesByResolution.get(key);
+
+		return get(new CacheKey(texture, resolution));
+
 	}
 
 	@Override
 	public BufferedImage loadTextureImage(TextureData texture) {
-		if (!cachedImages.containsKey(texture)) {
-			BufferedImage image = createBufferedImage(texture);
-			cachedImages.put(texture, image);
-			cachedImagesByResolution.put(Pair.of(texture, Resolution.of(image)), image);
+		return get(new CacheKey(texture, null));
+	}
+
+	/**
+	 * returns statistics about cache hits, misses and evictions
+	 */
+	public CacheStats getCacheStats() {
+		return cachedImages.stats();
+	}
+
+	private BufferedImage get(CacheKey key) {
+		try {
+			return cachedImages.get(key, () -> key.resolution == null
+					? createBufferedImage(key.texture)
+					: createBufferedImage(key.texture, key.resolution));
+		} catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			} else if (e.getCause() instanceof Error cause) {
+				throw cause;
+			} else {
+				throw new RuntimeException(e.getCause());
+			}
 		}
-		return cachedImages.get(texture);
+	}
+
+	/** returns the approximate number of bytes used by an image's pixel data */
+	private static long sizeInBytes(BufferedImage image) {
+		DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+		return (long) dataBuffer.getSize() * dataBuffer.getNumBanks()
+				* DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
 	}
 
 	protected abstract BufferedImage createBufferedImage(TextureData texture, Resolution resolution);
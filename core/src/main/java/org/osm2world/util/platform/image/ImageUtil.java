@@ -3,9 +3,13 @@ package org.osm2world.util.platform.image;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 
+import javax.annotation.Nullable;
+
 import org.osm2world.scene.material.TextureData;
 import org.osm2world.util.Resolution;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * Utility class for loading images from files and other data.
  * Internally uses separate implementations for use on the browser and on JVM.
@@ -71,6 +75,18 @@ public class ImageUtil {
 
 	}
 
+	/**
+	 * Returns statistics about the cache of texture images,
+	 * or null if the current implementation does not cache images.
+	 */
+	public static @Nullable CacheStats getCacheStats() {
+		if (implementation instanceof CachingImageImplementation cachingImplementation) {
+			return cachingImplementation.getCacheStats();
+		} else {
+			return null;
+		}
+	}
+
 	public static BufferedImage getScaledImage(BufferedImage originalImage, Resolution newResolution) {
 		Image tmp = originalImage.getScaledInstance(newResolution.width, newResolution.height, Image.SCALE_SMOOTH);
 		BufferedImage result = new BufferedImage(newResolution.width, newResolution.height, originalImage.getType());
@@ -9,6 +9,18 @@ import org.osm2world.conversion.O2WConfig;
 import org.osm2world.map_data.data.MapData;
 import org.osm2world.world.network.NetworkCalculator;
 
+/**
+ * applies {@link WorldModule}s to {@link MapData}.
+ *
+ * Modules are always applied one after another, in the order of the list.
+ * This is necessary because modules often only create objects for elements
+ * which have not received any representations from earlier modules.
+ * If {@link O2WConfig#parallelWorldModules()} is enabled, a module may process its elements in parallel
+ * (see {@link org.osm2world.world.modules.common.AbstractModule}),
+ * but it will have finished all elements before the next module starts.
+ * Modules which implement {@link WorldModule#applyTo(MapData)} themselves are always sequential.
+ * {@link NetworkCalculator} runs on a single thread after all modules have been applied.
+ */
 public class WorldCreator {
 
 	private List<? extends WorldModule> modules;
@@ -29,6 +41,11 @@ public class WorldCreator {
 			module.setConfiguration(config);
 		}
 
+		if (config.parallelWorldModules()) {
+			// the style is created lazily, make sure this does not happen concurrently in multiple threads
+			config.mapStyle();
+		}
+
 	}
 
 	public void addRepresentationsTo(MapData mapData) {
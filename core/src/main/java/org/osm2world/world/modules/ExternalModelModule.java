@@ -35,6 +35,7 @@ import org.osm2world.world.data.NodeWorldObject;
 import org.osm2world.world.data.WaySegmentWorldObject;
 import org.osm2world.world.data.WorldObject;
 import org.osm2world.world.modules.common.ConfigurableWorldModule;
+import org.osm2world.world.modules.common.ExternalModelCache;
 import org.osm2world.world.modules.common.WorldModuleParseUtil;
 
 /**
@@ -82,7 +83,8 @@ public class ExternalModelModule extends ConfigurableWorldModule {
 	}
 
 	/**
-	 * attempt to load a model from the 3D model repository (3DMR)
+	 * attempt to load a model from the 3D model repository (3DMR).
+	 * Models are cached, see {@link ExternalModelCache}.
 	 */
 	private @Nullable GltfModel loadModelFrom3dmr(long id, @Nullable MapRelationElement element) {
 
@@ -105,7 +107,7 @@ public class ExternalModelModule extends ConfigurableWorldModule {
 
 			if (modelFile.exists()) {
 				try {
-					return GltfModel.loadFromFile(modelFile);
+					return ExternalModelCache.forConfig(config).loadFromFile(modelFile);
 				} catch (IOException e) {
 					ConversionLog.error("Error loading 3DMR model from local file: " + modelFile, element);
 				}
@@ -123,7 +125,7 @@ public class ExternalModelModule extends ConfigurableWorldModule {
 				URL url = new URL(urlPrefix + id);
 				var source = new ExternalModelSource.External3DMRSource(id);
 
-				return GltfModel.loadFromHttpUrl(url, GltfFlavor.GLB, source);
+				return ExternalModelCache.forConfig(config).loadFromHttpUrl(url, GltfFlavor.GLB, source);
 
 			} catch (IOException e) {
 				ConversionLog.error("Error loading 3DMR model '"  + id + "' from " + urlPrefix, element);
@@ -126,12 +126,21 @@ public class TreeModule extends ConfigurableWorldModule {
 
 	}
 
+	/**
+	 * the dimensions of a tree relative to its height.
+	 * Trees with the same proportions can share a {@link TreeModel} regardless of their height.
+	 *
+	 * @param crownDiameter  diameter of the tree's crown as a multiple of the height
+	 * @param trunkDiameter  diameter of the tree's trunk (at breast height) as a multiple of the height,
+	 *                       or null if unknown
+	 */
+	private record TreeProportions(double crownDiameter, @Nullable Double trunkDiameter) {}
+
 	/**
 	 * @param height  tree height in meters
-	 * @param crownDiameter  diameter of the tree's crown in meters
-	 * @param trunkDiameter  diameter of the tree's trunk (at breast height) in meters, or null if unknown
+	 * @param proportions  the tree's other dimensions relative to the height
 	 */
-	private record TreeDimensions(double height, double crownDiameter, @Nullable Double trunkDiameter) {
+	private record TreeDimensions(double height, TreeProportions proportions) {
 
 		/**
 		 * parse height and other dimensions (optionally modified by some random factor for forests)
@@ -176,8 +185,8 @@ public class TreeModule extends ConfigurableWorldModule {
 				crownDiameter = height / defaultHeightToWidth;
 			}
 
-			return new TreeDimensions(scaleFactor * height,scaleFactor * crownDiameter,
-					trunkDiameter != null ? scaleFactor * trunkDiameter : null);
+			return new TreeDimensions(scaleFactor * height, new TreeProportions(crownDiameter / height,
+					trunkDiameter != null ? trunkDiameter / height : null));
 
 		}
 
@@ -232,7 +241,7 @@ public class TreeModule extends ConfigurableWorldModule {
 	 * @param seed       an object to be used as the seed for random decisions
 	 */
 	private TreeModel getTreeModel(Vector3D seed, LeafType leafType, LeafCycle leafCycle, TreeSpecies species,
-			@Nullable TreeDimensions dimensions) {
+			@Nullable TreeProportions proportions) {
 
 		var r = new Random((long)(seed.getX() * 10) + (long)(seed.getZ() * 10000));
 
@@ -251,7 +260,7 @@ public class TreeModule extends ConfigurableWorldModule {
 					&& existingModel.leafCycle() == leafCycle
 					&& existingModel.species() == species
 					&& existingModel.mirrored() == mirrored
-					&& Objects.equals(existingModel.dimensions(), dimensions)
+					&& Objects.equals(existingModel.proportions(), proportions)
 					&& (existingModel instanceof TreeBillboardModel) == useBillboards) {
 				model = existingModel;
 				break;
@@ -260,8 +269,8 @@ public class TreeModule extends ConfigurableWorldModule {
 
 		if (model == null) {
 			model = useBillboards
-					? new TreeBillboardModel(leafType, leafCycle, species, mirrored, dimensions, config.mapStyle())
-					: new TreeGeometryModel(leafType, leafCycle, species, dimensions, config.mapStyle());
+					? new TreeBillboardModel(leafType, leafCycle, species, mirrored, proportions, config.mapStyle())
+					: new TreeGeometryModel(leafType, leafCycle, species, proportions, config.mapStyle());
 			existingModels.add(model);
 		}
 
@@ -276,7 +285,12 @@ public class TreeModule extends ConfigurableWorldModule {
 		@Nullable TreeSpecies species();
 		boolean mirrored();
 		double defaultHeightToWidth();
-		@Nullable TreeDimensions dimensions();
+		@Nullable TreeProportions proportions();
+
+		@Override
+		default boolean isScalableByHeight() {
+			return true;
+		}
 
 	}
 
@@ -285,7 +299,7 @@ public class TreeModule extends ConfigurableWorldModule {
 			LeafCycle leafCycle,
 			@Nullable TreeSpecies species,
 			boolean mirrored,
-			@Nullable TreeDimensions dimensions,
+			@Nullable TreeProportions proportions,
 			Style mapStyle
 	) implements TreeModel {
 
@@ -295,7 +309,7 @@ public class TreeModule extends ConfigurableWorldModule {
 			Material material = getMaterial().get(mapStyle);
 
 			return WorldModuleBillboardUtil.buildCrosstree(material, params.position(),
-					dimensions != null ? dimensions.crownDiameter : defaultHeightToWidth() * params.height(),
+					(proportions != null ? proportions.crownDiameter : defaultHeightToWidth()) * params.height(),
 					params.height(), mirrored);
 
 		}
@@ -308,6 +322,11 @@ public class TreeModule extends ConfigurableWorldModule {
 					: TREE_BILLBOARD_BROAD_LEAVED;
 		}
 
+		@Override
+		public boolean isInstanceable() {
+			return true;
+		}
+
 		@Override
 		public double defaultHeightToWidth() {
 			List<TextureLayer> textureLayers = getMaterial().get(mapStyle).textureLayers();
@@ -331,7 +350,7 @@ public class TreeModule extends ConfigurableWorldModule {
 			LeafType leafType,
 			LeafCycle leafCycle,
 			@Nullable TreeSpecies species,
-			@Nullable TreeDimensions dimensions,
+			@Nullable TreeProportions proportions,
 			Style mapStyle
 	) implements TreeModel {
 
@@ -349,8 +368,9 @@ public class TreeModule extends ConfigurableWorldModule {
 			boolean coniferous = (leafType == LeafType.NEEDLELEAVED);
 
 			double stemRatio = coniferous?0.3:0.5;
-			double width = dimensions != null ? dimensions.crownDiameter : defaultHeightToWidth() * height;
-			double trunkRadius = dimensions != null && dimensions.trunkDiameter != null ? dimensions.trunkDiameter / 2
+			double width = (proportions != null ? proportions.crownDiameter : defaultHeightToWidth()) * height;
+			double trunkRadius = proportions != null && proportions.trunkDiameter != null
+					? proportions.trunkDiameter * height / 2
 					: width / 8;
 
 			ExtrusionGeometry trunk = ExtrusionGeometry.createColumn(null,
@@ -373,6 +393,11 @@ public class TreeModule extends ConfigurableWorldModule {
 		public double defaultHeightToWidth() {
 			return 2.5;
 		}
+
+		@Override
+		public boolean isInstanceable() {
+			return true;
+		}
 	}
 
 	private final List<TreeModel> existingModels = new ArrayList<>();
@@ -404,7 +429,7 @@ public class TreeModule extends ConfigurableWorldModule {
 
 			TreeModel dimensionlessModel = getTreeModel(node.getPos(), leafType, leafCycle, species, null);
 			dimensions = TreeDimensions.fromTags(tags, null, dimensionlessModel, defaultTreeHeight);
-			model = getTreeModel(node.getPos(), leafType, leafCycle, species, dimensions);
+			model = getTreeModel(node.getPos(), leafType, leafCycle, species, dimensions.proportions());
 
 		}
 
@@ -491,7 +516,7 @@ public class TreeModule extends ConfigurableWorldModule {
 				VectorXYZ pos = treeConnector.getPosXYZ();
 				TreeModel treeModel = getTreeModel(pos, leafType, leafCycle, species, null);
 				TreeDimensions dimensions = TreeDimensions.fromTags(segment.getTags(), null, treeModel, defaultTreeHeight);
-				treeModel = getTreeModel(pos, leafType, leafCycle, species, dimensions);
+				treeModel = getTreeModel(pos, leafType, leafCycle, species, dimensions.proportions());
 				target.addSubModel(new ModelInstance(treeModel, new InstanceParameters(pos, 0, dimensions.height)));
 			}
 
@@ -585,7 +610,7 @@ public class TreeModule extends ConfigurableWorldModule {
 				TreeModel treeModel = getTreeModel(pos, leafType, leafCycle, species, null);
 				TreeDimensions dimensions = TreeDimensions.fromTags(area.getTags(), new Random(area.getId()), treeModel,
 						area.getTags().contains("landuse", "orchard") ? defaultTreeHeight : defaultTreeHeightForest);
-				treeModel = getTreeModel(pos, leafType, leafCycle, species, dimensions);
+				treeModel = getTreeModel(pos, leafType, leafCycle, species, dimensions.proportions());
 				target.addSubModel(new ModelInstance(treeModel, new InstanceParameters(pos, 0, dimensions.height)));
 			}
 
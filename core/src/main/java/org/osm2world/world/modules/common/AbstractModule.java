@@ -1,6 +1,12 @@
 package org.osm2world.world.modules.common;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.osm2world.conversion.ConversionLog;
 import org.osm2world.map_data.data.*;
+import org.osm2world.world.creation.WorldCreator;
 import org.osm2world.world.creation.WorldModule;
 import org.osm2world.world.data.WorldObject;
 
@@ -10,32 +16,67 @@ import org.osm2world.world.data.WorldObject;
  * Subclasses need to be able to create {@link WorldObject}s
  * for each {@link MapElement} in isolation.
  * This can make parallel application of the module possible.
+ *
+ * If parallel application is enabled in the config, all nodes are processed in parallel, followed by all ways,
+ * way segments and areas. The applyTo... methods must therefore only add representations to the element they
+ * were called for. They may read representations of other elements only if these have been created by
+ * earlier modules. Subclasses which cannot satisfy this need to override {@link #supportsParallelApplication()}.
+ * See {@link WorldCreator} for the rules governing the application of multiple modules.
  */
 public abstract class AbstractModule extends ConfigurableWorldModule {
 
 	@Override
 	public final void applyTo(MapData mapData) {
 
-		for (MapNode node : mapData.getMapNodes()) {
+		boolean parallel = config.parallelWorldModules() && supportsParallelApplication();
+
+		forEach(mapData.getMapNodes(), parallel, node -> {
 			if (node.getRepresentations().isEmpty()) {
 				applyToNode(node);
 			}
-		}
+		});
 
-		for (MapWay way : mapData.getMapWays()) {
-			applyToWay(way);
-		}
+		forEach(mapData.getMapWays(), parallel, this::applyToWay);
 
-		for (MapWaySegment waySegment : mapData.getMapWaySegments()) {
+		forEach(mapData.getMapWaySegments(), parallel, waySegment -> {
 			if (waySegment.getRepresentations().isEmpty()) {
 				applyToWaySegment(waySegment);
 			}
-		}
+		});
 
-		for (MapArea area : mapData.getMapAreas()) {
+		forEach(mapData.getMapAreas(), parallel, area -> {
 			if (area.getRepresentations().isEmpty()) {
 				applyToArea(area);
 			}
+		});
+
+	}
+
+	/**
+	 * whether this module can process multiple elements at the same time.
+	 * Can be overwritten by subclasses which do not follow the rules described in the class documentation.
+	 */
+	protected boolean supportsParallelApplication() {
+		return true;
+	}
+
+	/**
+	 * performs an action for each element, possibly in parallel.
+	 * Log entries of parallel actions are added to the calling thread's {@link ConversionLog}
+	 * in the order of the elements, so the result does not depend on scheduling.
+	 */
+	private static <T> void forEach(Collection<T> elements, boolean parallel, Consumer<? super T> action) {
+
+		if (!parallel) {
+			elements.forEach(action);
+		} else {
+
+			List<List<ConversionLog.Entry>> logEntries = elements.parallelStream()
+					.map(element -> ConversionLog.capture(() -> action.accept(element)))
+					.toList();
+
+			logEntries.forEach(entries -> entries.forEach(ConversionLog::log));
+
 		}
 
 	}
@@ -0,0 +1,309 @@
+package org.osm2world.world.modules.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import org.osm2world.conversion.ConversionLog;
+import org.osm2world.conversion.O2WConfig;
+import org.osm2world.output.gltf.GltfFlavor;
+import org.osm2world.output.gltf.GltfModel;
+import org.osm2world.scene.model.ExternalModelSource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * caches external models, such as those from the 3D model repository (3DMR),
+ * so they don't need to be loaded again for each element and each tile.
+ *
+ * Loaded models are kept in memory. Models downloaded via HTTP are also stored in a directory on disk
+ * if one is configured. Once a download is older than the maximum age, it is revalidated using a conditional
+ * request (based on the ETag and Last-Modified headers) and only downloaded again if it has changed.
+ * If a model cannot be loaded, further attempts to load it are skipped for some time.
+ *
+ * Instances can be used by multiple threads at once.
+ */
+public class ExternalModelCache {
+
+	private static final int MAX_MODELS_IN_MEMORY = 500;
+	private static final Duration FAILURE_RETRY_DELAY = Duration.ofMinutes(10);
+
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	private static final Duration READ_TIMEOUT = Duration.ofSeconds(60);
+
+	private static final String DATA_FILE_SUFFIX = ".bin";
+	private static final String META_FILE_SUFFIX = ".properties";
+
+	private record Settings(@Nullable File cacheDir, long maxDiskBytes, Duration maxAge) {}
+
+	/** caches shared by all conversions, see {@link #forConfig(O2WConfig)} */
+	private static final Map<Settings, ExternalModelCache> sharedCaches = new HashMap<>();
+
+	private final @Nullable File cacheDir;
+	private final long maxDiskBytes;
+	private final Duration maxAge;
+
+	private final Cache<String, GltfModel> models;
+	private final Cache<String, IOException> failures;
+
+	/**
+	 * @param cacheDir           directory for storing downloaded models, null to only cache models in memory
+	 * @param maxDiskBytes       maximum total size of the downloads stored in cacheDir
+	 * @param maxModels          maximum number of models kept in memory, also used as the maximum number of
+	 *                           remembered failures
+	 * @param maxAge             time after which downloaded models are revalidated
+	 * @param failureRetryDelay  time during which a model which could not be loaded will not be requested again
+	 */
+	public ExternalModelCache(@Nullable File cacheDir, long maxDiskBytes, int maxModels,
+			Duration maxAge, Duration failureRetryDelay) {
+		this.cacheDir = cacheDir;
+		this.maxDiskBytes = maxDiskBytes;
+		this.maxAge = maxAge;
+		this.models = CacheBuilder.newBuilder()
+				.maximumSize(maxModels)
+				.expireAfterWrite(maxAge)
+				.build();
+		this.failures = CacheBuilder.newBuilder()
+				.maximumSize(maxModels)
+				.expireAfterWrite(failureRetryDelay)
+				.build();
+	}
+
+	/**
+	 * returns the cache for a config's model cache settings.
+	 * Conversions with the same settings share a cache.
+	 */
+	public static synchronized ExternalModelCache forConfig(O2WConfig config) {
+		var settings = new Settings(config.modelCacheDir(), config.modelCacheMaxMegabytes() * 1024L * 1024,
+				Duration.ofSeconds(config.modelCacheMaxAge()));
+		return sharedCaches.computeIfAbsent(settings, s -> new ExternalModelCache(
+				s.cacheDir, s.maxDiskBytes, MAX_MODELS_IN_MEMORY, s.maxAge, FAILURE_RETRY_DELAY));
+	}
+
+	/** loads a model from a local file, or returns the cached model if the file has not been modified */
+	public GltfModel loadFromFile(File file) throws IOException {
+		String key = file.getAbsolutePath() + "@" + file.lastModified();
+		return load(key, () -> GltfModel.loadFromFile(file));
+	}
+
+	/** loads a model from a http(s) URL, or returns a cached model */
+	public GltfModel loadFromHttpUrl(URL url, GltfFlavor flavor, @Nullable ExternalModelSource source)
+			throws IOException {
+		return load(url.toString(), () -> {
+			byte[] data = download(url);
+			try {
+				return GltfModel.loadFromStream(new ByteArrayInputStream(data), flavor,
+						source != null ? source : new ExternalModelSource.HttpUrlSource(url));
+			} catch (IOException e) {
+				deleteDownload(url);
+				throw e;
+			}
+		});
+	}
+
+	private interface ModelLoader {
+		GltfModel load() throws IOException;
+	}
+
+	private GltfModel load(String key, ModelLoader loader) throws IOException {
+
+		IOException previousFailure = failures.getIfPresent(key);
+		if (previousFailure != null) {
+			throw new IOException("Loading the model failed recently: " + key, previousFailure);
+		}
+
+		try {
+			return models.get(key, loader::load);
+		} catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+			if (e.getCause() instanceof IOException cause) {
+				failures.put(key, cause);
+				throw cause;
+			} else if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			} else if (e.getCause() instanceof Error cause) {
+				throw cause;
+			} else {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+	}
+
+	/**
+	 * returns the content at a URL, using the copy in the {@link #cacheDir} if it is still valid.
+	 * Falls back to an outdated copy if the server cannot be reached.
+	 */
+	private byte[] download(URL url) throws IOException {
+
+		long now = System.currentTimeMillis();
+
+		File dataFile = dataFile(url);
+		File metaFile = metaFile(url);
+
+		byte[] cachedData = null;
+		Properties meta = new Properties();
+
+		if (dataFile != null && dataFile.exists() && metaFile.exists()) {
+			try (var reader = Files.newBufferedReader(metaFile.toPath(), UTF_8)) {
+				meta.load(reader);
+				cachedData = Files.readAllBytes(dataFile.toPath());
+				dataFile.setLastModified(now); // marks the file as recently used
+			} catch (IOException | IllegalArgumentException e) {
+				ConversionLog.warn("Could not read cached model " + dataFile, e);
+				cachedData = null;
+			}
+		}
+
+		if (cachedData != null && now - longProperty(meta, "validated") < maxAge.toMillis()) {
+			return cachedData;
+		}
+
+		/* download the model, or revalidate the cached copy */
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("GET");
+		connection.setConnectTimeout((int) CONNECT_TIMEOUT.toMillis());
+		connection.setReadTimeout((int) READ_TIMEOUT.toMillis());
+
+		if (cachedData != null) {
+			if (meta.getProperty("etag") != null) {
+				connection.setRequestProperty("If-None-Match", meta.getProperty("etag"));
+			}
+			if (longProperty(meta, "lastModified") != 0) {
+				connection.setIfModifiedSince(longProperty(meta, "lastModified"));
+			}
+		}
+
+		int responseCode;
+		byte[] data = null;
+
+		try {
+			responseCode = connection.getResponseCode();
+			if (responseCode == HttpURLConnection.HTTP_OK) {
+				try (InputStream inputStream = connection.getInputStream()) {
+					data = inputStream.readAllBytes();
+				}
+			}
+		} catch (IOException e) {
+			if (cachedData != null) {
+				ConversionLog.warn("Could not revalidate model from " + url + ", using cached copy", e);
+				return cachedData;
+			} else {
+				throw e;
+			}
+		}
+
+		if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedData != null) {
+			meta.setProperty("validated", Long.toString(now));
+			storeMeta(metaFile, meta);
+			return cachedData;
+		} else if (data != null) {
+			if (dataFile != null) {
+				meta = new Properties();
+				meta.setProperty("url", url.toString());
+				meta.setProperty("validated", Long.toString(now));
+				if (connection.getHeaderField("ETag") != null) {
+					meta.setProperty("etag", connection.getHeaderField("ETag"));
+				}
+				if (connection.getLastModified() != 0) {
+					meta.setProperty("lastModified", Long.toString(connection.getLastModified()));
+				}
+				storeDownload(dataFile, metaFile, data, meta);
+			}
+			return data;
+		} else {
+			throw new IOException("Response code " + responseCode + " retrieving model from URL " + url);
+		}
+
+	}
+
+	/** returns a numeric value from the metadata of a cached download, 0 if it is missing or invalid */
+	private static long longProperty(Properties meta, String key) {
+		try {
+			return Long.parseLong(meta.getProperty(key, "0"));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private @Nullable File dataFile(URL url) {
+		return cacheDir == null ? null : new File(cacheDir, fileName(url) + DATA_FILE_SUFFIX);
+	}
+
+	private @Nullable File metaFile(URL url) {
+		return cacheDir == null ? null : new File(cacheDir, fileName(url) + META_FILE_SUFFIX);
+	}
+
+	private static String fileName(URL url) {
+		return Hashing.sha256().hashString(url.toString(), UTF_8).toString();
+	}
+
+	private synchronized void storeDownload(File dataFile, File metaFile, byte[] data, Properties meta) {
+
+		try {
+			Files.createDirectories(dataFile.getParentFile().toPath());
+			File tempFile = File.createTempFile(dataFile.getName(), ".tmp", dataFile.getParentFile());
+			Files.write(tempFile.toPath(), data);
+			Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			storeMeta(metaFile, meta);
+		} catch (IOException e) {
+			ConversionLog.warn("Could not store downloaded model in " + dataFile, e);
+			return;
+		}
+
+		/* delete the least recently used downloads if the cache has grown too large */
+
+		File[] dataFiles = dataFile.getParentFile().listFiles((dir, name) -> name.endsWith(DATA_FILE_SUFFIX));
+
+		if (dataFiles != null) {
+
+			Arrays.sort(dataFiles, Comparator.comparingLong(File::lastModified).reversed());
+
+			long totalBytes = 0;
+
+			for (File file : dataFiles) {
+				totalBytes += file.length();
+				if (totalBytes > maxDiskBytes && !file.equals(dataFile)) {
+					String baseName = file.getName().substring(0, file.getName().length() - DATA_FILE_SUFFIX.length());
+					file.delete();
+					new File(file.getParentFile(), baseName + META_FILE_SUFFIX).delete();
+				}
+			}
+
+		}
+
+	}
+
+	private static void storeMeta(File metaFile, Properties meta) {
+		try (var writer = Files.newBufferedWriter(metaFile.toPath(), UTF_8)) {
+			meta.store(writer, null);
+		} catch (IOException e) {
+			ConversionLog.warn("Could not store cache metadata in " + metaFile, e);
+		}
+	}
+
+	private void deleteDownload(URL url) {
+		if (cacheDir != null) {
+			dataFile(url).delete();
+			metaFile(url).delete();
+		}
+	}
+
+}
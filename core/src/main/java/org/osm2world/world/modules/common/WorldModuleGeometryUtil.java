@@ -7,13 +7,12 @@ import static org.osm2world.math.algorithms.TriangulationUtil.triangulate;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 import org.osm2world.math.VectorXYZ;
 import org.osm2world.math.VectorXZ;
 import org.osm2world.math.algorithms.GeometryUtil;
-import org.osm2world.math.shapes.AxisAlignedRectangleXZ;
+import org.osm2world.math.datastructures.STRTree;
 import org.osm2world.math.shapes.PolygonShapeXZ;
 import org.osm2world.math.shapes.SimplePolygonShapeXZ;
 import org.osm2world.math.shapes.TriangleXZ;
@@ -200,25 +199,22 @@ public final class WorldModuleGeometryUtil {
 			}
 		}
 
-		/* perform filtering of positions */
-
-		List<AxisAlignedRectangleXZ> filterPolygonBbox = filterPolygons.stream().map(p -> p.boundingBox()).collect(toList());
+		if (filterPolygons.isEmpty() || positions.isEmpty()) return;
 
-		Iterator<VectorXZ> positionIterator = positions.iterator();
+		/* index the filter polygons to only test each position against nearby polygons */
 
-		while (positionIterator.hasNext()) {
+		var filterPolygonIndex = new STRTree<>(filterPolygons);
 
-			VectorXZ pos = positionIterator.next();
+		/* perform filtering of positions */
 
-			for (int i = 0; i < filterPolygons.size(); i++) {
-				if (filterPolygonBbox.get(i).contains(pos)
-						&& filterPolygons.get(i).contains(pos)) {
-					positionIterator.remove();
-					break;
+		positions.removeIf(pos -> {
+			for (PolygonShapeXZ filterPolygon : filterPolygonIndex.probe(pos)) {
+				if (filterPolygon.boundingBox().contains(pos) && filterPolygon.contains(pos)) {
+					return true;
 				}
 			}
-
-		}
+			return false;
+		});
 
 	}
 
@@ -42,13 +42,15 @@ public class InputOptions {
 				File inputFile = input;
 				String inputName = inputFile.getName();
 				if (inputName.endsWith(".mbtiles")) {
-					yield new MbtilesReader(inputFile);
+					yield new MbtilesReader(inputFile, true);
 				} else if (inputName.endsWith(".gol")) {
 					yield new GeodeskReader(inputFile);
 				} else if (inputName.endsWith(".json")) {
 					yield new JsonFileReader(inputFile);
+				} else if (inputName.endsWith(".pbf")) {
+					yield new IndexedPbfReader(inputFile, true);
 				} else {
-					yield new OSMFileReader(inputFile);
+					yield new OSMFileReader(inputFile, true);
 				}
 			}
 
@@ -189,9 +189,9 @@ final class CLIArgumentsUtil {
 			case FILE -> {
 				File inputFile = args.getInput();
 				return switch (CLIArgumentsUtil.getInputFileType(args)) {
-					case SIMPLE_FILE -> new OSMFileReader(inputFile);
+					case SIMPLE_FILE -> new OSMFileReader(inputFile, true);
 					case JSON -> new JsonFileReader(inputFile);
-					case MBTILES -> new MbtilesReader(inputFile);
+					case MBTILES -> new MbtilesReader(inputFile, true);
 					case GEODESK -> new GeodeskReader(inputFile);
 				};
 			}
@@ -221,7 +221,8 @@ public class ViewerFrame extends JFrame {
 					LinearInterpolator.class,
 					InverseDistanceWeightingInterpolator.class,
 					LeastSquaresInterpolator.class,
-					NaturalNeighborInterpolator.class);
+					NaturalNeighborInterpolator.class,
+					GridInterpolator.class);
 
 			for (Class<? extends TerrainInterpolator> c : interpolatorClasses) {
 